@@ -21,11 +21,18 @@ import android.app.Dialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.media.videoeditor.MediaProperties;
+import android.text.format.Formatter;
 import android.util.Pair;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Spinner;
+import android.widget.TextView;
+
+import com.android.videoeditor.service.ApiService;
+import com.android.videoeditor.service.ExportHistory;
+import com.android.videoeditor.util.StringUtils;
 
 /**
  * The export options dialog
@@ -50,12 +57,14 @@ public class ExportOptionsDialog {
      * @param negativeListener The negative listener
      * @param cancelListener The cancel listener
      * @param aspectRatio The aspect ratio
+     * @param durationMs The duration of the movie
      *
      * @return The dialog
      */
     public static Dialog create(Context context, final ExportOptionsListener positiveListener,
             DialogInterface.OnClickListener negativeListener,
-            DialogInterface.OnCancelListener cancelListener, final int aspectRatio) {
+            DialogInterface.OnCancelListener cancelListener, final int aspectRatio,
+            long durationMs) {
         AlertDialog.Builder builder = new AlertDialog.Builder(context);
 
         // Set the title
@@ -69,7 +78,7 @@ public class ExportOptionsDialog {
         builder.setView(myView);
 
         // Prepare the dialog content
-        prepareContent(myView, aspectRatio);
+        prepareContent(myView, aspectRatio, durationMs);
 
         // Setup the positive listener
         builder.setPositiveButton(context.getString(R.string.export_dialog_export),
@@ -104,8 +113,10 @@ public class ExportOptionsDialog {
      *
      * @param view The dialog content view
      * @param aspectRatio The project aspect ratio
+     * @param durationMs The duration of the movie
      */
-    private static void prepareContent(View view, int aspectRatio) {
+    private static void prepareContent(final View view, final int aspectRatio,
+            final long durationMs) {
         final Context context = view.getContext();
         // Setup the movie size spinner
         final ArrayAdapter<CharSequence> sizeAdapter = new ArrayAdapter<CharSequence>(
@@ -132,6 +143,53 @@ public class ExportOptionsDialog {
         // Set the default quality to "Medium"
         qualitySpinner.setSelection(1);
         qualitySpinner.setPromptId(R.string.export_dialog_movie_quality);
+
+        // Update the estimate when the options change
+        final AdapterView.OnItemSelectedListener estimateListener =
+            new AdapterView.OnItemSelectedListener() {
+                @Override
+                public void onItemSelected(AdapterView<?> parent, View v, int position,
+                        long id) {
+                    updateEstimate(view, aspectRatio, durationMs);
+                }
+
+                @Override
+                public void onNothingSelected(AdapterView<?> parent) {
+                }
+            };
+        sizeSpinner.setOnItemSelectedListener(estimateListener);
+        qualitySpinner.setOnItemSelectedListener(estimateListener);
+        updateEstimate(view, aspectRatio, durationMs);
+    }
+
+    /**
+     * Display the export time and movie size predicted by the history of the
+     * previous exports for the selected options
+     *
+     * @param view The dialog content view
+     * @param aspectRatio The project aspect ratio
+     * @param durationMs The duration of the movie
+     */
+    private static void updateEstimate(View view, int aspectRatio, long durationMs) {
+        final Context context = view.getContext();
+        final Spinner sizeSpinner = (Spinner)view.findViewById(R.id.export_option_size);
+        final Spinner qualitySpinner = (Spinner)view.findViewById(R.id.export_option_quality);
+        final TextView estimateView = (TextView)view.findViewById(R.id.export_option_estimate);
+        if (sizeSpinner.getSelectedItemPosition() < 0 || durationMs <= 0) {
+            estimateView.setText(null);
+            return;
+        }
+
+        final ExportHistory.Prediction prediction = ApiService.getExportHistory(context).predict(
+                indexToMovieHeight(sizeSpinner.getSelectedItemPosition(), aspectRatio),
+                indexToMovieBitrate(qualitySpinner.getSelectedItemPosition()), durationMs);
+        final String size = Formatter.formatFileSize(context, prediction.getSize());
+        if (prediction.getDurationMs() >= 0) {
+            estimateView.setText(context.getString(R.string.export_dialog_estimate,
+                    StringUtils.getDurationAsString(context, prediction.getDurationMs()), size));
+        } else {
+            estimateView.setText(context.getString(R.string.export_dialog_estimate_size, size));
+        }
     }
 
     /**
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Color;
+import android.media.videoeditor.VideoEditor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.widget.ImageView;
+
+/**
+ * Composes the overlay layer displayed on top of the preview surface.
+ * Compositions are drawn by a worker thread into a back buffer which is
+ * swapped with the front buffer displayed by the overlay view once the
+ * drawing completes. Only the latest pending composition is drawn.
+ */
+class OverlayCompositor {
+    // Logging
+    private static final String TAG = "OverlayCompositor";
+
+    // The number of overlay data elements allocated up front
+    private static final int INITIAL_OVERLAY_DATA_COUNT = 4;
+
+    // Released overlay data elements beyond this count are discarded
+    private static final int MAX_IDLE_OVERLAY_DATA_COUNT = 16;
+
+    /**
+     * A composition of the overlay layer
+     */
+    interface Composition {
+        /**
+         * Draw the composition. This method is invoked on the worker thread.
+         *
+         * @param buffer The back buffer
+         *
+         * @return true if the buffer should be displayed
+         */
+        public boolean compose(Bitmap buffer);
+    }
+
+    // Instance variables
+    private final ImageView mOverlayView;
+    private final HandlerThread mThread;
+    private final Handler mThreadHandler;
+    private final Handler mMainHandler;
+    private final List<VideoEditor.OverlayData> mOverlayDataPool;
+    private Bitmap mFrontBuffer, mBackBuffer;
+    private Composition mPendingComposition;
+    private boolean mSwapPending;
+    // The worker thread draws into the back buffer outside of the lock
+    private boolean mRendering;
+    private int mOverlayDataCount;
+
+    private final Runnable mComposeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final Composition composition;
+            final Bitmap buffer;
+            synchronized (OverlayCompositor.this) {
+                // The back buffer is not available until the swap completes
+                if (mSwapPending || mRendering || mBackBuffer == null ||
+                        mPendingComposition == null) {
+                    return;
+                }
+
+                composition = mPendingComposition;
+                mPendingComposition = null;
+                buffer = mBackBuffer;
+                mRendering = true;
+            }
+
+            // Draw without holding the lock so that the UI thread does not
+            // wait for the composition
+            final boolean swap = composition.compose(buffer);
+
+            synchronized (OverlayCompositor.this) {
+                mRendering = false;
+                if (buffer != mBackBuffer) {
+                    // The buffers were released while drawing
+                    buffer.recycle();
+                } else if (swap) {
+                    mSwapPending = true;
+                    mMainHandler.post(mSwapRunnable);
+                }
+
+                if (!mSwapPending && mPendingComposition != null) {
+                    // A composition was submitted while drawing
+                    mThreadHandler.post(this);
+                }
+            }
+        }
+    };
+
+    private final Runnable mSwapRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final Bitmap frontBuffer;
+            synchronized (OverlayCompositor.this) {
+                if (!mSwapPending) {
+                    // The buffers were released
+                    return;
+                }
+
+                frontBuffer = mBackBuffer;
+                mBackBuffer = mFrontBuffer;
+                mFrontBuffer = frontBuffer;
+                mSwapPending = false;
+
+                if (mPendingComposition != null) {
+                    mThreadHandler.post(mComposeRunnable);
+                }
+            }
+
+            mOverlayView.setImageBitmap(frontBuffer);
+        }
+    };
+
+    /**
+     * The composition which clears the overlay layer
+     */
+    private final Composition mClearComposition = new Composition() {
+        @Override
+        public boolean compose(Bitmap buffer) {
+            buffer.eraseColor(Color.TRANSPARENT);
+            return true;
+        }
+    };
+
+    /**
+     * The composition which renders overlay data
+     */
+    private class OverlayDataComposition implements Composition {
+        // Instance variables
+        private final VideoEditor.OverlayData mOverlayData;
+        private final boolean mPooled;
+
+        /**
+         * Constructor
+         *
+         * @param overlayData The overlay data
+         * @param pooled true if the overlay data returns to the pool
+         */
+        public OverlayDataComposition(VideoEditor.OverlayData overlayData, boolean pooled) {
+            mOverlayData = overlayData;
+            mPooled = pooled;
+        }
+
+        @Override
+        public boolean compose(Bitmap buffer) {
+            // The back buffer holds an older composition
+            buffer.eraseColor(Color.TRANSPARENT);
+            mOverlayData.renderOverlay(buffer);
+            discard();
+            return true;
+        }
+
+        /**
+         * The composition will not be drawn
+         */
+        public void discard() {
+            if (mPooled) {
+                releaseOverlayData(mOverlayData);
+            } else {
+                mOverlayData.release();
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param overlayView The view displaying the overlay layer
+     */
+    public OverlayCompositor(ImageView overlayView) {
+        mOverlayView = overlayView;
+        mMainHandler = new Handler(Looper.getMainLooper());
+
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+        mThread.start();
+        mThreadHandler = new Handler(mThread.getLooper());
+
+        mOverlayDataPool = new ArrayList<VideoEditor.OverlayData>(MAX_IDLE_OVERLAY_DATA_COUNT);
+        for (int i = 0; i < INITIAL_OVERLAY_DATA_COUNT; i++) {
+            mOverlayDataPool.add(new VideoEditor.OverlayData());
+        }
+        mOverlayDataCount = INITIAL_OVERLAY_DATA_COUNT;
+    }
+
+    /**
+     * Allocate the buffers. This method is invoked from the UI thread.
+     *
+     * @param width The overlay width
+     * @param height The overlay height
+     */
+    public void setSize(int width, int height) {
+        synchronized (this) {
+            if (mFrontBuffer != null && mFrontBuffer.getWidth() == width &&
+                    mFrontBuffer.getHeight() == height) {
+                // The size has not changed
+                return;
+            }
+        }
+
+        releaseBuffers();
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Overlay size: " + width + " x " + height);
+        }
+
+        final Bitmap frontBuffer = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+        synchronized (this) {
+            mFrontBuffer = frontBuffer;
+            mBackBuffer = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+        }
+
+        mOverlayView.setImageBitmap(frontBuffer);
+    }
+
+    /**
+     * @return The overlay width, 0 if the buffers are not allocated
+     */
+    public synchronized int getWidth() {
+        return mFrontBuffer != null ? mFrontBuffer.getWidth() : 0;
+    }
+
+    /**
+     * @return The overlay height, 0 if the buffers are not allocated
+     */
+    public synchronized int getHeight() {
+        return mFrontBuffer != null ? mFrontBuffer.getHeight() : 0;
+    }
+
+    /**
+     * Draw a composition. A composition which was not drawn yet is replaced.
+     *
+     * @param composition The composition
+     */
+    public void compose(Composition composition) {
+        synchronized (this) {
+            if (mPendingComposition instanceof OverlayDataComposition) {
+                ((OverlayDataComposition)mPendingComposition).discard();
+            }
+
+            mPendingComposition = composition;
+            if (mSwapPending) {
+                // The composition will be drawn after the swap
+                return;
+            }
+        }
+
+        mThreadHandler.post(mComposeRunnable);
+    }
+
+    /**
+     * Clear the overlay layer
+     */
+    public void clear() {
+        compose(mClearComposition);
+    }
+
+    /**
+     * Render overlay data obtained from {@link #obtainOverlayData()}. The
+     * overlay data returns to the pool once rendered.
+     *
+     * @param overlayData The overlay data
+     */
+    public void renderOverlay(VideoEditor.OverlayData overlayData) {
+        compose(new OverlayDataComposition(overlayData, true));
+    }
+
+    /**
+     * Render overlay data which does not belong to the pool
+     *
+     * @param overlayData The overlay data
+     */
+    public void renderExternalOverlay(VideoEditor.OverlayData overlayData) {
+        compose(new OverlayDataComposition(overlayData, false));
+    }
+
+    /**
+     * @return Overlay data from the pool. The pool grows if it is empty.
+     */
+    public VideoEditor.OverlayData obtainOverlayData() {
+        synchronized (mOverlayDataPool) {
+            final int size = mOverlayDataPool.size();
+            if (size > 0) {
+                return mOverlayDataPool.remove(size - 1);
+            }
+
+            mOverlayDataCount++;
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Overlay data pool enlarged to: " + mOverlayDataCount);
+            }
+        }
+
+        return new VideoEditor.OverlayData();
+    }
+
+    /**
+     * Return overlay data to the pool. The pool shrinks if too many elements
+     * are idle.
+     *
+     * @param overlayData The overlay data
+     */
+    public void releaseOverlayData(VideoEditor.OverlayData overlayData) {
+        overlayData.release();
+        synchronized (mOverlayDataPool) {
+            if (mOverlayDataPool.size() < MAX_IDLE_OVERLAY_DATA_COUNT) {
+                mOverlayDataPool.add(overlayData);
+            } else {
+                mOverlayDataCount--;
+            }
+        }
+    }
+
+    /**
+     * Release the buffers and stop the worker thread. This method is invoked
+     * from the UI thread.
+     */
+    public void quit() {
+        releaseBuffers();
+        mThread.quit();
+    }
+
+    /**
+     * Release the buffers. The back buffer is recycled by the worker thread
+     * if a composition is being drawn into it.
+     */
+    private void releaseBuffers() {
+        mOverlayView.setImageBitmap(null);
+        synchronized (this) {
+            if (mPendingComposition instanceof OverlayDataComposition) {
+                ((OverlayDataComposition)mPendingComposition).discard();
+            }
+            mPendingComposition = null;
+            mSwapPending = false;
+
+            if (mFrontBuffer != null) {
+                mFrontBuffer.recycle();
+                mFrontBuffer = null;
+            }
+
+            if (mBackBuffer != null) {
+                if (!mRendering) {
+                    mBackBuffer.recycle();
+                }
+                mBackBuffer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.android.videoeditor.util.ImageUtils;
+
+/**
+ * Renders title overlay previews on a background thread. Requests issued
+ * while the user types are debounced and a request supersedes the requests
+ * which were not rendered yet. The previews are rendered alternately into
+ * two reused bitmaps: one is displayed while the other one is rendered.
+ */
+class OverlayPreviewRenderer {
+    // Logging
+    private static final String TAG = "OverlayPreviewRenderer";
+
+    // Keystrokes closer than this delay are rendered once
+    private static final long DEBOUNCE_MS = 150;
+
+    /**
+     * The preview listener
+     */
+    interface PreviewListener {
+        /**
+         * A preview was rendered. This method is invoked on the UI thread.
+         * The bitmap is reused after the next preview is delivered.
+         *
+         * @param bitmap The preview bitmap
+         */
+        public void onPreviewRendered(Bitmap bitmap);
+    }
+
+    // Instance variables
+    private final Context mContext;
+    private final int mWidth, mHeight;
+    private final PreviewListener mListener;
+    private final HandlerThread mThread;
+    private final Handler mThreadHandler;
+    private final Handler mMainHandler;
+    private final Bitmap[] mBuffers;
+    private int mBackBuffer;
+    // The latest request (guarded by this)
+    private int mOverlayType;
+    private String mTitle, mSubtitle;
+    private int mGeneration;
+    private boolean mDeliveryPending;
+    private boolean mRenderPending;
+    private boolean mQuit;
+
+    private final Runnable mRenderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final int overlayType;
+            final String title, subtitle;
+            final int generation;
+            synchronized (OverlayPreviewRenderer.this) {
+                if (mQuit) {
+                    return;
+                }
+
+                if (mDeliveryPending) {
+                    // The back buffer may still be displayed
+                    mRenderPending = true;
+                    return;
+                }
+
+                overlayType = mOverlayType;
+                title = mTitle;
+                subtitle = mSubtitle;
+                generation = mGeneration;
+            }
+
+            final Bitmap buffer = mBuffers[mBackBuffer];
+            try {
+                ImageUtils.buildOverlayBitmap(mContext, buffer, overlayType, title, subtitle,
+                        mWidth, mHeight);
+            } catch (Exception ex) {
+                Log.w(TAG, "Cannot render overlay preview: " + overlayType, ex);
+                return;
+            }
+
+            synchronized (OverlayPreviewRenderer.this) {
+                if (generation != mGeneration) {
+                    // A newer request superseded this preview. That request
+                    // has its own render scheduled.
+                    return;
+                }
+
+                mDeliveryPending = true;
+            }
+
+            mBackBuffer = 1 - mBackBuffer;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (OverlayPreviewRenderer.this) {
+                        mDeliveryPending = false;
+                        if (mQuit) {
+                            return;
+                        }
+
+                        if (mRenderPending) {
+                            mRenderPending = false;
+                            mThreadHandler.post(mRenderRunnable);
+                        }
+                    }
+
+                    mListener.onPreviewRendered(buffer);
+                }
+            });
+        }
+    };
+
+    /**
+     * Constructor
+     *
+     * @param context The context
+     * @param width The preview width
+     * @param height The preview height
+     * @param listener The preview listener
+     */
+    public OverlayPreviewRenderer(Context context, int width, int height,
+            PreviewListener listener) {
+        mContext = context;
+        mWidth = width;
+        mHeight = height;
+        mListener = listener;
+        mMainHandler = new Handler(Looper.getMainLooper());
+
+        mBuffers = new Bitmap[2];
+        mBuffers[0] = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mBuffers[1] = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mThreadHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Request a preview
+     *
+     * @param overlayType The overlay type
+     * @param title The title
+     * @param subtitle The subtitle
+     * @param debounce true to wait for further requests before rendering
+     */
+    public void requestPreview(int overlayType, String title, String subtitle,
+            boolean debounce) {
+        synchronized (this) {
+            mOverlayType = overlayType;
+            mTitle = title;
+            mSubtitle = subtitle;
+            mGeneration++;
+        }
+
+        mThreadHandler.removeCallbacks(mRenderRunnable);
+        if (debounce) {
+            mThreadHandler.postDelayed(mRenderRunnable, DEBOUNCE_MS);
+        } else {
+            mThreadHandler.post(mRenderRunnable);
+        }
+    }
+
+    /**
+     * Stop rendering. Previews which were not delivered yet are dropped.
+     */
+    public void quit() {
+        synchronized (this) {
+            mQuit = true;
+        }
+
+        mThreadHandler.removeCallbacks(mRenderRunnable);
+        mThread.quit();
+    }
+}
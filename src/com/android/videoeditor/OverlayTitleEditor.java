@@ -29,7 +29,6 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.android.videoeditor.service.MovieOverlay;
-import com.android.videoeditor.util.ImageUtils;
 
 /**
  * Activity that lets user add or edit title overlay of a media item.
@@ -47,8 +46,8 @@ public class OverlayTitleEditor extends NoSearchActivity {
     private ImageView mOverlayImageView;
     private Button mOverlayChangeTitleTemplateButton;
     private TextView mTitleView, mSubtitleView;
-    private Bitmap mOverlayBitmap;
     private int mPreviewWidth, mPreviewHeight;
+    private OverlayPreviewRenderer mPreviewRenderer;
 
     private final TextWatcher mTextWatcher = new TextWatcher() {
         @Override
@@ -64,7 +63,7 @@ public class OverlayTitleEditor extends NoSearchActivity {
         @Override
         public void afterTextChanged(Editable s) {
             // Update preview image as user types in the title or sub-title fields.
-            updatePreviewImage();
+            updatePreviewImage(true);
             invalidateOptionsMenu();
         }
     };
@@ -99,6 +98,16 @@ public class OverlayTitleEditor extends NoSearchActivity {
         mPreviewWidth = dbo.outWidth;
         mPreviewHeight = dbo.outHeight;
 
+        mPreviewRenderer = new OverlayPreviewRenderer(this, mPreviewWidth, mPreviewHeight,
+                new OverlayPreviewRenderer.PreviewListener() {
+            @Override
+            public void onPreviewRendered(Bitmap bitmap) {
+                mOverlayImageView.setImageBitmap(bitmap);
+                // The bitmap is reused so its content may change in place
+                mOverlayImageView.invalidate();
+            }
+        });
+
         final Bundle attributes = getIntent().getBundleExtra(PARAM_OVERLAY_ATTRIBUTES);
         if (attributes != null) {
             // The media item already has a title overlay. Fill in the contents in the input fields
@@ -110,19 +119,38 @@ public class OverlayTitleEditor extends NoSearchActivity {
             // Default overlay type that puts title at the bottom of the media item.
             mOverlayType = MovieOverlay.OVERLAY_TYPE_BOTTOM_1;
         }
-        updatePreviewImage();
+        updatePreviewImage(false);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+
+        if (mPreviewRenderer != null) {
+            mPreviewRenderer.quit();
+            mPreviewRenderer = null;
+        }
     }
 
     private void launchOverlayTitleTemplatePicker() {
         final Intent intent = new Intent(this, OverlayTitleTemplatePicker.class);
+        // The templates are previewed with the current title
+        intent.putExtra(OverlayTitleTemplatePicker.PARAM_OVERLAY_ATTRIBUTES,
+                MovieOverlay.buildUserAttributes(mOverlayType, mTitleView.getText().toString(),
+                        mSubtitleView.getText().toString()));
         startActivityForResult(intent, REQUEST_CODE_PICK_TITLE_TEMPLATE);
     }
 
-    private void updatePreviewImage() {
-        mOverlayBitmap = ImageUtils.buildOverlayBitmap(this, mOverlayBitmap, mOverlayType,
-                mTitleView.getText().toString(), mSubtitleView.getText().toString(),
-                mPreviewWidth, mPreviewHeight);
-        mOverlayImageView.setImageBitmap(mOverlayBitmap);
+    /**
+     * Render the preview image off the UI thread
+     *
+     * @param debounce true if the preview is requested while the user types
+     */
+    private void updatePreviewImage(boolean debounce) {
+        if (mPreviewRenderer != null) {
+            mPreviewRenderer.requestPreview(mOverlayType, mTitleView.getText().toString(),
+                    mSubtitleView.getText().toString(), debounce);
+        }
     }
 
     @Override
@@ -136,7 +164,7 @@ public class OverlayTitleEditor extends NoSearchActivity {
                 final Bundle attributes = extras.getBundleExtra(
                         OverlayTitleTemplatePicker.PARAM_OVERLAY_ATTRIBUTES);
                 mOverlayType = MovieOverlay.getType(attributes);
-                updatePreviewImage();
+                updatePreviewImage(false);
                 break;
             default:
                 Log.w(LOG_TAG, "Invalid request code received: " + requestCode);
@@ -39,8 +39,16 @@ public class OverlayTitleTemplatePicker extends ListActivity {
         setContentView(R.layout.list_view);
         setFinishOnTouchOutside(true);
 
+        // Preview the templates with the title being edited, if any
+        String title = null, subtitle = null;
+        final Bundle attributes = getIntent().getBundleExtra(PARAM_OVERLAY_ATTRIBUTES);
+        if (attributes != null) {
+            title = MovieOverlay.getTitle(attributes);
+            subtitle = MovieOverlay.getSubtitle(attributes);
+        }
+
         // Create the list adapter
-        mAdapter = new OverlaysAdapter(this, getListView());
+        mAdapter = new OverlaysAdapter(this, getListView(), title, subtitle);
         setListAdapter(mAdapter);
     }
 
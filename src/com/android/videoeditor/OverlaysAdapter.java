@@ -21,6 +21,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -45,14 +46,21 @@ public class OverlaysAdapter extends BaseAdapterWithImages<Integer> {
      *
      * @param context The context
      * @param listView The list view
+     * @param title The title previewed by all overlays, null or empty for
+     *      the sample title
+     * @param subtitle The subtitle previewed by all overlays, null or empty
+     *      for the sample subtitle
      */
-    public OverlaysAdapter(Context context, AbsListView listView) {
+    public OverlaysAdapter(Context context, AbsListView listView, String title,
+            String subtitle) {
         super(context, listView);
 
         mGenericBitmap = BitmapFactory.decodeResource(context.getResources(),
                 R.drawable.effects_generic);
-        mTitle = context.getString(R.string.overlay_title_sample);
-        mSubtitle = context.getString(R.string.overlay_subtitle_sample);
+        mTitle = TextUtils.isEmpty(title) ?
+                context.getString(R.string.overlay_title_sample) : title;
+        mSubtitle = TextUtils.isEmpty(subtitle) ?
+                context.getString(R.string.overlay_subtitle_sample) : subtitle;
         mOverlays = OverlayType.getOverlays(context);
     }
 
@@ -108,7 +116,7 @@ public class OverlaysAdapter extends BaseAdapterWithImages<Integer> {
 
         final Canvas canvas = new Canvas(overlayBitmap);
         canvas.drawBitmap(mGenericBitmap, 0, 0, sCopyPaint);
-        canvas.drawBitmap(ImageUtils.buildOverlayBitmap(mContext, null, (Integer)data, mTitle,
+        canvas.drawBitmap(ImageUtils.getOverlayBitmap(mContext, (Integer)data, mTitle,
                 mSubtitle,
                 mGenericBitmap.getWidth(), mGenericBitmap.getHeight()), 0, 0, sCopyPaint);
         return overlayBitmap;
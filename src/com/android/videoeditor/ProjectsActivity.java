@@ -153,7 +153,8 @@ public class ProjectsActivity extends NoSearchActivity {
     @Override
     public void onResume() {
         super.onResume();
-        ApiService.registerListener(mProjectsLoadedListener);
+        ApiService.registerListener(mProjectsLoadedListener, null,
+                ApiServiceListener.EVENT_PROJECTS);
         ApiService.loadProjects(this);
     }
 
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.videoeditor.MediaItem;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.android.videoeditor.service.MovieMediaItem;
+import com.android.videoeditor.service.VideoEditorProject;
+
+/**
+ * Frames decoded ahead of a trim handle drag. When a trim begins the frames
+ * in a window around the trim boundary are extracted on a background thread
+ * and kept in a small ring keyed by time. While the handle moves the nearest
+ * frame of the ring is displayed instead of seeking and decoding the clip
+ * at every position.
+ */
+class TrimFrameCache {
+    // Logging
+    private static final String TAG = "TrimFrameCache";
+
+    // The number of frames in the ring
+    private static final int FRAME_COUNT = 16;
+
+    // The frames are decoded this far before and after the boundary
+    private static final long WINDOW_MS = 2000;
+
+    // The minimum time between two decoded frames
+    private static final long MIN_FRAME_INTERVAL_MS = 40;
+
+    // Instance variables
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final Paint mPaint;
+    private final Rect mSrcRect;
+    private final Rect mDstRect;
+    private final long[] mFrameTimes;
+    private final Bitmap[] mFrames;
+    private int mNextFrame;
+    private int mGeneration;
+    private VideoEditorProject mProject;
+    private MovieMediaItem mMediaItem;
+    private int mWidth, mHeight;
+    private long mWindowStartMs, mWindowEndMs;
+    private long mFrameIntervalMs;
+
+    /**
+     * Constructor
+     */
+    public TrimFrameCache() {
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+
+        mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        mSrcRect = new Rect();
+        mDstRect = new Rect();
+
+        mFrameTimes = new long[FRAME_COUNT];
+        mFrames = new Bitmap[FRAME_COUNT];
+        mWindowStartMs = mWindowEndMs = -1;
+    }
+
+    /**
+     * A trim of the specified media item starts
+     *
+     * @param project The project
+     * @param mediaItem The media item
+     * @param width The width of the decoded frames
+     * @param height The height of the decoded frames
+     */
+    public synchronized void begin(VideoEditorProject project, MovieMediaItem mediaItem,
+            int width, int height) {
+        end();
+
+        mProject = project;
+        mMediaItem = mediaItem;
+        // Keep the aspect ratio of the clip
+        mHeight = height;
+        if (mediaItem.getHeight() > 0) {
+            mWidth = Math.min(width, (mediaItem.getWidth() * height) / mediaItem.getHeight());
+        } else {
+            mWidth = width;
+        }
+    }
+
+    /**
+     * Ensure that the frames around the specified time are decoded. A new
+     * window is decoded only when the time leaves the current window.
+     *
+     * @param timeMs The time of the trim boundary
+     */
+    public synchronized void prefetch(long timeMs) {
+        if (mMediaItem == null || mWidth <= 0 || mHeight <= 0) {
+            return;
+        }
+
+        if (timeMs >= mWindowStartMs && timeMs <= mWindowEndMs) {
+            return;
+        }
+
+        final long startMs = Math.max(0, timeMs - WINDOW_MS);
+        final long endMs = Math.min(mMediaItem.getDuration(), timeMs + WINDOW_MS);
+        if (endMs <= startMs) {
+            return;
+        }
+
+        final int count = (int)Math.max(1,
+                Math.min(FRAME_COUNT, (endMs - startMs) / MIN_FRAME_INTERVAL_MS));
+        mWindowStartMs = startMs;
+        mWindowEndMs = endMs;
+        mFrameIntervalMs = count > 1 ? (endMs - startMs) / (count - 1) : endMs - startMs;
+
+        // Only the latest window is worth decoding
+        mHandler.removeCallbacksAndMessages(null);
+
+        final int generation = mGeneration;
+        final VideoEditorProject project = mProject;
+        final String mediaItemId = mMediaItem.getId();
+        final int width = mWidth;
+        final int height = mHeight;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCurrent(generation)) {
+                    return;
+                }
+
+                try {
+                    project.getMediaItemFrames(mediaItemId, width, height, startMs, endMs,
+                            count, new MediaItem.GetThumbnailListCallback() {
+                        @Override
+                        public void onThumbnail(Bitmap bitmap, int index) {
+                            final long frameTimeMs = count > 1 ?
+                                    startMs + ((endMs - startMs) * index) / (count - 1) : startMs;
+                            addFrame(generation, frameTimeMs, bitmap);
+                        }
+                    });
+                } catch (Exception ex) {
+                    Log.w(TAG, "Cannot decode frames of: " + mediaItemId + " from: " + startMs +
+                            " to: " + endMs, ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * @param timeMs The time of the trim boundary
+     *
+     * @return true if a frame close enough to the time is available
+     */
+    public synchronized boolean hasFrame(long timeMs) {
+        return getNearestFrame(timeMs) >= 0;
+    }
+
+    /**
+     * Draw the frame nearest to the specified time
+     *
+     * @param timeMs The time of the trim boundary
+     * @param target The bitmap on which the frame is drawn (scaled to fit)
+     *
+     * @return true if a frame close enough to the time is available
+     */
+    public synchronized boolean drawFrame(long timeMs, Bitmap target) {
+        final int nearest = getNearestFrame(timeMs);
+        if (nearest < 0) {
+            return false;
+        }
+
+        final Bitmap frame = mFrames[nearest];
+        final int targetWidth = target.getWidth();
+        final int targetHeight = target.getHeight();
+        int dstWidth = targetWidth;
+        int dstHeight = (frame.getHeight() * targetWidth) / frame.getWidth();
+        if (dstHeight > targetHeight) {
+            dstHeight = targetHeight;
+            dstWidth = (frame.getWidth() * targetHeight) / frame.getHeight();
+        }
+
+        mSrcRect.set(0, 0, frame.getWidth(), frame.getHeight());
+        mDstRect.set((targetWidth - dstWidth) / 2, (targetHeight - dstHeight) / 2,
+                (targetWidth + dstWidth) / 2, (targetHeight + dstHeight) / 2);
+
+        target.eraseColor(Color.BLACK);
+        new Canvas(target).drawBitmap(frame, mSrcRect, mDstRect, mPaint);
+        return true;
+    }
+
+    /**
+     * The trim ended. Pending decodes are abandoned and the frames are released.
+     */
+    public synchronized void end() {
+        mGeneration++;
+        mHandler.removeCallbacksAndMessages(null);
+
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            if (mFrames[i] != null) {
+                mFrames[i].recycle();
+                mFrames[i] = null;
+            }
+        }
+
+        mNextFrame = 0;
+        mProject = null;
+        mMediaItem = null;
+        mWindowStartMs = mWindowEndMs = -1;
+    }
+
+    /**
+     * Release the frames and stop the decoding thread
+     */
+    public void quit() {
+        end();
+        mThread.quit();
+    }
+
+    /**
+     * @param timeMs The time of the trim boundary
+     *
+     * @return The index of the frame nearest to the time, -1 if no frame is
+     *      close enough
+     */
+    private int getNearestFrame(long timeMs) {
+        int nearest = -1;
+        long nearestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            if (mFrames[i] != null) {
+                final long distance = Math.abs(mFrameTimes[i] - timeMs);
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    nearest = i;
+                }
+            }
+        }
+
+        return nearestDistance <= mFrameIntervalMs ? nearest : -1;
+    }
+
+    /**
+     * @param generation The generation of a decode request
+     *
+     * @return true if the trim for which the decode was requested is in progress
+     */
+    private synchronized boolean isCurrent(int generation) {
+        return generation == mGeneration;
+    }
+
+    /**
+     * Add a decoded frame to the ring, replacing the oldest frame
+     *
+     * @param generation The generation of the decode request
+     * @param timeMs The frame time
+     * @param bitmap The frame
+     */
+    private synchronized void addFrame(int generation, long timeMs, Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+
+        if (generation != mGeneration) {
+            bitmap.recycle();
+            return;
+        }
+
+        if (mFrames[mNextFrame] != null) {
+            mFrames[mNextFrame].recycle();
+        }
+
+        mFrames[mNextFrame] = bitmap;
+        mFrameTimes[mNextFrame] = timeMs;
+        mNextFrame = (mNextFrame + 1) % FRAME_COUNT;
+    }
+}
@@ -16,9 +16,11 @@
 
 package com.android.videoeditor;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.NoSuchElementException;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.text.SimpleDateFormat;
@@ -32,9 +34,7 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.Color;
 import android.graphics.Rect;
-import android.graphics.Bitmap.Config;
 import android.media.videoeditor.MediaItem;
 import android.media.videoeditor.MediaProperties;
 import android.media.videoeditor.VideoEditor;
@@ -44,6 +44,7 @@ import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.text.InputType;
 import android.util.DisplayMetrics;
@@ -66,9 +67,12 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.android.videoeditor.service.ApiService;
+import com.android.videoeditor.service.ExportJob;
+import com.android.videoeditor.service.ExportStats;
 import com.android.videoeditor.service.MovieMediaItem;
 import com.android.videoeditor.service.VideoEditorProject;
 import com.android.videoeditor.util.FileUtils;
+import com.android.videoeditor.util.FrameLatencyStats;
 import com.android.videoeditor.util.MediaItemUtils;
 import com.android.videoeditor.util.StringUtils;
 import com.android.videoeditor.widgets.AudioTrackLinearLayout;
@@ -160,6 +164,7 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
     private boolean mResumed;
     private ImageView mOverlayView;
     private PreviewThread mPreviewThread;
+    private final FrameLatencyStats mScrubStats = new FrameLatencyStats("Scrub");
     private View mEditorProjectView;
     private View mEditorEmptyView;
     private TimelineHorizontalScrollView mTimelineScroller;
@@ -176,12 +181,14 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
     private String mInsertMediaItemAfterMediaItemId;
     private long mCurrentPlayheadPosMs;
     private ProgressDialog mExportProgressDialog;
+    private ProgressDialog mImportProgressDialog;
+    private final Handler mExportMessageHandler = new Handler();
     private ZoomControl mZoomControl;
     private PowerManager.WakeLock mCpuWakeLock;
 
     // Variables used in onActivityResult
-    private Uri mAddMediaItemVideoUri;
-    private Uri mAddMediaItemImageUri;
+    // The media items to add, kept until the project is loaded
+    private final List<Uri> mAddMediaItemUris = new ArrayList<Uri>();
     private Uri mAddAudioTrackUri;
     private String mAddTransitionAfterMediaId;
     private int mAddTransitionType;
@@ -266,15 +273,18 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
             @Override
             public void onTrimMediaItemBegin(MovieMediaItem mediaItem) {
                 onProjectEditStateChange(true);
+                if (mProject != null && mPreviewThread != null && mediaItem.isVideoClip()) {
+                    mPreviewThread.beginTrimScrub(mediaItem);
+                }
             }
 
             @Override
             public void onTrimMediaItem(MovieMediaItem mediaItem, long timeMs) {
                 updateTimelineDuration();
-                if (mProject != null && isPreviewPlaying()) {
+                if (mProject != null && mPreviewThread != null && !isPreviewPlaying()) {
                     if (mediaItem.isVideoClip()) {
                         if (timeMs >= 0) {
-                            mPreviewThread.renderMediaItemFrame(mediaItem, timeMs);
+                            mPreviewThread.trimScrub(mediaItem, timeMs);
                         }
                     } else {
                         mPreviewThread.previewFrame(mProject,
@@ -287,6 +297,10 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
             @Override
             public void onTrimMediaItemEnd(MovieMediaItem mediaItem, long timeMs) {
                 onProjectEditStateChange(false);
+                if (mPreviewThread != null) {
+                    // The exact frame is rendered by showPreviewFrame()
+                    mPreviewThread.endTrimScrub();
+                }
                 // We need to repaint the timeline layout to clear the old
                 // playhead position (the one drawn during trimming).
                 mTimelineLayout.invalidate();
@@ -456,6 +470,9 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
             mExportProgressDialog.dismiss();
             mExportProgressDialog = null;
         }
+        mExportMessageHandler.removeCallbacks(mExportMessageRunnable);
+
+        onMediaItemsImportComplete();
     }
 
     @Override
@@ -493,6 +510,13 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
         outState.putInt(STATE_SELECTED_POS_ID, mMediaLayout.getSelectedViewPos());
     }
 
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+
+        mScrubStats.dump(prefix, writer);
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
@@ -855,7 +879,7 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
                     public void onCancel(DialogInterface dialog) {
                         removeDialog(DIALOG_EXPORT_OPTIONS_ID);
                     }
-                }, mProject.getAspectRatio());
+                }, mProject.getAspectRatio(), mProject.computeDuration());
             }
 
             case DIALOG_REMOVE_MEDIA_ITEM_ID: {
@@ -1004,79 +1028,39 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
         }
 
         switch (requestCode) {
-            case REQUEST_CODE_CAPTURE_VIDEO: {
-                if (mProject != null) {
-                    ApiService.addMediaItemVideoUri(this, mProjectPath,
-                            ApiService.generateId(), mInsertMediaItemAfterMediaItemId,
-                            mCaptureMediaUri, MediaItem.RENDERING_MODE_BLACK_BORDER,
-                            mProject.getTheme());
-                    mInsertMediaItemAfterMediaItemId = null;
-                } else {
-                    // Add this video after the project loads
-                    mAddMediaItemVideoUri = mCaptureMediaUri;
-                }
-                mCaptureMediaUri = null;
-                break;
-            }
-
+            case REQUEST_CODE_CAPTURE_VIDEO:
             case REQUEST_CODE_CAPTURE_IMAGE: {
-                if (mProject != null) {
-                    ApiService.addMediaItemImageUri(this, mProjectPath,
-                            ApiService.generateId(), mInsertMediaItemAfterMediaItemId,
-                            mCaptureMediaUri, MediaItem.RENDERING_MODE_BLACK_BORDER,
-                            MediaItemUtils.getDefaultImageDuration(),
-                            mProject.getTheme());
-                    mInsertMediaItemAfterMediaItemId = null;
-                } else {
-                    // Add this image after the project loads
-                    mAddMediaItemImageUri = mCaptureMediaUri;
-                }
+                addMediaItem(mCaptureMediaUri);
                 mCaptureMediaUri = null;
                 break;
             }
 
             case REQUEST_CODE_IMPORT_VIDEO: {
                 final Uri mediaUri = extras.getData();
-                if (mProject != null) {
-                    if ("media".equals(mediaUri.getAuthority())) {
-                        ApiService.addMediaItemVideoUri(this, mProjectPath,
-                                ApiService.generateId(), mInsertMediaItemAfterMediaItemId,
-                                mediaUri, MediaItem.RENDERING_MODE_BLACK_BORDER,
-                                mProject.getTheme());
-                    } else {
-                        // Notify the user that this item needs to be downloaded.
-                        Toast.makeText(this, getString(R.string.editor_video_load),
-                                Toast.LENGTH_LONG).show();
-                        // When the download is complete insert it into the project.
-                        ApiService.loadMediaItem(this, mProjectPath, mediaUri, "video/*");
-                    }
+                if (mProject != null && !"media".equals(mediaUri.getAuthority())) {
+                    // Notify the user that this item needs to be downloaded.
+                    Toast.makeText(this, getString(R.string.editor_video_load),
+                            Toast.LENGTH_LONG).show();
+                    // When the download is complete insert it into the project.
+                    ApiService.loadMediaItem(this, mProjectPath, mediaUri, "video/*");
                     mInsertMediaItemAfterMediaItemId = null;
                 } else {
-                    // Add this video after the project loads
-                    mAddMediaItemVideoUri = mediaUri;
+                    addMediaItem(mediaUri);
                 }
                 break;
             }
 
             case REQUEST_CODE_IMPORT_IMAGE: {
                 final Uri mediaUri = extras.getData();
-                if (mProject != null) {
-                    if ("media".equals(mediaUri.getAuthority())) {
-                        ApiService.addMediaItemImageUri(this, mProjectPath,
-                                ApiService.generateId(), mInsertMediaItemAfterMediaItemId,
-                                mediaUri, MediaItem.RENDERING_MODE_BLACK_BORDER,
-                                MediaItemUtils.getDefaultImageDuration(), mProject.getTheme());
-                    } else {
-                        // Notify the user that this item needs to be downloaded.
-                        Toast.makeText(this, getString(R.string.editor_image_load),
-                                Toast.LENGTH_LONG).show();
-                        // When the download is complete insert it into the project.
-                        ApiService.loadMediaItem(this, mProjectPath, mediaUri, "image/*");
-                    }
+                if (mProject != null && !"media".equals(mediaUri.getAuthority())) {
+                    // Notify the user that this item needs to be downloaded.
+                    Toast.makeText(this, getString(R.string.editor_image_load),
+                            Toast.LENGTH_LONG).show();
+                    // When the download is complete insert it into the project.
+                    ApiService.loadMediaItem(this, mProjectPath, mediaUri, "image/*");
                     mInsertMediaItemAfterMediaItemId = null;
                 } else {
-                    // Add this image after the project loads
-                    mAddMediaItemImageUri = mediaUri;
+                    addMediaItem(mediaUri);
                 }
                 break;
             }
@@ -1447,12 +1431,48 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
         }
     }
 
+    @Override
+    protected void onExportQueuePositionChanged(int queuePosition) {
+        updateExportMessage();
+    }
+
     @Override
     protected void onExportComplete() {
         if (mExportProgressDialog != null) {
             mExportProgressDialog.dismiss();
             mExportProgressDialog = null;
         }
+        mExportMessageHandler.removeCallbacks(mExportMessageRunnable);
+    }
+
+    @Override
+    protected void onMediaItemsImportProgress(int progress, int count) {
+        // A single media item is added without a progress dialog
+        if (count < 2) {
+            return;
+        }
+
+        if (mImportProgressDialog == null) {
+            mImportProgressDialog = new ProgressDialog(this);
+            mImportProgressDialog.setTitle(getString(R.string.editor_import_media_items));
+            mImportProgressDialog.setIndeterminate(false);
+            mImportProgressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+            // Hide the dialog and let the import continue in the background
+            mImportProgressDialog.setCancelable(true);
+            mImportProgressDialog.setCanceledOnTouchOutside(false);
+            mImportProgressDialog.setMax(count);
+            mImportProgressDialog.show();
+        }
+
+        mImportProgressDialog.setProgress(progress);
+    }
+
+    @Override
+    protected void onMediaItemsImportComplete() {
+        if (mImportProgressDialog != null) {
+            mImportProgressDialog.dismiss();
+            mImportProgressDialog = null;
+        }
     }
 
     @Override
@@ -1522,22 +1542,8 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
             }
         });
 
-        if (mAddMediaItemVideoUri != null) {
-            ApiService.addMediaItemVideoUri(this, mProjectPath, ApiService.generateId(),
-                    mInsertMediaItemAfterMediaItemId,
-                    mAddMediaItemVideoUri, MediaItem.RENDERING_MODE_BLACK_BORDER,
-                    mProject.getTheme());
-            mAddMediaItemVideoUri = null;
-            mInsertMediaItemAfterMediaItemId = null;
-        }
-
-        if (mAddMediaItemImageUri != null) {
-            ApiService.addMediaItemImageUri(this, mProjectPath, ApiService.generateId(),
-                    mInsertMediaItemAfterMediaItemId,
-                    mAddMediaItemImageUri, MediaItem.RENDERING_MODE_BLACK_BORDER,
-                    MediaItemUtils.getDefaultImageDuration(), mProject.getTheme());
-            mAddMediaItemImageUri = null;
-            mInsertMediaItemAfterMediaItemId = null;
+        if (mAddMediaItemUris.size() > 0) {
+            addMediaItems();
         }
 
         if (mAddAudioTrackUri != null) {
@@ -1617,6 +1623,37 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
         }
     }
 
+    /**
+     * Add a media item after the media item selected for the insertion. The
+     * media item is added when the project is loaded.
+     *
+     * @param uri The media item URI
+     */
+    private void addMediaItem(Uri uri) {
+        mAddMediaItemUris.add(uri);
+        if (mProject != null) {
+            addMediaItems();
+        }
+    }
+
+    /**
+     * Add the pending media items in one batch
+     */
+    private void addMediaItems() {
+        final int count = mAddMediaItemUris.size();
+        final String[] mediaItemIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            mediaItemIds[i] = ApiService.generateId();
+        }
+
+        ApiService.addMediaItemsUri(this, mProjectPath, mediaItemIds,
+                mInsertMediaItemAfterMediaItemId, mAddMediaItemUris.toArray(new Uri[count]),
+                MediaItem.RENDERING_MODE_BLACK_BORDER, MediaItemUtils.getDefaultImageDuration(),
+                mProject.getTheme());
+        mAddMediaItemUris.clear();
+        mInsertMediaItemAfterMediaItemId = null;
+    }
+
     /**
      * Shows progress dialog during export operation.
      */
@@ -1656,9 +1693,66 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
                         }
                 }
         );
+        // Hide the dialog and let the export continue in the background
+        mExportProgressDialog.setButton(DialogInterface.BUTTON_NEUTRAL,
+                getString(R.string.export_dialog_hide),
+                new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            mPendingExportFilename = null;
+                            mExportProgressDialog = null;
+                            mExportMessageHandler.removeCallbacks(mExportMessageRunnable);
+                        }
+                }
+        );
         mExportProgressDialog.setCanceledOnTouchOutside(false);
         mExportProgressDialog.show();
         mExportProgressDialog.setProgressNumberFormat("");
+
+        mExportMessageHandler.removeCallbacks(mExportMessageRunnable);
+        mExportMessageRunnable.run();
+    }
+
+    /**
+     * Refreshes the message of the export progress dialog.
+     */
+    private final Runnable mExportMessageRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mExportProgressDialog != null) {
+                updateExportMessage();
+                mExportMessageHandler.postDelayed(this, 1000);
+            }
+        }
+    };
+
+    /**
+     * Shows the queue position, the estimated time remaining or the stall
+     * warning of the pending export in the export progress dialog.
+     */
+    private void updateExportMessage() {
+        if (mExportProgressDialog == null || mPendingExportFilename == null) {
+            return;
+        }
+
+        final ExportJob job = ApiService.getExportJob(mProjectPath, mPendingExportFilename);
+        if (job == null) {
+            return;
+        }
+
+        final ExportStats stats = job.getStats();
+        final long remainingTimeMs = stats.getRemainingTimeMs();
+        if (job.getQueuePosition() > 0) {
+            mExportProgressDialog.setMessage(getString(R.string.export_dialog_queued,
+                    job.getQueuePosition()));
+        } else if (stats.isStalled()) {
+            mExportProgressDialog.setMessage(getString(R.string.export_dialog_stalled));
+        } else if (remainingTimeMs >= 0) {
+            mExportProgressDialog.setMessage(getString(R.string.export_dialog_eta,
+                    StringUtils.getDurationAsString(this, remainingTimeMs)));
+        } else {
+            mExportProgressDialog.setMessage(null);
+        }
     }
 
     private void cancelExport() {
@@ -1666,6 +1760,7 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
                 mPendingExportFilename);
         mPendingExportFilename = null;
         mExportProgressDialog = null;
+        mExportMessageHandler.removeCallbacks(mExportMessageRunnable);
     }
 
     private boolean isPreviewPlaying() {
@@ -1685,15 +1780,46 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
         private final int PREVIEW_STATE_STARTED = 2;
         private final int PREVIEW_STATE_STOPPING = 3;
 
-        private final int OVERLAY_DATA_COUNT = 16;
+        // Used when the display does not report its refresh rate
+        private final float DEFAULT_REFRESH_RATE = 60.0f;
 
         private final Handler mMainHandler;
         private final Queue<Runnable> mQueue;
         private final SurfaceHolder mSurfaceHolder;
-        private final Queue<VideoEditor.OverlayData> mOverlayDataQueue;
+        private final OverlayCompositor mOverlayCompositor;
+        private final TrimFrameCache mTrimFrameCache;
+        private final long mFrameIntervalMs;
+        private final Object mFrameLock = new Object();
         private Handler mThreadHandler;
         private int mPreviewState;
-        private Bitmap mOverlayBitmap;
+        private boolean mTrimFrameShown;
+        // The latest frame requested while scrubbing (guarded by mFrameLock)
+        private Runnable mPendingFrame;
+        private long mPendingFrameRequestMs;
+        private boolean mFrameScheduled;
+        private volatile long mLastFrameMs;
+
+        private final Runnable mRenderFrameRunnable = new Runnable() {
+            @Override
+            public void run() {
+                // Only the latest requested frame is rendered, the frames
+                // requested while the previous frame was rendering are dropped
+                final Runnable frame;
+                final long requestMs;
+                synchronized (mFrameLock) {
+                    frame = mPendingFrame;
+                    requestMs = mPendingFrameRequestMs;
+                    mPendingFrame = null;
+                    mFrameScheduled = false;
+                }
+
+                if (frame != null) {
+                    mLastFrameMs = SystemClock.uptimeMillis();
+                    frame.run();
+                    mScrubStats.recordFrame(SystemClock.uptimeMillis() - requestMs);
+                }
+            }
+        };
 
         private final Runnable mProcessQueueRunnable = new Runnable() {
             @Override
@@ -1717,10 +1843,12 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
             mSurfaceHolder = surfaceHolder;
             mPreviewState = PREVIEW_STATE_STOPPED;
 
-            mOverlayDataQueue = new LinkedBlockingQueue<VideoEditor.OverlayData>();
-            for (int i = 0; i < OVERLAY_DATA_COUNT; i++) {
-                mOverlayDataQueue.add(new VideoEditor.OverlayData());
-            }
+            mOverlayCompositor = new OverlayCompositor(mOverlayView);
+            mTrimFrameCache = new TrimFrameCache();
+
+            final float refreshRate = getWindowManager().getDefaultDisplay().getRefreshRate();
+            mFrameIntervalMs = (long)(1000 / (refreshRate > 0 ? refreshRate :
+                    DEFAULT_REFRESH_RATE));
 
             start();
         }
@@ -1740,10 +1868,10 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
 
             logd("Preview frame at: " + timeMs + " " + clear);
 
-            // We only need to see the last frame
+            // Drop a pending playback start
             mQueue.clear();
 
-            mQueue.add(new Runnable() {
+            scheduleFrame(new Runnable() {
                 @Override
                 public void run() {
                     if (clear) {
@@ -1753,63 +1881,93 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
                             Log.w(TAG, "Surface cannot be cleared");
                         }
 
-                        mMainHandler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (mOverlayBitmap != null) {
-                                    mOverlayBitmap.eraseColor(Color.TRANSPARENT);
-                                    mOverlayView.invalidate();
-                                }
-                            }
-                        });
+                        mOverlayCompositor.clear();
                     } else {
-                        final VideoEditor.OverlayData overlayData;
-                        try {
-                            overlayData = mOverlayDataQueue.remove();
-                        } catch (NoSuchElementException ex) {
-                            Log.e(TAG, "Out of OverlayData elements");
-                            return;
-                        }
-
+                        final VideoEditor.OverlayData overlayData =
+                            mOverlayCompositor.obtainOverlayData();
                         try {
                             if (project.renderPreviewFrame(mSurfaceHolder, timeMs, overlayData)
                                     < 0) {
                                 logd("Cannot render preview frame at: " + timeMs +
                                         " of " + mProject.computeDuration());
 
-                                mOverlayDataQueue.add(overlayData);
+                                mOverlayCompositor.releaseOverlayData(overlayData);
                             } else {
                                 if (overlayData.needsRendering()) {
-                                    mMainHandler.post(new Runnable() {
-                                        /*
-                                         * {@inheritDoc}
-                                         */
-                                        @Override
-                                        public void run() {
-                                            if (mOverlayBitmap != null) {
-                                                overlayData.renderOverlay(mOverlayBitmap);
-                                                mOverlayView.invalidate();
-                                            } else {
-                                                overlayData.release();
-                                            }
-
-                                            mOverlayDataQueue.add(overlayData);
-                                        }
-                                    });
+                                    // The overlay is composed by the compositor thread
+                                    mOverlayCompositor.renderOverlay(overlayData);
                                 } else {
-                                    mOverlayDataQueue.add(overlayData);
+                                    mOverlayCompositor.releaseOverlayData(overlayData);
                                 }
                             }
                         } catch (Exception ex) {
                             logd("renderPreviewFrame failed at timeMs: " + timeMs + "\n" + ex);
-                            mOverlayDataQueue.add(overlayData);
+                            mOverlayCompositor.releaseOverlayData(overlayData);
                         }
                     }
                 }
             });
+        }
 
-            if (mThreadHandler != null) {
-                mThreadHandler.post(mProcessQueueRunnable);
+        /**
+         * A trim handle of a video clip is about to move. The frames around
+         * the trim boundary are decoded ahead.
+         *
+         * @param mediaItem The media item
+         */
+        public void beginTrimScrub(MovieMediaItem mediaItem) {
+            if (mOverlayCompositor.getWidth() == 0) {
+                return;
+            }
+
+            // Half the preview resolution is enough while the handle moves
+            mTrimFrameCache.begin(mProject, mediaItem, mOverlayCompositor.getWidth() / 2,
+                    mOverlayCompositor.getHeight() / 2);
+        }
+
+        /**
+         * Display the frame at the trim boundary. The nearest decoded frame is
+         * displayed in the overlay layer if available, otherwise the frame is
+         * rendered.
+         *
+         * @param mediaItem The media item
+         * @param timeMs The trim boundary time
+         */
+        public void trimScrub(MovieMediaItem mediaItem, final long timeMs) {
+            mTrimFrameCache.prefetch(timeMs);
+
+            if (mTrimFrameCache.hasFrame(timeMs)) {
+                // A pending render would only display an older position
+                cancelFrame();
+                mTrimFrameShown = true;
+                mOverlayCompositor.compose(new OverlayCompositor.Composition() {
+                    @Override
+                    public boolean compose(Bitmap buffer) {
+                        return mTrimFrameCache.drawFrame(timeMs, buffer);
+                    }
+                });
+                return;
+            }
+
+            hideTrimFrame();
+            renderMediaItemFrame(mediaItem, timeMs);
+        }
+
+        /**
+         * The trim handle was released. The decoded frames are released.
+         */
+        public void endTrimScrub() {
+            mTrimFrameCache.end();
+            hideTrimFrame();
+        }
+
+        /**
+         * Clear the decoded frame displayed in the overlay layer
+         */
+        private void hideTrimFrame() {
+            if (mTrimFrameShown) {
+                mTrimFrameShown = false;
+                mOverlayCompositor.clear();
             }
         }
 
@@ -1828,10 +1986,10 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
                 Log.v(TAG, "Render media item frame at: " + timeMs);
             }
 
-            // We only need to see the last frame
+            // Drop a pending playback start
             mQueue.clear();
 
-            mQueue.add(new Runnable() {
+            scheduleFrame(new Runnable() {
                 @Override
                 public void run() {
                     try {
@@ -1845,9 +2003,45 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
                     }
                 }
             });
+        }
+
+        /**
+         * Replace the pending frame with the specified frame. The frame is
+         * rendered once the frame being rendered (if any) completes, but not
+         * earlier than one display refresh after it started.
+         *
+         * @param frame The frame
+         */
+        private void scheduleFrame(Runnable frame) {
+            synchronized (mFrameLock) {
+                if (mPendingFrame != null) {
+                    mScrubStats.recordDropped();
+                }
+
+                mPendingFrame = frame;
+                mPendingFrameRequestMs = SystemClock.uptimeMillis();
+                if (mFrameScheduled) {
+                    // The scheduled render will pick up this frame
+                    return;
+                }
+
+                mFrameScheduled = true;
+            }
 
             if (mThreadHandler != null) {
-                mThreadHandler.post(mProcessQueueRunnable);
+                mThreadHandler.postAtTime(mRenderFrameRunnable, mLastFrameMs + mFrameIntervalMs);
+            }
+        }
+
+        /**
+         * Cancel the pending frame
+         */
+        private void cancelFrame() {
+            synchronized (mFrameLock) {
+                if (mPendingFrame != null) {
+                    mScrubStats.recordDropped();
+                    mPendingFrame = null;
+                }
             }
         }
 
@@ -1867,6 +2061,7 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
             logd("Start preview at: " + fromMs);
 
             // Clear any pending preview frames
+            cancelFrame();
             mQueue.clear();
             mQueue.add(new Runnable() {
                 @Override
@@ -1881,18 +2076,13 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
                             @Override
                             public void onProgress(VideoEditor videoEditor, final long timeMs,
                                     final VideoEditor.OverlayData overlayData) {
+                                if (overlayData != null && overlayData.needsRendering()) {
+                                    mOverlayCompositor.renderExternalOverlay(overlayData);
+                                }
+
                                 mMainHandler.post(new Runnable() {
                                     @Override
                                     public void run() {
-                                        if (overlayData != null && overlayData.needsRendering()) {
-                                            if (mOverlayBitmap != null) {
-                                                overlayData.renderOverlay(mOverlayBitmap);
-                                                mOverlayView.invalidate();
-                                            } else {
-                                                overlayData.release();
-                                            }
-                                        }
-
                                         if (mPreviewState == PREVIEW_STATE_STARTED ||
                                                 mPreviewState == PREVIEW_STATE_STOPPING) {
                                             movePlayhead(timeMs);
@@ -2042,22 +2232,15 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
          * @param height The new surface height
          */
         private void onSurfaceChanged(int width, int height) {
-            if (mOverlayBitmap != null) {
-                if (mOverlayBitmap.getWidth() == width && mOverlayBitmap.getHeight() == height) {
-                    // The size has not changed
-                    return;
-                }
-
-                mOverlayView.setImageBitmap(null);
-                mOverlayBitmap.recycle();
-                mOverlayBitmap = null;
+            if (mOverlayCompositor.getWidth() == width &&
+                    mOverlayCompositor.getHeight() == height) {
+                // The size has not changed
+                return;
             }
 
-            // Create the overlay bitmap
-            logd("Overlay size: " + width + " x " + height);
-
-            mOverlayBitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
-            mOverlayView.setImageBitmap(mOverlayBitmap);
+            // Create the overlay buffers
+            mOverlayCompositor.setSize(width, height);
+            mTrimFrameShown = false;
         }
 
         /**
@@ -2123,6 +2306,7 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
 
             // Ensure that the queued items are processed
             mThreadHandler.post(mProcessQueueRunnable);
+            mThreadHandler.post(mRenderFrameRunnable);
 
             // Run the loop
             Looper.loop();
@@ -2132,12 +2316,11 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
          * Quits the thread
          */
         public void quit() {
-            // Release the overlay bitmap
-            if (mOverlayBitmap != null) {
-                mOverlayView.setImageBitmap(null);
-                mOverlayBitmap.recycle();
-                mOverlayBitmap = null;
-            }
+            mTrimFrameCache.quit();
+            mTrimFrameShown = false;
+
+            // Release the overlay buffers
+            mOverlayCompositor.quit();
 
             if (mThreadHandler != null) {
                 mThreadHandler.getLooper().quit();
@@ -2149,6 +2332,7 @@ public class VideoEditorActivity extends VideoEditorBaseActivity
             }
 
             mQueue.clear();
+            cancelFrame();
         }
     }
 
@@ -17,6 +17,7 @@
 package com.android.videoeditor;
 
 import java.util.List;
+import java.util.Map;
 
 import android.app.Activity;
 import android.content.Context;
@@ -24,6 +25,7 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.media.AudioManager;
 import android.media.videoeditor.AudioTrack;
+import android.media.videoeditor.MediaImageItem;
 import android.media.videoeditor.MediaItem;
 import android.media.videoeditor.MediaVideoItem;
 import android.media.videoeditor.Transition;
@@ -34,11 +36,14 @@ import android.widget.Toast;
 
 import com.android.videoeditor.service.ApiService;
 import com.android.videoeditor.service.ApiServiceListener;
+import com.android.videoeditor.service.BulkEdit;
+import com.android.videoeditor.service.ExportJob;
 import com.android.videoeditor.service.MovieAudioTrack;
 import com.android.videoeditor.service.MovieEffect;
 import com.android.videoeditor.service.MovieMediaItem;
 import com.android.videoeditor.service.MovieOverlay;
 import com.android.videoeditor.service.MovieTransition;
+import com.android.videoeditor.service.TimelineDelta;
 import com.android.videoeditor.service.VideoEditorProject;
 import com.android.videoeditor.widgets.AudioTrackLinearLayout;
 import com.android.videoeditor.widgets.MediaLinearLayout;
@@ -159,7 +164,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
 
         @Override
         public void onVideoEditorThemeApplied(String projectPath, String theme,
-                Exception exception) {
+                TimelineDelta delta, Exception exception) {
             // Check if the VideoEditor is the one we are expecting
             if (!projectPath.equals(mProjectPath)) {
                 return;
@@ -173,10 +178,8 @@ public abstract class VideoEditorBaseActivity extends Activity {
                 Toast.makeText(VideoEditorBaseActivity.this, R.string.editor_apply_theme_error,
                         Toast.LENGTH_LONG).show();
             } else {
-                getMediaLayout().addMediaItems(mProject.getMediaItems());
-                getOverlayLayout().addMediaItems(mProject.getMediaItems());
-                getAudioTrackLayout().addAudioTracks(mProject.getAudioTracks());
-
+                // The media item views are kept
+                applyTimelineDelta(delta);
                 updateTimelineDuration();
             }
         }
@@ -258,6 +261,21 @@ public abstract class VideoEditorBaseActivity extends Activity {
             }
         }
 
+        @Override
+        public void onVideoEditorExportQueueChanged(List<ExportJob> jobs) {
+            if (mProject == null || mPendingExportFilename == null) {
+                return;
+            }
+
+            for (ExportJob job : jobs) {
+                if (job.getProjectPath().equals(mProjectPath) &&
+                        job.getFilename().equals(mPendingExportFilename)) {
+                    onExportQueuePositionChanged(job.getQueuePosition());
+                    break;
+                }
+            }
+        }
+
         @Override
         public void onVideoEditorSaved(String projectPath, Exception exception) {
             // Check if the VideoEditor is the one we are expecting
@@ -318,6 +336,64 @@ public abstract class VideoEditorBaseActivity extends Activity {
             }
         }
 
+        @Override
+        public void onMediaItemsAdded(String projectPath, List<MovieMediaItem> mediaItems,
+                String afterMediaItemId, Integer newAspectRatio,
+                Map<String, Class<?>> failedMediaItems, Exception exception) {
+            // Check if the VideoEditor is the one we are expecting.
+            if (!projectPath.equals(mProjectPath) || mProject == null) {
+                return;
+            }
+
+            onMediaItemsImportComplete();
+            if (exception != null) {
+                // Report the failures once for each type of media item
+                if (failedMediaItems == null || failedMediaItems.containsValue(null)) {
+                    Toast.makeText(VideoEditorBaseActivity.this,
+                            R.string.editor_add_media_item_error, Toast.LENGTH_LONG).show();
+                }
+
+                if (failedMediaItems != null &&
+                        failedMediaItems.containsValue(MediaVideoItem.class)) {
+                    Toast.makeText(VideoEditorBaseActivity.this,
+                            R.string.editor_add_video_clip_error, Toast.LENGTH_LONG).show();
+                }
+
+                if (failedMediaItems != null &&
+                        failedMediaItems.containsValue(MediaImageItem.class)) {
+                    Toast.makeText(VideoEditorBaseActivity.this, R.string.editor_add_image_error,
+                            Toast.LENGTH_LONG).show();
+                }
+            }
+
+            if (mediaItems != null && mediaItems.size() > 0) {
+                String insertAfterMediaItemId = afterMediaItemId;
+                for (MovieMediaItem mediaItem : mediaItems) {
+                    getMediaLayout().insertMediaItem(mediaItem, insertAfterMediaItemId);
+                    getOverlayLayout().insertMediaItem(mediaItem, insertAfterMediaItemId);
+                    insertAfterMediaItemId = mediaItem.getId();
+                }
+
+                if (newAspectRatio != null) {
+                    // The aspect ratio has changed
+                    setAspectRatio(newAspectRatio);
+                }
+
+                updateTimelineDuration();
+            }
+        }
+
+        @Override
+        public void onMediaItemsAddProgress(String projectPath, String mediaItemId,
+                int progress, int count) {
+            // Check if the VideoEditor is the one we are expecting.
+            if (!projectPath.equals(mProjectPath) || mProject == null) {
+                return;
+            }
+
+            onMediaItemsImportProgress(progress, count);
+        }
+
         @Override
         public void onMediaLoaded(String projectPath, Uri mediaIUri, String mimeType,
                 String filename, Exception exception) {
@@ -339,7 +415,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
 
         @Override
         public void onMediaItemMoved(String projectPath, String mediaItemId,
-                String afterMediaItemId, Exception exception) {
+                String afterMediaItemId, TimelineDelta delta, Exception exception) {
             // Check if the VideoEditor is the one we are expecting
             if (!projectPath.equals(mProjectPath)) {
                 return;
@@ -352,13 +428,16 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this, R.string.editor_move_media_item_error,
                             Toast.LENGTH_LONG).show();
+                restoreTimeline();
+            } else if (delta != null) {
+                applyTimelineDelta(delta);
             } else {
-                // Update the entire timeline
-                getMediaLayout().addMediaItems(mProject.getMediaItems());
-                getOverlayLayout().addMediaItems(mProject.getMediaItems());
-
-                updateTimelineDuration();
+                // Only the moved views and the transitions around them change
+                getMediaLayout().moveMediaItem(mediaItemId, afterMediaItemId);
+                getOverlayLayout().moveMediaItem(mediaItemId, afterMediaItemId);
             }
+
+            updateTimelineDuration();
         }
 
         @Override
@@ -376,6 +455,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this,
                         R.string.editor_remove_media_item_error, Toast.LENGTH_LONG).show();
+                restoreTimeline();
             } else {
                 // Remove the media item and bounding transitions
                 getMediaLayout().removeMediaItem(mediaItemId, transition);
@@ -400,6 +480,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this,
                         R.string.editor_set_rendering_mode_error, Toast.LENGTH_LONG).show();
+                restoreTimeline();
             }
         }
 
@@ -418,6 +499,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this,
                         R.string.editor_set_media_item_duration_error, Toast.LENGTH_LONG).show();
+                restoreTimeline();
             } else {
                 final MovieMediaItem mediaItem = mProject.getMediaItem(mediaItemId);
                 // Update the media item
@@ -489,6 +571,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                  Toast.makeText(VideoEditorBaseActivity.this, R.string.editor_add_transition_error,
                             Toast.LENGTH_LONG).show();
+                 restoreTimeline();
             } else {
                 getMediaLayout().addTransition(transition, afterMediaId);
 
@@ -511,6 +594,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this,
                         R.string.editor_remove_transition_error, Toast.LENGTH_LONG).show();
+                restoreTimeline();
             } else {
                 getMediaLayout().removeTransition(transitionId);
 
@@ -533,6 +617,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this,
                         R.string.editor_set_transition_duration_error, Toast.LENGTH_LONG).show();
+                restoreTimeline();
             } else {
                 getMediaLayout().updateTransition(transitionId);
                 getOverlayLayout().refresh();
@@ -575,6 +660,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this, R.string.editor_add_overlay_error,
                             Toast.LENGTH_LONG).show();
+                restoreTimeline();
             } else {
                 getMediaLayout().invalidateActionBar();
                 getOverlayLayout().addOverlay(mediaItemId, overlay);
@@ -596,6 +682,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this, R.string.editor_remove_overlay_error,
                             Toast.LENGTH_LONG).show();
+                restoreTimeline();
             } else {
                 getOverlayLayout().removeOverlay(mediaItemId, overlayId);
             }
@@ -616,6 +703,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this,
                         R.string.editor_set_start_time_overlay_error, Toast.LENGTH_LONG).show();
+                restoreTimeline();
             }
         }
 
@@ -634,6 +722,7 @@ public abstract class VideoEditorBaseActivity extends Activity {
             if (exception != null) {
                 Toast.makeText(VideoEditorBaseActivity.this,
                         R.string.editor_set_duration_overlay_error, Toast.LENGTH_LONG).show();
+                restoreTimeline();
             }
         }
 
@@ -699,6 +788,32 @@ public abstract class VideoEditorBaseActivity extends Activity {
             }
         }
 
+        @Override
+        public void onBulkEditApplied(String projectPath, BulkEdit.Result result,
+                Exception exception) {
+            // Check if the VideoEditor is the one we are expecting
+            if (!projectPath.equals(mProjectPath)) {
+                return;
+            }
+
+            if (mProject == null) {
+                return;
+            }
+
+            if (exception != null) {
+                Toast.makeText(VideoEditorBaseActivity.this, R.string.editor_bulk_edit_error,
+                            Toast.LENGTH_LONG).show();
+            } else {
+                final MediaLinearLayout mediaLayout = getMediaLayout();
+                mediaLayout.updateTransitions(result.getTransitions());
+                for (String mediaItemId : result.getMediaItemIds()) {
+                    mediaLayout.updateMediaItem(mProject.getMediaItem(mediaItemId));
+                }
+
+                updateTimelineDuration();
+            }
+        }
+
         @Override
         public void onAudioTrackAdded(String projectPath, MovieAudioTrack audioTrack,
                 Exception exception) {
@@ -819,7 +934,9 @@ public abstract class VideoEditorBaseActivity extends Activity {
         mProjectEditState = ApiService.isProjectBeingEdited(mProjectPath);
         onProjectEditStateChange(mProjectEditState);
 
-        ApiService.registerListener(mServiceListener);
+        // Only the events of this project are delivered to this activity
+        ApiService.registerListener(mServiceListener, mProjectPath,
+                ApiServiceListener.EVENT_ALL & ~ApiServiceListener.EVENT_PROJECTS);
 
         // Check if we need to load the project
         if (mProjectPath != null) {
@@ -888,6 +1005,45 @@ public abstract class VideoEditorBaseActivity extends Activity {
         return mProjectEditState;
     }
 
+    /**
+     * Update the entire timeline after the project reverted the edits which
+     * the service rejected
+     */
+    private void restoreTimeline() {
+        getMediaLayout().addMediaItems(mProject.getMediaItems());
+        getOverlayLayout().addMediaItems(mProject.getMediaItems());
+        updateTimelineDuration();
+    }
+
+    /**
+     * Apply the changes made by the service to the timeline views. The
+     * project already holds the changes.
+     *
+     * @param delta The changes made by the service
+     */
+    private void applyTimelineDelta(TimelineDelta delta) {
+        if (delta.isMove()) {
+            getMediaLayout().moveMediaItem(delta.getMovedMediaItemId(),
+                    delta.getMoveAfterMediaItemId());
+            getOverlayLayout().moveMediaItem(delta.getMovedMediaItemId(),
+                    delta.getMoveAfterMediaItemId());
+        }
+
+        getMediaLayout().updateTransitions(delta.getTransitions());
+
+        for (Map.Entry<String, MovieOverlay> entry : delta.getOverlays().entrySet()) {
+            if (entry.getValue() != null) {
+                getOverlayLayout().addOverlay(entry.getKey(), entry.getValue());
+            } else {
+                getOverlayLayout().removeOverlay(entry.getKey(), null);
+            }
+        }
+
+        if (delta.getAudioTracks() != null) {
+            getAudioTrackLayout().addAudioTracks(mProject.getAudioTracks());
+        }
+    }
+
     /**
      * Enter the disabled state
      *
@@ -967,6 +1123,27 @@ public abstract class VideoEditorBaseActivity extends Activity {
      */
     protected abstract void onExportComplete();
 
+    /**
+     * The position of the export in the export queue changed
+     *
+     * @param queuePosition The number of exports which will start before
+     *      this export, 0 if the export is running
+     */
+    protected abstract void onExportQueuePositionChanged(int queuePosition);
+
+    /**
+     * The files of the media items being added were prepared
+     *
+     * @param progress The number of files prepared so far
+     * @param count The number of files to prepare
+     */
+    protected abstract void onMediaItemsImportProgress(int progress, int count);
+
+    /**
+     * The media items were added
+     */
+    protected abstract void onMediaItemsImportComplete();
+
     /**
      * @param projectEdited true if the project is edited
      */
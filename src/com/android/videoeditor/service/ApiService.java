@@ -16,20 +16,31 @@
 
 package com.android.videoeditor.service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 import android.app.Service;
 import android.content.ContentValues;
@@ -70,11 +81,13 @@ import android.provider.MediaStore.Audio;
 import android.provider.MediaStore.Images;
 import android.provider.MediaStore.Video;
 import android.util.Log;
+import android.util.Xml;
 
-import com.android.videoeditor.R;
 import com.android.videoeditor.util.FileUtils;
 import com.android.videoeditor.util.ImageUtils;
 import com.android.videoeditor.util.MediaItemUtils;
+import com.android.videoeditor.util.MediaProbe;
+import com.android.videoeditor.util.Mp4Concatenator;
 import com.android.videoeditor.util.StringUtils;
 
 /**
@@ -89,136 +102,307 @@ public class ApiService extends Service {
     public static final int ACTION_NO_FRAME_UPDATE = MediaProcessingProgressListener.ACTION_DECODE + 101;
 
     // Parameters
-    private static final String PARAM_OP = "op";
     private static final String PARAM_REQUEST_ID = "rid";
-    private static final String PARAM_PROJECT_PATH = "project";
-    private static final String PARAM_FILENAME = "filename";
-    private static final String PARAM_STORYBOARD_ITEM_ID = "item_id";
-    private static final String PARAM_RELATIVE_STORYBOARD_ITEM_ID = "r_item_id";
-    private static final String PARAM_PROGRESS_VALUE = "prog_value";
-    private static final String PARAM_EXCEPTION = "ex";
-    private static final String PARAM_START_TIME = "s_time";
-    private static final String PARAM_END_TIME = "e_time";
-    private static final String PARAM_DURATION = "duration";
-    private static final String PARAM_WIDTH = "width";
-    private static final String PARAM_HEIGHT = "height";
-    private static final String PARAM_BITRATE = "bitrate";
-    private static final String PARAM_MEDIA_ITEM_RENDERING_MODE = "rm";
-    private static final String PARAM_MEDIA_ITEM_START_RECT = "start_rect";
-    private static final String PARAM_MEDIA_ITEM_END_RECT = "end_rect";
-    private static final String PARAM_EFFECT_TYPE = "e_type";
-    private static final String PARAM_EFFECT_PARAM = "e_param";
-    private static final String PARAM_TRANSITION_BEHAVIOR = "behavior";
-    private static final String PARAM_TRANSITION_MASK = "t_mask";
-    private static final String PARAM_TRANSITION_BLENDING = "t_blending";
-    private static final String PARAM_TRANSITION_INVERT = "t_invert";
-    private static final String PARAM_TRANSITION_DIRECTION = "t_dir";
-    private static final String PARAM_INTENT = "req_intent";
-    private static final String PARAM_PROJECT_NAME = "name";
-    private static final String PARAM_MOVIES_FILENAMES = "movies";
-    private static final String PARAM_PHOTOS_FILENAMES = "images";
-    private static final String PARAM_ASPECT_RATIO = "aspect_ratio";
-    private static final String PARAM_BEGIN_BOUNDARY = "b_boundary";
-    private static final String PARAM_END_BOUNDARY = "e_boundary";
-    private static final String PARAM_ATTRIBUTES = "attributes";
-    private static final String PARAM_VOLUME = "volume";
-    private static final String PARAM_LOOP = "loop";
-    private static final String PARAM_MUTE = "mute";
-    private static final String PARAM_DUCK = "duck";
-    private static final String PARAM_MOVIE_URI = "uri";
-    private static final String PARAM_THEME = "theme";
-    private static final String PARAM_ACTION = "action";
-    private static final String PARAM_COUNT = "count";
-    private static final String PARAM_TOKEN = "token";
-    private static final String PARAM_INDICES = "indices";
-    private static final String PARAM_CANCELLED = "cancelled";
 
     // Operations
-    private static final int OP_VIDEO_EDITOR_CREATE = 1;
-    private static final int OP_VIDEO_EDITOR_LOAD = 2;
-    private static final int OP_VIDEO_EDITOR_SAVE = 3;
-    private static final int OP_VIDEO_EDITOR_EXPORT = 4;
-    private static final int OP_VIDEO_EDITOR_CANCEL_EXPORT = 5;
-    private static final int OP_VIDEO_EDITOR_EXPORT_STATUS = 6;
-    private static final int OP_VIDEO_EDITOR_RELEASE = 8;
-    private static final int OP_VIDEO_EDITOR_DELETE = 9;
-    private static final int OP_VIDEO_EDITOR_SET_ASPECT_RATIO = 10;
-    private static final int OP_VIDEO_EDITOR_APPLY_THEME = 11;
-    private static final int OP_VIDEO_EDITOR_GENERATE_PREVIEW_PROGRESS = 12;
-    private static final int OP_VIDEO_EDITOR_LOAD_PROJECTS = 13;
-
-    private static final int OP_MEDIA_ITEM_ADD_VIDEO_URI = 100;
-    private static final int OP_MEDIA_ITEM_ADD_IMAGE_URI = 101;
-    private static final int OP_MEDIA_ITEM_MOVE = 102;
-    private static final int OP_MEDIA_ITEM_REMOVE = 103;
-    private static final int OP_MEDIA_ITEM_SET_RENDERING_MODE = 104;
-    private static final int OP_MEDIA_ITEM_SET_DURATION = 105;
-    private static final int OP_MEDIA_ITEM_SET_BOUNDARIES = 106;
-    private static final int OP_MEDIA_ITEM_SET_VOLUME = 107;
-    private static final int OP_MEDIA_ITEM_SET_MUTE = 108;
-    private static final int OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM = 109;
-    private static final int OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM_STATUS = 110;
-    private static final int OP_MEDIA_ITEM_GET_THUMBNAILS = 112;
-    private static final int OP_MEDIA_ITEM_LOAD = 113;
-    private static final int OP_MEDIA_ITEM_LOAD_STATUS = 114;
-
-    private static final int OP_EFFECT_ADD_COLOR = 200;
-    private static final int OP_EFFECT_ADD_IMAGE_KEN_BURNS = 201;
-    private static final int OP_EFFECT_REMOVE = 202;
-
-    private static final int OP_TRANSITION_INSERT_ALPHA = 300;
-    private static final int OP_TRANSITION_INSERT_CROSSFADE = 301;
-    private static final int OP_TRANSITION_INSERT_FADE_BLACK = 302;
-    private static final int OP_TRANSITION_INSERT_SLIDING = 303;
-    private static final int OP_TRANSITION_REMOVE = 304;
-    private static final int OP_TRANSITION_SET_DURATION = 305;
-    private static final int OP_TRANSITION_GET_THUMBNAIL = 306;
-
-    private static final int OP_OVERLAY_ADD = 400;
-    private static final int OP_OVERLAY_REMOVE = 401;
-    private static final int OP_OVERLAY_SET_START_TIME = 402;
-    private static final int OP_OVERLAY_SET_DURATION = 403;
-    private static final int OP_OVERLAY_SET_ATTRIBUTES = 404;
-
-    private static final int OP_AUDIO_TRACK_ADD = 500;
-    private static final int OP_AUDIO_TRACK_REMOVE = 501;
-    private static final int OP_AUDIO_TRACK_SET_VOLUME = 502;
-    private static final int OP_AUDIO_TRACK_SET_MUTE = 503;
-    private static final int OP_AUDIO_TRACK_SET_BOUNDARIES = 505;
-    private static final int OP_AUDIO_TRACK_SET_LOOP = 506;
-    private static final int OP_AUDIO_TRACK_SET_DUCK = 507;
-    private static final int OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM = 508;
-    private static final int OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM_STATUS = 509;
+    static final int OP_VIDEO_EDITOR_CREATE = 1;
+    static final int OP_VIDEO_EDITOR_LOAD = 2;
+    static final int OP_VIDEO_EDITOR_SAVE = 3;
+    static final int OP_VIDEO_EDITOR_EXPORT = 4;
+    static final int OP_VIDEO_EDITOR_CANCEL_EXPORT = 5;
+    static final int OP_VIDEO_EDITOR_RELEASE = 8;
+    static final int OP_VIDEO_EDITOR_DELETE = 9;
+    static final int OP_VIDEO_EDITOR_SET_ASPECT_RATIO = 10;
+    static final int OP_VIDEO_EDITOR_APPLY_THEME = 11;
+    static final int OP_VIDEO_EDITOR_GENERATE_PREVIEW_PROGRESS = 12;
+    static final int OP_VIDEO_EDITOR_LOAD_PROJECTS = 13;
+    static final int OP_VIDEO_EDITOR_BULK_EDIT = 14;
+
+    static final int OP_MEDIA_ITEM_ADD_VIDEO_URI = 100;
+    static final int OP_MEDIA_ITEM_ADD_IMAGE_URI = 101;
+    static final int OP_MEDIA_ITEM_MOVE = 102;
+    static final int OP_MEDIA_ITEM_REMOVE = 103;
+    static final int OP_MEDIA_ITEM_SET_RENDERING_MODE = 104;
+    static final int OP_MEDIA_ITEM_SET_DURATION = 105;
+    static final int OP_MEDIA_ITEM_SET_BOUNDARIES = 106;
+    static final int OP_MEDIA_ITEM_SET_VOLUME = 107;
+    static final int OP_MEDIA_ITEM_SET_MUTE = 108;
+    static final int OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM = 109;
+    static final int OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM_STATUS = 110;
+    static final int OP_MEDIA_ITEM_GET_THUMBNAILS = 112;
+    static final int OP_MEDIA_ITEM_LOAD = 113;
+    static final int OP_MEDIA_ITEM_LOAD_STATUS = 114;
+    static final int OP_MEDIA_ITEM_ADD_URIS = 115;
+    static final int OP_MEDIA_ITEM_ADD_URIS_PROGRESS = 116;
+    static final int OP_MEDIA_ITEM_LOAD_PROGRESS = 117;
+
+    static final int OP_EFFECT_ADD_COLOR = 200;
+    static final int OP_EFFECT_ADD_IMAGE_KEN_BURNS = 201;
+    static final int OP_EFFECT_REMOVE = 202;
+
+    static final int OP_TRANSITION_INSERT_ALPHA = 300;
+    static final int OP_TRANSITION_INSERT_CROSSFADE = 301;
+    static final int OP_TRANSITION_INSERT_FADE_BLACK = 302;
+    static final int OP_TRANSITION_INSERT_SLIDING = 303;
+    static final int OP_TRANSITION_REMOVE = 304;
+    static final int OP_TRANSITION_SET_DURATION = 305;
+    static final int OP_TRANSITION_GET_THUMBNAIL = 306;
+
+    static final int OP_OVERLAY_ADD = 400;
+    static final int OP_OVERLAY_REMOVE = 401;
+    static final int OP_OVERLAY_SET_START_TIME = 402;
+    static final int OP_OVERLAY_SET_DURATION = 403;
+    static final int OP_OVERLAY_SET_ATTRIBUTES = 404;
+
+    static final int OP_AUDIO_TRACK_ADD = 500;
+    static final int OP_AUDIO_TRACK_REMOVE = 501;
+    static final int OP_AUDIO_TRACK_SET_VOLUME = 502;
+    static final int OP_AUDIO_TRACK_SET_MUTE = 503;
+    static final int OP_AUDIO_TRACK_SET_BOUNDARIES = 505;
+    static final int OP_AUDIO_TRACK_SET_LOOP = 506;
+    static final int OP_AUDIO_TRACK_SET_DUCK = 507;
+    static final int OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM = 508;
+    static final int OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM_STATUS = 509;
 
     private static final int DUCK_THRESHOLD = 20;
     private static final int DUCK_TRACK_VOLUME = 65;
     // The default audio track volume
     private static final int DEFAULT_AUDIO_TRACK_VOLUME = 50;
 
+    // The file in which the pending export jobs are saved
+    private static final String EXPORT_QUEUE_FILENAME = "export_queue.xml";
+    private static final String EXPORT_HISTORY_FILENAME = "export_history.xml";
+    // The file in which the video editor saves the storyboard of a project
+    private static final String VIDEO_EDITOR_FILENAME = "videoeditor.xml";
+    // The prefix of the project snapshot folders of the export jobs
+    private static final String EXPORT_SNAPSHOT_PREFIX = "export_";
+    // The prefix of the folders in which the segments of a movie are exported
+    private static final String EXPORT_SEGMENT_PREFIX = "segment_";
+    // The shortest segment exported in parallel with the other segments
+    private static final long MIN_EXPORT_SEGMENT_DURATION_MS = 5000;
+    // The longest segment between two checkpoints of an export
+    private static final long MAX_EXPORT_SEGMENT_DURATION_MS = 60 * 1000;
+    // The largest distance between the beginning of a video clip and the
+    // preceding sync frame for the clip to be copied without re-encoding
+    private static final long MAX_PASSTHROUGH_SYNC_OFFSET_MS = 100;
+
     // Static member variables
-    private static final Map<String, Intent> mPendingIntents = new HashMap<String, Intent>();
-    private static final List<ApiServiceListener> mListeners = new ArrayList<ApiServiceListener>();
-    private static final IntentPool mIntentPool = new IntentPool(8);
+    private static final ListenerRegistry mListeners = new ListenerRegistry();
+    private static final PendingRequests mPendingRequests = new PendingRequests(
+            new PendingRequests.Listener() {
+        @Override
+        public void onProjectEditStateChanged(String projectPath, boolean projectEdited) {
+            for (ApiServiceListener listener : mListeners.get(
+                    ApiServiceListener.EVENT_PROJECT, projectPath)) {
+                listener.onProjectEditState(projectPath, projectEdited);
+            }
+        }
+    });
+    private static final IntentPool mIntentPool = new IntentPool(32);
+    // The running service. The requests are dispatched to it directly.
+    private static ApiService mService;
+    // The number of commands sent to the service through the system and not
+    // received yet
+    private static final AtomicInteger mUndeliveredCommands = new AtomicInteger();
     private static VideoEditorProject mVideoProject;
     private static VideoEditor mVideoEditor;
     private static ServiceMediaProcessingProgressListener mGeneratePreviewListener;
-    private static volatile boolean mExportCancelled;
-
-    private IntentProcessor mVideoThread;
-    private IntentProcessor mAudioThread;
-    private IntentProcessor mThumbnailThread;
+    private static ExportQueue mExportQueue;
+    private static final Map<String, ExportCache> mExportCaches =
+        new HashMap<String, ExportCache>();
+    private static ExportHistory mExportHistory;
+    private static int mMaxConcurrentExports = 1;
+    private static volatile boolean mParallelExportEnabled = true;
+    private static volatile boolean mSmartRenderEnabled = true;
+
+    private CommandProcessor mVideoThread;
+    private CommandProcessor mAudioThread;
+    private CommandProcessor mThumbnailThread;
     private Handler mHandler;
 
     private final Runnable mStopRunnable = new Runnable() {
         @Override
         public void run() {
-            if (mPendingIntents.size() == 0) {
+            if (mPendingRequests.isEmpty() && mExportQueue.isEmpty()) {
                 logd("Stop runnable: Stopping service");
+                // The next requests restart the service
+                mService = null;
                 stopSelf();
             }
         }
     };
 
+    /**
+     * Runs the export jobs. Each job exports its project snapshot with its
+     * own video editor and reports to the main thread directly, so exports
+     * do not compete with the operations of the video thread.
+     */
+    private final ExportQueue.Exporter mExporter = new ExportQueue.Exporter() {
+        @Override
+        public void export(final ExportJob job) throws Exception {
+            final String filename = job.getFilename();
+            // The movie is written to a partial file which replaces the
+            // export file once it is complete and verified
+            final File partialFile = getPartialExportFile(filename);
+            final ExportCache exportCache = getExportCache(job.getProjectPath());
+            final ExportManifest manifest = new ExportManifest(filename);
+            try {
+                final String fingerprint = exportMovie(job, partialFile.getAbsolutePath(),
+                        exportCache, manifest);
+                if (job.isCancelled()) {
+                    logv("Export cancelled by user, file name: " + filename);
+                    return;
+                }
+
+                commitExport(partialFile, new File(filename));
+                exportCache.putMovie(fingerprint, filename);
+                logv("Export complete for: " + filename);
+            } finally {
+                job.getStats().stop();
+                // The manifest remains only if the process dies
+                partialFile.delete();
+                manifest.delete();
+            }
+        }
+
+        @Override
+        public void onJobFinished(final ExportJob job, final Exception exception) {
+            // The snapshot is not needed anymore
+            FileUtils.deleteDir(new File(job.getSnapshotPath()));
+
+            Uri uri = null;
+            Exception resultException = exception;
+            if (job.getState() == ExportJob.STATE_COMPLETED) {
+                try {
+                    uri = exportToGallery(job.getFilename());
+                } catch (Exception ex) {
+                    resultException = ex;
+                }
+
+                getExportHistory(ApiService.this).add(job.getHeight(), job.getBitrate(),
+                        job.getStats(), new File(job.getFilename()).length());
+            }
+
+            final Uri movieUri = uri;
+            final Exception jobException = resultException;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onExportJobFinished(job, movieUri, jobException);
+                }
+            });
+        }
+
+        @Override
+        public void onQueueChanged(final List<ExportJob> jobs) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (ApiServiceListener listener : mListeners.get(
+                            ApiServiceListener.EVENT_EXPORT, null)) {
+                        listener.onVideoEditorExportQueueChanged(jobs);
+                    }
+                }
+            });
+        }
+    };
+
+    /**
+     * A media file being imported by a batch operation
+     */
+    private static final class ImportFile {
+        // Instance variables
+        private final String mMediaItemId;
+        private final Uri mUri;
+        private String mFilename;
+        private boolean mImage;
+        // false until the type of a file imported by URI is resolved
+        private boolean mTypeKnown;
+        private Exception mException;
+
+        /**
+         * Constructor
+         *
+         * @param mediaItemId The id of the media item
+         * @param uri The media URI (null if the filename is known)
+         * @param filename The filename (null if the URI is specified)
+         * @param image true if the file is an image
+         */
+        public ImportFile(String mediaItemId, Uri uri, String filename, boolean image) {
+            mMediaItemId = mediaItemId;
+            mUri = uri;
+            mFilename = filename;
+            mImage = image;
+            mTypeKnown = uri == null;
+        }
+
+        /**
+         * @return The class of the media item, null if the type of the file
+         *      is unknown
+         */
+        public Class<?> getMediaItemClass() {
+            if (!mTypeKnown) {
+                return null;
+            }
+
+            return mImage ? MediaImageItem.class : MediaVideoItem.class;
+        }
+    }
+
+    /**
+     * The result of a batch operation which adds media items
+     */
+    private static final class ImportResult {
+        // Instance variables
+        private final List<MovieMediaItem> mMediaItems;
+        private final Map<String, Class<?>> mFailedMediaItems;
+
+        /**
+         * Constructor
+         *
+         * @param mediaItems The added media items
+         * @param failedMediaItems The classes of the media items which could
+         *      not be added, indexed by media item id
+         */
+        public ImportResult(List<MovieMediaItem> mediaItems,
+                Map<String, Class<?>> failedMediaItems) {
+            mMediaItems = mediaItems;
+            mFailedMediaItems = failedMediaItems;
+        }
+    }
+
+    /**
+     * A part of the storyboard exported on its own. No transition crosses
+     * the boundaries of a segment.
+     */
+    private static final class ExportSegment {
+        // Instance variables
+        private final List<String> mMediaItemIds = new ArrayList<String>();
+        private final long mStartTimeMs;
+        private long mDurationMs;
+        // The fingerprint of the segment timeline
+        private String mFingerprint;
+        // The exported segment file, null until the segment is exported
+        private String mFilename;
+        // true if the segment file was exported by a previous export
+        private boolean mReused;
+        // A passthrough segment is copied from its source clip without being
+        // re-encoded
+        private boolean mPassthrough;
+        private String mSourceFilename;
+        private long mSourceBeginMs;
+        private long mSourceEndMs;
+
+        /**
+         * Constructor
+         *
+         * @param startTimeMs The start time of the segment in the storyboard
+         */
+        public ExportSegment(long startTimeMs) {
+            mStartTimeMs = startTimeMs;
+        }
+    }
+
     /**
      * Generate preview listener
      */
@@ -238,28 +422,27 @@ public class ApiService extends Service {
 
         @Override
         public void onProgress(Object item, int action, int progress) {
-            final Intent intent = mIntentPool.get();
-            intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_GENERATE_PREVIEW_PROGRESS);
-            intent.putExtra(PARAM_PROJECT_PATH, mProjectPath);
-            intent.putExtra(PARAM_ACTION, action);
-            intent.putExtra(PARAM_PROGRESS_VALUE, progress);
-
+            final String itemId;
+            final String className;
             if (item == null) { // Last callback uses null
+                itemId = null;
+                className = null;
             } else if (item instanceof MediaItem) {
-                intent.putExtra(PARAM_STORYBOARD_ITEM_ID, ((MediaItem)item).getId());
-                intent.putExtra(PARAM_ATTRIBUTES, MediaItem.class.getCanonicalName());
+                itemId = ((MediaItem)item).getId();
+                className = MediaItem.class.getCanonicalName();
             } else if (item instanceof Transition) {
-                intent.putExtra(PARAM_STORYBOARD_ITEM_ID, ((Transition)item).getId());
-                intent.putExtra(PARAM_ATTRIBUTES, Transition.class.getCanonicalName());
+                itemId = ((Transition)item).getId();
+                className = Transition.class.getCanonicalName();
             } else if (item instanceof AudioTrack) {
-                intent.putExtra(PARAM_STORYBOARD_ITEM_ID, ((AudioTrack)item).getId());
-                intent.putExtra(PARAM_ATTRIBUTES, AudioTrack.class.getCanonicalName());
+                itemId = ((AudioTrack)item).getId();
+                className = AudioTrack.class.getCanonicalName();
             } else {
                 Log.w(TAG, "Unsupported storyboard item type: " + item.getClass());
                 return;
             }
 
-            completeRequest(intent, null, null, null, null, true);
+            completeRequest(new Command.GeneratePreviewProgress(mProjectPath, itemId, className,
+                    action, progress), null, null, null, null, true);
         }
     }
 
@@ -271,12 +454,25 @@ public class ApiService extends Service {
     }
 
     /**
-     * Register a listener
+     * Register a listener to all the events of all the projects
      *
      * @param listener The listener
      */
     public static void registerListener(ApiServiceListener listener) {
-        mListeners.add(listener);
+        registerListener(listener, null, ApiServiceListener.EVENT_ALL);
+    }
+
+    /**
+     * Register a listener to some events of a project. The previous
+     * registration of the listener is replaced.
+     *
+     * @param listener The listener
+     * @param projectPath The project path, null for all projects
+     * @param events The event types (ApiServiceListener.EVENT_*)
+     */
+    public static void registerListener(ApiServiceListener listener, String projectPath,
+            int events) {
+        mListeners.register(listener, projectPath, events);
     }
 
     /**
@@ -285,7 +481,7 @@ public class ApiService extends Service {
      * @param listener The listener
      */
     public static void unregisterListener(ApiServiceListener listener) {
-        mListeners.remove(listener);
+        mListeners.unregister(listener);
     }
 
     /**
@@ -294,10 +490,7 @@ public class ApiService extends Service {
      * @param context The context
      */
     public static void loadProjects(Context context) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_LOAD_PROJECTS);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.LoadProjects());
     }
 
     /**
@@ -314,15 +507,8 @@ public class ApiService extends Service {
      */
     public static void createVideoEditor(Context context, String projectPath, String projectName,
                 String[] movies, String[] photos, String themeType) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_CREATE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_PROJECT_NAME, projectName);
-        intent.putExtra(PARAM_MOVIES_FILENAMES, movies);
-        intent.putExtra(PARAM_PHOTOS_FILENAMES, photos);
-        intent.putExtra(PARAM_THEME, themeType);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.CreateProject(projectPath, projectName, movies, photos,
+                themeType));
     }
 
     /**
@@ -332,15 +518,13 @@ public class ApiService extends Service {
      * @param projectPath The project path
      */
     public static void loadVideoEditor(Context context, String projectPath) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_LOAD);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.LoadProject(projectPath));
     }
 
     /**
-     * Export the VideoEditor movie
+     * Export the VideoEditor movie. The export is queued and runs on a
+     * snapshot of the project, so the project can be edited while the
+     * export is pending.
      *
      * @param context The context
      * @param projectPath The project path
@@ -350,14 +534,7 @@ public class ApiService extends Service {
      */
     public static void exportVideoEditor(Context context, String projectPath, String filename,
             int height, int bitrate) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_EXPORT);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_FILENAME, filename);
-        intent.putExtra(PARAM_HEIGHT, height);
-        intent.putExtra(PARAM_BITRATE, bitrate);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.ExportMovie(projectPath, filename, height, bitrate));
     }
 
     /**
@@ -369,20 +546,11 @@ public class ApiService extends Service {
      * @return true if the export is pending
      */
     public static boolean isVideoEditorExportPending(String projectPath, String filename) {
-        for (Intent intent : mPendingIntents.values()) {
-            final int op = intent.getIntExtra(PARAM_OP, -1);
-            if (op == OP_VIDEO_EDITOR_EXPORT) {
-                String pp = intent.getStringExtra(PARAM_PROJECT_PATH);
-                if (pp.equals(projectPath)) {
-                    String fn = intent.getStringExtra(PARAM_FILENAME);
-                    if (fn.equals(filename)) {
-                        return true;
-                    }
-                }
-            }
+        if (mExportQueue != null && mExportQueue.getJob(projectPath, filename) != null) {
+            return true;
         }
 
-        return false;
+        return mPendingRequests.isPending(OP_VIDEO_EDITOR_EXPORT, projectPath, filename);
     }
 
     /**
@@ -394,13 +562,92 @@ public class ApiService extends Service {
      */
     public static void cancelExportVideoEditor(Context context, String projectPath,
             String filename) {
-        mExportCancelled = true;
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_CANCEL_EXPORT);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_FILENAME, filename);
+        // Stop the export now if the job is pending. The export request may
+        // not be queued yet: the cancel request cancels it once it is.
+        if (mExportQueue != null) {
+            mExportQueue.cancel(projectPath, filename);
+        }
+
+        startCommand(context, new Command.CancelExport(projectPath, filename));
+    }
+
+    /**
+     * @return The pending export jobs: the running jobs followed by the
+     *      queued jobs
+     */
+    public static List<ExportJob> getExportJobs() {
+        if (mExportQueue == null) {
+            return new ArrayList<ExportJob>();
+        }
+
+        return mExportQueue.getJobs();
+    }
+
+    /**
+     * Get the pending export job of a movie
+     *
+     * @param projectPath The project path
+     * @param filename The export filename
+     *
+     * @return The export job, null if the export is not pending
+     */
+    public static ExportJob getExportJob(String projectPath, String filename) {
+        if (mExportQueue == null) {
+            return null;
+        }
+
+        return mExportQueue.getJob(projectPath, filename);
+    }
+
+    /**
+     * @param context The context
+     *
+     * @return The history of the completed exports
+     */
+    public static synchronized ExportHistory getExportHistory(Context context) {
+        if (mExportHistory == null) {
+            mExportHistory = new ExportHistory(new File(context.getFilesDir(),
+                    EXPORT_HISTORY_FILENAME));
+        }
+
+        return mExportHistory;
+    }
+
+    /**
+     * Set the maximum number of exports which run concurrently
+     *
+     * @param maxConcurrentExports The maximum number of concurrent exports
+     */
+    public static void setMaxConcurrentExports(int maxConcurrentExports) {
+        if (maxConcurrentExports < 1) {
+            throw new IllegalArgumentException("Invalid concurrency: " + maxConcurrentExports);
+        }
+
+        mMaxConcurrentExports = maxConcurrentExports;
+        if (mExportQueue != null) {
+            mExportQueue.setMaxConcurrentJobs(maxConcurrentExports);
+        }
+    }
+
+    /**
+     * Enable or disable the parallel export of the storyboard segments
+     *
+     * @param enabled true to export the segments of a movie concurrently on
+     *      multi-core devices
+     */
+    public static void setParallelExportEnabled(boolean enabled) {
+        mParallelExportEnabled = enabled;
+    }
 
-        startCommand(context, intent);
+    /**
+     * Enable or disable smart rendering: the video clips which are not
+     * modified by the project and match the export settings are copied
+     * into the exported movie without being re-encoded.
+     *
+     * @param enabled true to enable smart rendering
+     */
+    public static void setSmartRenderEnabled(boolean enabled) {
+        mSmartRenderEnabled = enabled;
     }
 
     /**
@@ -411,12 +658,7 @@ public class ApiService extends Service {
      * @param aspectRatio The aspect ratio
      */
     public static void setAspectRatio(Context context, String projectPath, int aspectRatio) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_SET_ASPECT_RATIO);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_ASPECT_RATIO, aspectRatio);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetAspectRatio(projectPath, aspectRatio));
     }
 
     /**
@@ -427,12 +669,7 @@ public class ApiService extends Service {
      * @param theme The theme
      */
      public static void applyTheme(Context context, String projectPath, String theme) {
-         final Intent intent = mIntentPool.get(context, ApiService.class);
-         intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_APPLY_THEME);
-         intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-         intent.putExtra(PARAM_THEME, theme);
-
-         startCommand(context, intent);
+         startCommand(context, new Command.ApplyTheme(projectPath, theme));
      }
 
     /**
@@ -445,33 +682,37 @@ public class ApiService extends Service {
      * @return {@code true} if the video editor is modifying the timeline
      */
     public static boolean isProjectBeingEdited(String projectPath) {
-        for (Intent intent : mPendingIntents.values()) {
-            final int op = intent.getIntExtra(PARAM_OP, -1);
-            switch (op) {
-                // When these operations are pending the video editor is not busy.
-                case OP_VIDEO_EDITOR_LOAD_PROJECTS:
-                case OP_VIDEO_EDITOR_SAVE:
-                case OP_MEDIA_ITEM_SET_VOLUME:
-                case OP_MEDIA_ITEM_SET_MUTE:
-                case OP_MEDIA_ITEM_GET_THUMBNAILS:
-                case OP_MEDIA_ITEM_LOAD:
-                case OP_TRANSITION_GET_THUMBNAIL:
-                case OP_AUDIO_TRACK_SET_VOLUME:
-                case OP_AUDIO_TRACK_SET_MUTE: {
-                    break;
-                }
+        return mPendingRequests.isProjectEdited(projectPath);
+    }
 
-                default: {
-                    final String pp = intent.getStringExtra(PARAM_PROJECT_PATH);
-                    if (pp != null && pp.equals(projectPath)) {
-                        return true;
-                    }
-                    break;
-                }
+    /**
+     * @param op The operation
+     *
+     * @return true if the operation keeps the video editor busy modifying
+     *      the timeline
+     */
+    private static boolean isEditingOperation(int op) {
+        switch (op) {
+            // When these operations are pending the video editor is not busy.
+            // The exports run on a snapshot of the project.
+            case OP_VIDEO_EDITOR_LOAD_PROJECTS:
+            case OP_VIDEO_EDITOR_SAVE:
+            case OP_VIDEO_EDITOR_EXPORT:
+            case OP_VIDEO_EDITOR_CANCEL_EXPORT:
+            case OP_MEDIA_ITEM_SET_VOLUME:
+            case OP_MEDIA_ITEM_SET_MUTE:
+            case OP_MEDIA_ITEM_GET_THUMBNAILS:
+            case OP_MEDIA_ITEM_LOAD:
+            case OP_TRANSITION_GET_THUMBNAIL:
+            case OP_AUDIO_TRACK_SET_VOLUME:
+            case OP_AUDIO_TRACK_SET_MUTE: {
+                return false;
             }
-        }
 
-        return false;
+            default: {
+                return true;
+            }
+        }
     }
 
     /**
@@ -481,11 +722,7 @@ public class ApiService extends Service {
      * @param projectPath The project path
      */
     public static void saveVideoEditor(Context context, String projectPath) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_SAVE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SaveProject(projectPath));
     }
 
     /**
@@ -495,11 +732,7 @@ public class ApiService extends Service {
      * @param projectPath The project path
      */
     public static void releaseVideoEditor(Context context, String projectPath) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_RELEASE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.ReleaseProject(projectPath));
     }
 
     /**
@@ -509,11 +742,7 @@ public class ApiService extends Service {
      * @param projectPath The project path
      */
     public static void deleteProject(Context context, String projectPath) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_DELETE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.DeleteProject(projectPath));
     }
 
     /**
@@ -530,16 +759,8 @@ public class ApiService extends Service {
     public static void addMediaItemVideoUri(Context context, String projectPath,
             String mediaItemId, String afterMediaItemId, Uri uri, int renderingMode,
             String themeId) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_ADD_VIDEO_URI);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, afterMediaItemId);
-        intent.putExtra(PARAM_FILENAME, uri);
-        intent.putExtra(PARAM_MEDIA_ITEM_RENDERING_MODE, renderingMode);
-        intent.putExtra(PARAM_THEME, themeId);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.AddVideoUri(projectPath, mediaItemId, afterMediaItemId,
+                uri, renderingMode, themeId));
     }
 
     /**
@@ -557,17 +778,34 @@ public class ApiService extends Service {
     public static void addMediaItemImageUri(Context context, String projectPath,
             String mediaItemId, String afterMediaItemId, Uri uri, int renderingMode,
             long durationMs, String themeId) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_ADD_IMAGE_URI);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, afterMediaItemId);
-        intent.putExtra(PARAM_FILENAME, uri);
-        intent.putExtra(PARAM_MEDIA_ITEM_RENDERING_MODE, renderingMode);
-        intent.putExtra(PARAM_DURATION, durationMs);
-        intent.putExtra(PARAM_THEME, themeId);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.AddImageUri(projectPath, mediaItemId, afterMediaItemId,
+                uri, renderingMode, durationMs, themeId));
+    }
+
+    /**
+     * Add several media items after the specified media item id. The media
+     * files are resolved and transformed in parallel and the media items are
+     * inserted in a single step, followed by a single preview generation.
+     *
+     * @param context The context
+     * @param projectPath The project path
+     * @param mediaItemIds The ids of the media items
+     * @param afterMediaItemId The id of the media item preceding the media items
+     * @param uris The media item URIs (images or videos)
+     * @param renderingMode The rendering mode
+     * @param imageDurationMs The duration of the image media items
+     * @param themeId The theme id
+     */
+    public static void addMediaItemsUri(Context context, String projectPath,
+            String[] mediaItemIds, String afterMediaItemId, Uri[] uris, int renderingMode,
+            long imageDurationMs, String themeId) {
+        if (mediaItemIds.length != uris.length) {
+            throw new IllegalArgumentException("Ids and URIs count mismatch: " +
+                    mediaItemIds.length + ", " + uris.length);
+        }
+
+        startCommand(context, new Command.AddUris(projectPath, mediaItemIds, afterMediaItemId, uris,
+                renderingMode, imageDurationMs, themeId));
     }
 
     /**
@@ -580,13 +818,7 @@ public class ApiService extends Service {
      */
     public static void loadMediaItem(Context context, String projectPath, Uri uri,
             String mimeType) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_LOAD);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_FILENAME, uri);
-        intent.putExtra(PARAM_ATTRIBUTES, mimeType);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.LoadMedia(projectPath, uri, mimeType));
     }
 
     /**
@@ -600,14 +832,25 @@ public class ApiService extends Service {
      */
     public static void moveMediaItem(Context context, String projectPath,
             String mediaItemId, String afterMediaItemId, String themeId) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_MOVE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, afterMediaItemId);
-        intent.putExtra(PARAM_THEME, themeId);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.MoveMediaItem(projectPath,
+                mediaItemId, afterMediaItemId, themeId));
+
+        // Move the media item in the model without waiting for the service.
+        // The service result is reconciled with the model when the request
+        // completes.
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applyMoveMediaItem(requestId, mediaItemId, afterMediaItemId);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot move media item: " + mediaItemId, ex);
+                return;
+            }
+
+            for (ApiServiceListener listener : mListeners.get(
+                    ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
+                listener.onMediaItemMoved(projectPath, mediaItemId, afterMediaItemId, null, null);
+            }
+        }
     }
 
     /**
@@ -620,13 +863,24 @@ public class ApiService extends Service {
      */
     public static void removeMediaItem(Context context, String projectPath, String mediaItemId,
             String themeId) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_REMOVE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_THEME, themeId);
+        final String requestId = startCommand(context, new Command.RemoveMediaItem(projectPath,
+                mediaItemId, themeId));
+
+        // The transition set by the theme at the removal position is added
+        // when the request completes
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applyRemoveMediaItem(requestId, mediaItemId);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot remove media item: " + mediaItemId, ex);
+                return;
+            }
 
-        startCommand(context, intent);
+            for (ApiServiceListener listener : mListeners.get(
+                    ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
+                listener.onMediaItemRemoved(projectPath, mediaItemId, null, null);
+            }
+        }
     }
 
     /**
@@ -638,13 +892,28 @@ public class ApiService extends Service {
      */
     public static void setMediaItemRenderingMode(Context context, String projectPath,
             String mediaItemId, int renderingMode) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_SET_RENDERING_MODE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_MEDIA_ITEM_RENDERING_MODE, renderingMode);
+        final String requestId = startCommand(context, new Command.SetMediaItemRenderingMode(
+                projectPath, mediaItemId, renderingMode));
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applySetMediaItemRenderingMode(requestId, mediaItemId,
+                        renderingMode);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot set the rendering mode of media item: " + mediaItemId, ex);
+            }
+        }
+    }
 
-        startCommand(context, intent);
+    /**
+     * Apply edits to several media items and transitions at once. The edits
+     * are applied in one pass: either all of them are applied or none is.
+     *
+     * @param context The context
+     * @param projectPath The project path
+     * @param bulkEdit The edits
+     */
+    public static void applyBulkEdit(Context context, String projectPath, BulkEdit bulkEdit) {
+        startCommand(context, new Command.ApplyBulkEdit(projectPath, bulkEdit.getEdits()));
     }
 
     /**
@@ -662,19 +931,8 @@ public class ApiService extends Service {
     public static void getMediaItemThumbnails(Context context,
             String projectPath, String mediaItemId, int width, int height,
             long startMs, long endMs, int count, int token, int[] indices) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_GET_THUMBNAILS);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_WIDTH, width);
-        intent.putExtra(PARAM_HEIGHT, height);
-        intent.putExtra(PARAM_START_TIME, startMs);
-        intent.putExtra(PARAM_END_TIME, endMs);
-        intent.putExtra(PARAM_COUNT, count);
-        intent.putExtra(PARAM_TOKEN, token);
-        intent.putExtra(PARAM_INDICES, indices);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.GetMediaItemThumbnails(projectPath, mediaItemId, width,
+                height, startMs, endMs, count, token, indices));
     }
 
     /**
@@ -687,13 +945,15 @@ public class ApiService extends Service {
      */
     public static void setMediaItemDuration(Context context, String projectPath,
             String mediaItemId, long durationMs) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_SET_DURATION);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_DURATION, durationMs);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.SetMediaItemDuration(
+                projectPath, mediaItemId, durationMs));
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applySetMediaItemDuration(requestId, mediaItemId, durationMs);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot set the duration of media item: " + mediaItemId, ex);
+            }
+        }
     }
 
     /**
@@ -707,14 +967,8 @@ public class ApiService extends Service {
      */
     public static void setMediaItemBoundaries(Context context, String projectPath,
             String mediaItemId, long beginBoundaryMs, long endBoundaryMs) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_SET_BOUNDARIES);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_BEGIN_BOUNDARY, beginBoundaryMs);
-        intent.putExtra(PARAM_END_BOUNDARY, endBoundaryMs);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetMediaItemBoundaries(projectPath, mediaItemId,
+                beginBoundaryMs, endBoundaryMs));
     }
 
     /**
@@ -727,13 +981,8 @@ public class ApiService extends Service {
      */
     public static void setMediaItemVolume(Context context, String projectPath,
             String mediaItemId, int volumePercentage) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_SET_VOLUME);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_VOLUME, volumePercentage);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetMediaItemVolume(projectPath, mediaItemId,
+                volumePercentage));
     }
 
     /**
@@ -746,13 +995,7 @@ public class ApiService extends Service {
      */
     public static void setMediaItemMute(Context context, String projectPath, String mediaItemId,
             boolean muted) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_SET_MUTE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_MUTE, muted);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetMediaItemMute(projectPath, mediaItemId, muted));
     }
 
     /**
@@ -768,12 +1011,7 @@ public class ApiService extends Service {
             return;
         }
 
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItemId);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.ExtractMediaItemAudioWaveform(projectPath, mediaItemId));
     }
 
     /**
@@ -785,20 +1023,8 @@ public class ApiService extends Service {
      * @return true if the extract audio waveform is pending
      */
     public static boolean isMediaItemAudioWaveformPending(String projectPath, String mediaItemId) {
-        for (Intent intent : mPendingIntents.values()) {
-            int op = intent.getIntExtra(PARAM_OP, -1);
-            if (op == OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM) {
-                String pp = intent.getStringExtra(PARAM_PROJECT_PATH);
-                if (pp.equals(projectPath)) {
-                    String mid = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                    if (mid.equals(mediaItemId)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
+        return mPendingRequests.isPending(OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM, projectPath,
+                mediaItemId);
     }
 
     /**
@@ -817,18 +1043,12 @@ public class ApiService extends Service {
     public static void insertAlphaTransition(Context context, String projectPath,
             String afterMediaItemId, String transitionId, long durationMs, int behavior,
             int maskRawResourceId, int blending, boolean invert) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_TRANSITION_INSERT_ALPHA);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, afterMediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, transitionId);
-        intent.putExtra(PARAM_DURATION, durationMs);
-        intent.putExtra(PARAM_TRANSITION_BEHAVIOR, behavior);
-        intent.putExtra(PARAM_TRANSITION_MASK, maskRawResourceId);
-        intent.putExtra(PARAM_TRANSITION_BLENDING, blending);
-        intent.putExtra(PARAM_TRANSITION_INVERT, invert);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.InsertAlphaTransition(
+                projectPath, transitionId, afterMediaItemId, durationMs, behavior,
+                maskRawResourceId, blending, invert));
+        applyInsertTransition(projectPath, requestId, new MovieTransition(TransitionAlpha.class,
+                transitionId, durationMs, behavior, maskRawResourceId, blending, invert),
+                afterMediaItemId);
     }
 
     /**
@@ -843,15 +1063,10 @@ public class ApiService extends Service {
      */
     public static void insertCrossfadeTransition(Context context, String projectPath,
             String afterMediaItemId, String transitionId, long durationMs, int behavior) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_TRANSITION_INSERT_CROSSFADE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, afterMediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, transitionId);
-        intent.putExtra(PARAM_DURATION, durationMs);
-        intent.putExtra(PARAM_TRANSITION_BEHAVIOR, behavior);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.InsertCrossfadeTransition(
+                projectPath, transitionId, afterMediaItemId, durationMs, behavior));
+        applyInsertTransition(projectPath, requestId, new MovieTransition(
+                TransitionCrossfade.class, transitionId, durationMs, behavior), afterMediaItemId);
     }
 
     /**
@@ -866,15 +1081,10 @@ public class ApiService extends Service {
      */
     public static void insertFadeBlackTransition(Context context, String projectPath,
             String afterMediaItemId, String transitionId, long durationMs, int behavior) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_TRANSITION_INSERT_FADE_BLACK);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, afterMediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, transitionId);
-        intent.putExtra(PARAM_DURATION, durationMs);
-        intent.putExtra(PARAM_TRANSITION_BEHAVIOR, behavior);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.InsertFadeBlackTransition(
+                projectPath, transitionId, afterMediaItemId, durationMs, behavior));
+        applyInsertTransition(projectPath, requestId, new MovieTransition(
+                TransitionFadeBlack.class, transitionId, durationMs, behavior), afterMediaItemId);
     }
 
     /**
@@ -891,16 +1101,36 @@ public class ApiService extends Service {
     public static void insertSlidingTransition(Context context, String projectPath,
             String afterMediaItemId, String transitionId, long durationMs, int behavior,
             int direction) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_TRANSITION_INSERT_SLIDING);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, afterMediaItemId);
-        intent.putExtra(PARAM_DURATION, durationMs);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, transitionId);
-        intent.putExtra(PARAM_TRANSITION_BEHAVIOR, behavior);
-        intent.putExtra(PARAM_TRANSITION_DIRECTION, direction);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.InsertSlidingTransition(
+                projectPath, transitionId, afterMediaItemId, durationMs, behavior, direction));
+        applyInsertTransition(projectPath, requestId, new MovieTransition(
+                TransitionSliding.class, transitionId, durationMs, behavior, direction),
+                afterMediaItemId);
+    }
+
+    /**
+     * Insert a transition in the model before the service inserts it
+     *
+     * @param projectPath The project path
+     * @param requestId The id of the service request
+     * @param transition The transition
+     * @param afterMediaItemId Insert the transition after the media item with this id
+     */
+    private static void applyInsertTransition(String projectPath, String requestId,
+            MovieTransition transition, String afterMediaItemId) {
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applyAddTransition(requestId, transition, afterMediaItemId);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot insert transition: " + transition.getId(), ex);
+                return;
+            }
+
+            for (ApiServiceListener listener : mListeners.get(
+                    ApiServiceListener.EVENT_TRANSITION, projectPath)) {
+                listener.onTransitionInserted(projectPath, transition, afterMediaItemId, null);
+            }
+        }
     }
 
     /**
@@ -911,12 +1141,21 @@ public class ApiService extends Service {
      * @param transitionId The id of the transition to remove
      */
     public static void removeTransition(Context context, String projectPath, String transitionId) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_TRANSITION_REMOVE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, transitionId);
+        final String requestId = startCommand(context, new Command.RemoveTransition(projectPath,
+                transitionId));
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applyRemoveTransition(requestId, transitionId);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot remove transition: " + transitionId, ex);
+                return;
+            }
 
-        startCommand(context, intent);
+            for (ApiServiceListener listener : mListeners.get(
+                    ApiServiceListener.EVENT_TRANSITION, projectPath)) {
+                listener.onTransitionRemoved(projectPath, transitionId, null);
+            }
+        }
     }
 
     /**
@@ -929,13 +1168,15 @@ public class ApiService extends Service {
      */
     public static void setTransitionDuration(Context context, String projectPath,
             String transitionId, long durationMs) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_TRANSITION_SET_DURATION);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, transitionId);
-        intent.putExtra(PARAM_DURATION, durationMs);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.SetTransitionDuration(
+                projectPath, transitionId, durationMs));
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applySetTransitionDuration(requestId, transitionId, durationMs);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot set the duration of transition: " + transitionId, ex);
+            }
+        }
     }
 
     /**
@@ -948,13 +1189,8 @@ public class ApiService extends Service {
      */
     public static void getTransitionThumbnails(Context context, String projectPath,
             String transitionId, int height) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_TRANSITION_GET_THUMBNAIL);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, transitionId);
-        intent.putExtra(PARAM_HEIGHT, height);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.GetTransitionThumbnails(projectPath, transitionId,
+                height));
     }
 
     /**
@@ -966,20 +1202,7 @@ public class ApiService extends Service {
      * @return true if the transition thumbnailing is in progress
      */
     public static boolean isTransitionThumbnailsPending(String projectPath, String transitionId) {
-        for (Intent intent : mPendingIntents.values()) {
-            int op = intent.getIntExtra(PARAM_OP, -1);
-            if (op == OP_TRANSITION_GET_THUMBNAIL) {
-                String pp = intent.getStringExtra(PARAM_PROJECT_PATH);
-                if (pp.equals(projectPath)) {
-                    String mid = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                    if (mid.equals(transitionId)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
+        return mPendingRequests.isPending(OP_TRANSITION_GET_THUMBNAIL, projectPath, transitionId);
     }
 
     /**
@@ -996,17 +1219,8 @@ public class ApiService extends Service {
      */
     public static void addEffectColor(Context context, String projectPath, String mediaItemId,
             String effectId, long startTimeMs, long durationMs, int type, int param) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_EFFECT_ADD_COLOR);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, effectId);
-        intent.putExtra(PARAM_START_TIME, startTimeMs);
-        intent.putExtra(PARAM_DURATION, durationMs);
-        intent.putExtra(PARAM_EFFECT_TYPE, type);
-        intent.putExtra(PARAM_EFFECT_PARAM, param);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.AddColorEffect(projectPath, effectId, mediaItemId,
+                startTimeMs, durationMs, type, param));
     }
 
     /**
@@ -1024,17 +1238,8 @@ public class ApiService extends Service {
     public static void addEffectKenBurns(Context context, String projectPath,
             String mediaItemId, String effectId, long startTimeMs, long durationMs,
             Rect startRect, Rect endRect) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_EFFECT_ADD_IMAGE_KEN_BURNS);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, effectId);
-        intent.putExtra(PARAM_START_TIME, startTimeMs);
-        intent.putExtra(PARAM_DURATION, durationMs);
-        intent.putExtra(PARAM_MEDIA_ITEM_START_RECT, startRect);
-        intent.putExtra(PARAM_MEDIA_ITEM_END_RECT, endRect);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.AddKenBurnsEffect(projectPath, effectId, mediaItemId,
+                startTimeMs, durationMs, startRect, endRect));
     }
 
     /**
@@ -1047,13 +1252,7 @@ public class ApiService extends Service {
      */
     public static void removeEffect(Context context, String projectPath, String mediaItemId,
             String effectId) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_EFFECT_REMOVE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, effectId);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.RemoveEffect(projectPath, effectId, mediaItemId));
     }
 
     /**
@@ -1068,16 +1267,24 @@ public class ApiService extends Service {
      */
     public static void addOverlay(Context context, String projectPath, String mediaItemId,
             String overlayId, Bundle userAttributes, long startTimeMs, long durationMs) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_OVERLAY_ADD);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, overlayId);
-        intent.putExtra(PARAM_START_TIME, startTimeMs);
-        intent.putExtra(PARAM_DURATION, durationMs);
-        intent.putExtra(PARAM_ATTRIBUTES, userAttributes);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.AddOverlay(projectPath,
+                overlayId, mediaItemId, userAttributes, startTimeMs, durationMs));
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            final MovieOverlay overlay = new MovieOverlay(overlayId, startTimeMs, durationMs,
+                    MovieOverlay.getTitle(userAttributes), MovieOverlay.getSubtitle(userAttributes),
+                    MovieOverlay.getType(userAttributes));
+            try {
+                mVideoProject.applyAddOverlay(requestId, mediaItemId, overlay);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot add overlay: " + overlayId, ex);
+                return;
+            }
+
+            for (ApiServiceListener listener : mListeners.get(
+                    ApiServiceListener.EVENT_OVERLAY, projectPath)) {
+                listener.onOverlayAdded(projectPath, overlay, mediaItemId, null);
+            }
+        }
     }
 
     /**
@@ -1090,13 +1297,21 @@ public class ApiService extends Service {
      */
     public static void removeOverlay(Context context, String projectPath, String mediaItemId,
             String overlayId) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_OVERLAY_REMOVE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, overlayId);
+        final String requestId = startCommand(context, new Command.RemoveOverlay(projectPath,
+                overlayId, mediaItemId));
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applyRemoveOverlay(requestId, mediaItemId, overlayId);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot remove overlay: " + overlayId, ex);
+                return;
+            }
 
-        startCommand(context, intent);
+            for (ApiServiceListener listener : mListeners.get(
+                    ApiServiceListener.EVENT_OVERLAY, projectPath)) {
+                listener.onOverlayRemoved(projectPath, overlayId, mediaItemId, null);
+            }
+        }
     }
 
     /**
@@ -1110,14 +1325,16 @@ public class ApiService extends Service {
      */
     public static void setOverlayStartTime(Context context, String projectPath, String mediaItemId,
             String overlayId, long startTimeMs) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_OVERLAY_SET_START_TIME);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, overlayId);
-        intent.putExtra(PARAM_START_TIME, startTimeMs);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.SetOverlayStartTime(
+                projectPath, overlayId, mediaItemId, startTimeMs));
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applySetOverlayStartTime(requestId, mediaItemId, overlayId,
+                        startTimeMs);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot set the start time of overlay: " + overlayId, ex);
+            }
+        }
     }
 
     /**
@@ -1131,14 +1348,16 @@ public class ApiService extends Service {
      */
     public static void setOverlayDuration(Context context, String projectPath, String mediaItemId,
             String overlayId, long durationMs) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_OVERLAY_SET_DURATION);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, overlayId);
-        intent.putExtra(PARAM_DURATION, durationMs);
-
-        startCommand(context, intent);
+        final String requestId = startCommand(context, new Command.SetOverlayDuration(
+                projectPath, overlayId, mediaItemId, durationMs));
+        if (mVideoProject != null && mVideoProject.getPath().equals(projectPath)) {
+            try {
+                mVideoProject.applySetOverlayDuration(requestId, mediaItemId, overlayId,
+                        durationMs);
+            } catch (IllegalArgumentException ex) {
+                Log.w(TAG, "Cannot set the duration of overlay: " + overlayId, ex);
+            }
+        }
     }
 
     /**
@@ -1152,14 +1371,8 @@ public class ApiService extends Service {
      */
     public static void setOverlayUserAttributes(Context context, String projectPath,
             String mediaItemId, String overlayId, Bundle userAttributes) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_OVERLAY_SET_ATTRIBUTES);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID, mediaItemId);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, overlayId);
-        intent.putExtra(PARAM_ATTRIBUTES, userAttributes);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetOverlayUserAttributes(projectPath, overlayId,
+                mediaItemId, userAttributes));
     }
 
     /**
@@ -1173,14 +1386,7 @@ public class ApiService extends Service {
      */
     public static void addAudioTrack(Context context, String projectPath, String id, Uri uri,
             boolean loop) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_AUDIO_TRACK_ADD);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, id);
-        intent.putExtra(PARAM_FILENAME, uri);
-        intent.putExtra(PARAM_LOOP, loop);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.AddAudioTrack(projectPath, id, uri, loop));
     }
 
     /**
@@ -1191,12 +1397,7 @@ public class ApiService extends Service {
      * @param audioTrackId The id of the audio track to remove
      */
     public static void removeAudioTrack(Context context, String projectPath, String audioTrackId) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_AUDIO_TRACK_REMOVE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, audioTrackId);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.RemoveAudioTrack(projectPath, audioTrackId));
     }
 
     /**
@@ -1210,14 +1411,8 @@ public class ApiService extends Service {
      */
     public static void setAudioTrackBoundaries(Context context, String projectPath,
             String audioTrackId, long beginBoundaryMs, long endBoundaryMs) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_AUDIO_TRACK_SET_BOUNDARIES);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, audioTrackId);
-        intent.putExtra(PARAM_BEGIN_BOUNDARY, beginBoundaryMs);
-        intent.putExtra(PARAM_END_BOUNDARY, endBoundaryMs);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetAudioTrackBoundaries(projectPath, audioTrackId,
+                beginBoundaryMs, endBoundaryMs));
     }
 
     /**
@@ -1230,13 +1425,7 @@ public class ApiService extends Service {
      */
     public static void setAudioTrackLoop(Context context, String projectPath, String audioTrackId,
             boolean loop) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_AUDIO_TRACK_SET_LOOP);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, audioTrackId);
-        intent.putExtra(PARAM_LOOP, loop);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetAudioTrackLoop(projectPath, audioTrackId, loop));
     }
 
     /**
@@ -1249,13 +1438,7 @@ public class ApiService extends Service {
      */
     public static void setAudioTrackDuck(Context context, String projectPath, String audioTrackId,
             boolean duck) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_AUDIO_TRACK_SET_DUCK);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, audioTrackId);
-        intent.putExtra(PARAM_DUCK, duck);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetAudioTrackDuck(projectPath, audioTrackId, duck));
     }
 
     /**
@@ -1268,13 +1451,8 @@ public class ApiService extends Service {
      */
     public static void setAudioTrackVolume(Context context, String projectPath,
             String audioTrackId, int volumePercentage) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_AUDIO_TRACK_SET_VOLUME);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, audioTrackId);
-        intent.putExtra(PARAM_VOLUME, volumePercentage);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetAudioTrackVolume(projectPath, audioTrackId,
+                volumePercentage));
     }
 
     /**
@@ -1287,13 +1465,7 @@ public class ApiService extends Service {
      */
     public static void setAudioTrackMute(Context context, String projectPath, String audioTrackId,
             boolean muted) {
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_AUDIO_TRACK_SET_MUTE);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, audioTrackId);
-        intent.putExtra(PARAM_MUTE, muted);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.SetAudioTrackMute(projectPath, audioTrackId, muted));
     }
 
     /**
@@ -1308,12 +1480,8 @@ public class ApiService extends Service {
         if (isAudioTrackAudioWaveformPending(projectPath, audioTrackId)) {
             return;
         }
-        final Intent intent = mIntentPool.get(context, ApiService.class);
-        intent.putExtra(PARAM_OP, OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM);
-        intent.putExtra(PARAM_PROJECT_PATH, projectPath);
-        intent.putExtra(PARAM_STORYBOARD_ITEM_ID, audioTrackId);
-
-        startCommand(context, intent);
+        startCommand(context, new Command.ExtractAudioTrackAudioWaveform(projectPath,
+                audioTrackId));
     }
 
     /**
@@ -1326,48 +1494,43 @@ public class ApiService extends Service {
      */
     public static boolean isAudioTrackAudioWaveformPending(String projectPath,
             String audioTrackId) {
-        for (Intent intent : mPendingIntents.values()) {
-            int op = intent.getIntExtra(PARAM_OP, -1);
-            if (op == OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM) {
-                String pp = intent.getStringExtra(PARAM_PROJECT_PATH);
-                if (pp.equals(projectPath)) {
-                    String mid = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                    if (mid.equals(audioTrackId)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
+        return mPendingRequests.isPending(OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM, projectPath,
+                audioTrackId);
     }
 
     /**
-     * Start the service (if it is not running) with the specified Intent
+     * Start the service (if it is not running) and submit a command
      *
      * @param context The context
-     * @param intent The intent
+     * @param command The command
      *
      * @return The request id of the pending request
      */
-    private static String startCommand(Context context, Intent intent) {
-        final String requestId = StringUtils.randomString(8);
-        intent.putExtra(PARAM_REQUEST_ID, requestId);
-        mPendingIntents.put(requestId, intent);
-
-        context.startService(intent);
-
-        final String projectPath = intent.getStringExtra(PARAM_PROJECT_PATH);
-        if (projectPath != null) {
-            final boolean projectEdited = isProjectBeingEdited(projectPath);
-            if (projectEdited) {
-                for (ApiServiceListener listener : mListeners) {
-                    listener.onProjectEditState(projectPath, projectEdited);
-                }
+    private static String startCommand(Context context, Command command) {
+        mPendingRequests.add(command, isEditingOperation(command.getOp()));
+
+        // The commands which wait for the service to start are delivered by
+        // the system. The later commands are delivered the same way until
+        // they are all received, so the requests are processed in order.
+        if (mService != null && Looper.myLooper() == Looper.getMainLooper()
+                && mUndeliveredCommands.get() == 0) {
+            // The service runs in this process: dispatch the command without
+            // marshalling it through the system
+            mService.dispatch(command);
+        } else {
+            // The Intent only wakes up the service. The command is looked up
+            // by its request id.
+            final Intent intent = mIntentPool.get(context, ApiService.class);
+            intent.putExtra(PARAM_REQUEST_ID, command.getRequestId());
+            mUndeliveredCommands.incrementAndGet();
+            if (context.startService(intent) == null) {
+                mUndeliveredCommands.decrementAndGet();
+                Log.e(TAG, "Cannot start the service for operation: " + command.getOp());
             }
+            mIntentPool.put(intent);
         }
 
-        return requestId;
+        return command.getRequestId();
     }
 
     @Override
@@ -1375,19 +1538,47 @@ public class ApiService extends Service {
         super.onCreate();
         mHandler = new Handler(Looper.getMainLooper());
 
-        mVideoThread = new IntentProcessor("VideoServiceThread");
+        mVideoThread = new CommandProcessor("VideoServiceThread");
         mVideoThread.start();
 
-        mAudioThread = new IntentProcessor("AudioServiceThread");
+        mAudioThread = new CommandProcessor("AudioServiceThread");
         mAudioThread.start();
 
-        mThumbnailThread = new IntentProcessor("ThumbnailServiceThread");
+        mThumbnailThread = new CommandProcessor("ThumbnailServiceThread");
         mThumbnailThread.start();
+
+        if (mExportQueue == null) {
+            mExportQueue = new ExportQueue(new File(getFilesDir(), EXPORT_QUEUE_FILENAME),
+                    mMaxConcurrentExports);
+        }
+        mExportQueue.start(mExporter);
+
+        mService = this;
     }
 
     @Override
     public int onStartCommand(final Intent intent, int flags, int startId) {
-        final int op = intent.getIntExtra(PARAM_OP, -1);
+        mUndeliveredCommands.decrementAndGet();
+        final String requestId = intent.getStringExtra(PARAM_REQUEST_ID);
+        final Command command = mPendingRequests.get(requestId);
+        if (command != null) {
+            dispatch(command);
+        } else {
+            Log.w(TAG, "No pending request: " + requestId);
+        }
+
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Submit a command to the thread which processes its operation. The
+     * commands are received by onStartCommand() when the service starts and
+     * directly from startCommand() while the service is running.
+     *
+     * @param command The command
+     */
+    private void dispatch(Command command) {
+        final int op = command.getOp();
         switch(op) {
             case OP_VIDEO_EDITOR_LOAD_PROJECTS:
             case OP_VIDEO_EDITOR_CREATE:
@@ -1397,21 +1588,20 @@ public class ApiService extends Service {
             case OP_VIDEO_EDITOR_DELETE:
             case OP_VIDEO_EDITOR_SET_ASPECT_RATIO:
             case OP_VIDEO_EDITOR_APPLY_THEME:
+            case OP_VIDEO_EDITOR_BULK_EDIT:
             case OP_VIDEO_EDITOR_EXPORT:
             case OP_VIDEO_EDITOR_CANCEL_EXPORT:
-            case OP_VIDEO_EDITOR_EXPORT_STATUS:
 
             case OP_MEDIA_ITEM_ADD_VIDEO_URI:
             case OP_MEDIA_ITEM_ADD_IMAGE_URI:
+            case OP_MEDIA_ITEM_ADD_URIS:
             case OP_MEDIA_ITEM_MOVE:
             case OP_MEDIA_ITEM_REMOVE:
             case OP_MEDIA_ITEM_SET_RENDERING_MODE:
             case OP_MEDIA_ITEM_SET_DURATION:
             case OP_MEDIA_ITEM_SET_BOUNDARIES:
             case OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM:
-            case OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM_STATUS:
             case OP_MEDIA_ITEM_LOAD:
-            case OP_MEDIA_ITEM_LOAD_STATUS:
 
             case OP_EFFECT_ADD_COLOR:
             case OP_EFFECT_ADD_IMAGE_KEN_BURNS:
@@ -1433,42 +1623,38 @@ public class ApiService extends Service {
             case OP_AUDIO_TRACK_ADD:
             case OP_AUDIO_TRACK_REMOVE:
             case OP_AUDIO_TRACK_SET_BOUNDARIES:
-            case OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM:
-            case OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM_STATUS: {
-                mVideoThread.submit(intent);
+            case OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM: {
+                mVideoThread.submit(command);
                 break;
             }
 
             case OP_TRANSITION_GET_THUMBNAIL: {
-                mThumbnailThread.submit(intent);
+                mThumbnailThread.submit(command);
                 break;
             }
 
             case OP_MEDIA_ITEM_GET_THUMBNAILS: {
-                final String projectPath = intent.getStringExtra(PARAM_PROJECT_PATH);
-                final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final int token = intent.getIntExtra(PARAM_TOKEN, 0);
+                final String projectPath = command.getProjectPath();
+                final String mediaItemId = command.getItemId();
+                final int token = ((Command.GetMediaItemThumbnails)command).getToken();
                 // Cancel any pending thumbnail request for the same media item
                 // but with a different token
-                Iterator<Intent> intentQueueIterator = mThumbnailThread.getIntentQueueIterator();
-                while (intentQueueIterator.hasNext()) {
-                    Intent qIntent = intentQueueIterator.next();
-                    int opi = qIntent.getIntExtra(PARAM_OP, -1);
-                    String pp = qIntent.getStringExtra(PARAM_PROJECT_PATH);
-                    String mid = qIntent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                    int tk = qIntent.getIntExtra(PARAM_TOKEN, 0);
-                    if (opi == op && pp.equals(projectPath) && mid.equals(mediaItemId)
-                            && tk != token) {
-                        boolean canceled = mThumbnailThread.cancel(qIntent);
+                final Iterator<Command> commandQueueIterator =
+                    mThumbnailThread.getCommandQueueIterator();
+                while (commandQueueIterator.hasNext()) {
+                    final Command qCommand = commandQueueIterator.next();
+                    if (qCommand.getOp() == op && qCommand.getProjectPath().equals(projectPath)
+                            && qCommand.getItemId().equals(mediaItemId)
+                            && ((Command.GetMediaItemThumbnails)qCommand).getToken() != token) {
+                        boolean canceled = mThumbnailThread.cancel(qCommand);
                         if (canceled) {
                             logd("Canceled operation: " + op + " for media item" + mediaItemId);
-                            mPendingIntents.remove(qIntent.getStringExtra(PARAM_REQUEST_ID));
-                            mIntentPool.put(qIntent);
+                            mPendingRequests.remove(qCommand.getRequestId());
                         }
                         break;
                     }
                 }
-                mThumbnailThread.submit(intent);
+                mThumbnailThread.submit(command);
                 break;
             }
 
@@ -1479,7 +1665,7 @@ public class ApiService extends Service {
             case OP_AUDIO_TRACK_SET_MUTE:
             case OP_AUDIO_TRACK_SET_LOOP:
             case OP_AUDIO_TRACK_SET_DUCK: {
-                mAudioThread.submit(intent);
+                mAudioThread.submit(command);
                 break;
             }
 
@@ -1488,14 +1674,19 @@ public class ApiService extends Service {
                 break;
             }
         }
-
-        return START_NOT_STICKY;
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
 
+        if (mService == this) {
+            mService = null;
+        }
+
+        logd("Intent pool high water mark: " + mIntentPool.getHighWaterMark() + ", misses: "
+                + mIntentPool.getMisses() + ", drops: " + mIntentPool.getDrops());
+
         if (mThumbnailThread != null) {
             mThumbnailThread.quit();
             mThumbnailThread = null;
@@ -1518,21 +1709,23 @@ public class ApiService extends Service {
     }
 
     /**
-     * Process the intent
+     * Process the command
      *
-     * @param intent The intent
+     * @param command The command
      */
-    public void processIntent(final Intent intent) {
-        final int op = intent.getIntExtra(PARAM_OP, -1);
+    public void processCommand(final Command command) {
+        final int op = command.getOp();
         VideoEditor videoEditor = null;
         try {
-            final String projectPath = intent.getStringExtra(PARAM_PROJECT_PATH);
+            final String projectPath = command.getProjectPath();
             // Check if the project path matches the current VideoEditor project
             switch (op) {
                 case OP_VIDEO_EDITOR_LOAD_PROJECTS:
                 case OP_VIDEO_EDITOR_CREATE:
                 case OP_VIDEO_EDITOR_LOAD:
-                case OP_VIDEO_EDITOR_DELETE: {
+                case OP_VIDEO_EDITOR_DELETE:
+                case OP_VIDEO_EDITOR_EXPORT:
+                case OP_VIDEO_EDITOR_CANCEL_EXPORT: {
                     break;
                 }
 
@@ -1561,7 +1754,7 @@ public class ApiService extends Service {
                                     try {
                                         projects.add(VideoEditorProject.fromXml(null, pp));
                                     } catch (FileNotFoundException ex) {
-                                        Log.w(TAG, "processIntent: Project file not found: " + pp);
+                                        Log.w(TAG, "processCommand: Project file not found: " + pp);
                                         FileUtils.deleteDir(new File(pp));
                                     } catch (Exception ex) {
                                         ex.printStackTrace();
@@ -1588,11 +1781,12 @@ public class ApiService extends Service {
                         }
                     }
 
-                    completeRequest(intent, videoEditor, null, projects, null, true);
+                    completeRequest(command, videoEditor, null, projects, null, true);
                     break;
                 }
 
                 case OP_VIDEO_EDITOR_CREATE: {
+                    final Command.CreateProject createProject = (Command.CreateProject)command;
                     logd("OP_VIDEO_EDITOR_CREATE: " + projectPath);
 
                     try {
@@ -1601,8 +1795,16 @@ public class ApiService extends Service {
 
                         videoEditor = VideoEditorFactory.create(projectPath);
 
+                        // Prepare the photos in parallel
+                        final String[] photos = createProject.getPhotos();
+                        final ImportFile[] photoFiles = new ImportFile[photos.length];
+                        for (int i = 0; i < photos.length; i++) {
+                            photoFiles[i] = new ImportFile(generateId(), null, photos[i], true);
+                        }
+                        prepareImportFiles(projectPath, photoFiles);
+
                         // Add the movies to the timeline
-                        final String[] movies = intent.getStringArrayExtra(PARAM_MOVIES_FILENAMES);
+                        final String[] movies = createProject.getMovies();
                         for (int i = 0; i < movies.length; i++) {
                             final MediaItem mediaItem = new MediaVideoItem(videoEditor,
                                     generateId(), movies[i],
@@ -1611,18 +1813,17 @@ public class ApiService extends Service {
                         }
 
                         // Add the photos to the timeline
-                        final String[] photos = intent.getStringArrayExtra(PARAM_PHOTOS_FILENAMES);
-                        for (int i = 0; i < photos.length; i++) {
+                        for (int i = 0; i < photoFiles.length; i++) {
                             final MediaItem mediaItem = new MediaImageItem(videoEditor,
-                                    generateId(), photos[i],
+                                    photoFiles[i].mMediaItemId, photoFiles[i].mFilename,
                                     MediaItemUtils.getDefaultImageDuration(),
                                     MediaItem.RENDERING_MODE_BLACK_BORDER);
                             videoEditor.addMediaItem(mediaItem);
                         }
 
                         // Create the project
-                        final String projectName = intent.getStringExtra(PARAM_PROJECT_NAME);
-                        final String themeId = intent.getStringExtra(PARAM_THEME);
+                        final String projectName = createProject.getProjectName();
+                        final String themeId = createProject.getThemeId();
                         if (themeId != null) {
                             applyThemeToMovie(videoEditor, themeId);
                         }
@@ -1647,9 +1848,9 @@ public class ApiService extends Service {
                         mGeneratePreviewListener = new ServiceMediaProcessingProgressListener(
                                 projectPath);
 
-                        completeRequest(intent, videoEditor, null, videoProject, null, false);
+                        completeRequest(command, videoEditor, null, videoProject, null, false);
                         generatePreview(videoEditor, true);
-                        completeRequest(intent);
+                        completeRequest(command);
                     } catch (Exception ex) {
                         if (videoEditor != null) {
                             videoEditor.release();
@@ -1682,9 +1883,9 @@ public class ApiService extends Service {
                             mGeneratePreviewListener = new ServiceMediaProcessingProgressListener(
                                     projectPath);
 
-                            completeRequest(intent, videoEditor, null, videoProject, null, false);
+                            completeRequest(command, videoEditor, null, videoProject, null, false);
                             generatePreview(videoEditor, true);
-                            completeRequest(intent);
+                            completeRequest(command);
                         } catch (Exception ex) {
                             if (videoEditor != null) {
                                 videoEditor.release();
@@ -1694,57 +1895,79 @@ public class ApiService extends Service {
                         }
                     } else {  // The project is already loaded.
                         logd("OP_VIDEO_EDITOR_LOAD: Was already loaded: " + projectPath);
-                        completeRequest(intent, videoEditor, null, null, null, true);
+                        completeRequest(command, videoEditor, null, null, null, true);
                     }
 
                     break;
                 }
 
                 case OP_VIDEO_EDITOR_SET_ASPECT_RATIO: {
+                    final Command.SetAspectRatio setAspectRatio = (Command.SetAspectRatio)command;
                     logd("OP_VIDEO_EDITOR_SET_ASPECT_RATIO");
 
-                    videoEditor.setAspectRatio(intent.getIntExtra(PARAM_ASPECT_RATIO,
-                            MediaProperties.ASPECT_RATIO_UNDEFINED));
+                    videoEditor.setAspectRatio(setAspectRatio.getAspectRatio());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_VIDEO_EDITOR_APPLY_THEME: {
+                    final Command.ApplyTheme applyTheme = (Command.ApplyTheme)command;
                     logd("OP_VIDEO_EDITOR_APPLY_THEME");
 
                     // Apply the theme
-                    applyThemeToMovie(videoEditor, intent.getStringExtra(PARAM_THEME));
+                    final TimelineDelta.Snapshot snapshot =
+                        new TimelineDelta.Snapshot(videoEditor);
+                    applyThemeToMovie(videoEditor, applyTheme.getThemeId());
+
+                    final TimelineDelta delta = new TimelineDelta();
+                    delta.addChanges(snapshot, videoEditor);
+                    completeRequest(command, videoEditor, null, delta, null, false);
+                    generatePreview(videoEditor, true);
+                    completeRequest(command);
+                    break;
+                }
+
+                case OP_VIDEO_EDITOR_BULK_EDIT: {
+                    final Command.ApplyBulkEdit applyBulkEdit = (Command.ApplyBulkEdit)command;
+                    final List<Bundle> edits = applyBulkEdit.getEdits();
+                    logd("OP_VIDEO_EDITOR_BULK_EDIT: " + edits.size());
 
-                    final List<MovieMediaItem> mediaItems =
-                            copyMediaItems(videoEditor.getAllMediaItems());
-                    final List<MovieAudioTrack> audioTracks =
-                            copyAudioTracks(videoEditor.getAllAudioTracks());
+                    final BulkEdit.Result result = applyBulkEdit(videoEditor, edits);
 
-                    completeRequest(intent, videoEditor, null, mediaItems, audioTracks, false);
+                    completeRequest(command, videoEditor, null, result, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_VIDEO_EDITOR_EXPORT: {
+                    final Command.ExportMovie exportMovie = (Command.ExportMovie)command;
                     logd("OP_VIDEO_EDITOR_EXPORT");
-                    exportMovie(videoEditor, intent);
+                    // Save the edits applied so far if the project is loaded
+                    videoEditor = getVideoEditor(projectPath);
+                    if (videoEditor != null) {
+                        videoEditor.save();
+                    }
+
+                    // The request id identifies the job. The request
+                    // completes when the job finishes.
+                    final String jobId = command.getRequestId();
+                    final File snapshotDir = createExportSnapshot(projectPath, jobId);
+                    mExportQueue.submit(new ExportJob(jobId, projectPath,
+                            snapshotDir.getAbsolutePath(), exportMovie.getFilename(),
+                            exportMovie.getHeight(),
+                            exportMovie.getBitrate()));
                     break;
                 }
 
                 case OP_VIDEO_EDITOR_CANCEL_EXPORT: {
+                    final Command.CancelExport cancelExport = (Command.CancelExport)command;
                     logd("OP_VIDEO_EDITOR_CANCEL_EXPORT");
-                    videoEditor.cancelExport(intent.getStringExtra(PARAM_FILENAME));
-                    completeRequest(intent, videoEditor, null, null, null, true);
-                    break;
-                }
-
-                case OP_VIDEO_EDITOR_EXPORT_STATUS: {
-                    logd("OP_VIDEO_EDITOR_EXPORT_STATUS");
-                    completeRequest(intent, videoEditor, null, null, null, true);
+                    mExportQueue.cancel(projectPath, cancelExport.getFilename());
+                    completeRequest(command, videoEditor, null, null, null, true);
                     break;
                 }
 
@@ -1757,56 +1980,45 @@ public class ApiService extends Service {
                         videoProject.saveToXml();
                     }
 
-                    completeRequest(intent, videoEditor, null, null, null, true);
+                    completeRequest(command, videoEditor, null, null, null, true);
                     break;
                 }
 
                 case OP_VIDEO_EDITOR_RELEASE: {
                     logd("OP_VIDEO_EDITOR_RELEASE: " + projectPath);
                     releaseEditor(projectPath);
-                    completeRequest(intent, videoEditor, null, null, null, true);
+                    completeRequest(command, videoEditor, null, null, null, true);
                     break;
                 }
 
                 case OP_VIDEO_EDITOR_DELETE: {
                     logd("OP_VIDEO_EDITOR_DELETE: " + projectPath);
                     releaseEditor(projectPath);
+                    // The exports of the project use snapshots in the project folder
+                    mExportQueue.cancelAll(projectPath);
+                    synchronized (mExportCaches) {
+                        mExportCaches.remove(projectPath);
+                    }
                     // Delete all the files and the project folder.
                     FileUtils.deleteDir(new File(projectPath));
-                    completeRequest(intent, videoEditor, null, null, null, true);
+                    completeRequest(command, videoEditor, null, null, null, true);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_ADD_VIDEO_URI: {
-                    logd("OP_MEDIA_ITEM_ADD_VIDEO_URI: " +
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
-                    final Uri data = intent.getParcelableExtra(PARAM_FILENAME);
-                    String filename = null;
-                    // Get the filename
-                    Cursor cursor = null;
-                    try {
-                        cursor = getContentResolver().query(data,
-                                new String[] {Video.Media.DATA}, null, null, null);
-                        if (cursor.moveToFirst()) {
-                            filename = cursor.getString(0);
-                        }
-                    } finally {
-                        if (cursor != null) {
-                            cursor.close();
-                        }
-                    }
-
-                    if (filename == null) {
-                        throw new IllegalArgumentException("Media file not found: " + data);
-                    }
+                    final Command.AddVideoUri addVideoUri = (Command.AddVideoUri)command;
+                    logd("OP_MEDIA_ITEM_ADD_VIDEO_URI: " + command.getItemId());
+                    final Uri data = addVideoUri.getUri();
+                    final String filename = getVideoFilename(data);
+                    probeVideo(filename);
 
                     final MediaItem mediaItem = new MediaVideoItem(videoEditor,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
+                            command.getItemId(),
                             filename,
-                            intent.getIntExtra(PARAM_MEDIA_ITEM_RENDERING_MODE, 0));
+                            addVideoUri.getRenderingMode());
 
                     videoEditor.insertMediaItem(mediaItem,
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            addVideoUri.getAfterMediaItemId());
 
                     // If this is the first media item, change the aspect ratio
                     final Integer aspectRatio;
@@ -1818,64 +2030,34 @@ public class ApiService extends Service {
                     }
 
                     // Apply the theme if any
-                    final String themeId = intent.getStringExtra(PARAM_THEME);
+                    final String themeId = addVideoUri.getThemeId();
                     if (themeId != null) {
                         applyThemeToMediaItem(videoEditor, themeId, mediaItem);
                     }
 
-                    completeRequest(intent, videoEditor, null, new MovieMediaItem(mediaItem),
+                    completeRequest(command, videoEditor, null, new MovieMediaItem(mediaItem),
                             aspectRatio, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_ADD_IMAGE_URI: {
+                    final Command.AddImageUri addImageUri = (Command.AddImageUri)command;
                     logd("OP_MEDIA_ITEM_ADD_IMAGE_URI: "
-                        + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                        + command.getItemId());
 
-                    final Uri data = intent.getParcelableExtra(PARAM_FILENAME);
-                    String filename = null;
-                    // Get the filename
-                    Cursor cursor = null;
-                    try {
-                        cursor = getContentResolver().query(data,
-                                new String[] {Images.Media.DATA, Images.Media.MIME_TYPE},
-                                null, null, null);
-                        if (cursor.moveToFirst()) {
-                            filename = cursor.getString(0);
-                            final String mimeType = cursor.getString(1);
-                            if ("image/jpeg".equals(mimeType)) {
-                                try {
-                                    final File outputFile = new File(projectPath,
-                                            "gallery_image_" + generateId() + ".jpg");
-                                    if (ImageUtils.transformJpeg(filename, outputFile)) {
-                                        filename = outputFile.getAbsolutePath();
-                                    }
-                                } catch (Exception ex) {
-                                    // Ignore the exception and continue
-                                    Log.w(TAG, "Could not transform JPEG: " + filename, ex);
-                                }
-                            }
-                        }
-                    } finally {
-                        if (cursor != null) {
-                            cursor.close();
-                        }
-                    }
-
-                    if (filename == null) {
-                        throw new IllegalArgumentException("Media file not found: " + data);
-                    }
+                    final Uri data = addImageUri.getUri();
+                    final String filename = getImageFilename(projectPath, data);
 
                     final MediaItem mediaItem = new MediaImageItem(videoEditor,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
+                            command.getItemId(),
                             filename,
-                            intent.getLongExtra(PARAM_DURATION, 0),
-                            intent.getIntExtra(PARAM_MEDIA_ITEM_RENDERING_MODE, 0));
+                            addImageUri.getDurationMs(),
+                            addImageUri.getRenderingMode());
 
                     videoEditor.insertMediaItem(mediaItem,
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            addImageUri.getAfterMediaItemId());
 
                     // If this is the first media item, change the aspect ratio
                     final Integer aspectRatio;
@@ -1887,114 +2069,191 @@ public class ApiService extends Service {
                     }
 
                     // Apply the theme if any
-                    final String themeId = intent.getStringExtra(PARAM_THEME);
+                    final String themeId = addImageUri.getThemeId();
                     if (themeId != null) {
                         applyThemeToMediaItem(videoEditor, themeId, mediaItem);
                     }
 
-                    completeRequest(intent, videoEditor, null, new MovieMediaItem(mediaItem),
+                    completeRequest(command, videoEditor, null, new MovieMediaItem(mediaItem),
                             aspectRatio, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
+                    break;
+                }
+
+                case OP_MEDIA_ITEM_ADD_URIS: {
+                    final Command.AddUris addUris = (Command.AddUris)command;
+                    final String[] mediaItemIds = addUris.getMediaItemIds();
+                    final Uri[] uris = addUris.getUris();
+                    logd("OP_MEDIA_ITEM_ADD_URIS: " + uris.length);
+
+                    // Resolve and transform the files in parallel
+                    final ImportFile[] files = new ImportFile[uris.length];
+                    for (int i = 0; i < uris.length; i++) {
+                        files[i] = new ImportFile(mediaItemIds[i], uris[i], null, false);
+                    }
+                    prepareImportFiles(projectPath, files);
+
+                    // Insert all the media items before generating the preview
+                    final boolean firstMediaItems = videoEditor.getAllMediaItems().size() == 0;
+                    final int renderingMode = addUris.getRenderingMode();
+                    final long imageDurationMs = addUris.getImageDurationMs();
+                    final String themeId = addUris.getThemeId();
+                    final List<MediaItem> addedMediaItems = new ArrayList<MediaItem>();
+                    final Map<String, Class<?>> failedMediaItems =
+                        new HashMap<String, Class<?>>();
+                    String afterMediaItemId = addUris.getAfterMediaItemId();
+                    Exception exception = null;
+                    for (ImportFile file : files) {
+                        if (file.mException == null) {
+                            try {
+                                final MediaItem mediaItem;
+                                if (file.mImage) {
+                                    mediaItem = new MediaImageItem(videoEditor, file.mMediaItemId,
+                                            file.mFilename, imageDurationMs, renderingMode);
+                                } else {
+                                    mediaItem = new MediaVideoItem(videoEditor, file.mMediaItemId,
+                                            file.mFilename, renderingMode);
+                                }
+
+                                videoEditor.insertMediaItem(mediaItem, afterMediaItemId);
+                                if (themeId != null) {
+                                    applyThemeToMediaItem(videoEditor, themeId, mediaItem);
+                                }
+
+                                addedMediaItems.add(mediaItem);
+                                afterMediaItemId = mediaItem.getId();
+                            } catch (Exception ex) {
+                                Log.w(TAG, "Cannot add media item: " + file.mFilename, ex);
+                                file.mException = ex;
+                            }
+                        }
+
+                        if (file.mException != null) {
+                            failedMediaItems.put(file.mMediaItemId, file.getMediaItemClass());
+                            if (exception == null) {
+                                exception = file.mException;
+                            }
+                        }
+                    }
+
+                    // If these are the first media items, change the aspect ratio
+                    final Integer aspectRatio;
+                    if (firstMediaItems && addedMediaItems.size() > 0) {
+                        videoEditor.setAspectRatio(addedMediaItems.get(0).getAspectRatio());
+                        aspectRatio = videoEditor.getAspectRatio();
+                    } else {
+                        aspectRatio = null;
+                    }
+
+                    // Snapshot the media items once all the transitions are in place
+                    final List<MovieMediaItem> movieMediaItems = new ArrayList<MovieMediaItem>();
+                    for (MediaItem mediaItem : addedMediaItems) {
+                        movieMediaItems.add(new MovieMediaItem(mediaItem));
+                    }
+
+                    completeRequest(command, videoEditor, exception,
+                            new ImportResult(movieMediaItems, failedMediaItems), aspectRatio, false);
+                    if (addedMediaItems.size() > 0) {
+                        generatePreview(videoEditor, true);
+                    }
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_LOAD: {
-                    final Uri data = intent.getParcelableExtra(PARAM_FILENAME);
+                    final Command.LoadMedia loadMedia = (Command.LoadMedia)command;
+                    final Uri data = loadMedia.getUri();
                     logd("OP_MEDIA_ITEM_LOAD: " + data);
-                    final Intent requestIntent = intent;
-                    new Thread() {
+                    final String mimeType = loadMedia.getMimeType();
+                    final VideoEditorProject videoProject = getProject(projectPath);
+                    final VideoEditorProject.Download download = videoProject != null ?
+                            videoProject.getDownload(data.toString()) : null;
+                    MediaDownloader.execute(new Runnable() {
                         @Override
                         public void run() {
-                            InputStream is = null;
-                            FileOutputStream fos = null;
-                            final File file = new File(projectPath, "download_" + generateId());
-
-                            final Intent statusIntent = mIntentPool.get();
-                            statusIntent.putExtra(PARAM_OP, OP_MEDIA_ITEM_LOAD_STATUS);
-                            statusIntent.putExtra(PARAM_PROJECT_PATH,
-                                    requestIntent.getStringExtra(PARAM_PROJECT_PATH));
-                            statusIntent.putExtra(PARAM_INTENT, requestIntent);
-                            try {
-                                is = getContentResolver().openInputStream(data);
-                                // Save the input stream to a file
-                                fos = new FileOutputStream(file);
-                                final byte[] readBuffer = new byte[2048];
-                                int readBytes;
-                                while ((readBytes = is.read(readBuffer)) >= 0) {
-                                    fos.write(readBuffer, 0, readBytes);
-                                }
-                            } catch (Exception ex) {
-                                Log.e(TAG, "Cannot open input stream for: " + data);
-                                statusIntent.putExtra(PARAM_EXCEPTION, ex);
-                                file.delete();
-                            } finally {
-                                if (is != null) {
-                                    try {
-                                        is.close();
-                                    } catch (IOException ex) {
-                                        Log.e(TAG, "Cannot close input stream for: " + data);
-                                    }
+                            // Reuse a completed download or resume a partial one
+                            final File file;
+                            if (download != null && new File(download.getFilename()).exists()) {
+                                if (download.isComplete()) {
+                                    mVideoThread.submit(new Command.LoadMediaStatus(loadMedia,
+                                            download.getFilename(), null));
+                                    return;
                                 }
+                                file = new File(download.getFilename());
+                            } else {
+                                file = new File(projectPath, "download_" + generateId());
+                            }
 
-                                if (fos != null) {
-                                    try {
-                                        fos.flush();
-                                        fos.close();
-                                    } catch (IOException ex) {
-                                        Log.e(TAG, "Cannot close output stream for: " + data);
-                                    }
-                                }
+                            if (videoProject != null) {
+                                videoProject.addPartialDownload(data.toString(), mimeType,
+                                        file.getAbsolutePath());
                             }
 
-                            if (!statusIntent.hasExtra(PARAM_EXCEPTION)) {
-                                final String filename = file.getAbsolutePath();
-                                try {
-                                    final String mimeType = getContentResolver().getType(data);
-                                    if ("image/jpeg".equals(mimeType)) {
-                                        final File outputFile = new File(projectPath,
-                                                "download_" + generateId() + ".jpg");
-                                        if (ImageUtils.transformJpeg(filename, outputFile)) {
-                                            // Delete the downloaded file
-                                            file.delete();
-                                            statusIntent.putExtra(PARAM_FILENAME,
-                                                    outputFile.getAbsolutePath());
-                                        } else {
-                                            statusIntent.putExtra(PARAM_FILENAME, filename);
+                            try {
+                                MediaDownloader.download(getContentResolver(), data, file,
+                                        new MediaDownloader.ProgressListener() {
+                                    private int mProgress = -1;
+
+                                    @Override
+                                    public void onProgress(long downloadedBytes, long totalBytes) {
+                                        // Notify only when the percentage changes
+                                        final int progress = totalBytes > 0 ?
+                                                (int)((downloadedBytes * 100) / totalBytes) : -1;
+                                        if (progress == mProgress) {
+                                            return;
                                         }
-                                    } else {
-                                        statusIntent.putExtra(PARAM_FILENAME, filename);
+                                        mProgress = progress;
+
+                                        completeRequest(new Command.LoadMediaProgress(projectPath,
+                                                data, mimeType, progress), null, null, null, null,
+                                                true);
+                                    }
+                                });
+                            } catch (Exception ex) {
+                                // The partial file is kept so the download can be resumed
+                                Log.e(TAG, "Cannot download: " + data, ex);
+                                mVideoThread.submit(new Command.LoadMediaStatus(loadMedia, null,
+                                        ex));
+                                return;
+                            }
+
+                            String filename = file.getAbsolutePath();
+                            try {
+                                final String contentType = getContentResolver().getType(data);
+                                if ("image/jpeg".equals(contentType)) {
+                                    final File outputFile = new File(projectPath,
+                                            "download_" + generateId() + ".jpg");
+                                    if (ImageUtils.transformJpeg(filename, outputFile)) {
+                                        // Delete the downloaded file
+                                        file.delete();
+                                        filename = outputFile.getAbsolutePath();
                                     }
-                                } catch (Exception ex) {
-                                    // Ignore the exception and continue
-                                    Log.w(TAG, "Could not transform JPEG: " + filename, ex);
-                                    statusIntent.putExtra(PARAM_FILENAME, filename);
                                 }
+                            } catch (Exception ex) {
+                                // Ignore the exception and continue
+                                Log.w(TAG, "Could not transform JPEG: " + filename, ex);
                             }
 
-                            mVideoThread.submit(statusIntent);
+                            mVideoThread.submit(new Command.LoadMediaStatus(loadMedia, filename,
+                                    null));
                         }
-                    }.start();
+                    });
 
                     break;
                 }
 
                 case OP_MEDIA_ITEM_LOAD_STATUS: {
-                    final Intent originalIntent = (Intent)intent.getParcelableExtra(PARAM_INTENT);
-                    if (intent.hasExtra(PARAM_EXCEPTION)) { //
-                        final Exception exception =
-                            (Exception)intent.getSerializableExtra(PARAM_EXCEPTION);
-                        completeRequest(intent, videoEditor, exception, null, originalIntent,
-                                true);
-                    } else {
-                        completeRequest(intent, videoEditor, null,
-                                intent.getStringExtra(PARAM_FILENAME), originalIntent, true);
-                    }
+                    final Command.LoadMediaStatus loadMediaStatus =
+                        (Command.LoadMediaStatus)command;
+                    completeRequest(command, videoEditor, loadMediaStatus.getException(),
+                            loadMediaStatus.getFilename(), null, true);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_MOVE: {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.MoveMediaItem moveMediaItem = (Command.MoveMediaItem)command;
+                    final String mediaItemId = command.getItemId();
                     logd("OP_MEDIA_ITEM_MOVE: " + mediaItemId);
 
                     // Determine the position of the media item we are moving
@@ -2019,27 +2278,32 @@ public class ApiService extends Service {
                     final Transition beginTransition = movedMediaItem.getBeginTransition();
                     final Transition endTransition = movedMediaItem.getEndTransition();
 
-                    final String afterMediaItemId = intent.getStringExtra(
-                            PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                    final TimelineDelta.Snapshot snapshot =
+                        new TimelineDelta.Snapshot(videoEditor);
+                    final String afterMediaItemId = moveMediaItem.getAfterMediaItemId();
                     videoEditor.moveMediaItem(mediaItemId, afterMediaItemId);
 
                     // Apply the theme if any
-                    final String themeId = intent.getStringExtra(PARAM_THEME);
+                    final String themeId = moveMediaItem.getThemeId();
                     if (themeId != null) {
                         // Apply the theme at the removed position
                         applyThemeAfterMove(videoEditor, themeId, movedMediaItem,
                                 movedItemPosition, beginTransition, endTransition);
                     }
 
-                    final List<MovieMediaItem> mediaItemsCopy = copyMediaItems(mediaItems);
-                    completeRequest(intent, videoEditor, null, mediaItemsCopy, null, false);
+                    final TimelineDelta delta = new TimelineDelta();
+                    delta.setMove(mediaItemId, afterMediaItemId);
+                    delta.addChanges(snapshot, videoEditor);
+                    completeRequest(command, videoEditor, null, delta, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_REMOVE: {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.RemoveMediaItem removeMediaItem =
+                        (Command.RemoveMediaItem)command;
+                    final String mediaItemId = command.getItemId();
                     logd("OP_MEDIA_ITEM_REMOVE: " + mediaItemId);
 
                     // Determine the position of the media item we are removing
@@ -2066,7 +2330,7 @@ public class ApiService extends Service {
 
                     // Apply the theme if any
                     MovieTransition movieTransition = null;
-                    final String themeId = intent.getStringExtra(PARAM_THEME);
+                    final String themeId = removeMediaItem.getThemeId();
                     if (themeId != null && mediaItems.size() > 0) {
                         final Transition transition = applyThemeAfterRemove(videoEditor, themeId,
                                 removedItemPosition, beginTransition, endTransition);
@@ -2075,31 +2339,34 @@ public class ApiService extends Service {
                         }
                     }
 
-                    completeRequest(intent, videoEditor, null, movieTransition, null, false);
+                    completeRequest(command, videoEditor, null, movieTransition, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_SET_RENDERING_MODE: {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetMediaItemRenderingMode setMediaItemRenderingMode =
+                        (Command.SetMediaItemRenderingMode)command;
+                    final String mediaItemId = command.getItemId();
                     logd("OP_MEDIA_ITEM_SET_RENDERING_MODE: " + mediaItemId);
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(mediaItemId);
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
                     }
-                    mediaItem.setRenderingMode(intent.getIntExtra(PARAM_MEDIA_ITEM_RENDERING_MODE,
-                            MediaItem.RENDERING_MODE_BLACK_BORDER));
+                    mediaItem.setRenderingMode(setMediaItemRenderingMode.getRenderingMode());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_SET_DURATION: {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetMediaItemDuration setMediaItemDuration =
+                        (Command.SetMediaItemDuration)command;
+                    final String mediaItemId = command.getItemId();
                     logd("OP_MEDIA_ITEM_SET_DURATION: " + mediaItemId);
 
                     final MediaImageItem mediaItem =
@@ -2108,7 +2375,7 @@ public class ApiService extends Service {
                         throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
                     }
 
-                    final long durationMs = intent.getLongExtra(PARAM_DURATION, 0);
+                    final long durationMs = setMediaItemDuration.getDurationMs();
                     mediaItem.setDuration(durationMs);
                     // Adjust all effects to the new duration
                     final List<Effect> effects = mediaItem.getAllEffects();
@@ -2116,23 +2383,25 @@ public class ApiService extends Service {
                         effect.setDuration(durationMs);
                     }
 
-                    completeRequest(intent, videoEditor, null, new MovieMediaItem(mediaItem), null,
+                    completeRequest(command, videoEditor, null, new MovieMediaItem(mediaItem), null,
                             false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_SET_BOUNDARIES: {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetMediaItemBoundaries setMediaItemBoundaries =
+                        (Command.SetMediaItemBoundaries)command;
+                    final String mediaItemId = command.getItemId();
                     final MediaVideoItem mediaItem =
                         (MediaVideoItem)videoEditor.getMediaItem(mediaItemId);
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
                     }
 
-                    mediaItem.setExtractBoundaries(intent.getLongExtra(PARAM_BEGIN_BOUNDARY, 0),
-                            intent.getLongExtra(PARAM_END_BOUNDARY, 0));
+                    mediaItem.setExtractBoundaries(setMediaItemBoundaries.getBeginBoundaryMs(),
+                            setMediaItemBoundaries.getEndBoundaryMs());
 
                     final List<Overlay> overlays = mediaItem.getAllOverlays();
                     if (overlays.size() > 0) {
@@ -2151,16 +2420,18 @@ public class ApiService extends Service {
                         }
                     }
 
-                    completeRequest(intent, videoEditor, null, new MovieMediaItem(mediaItem), null,
+                    completeRequest(command, videoEditor, null, new MovieMediaItem(mediaItem), null,
                             false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_GET_THUMBNAILS: {
+                    final Command.GetMediaItemThumbnails getMediaItemThumbnails =
+                        (Command.GetMediaItemThumbnails)command;
                     // Note that this command is executed in the thumbnail thread
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final String mediaItemId = command.getItemId();
                     logd("OP_MEDIA_ITEM_GET_THUMBNAILS: " + mediaItemId);
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(mediaItemId);
@@ -2170,36 +2441,38 @@ public class ApiService extends Service {
 
                     final VideoEditor ve = videoEditor; // Just to make it "final"
                     mediaItem.getThumbnailList(
-                            intent.getIntExtra(PARAM_WIDTH, 0),
-                            intent.getIntExtra(PARAM_HEIGHT, 0),
-                            intent.getLongExtra(PARAM_START_TIME, 0),
-                            intent.getLongExtra(PARAM_END_TIME, 0),
-                            intent.getIntExtra(PARAM_COUNT, 0),
-                            intent.getIntArrayExtra(PARAM_INDICES),
+                            getMediaItemThumbnails.getWidth(),
+                            getMediaItemThumbnails.getHeight(),
+                            getMediaItemThumbnails.getStartMs(),
+                            getMediaItemThumbnails.getEndMs(),
+                            getMediaItemThumbnails.getCount(),
+                            getMediaItemThumbnails.getIndices(),
                             new GetThumbnailListCallback() {
                                 public void onThumbnail(Bitmap bitmap, int index) {
                                     completeRequest(
-                                            intent, ve, null, bitmap,
+                                            command, ve, null, bitmap,
                                             Integer.valueOf(index), false);
                                 }
                             }
                             );
 
-                    completeRequest(intent, videoEditor, null, null, null, true);
+                    completeRequest(command, videoEditor, null, null, null, true);
                     break;
                 }
 
                 case OP_MEDIA_ITEM_SET_VOLUME: {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetMediaItemVolume setMediaItemVolume =
+                        (Command.SetMediaItemVolume)command;
+                    final String mediaItemId = command.getItemId();
                     logd("OP_MEDIA_ITEM_SET_VOLUME: " + mediaItemId);
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(mediaItemId);
                     if (mediaItem != null && mediaItem instanceof MediaVideoItem) {
-                        ((MediaVideoItem)mediaItem).setVolume(intent.getIntExtra(PARAM_VOLUME, 0));
+                        ((MediaVideoItem)mediaItem).setVolume(setMediaItemVolume.getVolume());
 
-                        completeRequest(intent, videoEditor, null, null, null, false);
+                        completeRequest(command, videoEditor, null, null, null, false);
                         generatePreview(videoEditor, false);
-                        completeRequest(intent);
+                        completeRequest(command);
                     } else {
                         throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
                     }
@@ -2207,17 +2480,18 @@ public class ApiService extends Service {
                 }
 
                 case OP_MEDIA_ITEM_SET_MUTE: {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetMediaItemMute setMediaItemMute =
+                        (Command.SetMediaItemMute)command;
+                    final String mediaItemId = command.getItemId();
                     logd("OP_MEDIA_ITEM_SET_MUTE: " + mediaItemId);
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(mediaItemId);
                     if (mediaItem != null && mediaItem instanceof MediaVideoItem) {
-                        ((MediaVideoItem)mediaItem).setMute(intent.getBooleanExtra(PARAM_MUTE,
-                                false));
+                        ((MediaVideoItem)mediaItem).setMute(setMediaItemMute.isMuted());
 
-                        completeRequest(intent, videoEditor, null, null, null, false);
+                        completeRequest(command, videoEditor, null, null, null, false);
                         generatePreview(videoEditor, false);
-                        completeRequest(intent);
+                        completeRequest(command);
                     } else {
                         throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
                     }
@@ -2225,7 +2499,7 @@ public class ApiService extends Service {
                 }
 
                 case OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM: {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final String mediaItemId = command.getItemId();
                     logd("OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM: " + mediaItemId);
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(mediaItemId);
@@ -2233,11 +2507,13 @@ public class ApiService extends Service {
                         final MediaVideoItem movieMediaItem = ((MediaVideoItem)mediaItem);
                         final WaveformData waveformData = movieMediaItem.getWaveformData();
                         if (waveformData == null) {
-                            extractMediaItemAudioWaveform(intent, videoEditor, movieMediaItem);
-                            completeRequest(intent, videoEditor, null,
+                            extractMediaItemAudioWaveform(
+                                    (Command.ExtractMediaItemAudioWaveform)command, videoEditor,
+                                    movieMediaItem);
+                            completeRequest(command, videoEditor, null,
                                     movieMediaItem.getWaveformData(), null, true);
                         } else {
-                            completeRequest(intent, videoEditor, null, waveformData, null, true);
+                            completeRequest(command, videoEditor, null, waveformData, null, true);
                         }
                     } else {
                         throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
@@ -2246,11 +2522,12 @@ public class ApiService extends Service {
                 }
 
                 case OP_TRANSITION_INSERT_ALPHA: {
+                    final Command.InsertAlphaTransition insertAlphaTransition =
+                        (Command.InsertAlphaTransition)command;
                     logd("OP_TRANSITION_INSERT_ALPHA: "
-                            + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                            + command.getItemId());
 
-                    final String afterMediaItemId =
-                        intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                    final String afterMediaItemId = insertAlphaTransition.getAfterMediaItemId();
                     final MediaItem afterMediaItem;
                     if (afterMediaItemId != null) {
                         afterMediaItem = videoEditor.getMediaItem(afterMediaItemId);
@@ -2258,34 +2535,33 @@ public class ApiService extends Service {
                         afterMediaItem = null;
                     }
 
-                    final int maskRawResourceId = intent.getIntExtra(PARAM_TRANSITION_MASK,
-                            R.raw.mask_contour);
+                    final int maskRawResourceId = insertAlphaTransition.getMaskRawResourceId();
 
                     final MediaItem beforeMediaItem = nextMediaItem(videoEditor, afterMediaItemId);
                     final Transition transition = new TransitionAlpha(
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
+                            command.getItemId(),
                             afterMediaItem, beforeMediaItem,
-                            intent.getLongExtra(PARAM_DURATION, 0),
-                            intent.getIntExtra(PARAM_TRANSITION_BEHAVIOR,
-                                    Transition.BEHAVIOR_LINEAR),
+                            insertAlphaTransition.getDurationMs(),
+                            insertAlphaTransition.getBehavior(),
                                     FileUtils.getMaskFilename(getApplicationContext(),
                                             maskRawResourceId),
-                            intent.getIntExtra(PARAM_TRANSITION_BLENDING, 100),
-                            intent.getBooleanExtra(PARAM_TRANSITION_INVERT, false));
+                            insertAlphaTransition.getBlending(),
+                            insertAlphaTransition.isInverted());
                     videoEditor.addTransition(transition);
 
-                    completeRequest(intent, videoEditor, null, transition, null, false);
+                    completeRequest(command, videoEditor, null, transition, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_TRANSITION_INSERT_CROSSFADE: {
+                    final Command.InsertCrossfadeTransition insertCrossfadeTransition =
+                        (Command.InsertCrossfadeTransition)command;
                     logd("OP_TRANSITION_INSERT_CROSSFADE: "
-                        + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                        + command.getItemId());
 
-                    final String afterMediaItemId =
-                        intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                    final String afterMediaItemId = insertCrossfadeTransition.getAfterMediaItemId();
                     final MediaItem afterMediaItem;
                     if (afterMediaItemId != null) {
                         afterMediaItem = videoEditor.getMediaItem(afterMediaItemId);
@@ -2295,25 +2571,25 @@ public class ApiService extends Service {
 
                     final MediaItem beforeMediaItem = nextMediaItem(videoEditor, afterMediaItemId);
                     final Transition transition = new TransitionCrossfade(
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
+                            command.getItemId(),
                             afterMediaItem, beforeMediaItem,
-                            intent.getLongExtra(PARAM_DURATION, 0),
-                            intent.getIntExtra(PARAM_TRANSITION_BEHAVIOR,
-                                    Transition.BEHAVIOR_LINEAR));
+                            insertCrossfadeTransition.getDurationMs(),
+                            insertCrossfadeTransition.getBehavior());
                     videoEditor.addTransition(transition);
 
-                    completeRequest(intent, videoEditor, null, transition, null, false);
+                    completeRequest(command, videoEditor, null, transition, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_TRANSITION_INSERT_FADE_BLACK: {
+                    final Command.InsertFadeBlackTransition insertFadeBlackTransition =
+                        (Command.InsertFadeBlackTransition)command;
                     logd("OP_TRANSITION_INSERT_FADE_TO_BLACK: "
-                            + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                            + command.getItemId());
 
-                    final String afterMediaItemId =
-                        intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                    final String afterMediaItemId = insertFadeBlackTransition.getAfterMediaItemId();
                     final MediaItem afterMediaItem;
                     if (afterMediaItemId != null) {
                         afterMediaItem = videoEditor.getMediaItem(afterMediaItemId);
@@ -2323,25 +2599,25 @@ public class ApiService extends Service {
 
                     final MediaItem beforeMediaItem = nextMediaItem(videoEditor, afterMediaItemId);
                     final Transition transition = new TransitionFadeBlack(
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
+                            command.getItemId(),
                             afterMediaItem, beforeMediaItem,
-                            intent.getLongExtra(PARAM_DURATION, 0),
-                            intent.getIntExtra(PARAM_TRANSITION_BEHAVIOR,
-                                    Transition.BEHAVIOR_LINEAR));
+                            insertFadeBlackTransition.getDurationMs(),
+                            insertFadeBlackTransition.getBehavior());
                     videoEditor.addTransition(transition);
 
-                    completeRequest(intent, videoEditor, null, transition, null, false);
+                    completeRequest(command, videoEditor, null, transition, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_TRANSITION_INSERT_SLIDING: {
+                    final Command.InsertSlidingTransition insertSlidingTransition =
+                        (Command.InsertSlidingTransition)command;
                     logd("OP_TRANSITION_INSERT_SLIDING: "
-                            + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                            + command.getItemId());
 
-                    final String afterMediaItemId =
-                        intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                    final String afterMediaItemId = insertSlidingTransition.getAfterMediaItemId();
                     final MediaItem afterMediaItem;
                     if (afterMediaItemId != null) {
                         afterMediaItem = videoEditor.getMediaItem(afterMediaItemId);
@@ -2351,35 +2627,35 @@ public class ApiService extends Service {
 
                     final MediaItem beforeMediaItem = nextMediaItem(videoEditor, afterMediaItemId);
                     final Transition transition = new TransitionSliding(
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
+                            command.getItemId(),
                             afterMediaItem, beforeMediaItem,
-                            intent.getLongExtra(PARAM_DURATION, 0),
-                            intent.getIntExtra(PARAM_TRANSITION_BEHAVIOR,
-                                    Transition.BEHAVIOR_LINEAR),
-                                    intent.getIntExtra(PARAM_TRANSITION_DIRECTION,
-                                            TransitionSliding.DIRECTION_RIGHT_OUT_LEFT_IN));
+                            insertSlidingTransition.getDurationMs(),
+                            insertSlidingTransition.getBehavior(),
+                                    insertSlidingTransition.getDirection());
                     videoEditor.addTransition(transition);
 
-                    completeRequest(intent, videoEditor, null, transition, null, false);
+                    completeRequest(command, videoEditor, null, transition, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_TRANSITION_REMOVE: {
                     logd("OP_TRANSITION_REMOVE: "
-                        + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                        + command.getItemId());
 
-                    videoEditor.removeTransition(intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    videoEditor.removeTransition(command.getItemId());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_TRANSITION_SET_DURATION: {
-                    final String transitionId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetTransitionDuration setTransitionDuration =
+                        (Command.SetTransitionDuration)command;
+                    final String transitionId = command.getItemId();
                     logd("OP_TRANSITION_SET_DURATION: " + transitionId);
 
                     final Transition transition = videoEditor.getTransition(transitionId);
@@ -2387,16 +2663,18 @@ public class ApiService extends Service {
                         throw new IllegalArgumentException("Transition not found: " +
                                 transitionId);
                     }
-                    transition.setDuration(intent.getLongExtra(PARAM_DURATION, 0));
+                    transition.setDuration(setTransitionDuration.getDurationMs());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_TRANSITION_GET_THUMBNAIL: {
-                    final String transitionId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.GetTransitionThumbnails getTransitionThumbnails =
+                        (Command.GetTransitionThumbnails)command;
+                    final String transitionId = command.getItemId();
                     logd("OP_TRANSITION_GET_THUMBNAIL: " + transitionId);
 
                     final Transition transition = videoEditor.getTransition(transitionId);
@@ -2405,39 +2683,46 @@ public class ApiService extends Service {
                                 transitionId);
                     }
 
-                    final int height = intent.getIntExtra(PARAM_HEIGHT, 0);
+                    // The frames are sampled at the boundaries of the adjacent media
+                    // items. The UI caches them keyed by these times.
+                    final int height = getTransitionThumbnails.getHeight();
                     final MediaItem afterMediaItem = transition.getAfterMediaItem();
                     final Bitmap[] thumbnails = new Bitmap[2];
                     if (afterMediaItem != null) {
+                        final long timeMs = afterMediaItem instanceof MediaVideoItem ?
+                                ((MediaVideoItem)afterMediaItem).getBoundaryEndTime() : 0;
                         thumbnails[0] = afterMediaItem.getThumbnail(
                                 (afterMediaItem.getWidth() * height) / afterMediaItem.getHeight(),
-                                height, afterMediaItem.getTimelineDuration());
+                                height, timeMs);
                     } else {
                         thumbnails[0] = null;
                     }
 
                     final MediaItem beforeMediaItem = transition.getBeforeMediaItem();
                     if (beforeMediaItem != null) {
+                        final long timeMs = beforeMediaItem instanceof MediaVideoItem ?
+                                ((MediaVideoItem)beforeMediaItem).getBoundaryBeginTime() : 0;
                         thumbnails[1] = beforeMediaItem.getThumbnail(
                                 (beforeMediaItem.getWidth() * height) / beforeMediaItem.getHeight(),
-                                height, 0);
+                                height, timeMs);
                     } else {
                         thumbnails[1] = null;
                     }
 
-                    completeRequest(intent, videoEditor, null, thumbnails, null, true);
+                    completeRequest(command, videoEditor, null, thumbnails, null, true);
                     break;
                 }
 
                 case OP_EFFECT_ADD_COLOR: {
+                    final Command.AddColorEffect addColorEffect = (Command.AddColorEffect)command;
                     logd("OP_EFFECT_ADD_COLOR: "
-                            + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                            + command.getItemId());
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            addColorEffect.getMediaItemId());
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " +
-                                intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                                addColorEffect.getMediaItemId());
                     }
 
                     // Remove any existing effect
@@ -2447,29 +2732,31 @@ public class ApiService extends Service {
                     }
 
                     final Effect effect = new EffectColor(mediaItem,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
-                            intent.getLongExtra(PARAM_START_TIME, -1),
-                            intent.getLongExtra(PARAM_DURATION, 0),
-                            intent.getIntExtra(PARAM_EFFECT_TYPE, -1),
-                            intent.getIntExtra(PARAM_EFFECT_PARAM, -1));
+                            command.getItemId(),
+                            addColorEffect.getStartTimeMs(),
+                            addColorEffect.getDurationMs(),
+                            addColorEffect.getType(),
+                            addColorEffect.getParam());
                     mediaItem.addEffect(effect);
 
-                    completeRequest(intent, videoEditor, null, new MovieEffect(effect), null,
+                    completeRequest(command, videoEditor, null, new MovieEffect(effect), null,
                             false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_EFFECT_ADD_IMAGE_KEN_BURNS: {
+                    final Command.AddKenBurnsEffect addKenBurnsEffect =
+                        (Command.AddKenBurnsEffect)command;
                     logd("OP_EFFECT_ADD_IMAGE_KEN_BURNS: "
-                            + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                            + command.getItemId());
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            addKenBurnsEffect.getMediaItemId());
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " +
-                                intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                                addKenBurnsEffect.getMediaItemId());
                     }
 
                     // Remove any existing effect
@@ -2479,46 +2766,48 @@ public class ApiService extends Service {
                     }
 
                     final Effect effect = new EffectKenBurns(mediaItem,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
-                            (Rect)intent.getParcelableExtra(PARAM_MEDIA_ITEM_START_RECT),
-                            (Rect)intent.getParcelableExtra(PARAM_MEDIA_ITEM_END_RECT),
-                            intent.getLongExtra(PARAM_START_TIME, 0),
-                            intent.getLongExtra(PARAM_DURATION, 0));
+                            command.getItemId(),
+                            addKenBurnsEffect.getStartRect(),
+                            addKenBurnsEffect.getEndRect(),
+                            addKenBurnsEffect.getStartTimeMs(),
+                            addKenBurnsEffect.getDurationMs());
                     mediaItem.addEffect(effect);
 
-                    completeRequest(intent, videoEditor, null, new MovieEffect(effect), null,
+                    completeRequest(command, videoEditor, null, new MovieEffect(effect), null,
                             false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_EFFECT_REMOVE: {
-                    logd("OP_EFFECT_REMOVE: " + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    final Command.RemoveEffect removeEffect = (Command.RemoveEffect)command;
+                    logd("OP_EFFECT_REMOVE: " + command.getItemId());
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            removeEffect.getMediaItemId());
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " +
-                                intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                                removeEffect.getMediaItemId());
                     }
 
-                    mediaItem.removeEffect(intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    mediaItem.removeEffect(command.getItemId());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_OVERLAY_ADD: {
-                    logd("OP_OVERLAY_ADD: " + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    final Command.AddOverlay addOverlay = (Command.AddOverlay)command;
+                    logd("OP_OVERLAY_ADD: " + command.getItemId());
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            addOverlay.getMediaItemId());
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " +
-                                intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                                addOverlay.getMediaItemId());
                     }
 
                     // Remove any existing overlays
@@ -2536,18 +2825,18 @@ public class ApiService extends Service {
                         scaledHeight = ((MediaImageItem)mediaItem).getScaledHeight();
                     }
 
-                    final Bundle userAttributes = intent.getBundleExtra(PARAM_ATTRIBUTES);
+                    final Bundle userAttributes = addOverlay.getUserAttributes();
 
                     final int overlayType = MovieOverlay.getType(userAttributes);
                     final String title = MovieOverlay.getTitle(userAttributes);
                     final String subTitle = MovieOverlay.getSubtitle(userAttributes);
 
                     final OverlayFrame overlay = new OverlayFrame(mediaItem,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
-                            ImageUtils.buildOverlayBitmap(getApplicationContext(), null,
+                            command.getItemId(),
+                            ImageUtils.copyOverlayBitmap(getApplicationContext(),
                                     overlayType, title, subTitle, scaledWidth, scaledHeight),
-                            intent.getLongExtra(PARAM_START_TIME, -1),
-                            intent.getLongExtra(PARAM_DURATION, 0));
+                            addOverlay.getStartTimeMs(),
+                            addOverlay.getDurationMs());
 
                     // Set the user attributes
                     for (String name : userAttributes.keySet()) {
@@ -2560,99 +2849,103 @@ public class ApiService extends Service {
                     }
                     mediaItem.addOverlay(overlay);
 
-                    completeRequest(intent, videoEditor, null, new MovieOverlay(overlay), null,
+                    completeRequest(command, videoEditor, null, new MovieOverlay(overlay), null,
                             false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_OVERLAY_REMOVE: {
-                    logd("OP_OVERLAY_REMOVE: " + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    final Command.RemoveOverlay removeOverlay = (Command.RemoveOverlay)command;
+                    logd("OP_OVERLAY_REMOVE: " + command.getItemId());
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            removeOverlay.getMediaItemId());
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " +
-                                intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                                removeOverlay.getMediaItemId());
                     }
 
-                    mediaItem.removeOverlay(intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    mediaItem.removeOverlay(command.getItemId());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_OVERLAY_SET_START_TIME: {
+                    final Command.SetOverlayStartTime setOverlayStartTime =
+                        (Command.SetOverlayStartTime)command;
                     logd("OP_OVERLAY_SET_START_TIME: "
-                            + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                            + command.getItemId());
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            setOverlayStartTime.getMediaItemId());
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " +
-                                intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                                setOverlayStartTime.getMediaItemId());
                     }
 
-                    final Overlay overlay = mediaItem.getOverlay(
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    final Overlay overlay = mediaItem.getOverlay(command.getItemId());
                     if (overlay == null) {
                         throw new IllegalArgumentException("Overlay not found: " +
-                                intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                                command.getItemId());
                     }
 
-                    overlay.setStartTime(intent.getLongExtra(PARAM_START_TIME, 0));
+                    overlay.setStartTime(setOverlayStartTime.getStartTimeMs());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_OVERLAY_SET_DURATION: {
+                    final Command.SetOverlayDuration setOverlayDuration =
+                        (Command.SetOverlayDuration)command;
                     logd("OP_OVERLAY_SET_DURATION: "
-                            + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                            + command.getItemId());
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            setOverlayDuration.getMediaItemId());
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " +
-                                intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                                setOverlayDuration.getMediaItemId());
                     }
 
-                    final Overlay overlay = mediaItem.getOverlay(
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    final Overlay overlay = mediaItem.getOverlay(command.getItemId());
                     if (overlay == null) {
                         throw new IllegalArgumentException("Overlay not found: " +
-                                intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                                command.getItemId());
                     }
 
-                    overlay.setDuration(intent.getLongExtra(PARAM_DURATION, 0));
+                    overlay.setDuration(setOverlayDuration.getDurationMs());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_OVERLAY_SET_ATTRIBUTES: {
+                    final Command.SetOverlayUserAttributes setOverlayUserAttributes =
+                        (Command.SetOverlayUserAttributes)command;
                     logd("OP_OVERLAY_SET_ATTRIBUTES: "
-                            + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                            + command.getItemId());
 
                     final MediaItem mediaItem = videoEditor.getMediaItem(
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                            setOverlayUserAttributes.getMediaItemId());
                     if (mediaItem == null) {
                         throw new IllegalArgumentException("MediaItem not found: " +
-                                intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID));
+                                setOverlayUserAttributes.getMediaItemId());
                     }
 
-                    final Overlay overlay = mediaItem.getOverlay(
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    final Overlay overlay = mediaItem.getOverlay(command.getItemId());
                     if (overlay == null) {
                         throw new IllegalArgumentException("Overlay not found: " +
-                                intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                                command.getItemId());
                     }
 
                     final int scaledWidth, scaledHeight;
@@ -2664,13 +2957,13 @@ public class ApiService extends Service {
                         scaledHeight = ((MediaImageItem)mediaItem).getScaledHeight();
                     }
 
-                    final Bundle userAttributes = intent.getBundleExtra(PARAM_ATTRIBUTES);
+                    final Bundle userAttributes = setOverlayUserAttributes.getUserAttributes();
                     final int overlayType = MovieOverlay.getType(userAttributes);
                     final String title = MovieOverlay.getTitle(userAttributes);
                     final String subTitle = MovieOverlay.getSubtitle(userAttributes);
 
                     ((OverlayFrame)overlay).setBitmap(
-                            ImageUtils.buildOverlayBitmap(getApplicationContext(), null,
+                            ImageUtils.copyOverlayBitmap(getApplicationContext(),
                                     overlayType, title, subTitle, scaledWidth, scaledHeight));
 
                     for (String name : userAttributes.keySet()) {
@@ -2682,16 +2975,17 @@ public class ApiService extends Service {
                         }
                     }
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, true);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_AUDIO_TRACK_ADD: {
-                    logd("OP_AUDIO_TRACK_ADD: " + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    final Command.AddAudioTrack addAudioTrack = (Command.AddAudioTrack)command;
+                    logd("OP_AUDIO_TRACK_ADD: " + command.getItemId());
 
-                    final Uri data = intent.getParcelableExtra(PARAM_FILENAME);
+                    final Uri data = addAudioTrack.getUri();
                     String filename = null;
                     // Get the filename
                     Cursor cursor = null;
@@ -2712,10 +3006,10 @@ public class ApiService extends Service {
                     }
 
                     final AudioTrack audioTrack = new AudioTrack(videoEditor,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID), filename);
+                            command.getItemId(), filename);
                     audioTrack.enableDucking(DUCK_THRESHOLD, DUCK_TRACK_VOLUME);
                     audioTrack.setVolume(DEFAULT_AUDIO_TRACK_VOLUME);
-                    if (intent.getBooleanExtra(PARAM_LOOP, false)) {
+                    if (addAudioTrack.isLooping()) {
                         audioTrack.enableLoop();
                     } else {
                         audioTrack.disableLoop();
@@ -2723,28 +3017,30 @@ public class ApiService extends Service {
 
                     videoEditor.addAudioTrack(audioTrack);
 
-                    completeRequest(intent, videoEditor, null, new MovieAudioTrack(audioTrack),
+                    completeRequest(command, videoEditor, null, new MovieAudioTrack(audioTrack),
                             null, false);
                     // This is needed to decode the audio file into a PCM file
                     generatePreview(videoEditor, false);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_AUDIO_TRACK_REMOVE: {
                     logd("OP_AUDIO_TRACK_REMOVE: "
-                            + intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                            + command.getItemId());
 
-                    videoEditor.removeAudioTrack(intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID));
+                    videoEditor.removeAudioTrack(command.getItemId());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, false);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_AUDIO_TRACK_SET_BOUNDARIES: {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetAudioTrackBoundaries setAudioTrackBoundaries =
+                        (Command.SetAudioTrackBoundaries)command;
+                    final String audioTrackId = command.getItemId();
                     logd("OP_AUDIO_TRACK_SET_BOUNDARIES: " + audioTrackId);
 
                     final AudioTrack audioTrack = videoEditor.getAudioTrack(audioTrackId);
@@ -2753,17 +3049,19 @@ public class ApiService extends Service {
                                 audioTrackId);
                     }
 
-                    audioTrack.setExtractBoundaries(intent.getLongExtra(PARAM_BEGIN_BOUNDARY, 0),
-                            intent.getLongExtra(PARAM_END_BOUNDARY, 0));
+                    audioTrack.setExtractBoundaries(setAudioTrackBoundaries.getBeginBoundaryMs(),
+                            setAudioTrackBoundaries.getEndBoundaryMs());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, false);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_AUDIO_TRACK_SET_LOOP: {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetAudioTrackLoop setAudioTrackLoop =
+                        (Command.SetAudioTrackLoop)command;
+                    final String audioTrackId = command.getItemId();
                     logd("OP_AUDIO_TRACK_SET_LOOP: " + audioTrackId);
 
                     final AudioTrack audioTrack = videoEditor.getAudioTrack(audioTrackId);
@@ -2772,20 +3070,22 @@ public class ApiService extends Service {
                                 audioTrackId);
                     }
 
-                    if (intent.getBooleanExtra(PARAM_LOOP, false)) {
+                    if (setAudioTrackLoop.isLooping()) {
                         audioTrack.enableLoop();
                     } else {
                         audioTrack.disableLoop();
                     }
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, false);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_AUDIO_TRACK_SET_DUCK: {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetAudioTrackDuck setAudioTrackDuck =
+                        (Command.SetAudioTrackDuck)command;
+                    final String audioTrackId = command.getItemId();
                     logd("OP_AUDIO_TRACK_SET_DUCK: " + audioTrackId);
 
                     final AudioTrack audioTrack = videoEditor.getAudioTrack(audioTrackId);
@@ -2794,20 +3094,22 @@ public class ApiService extends Service {
                                 audioTrackId);
                     }
 
-                    if (intent.getBooleanExtra(PARAM_DUCK, false)) {
+                    if (setAudioTrackDuck.isDuckingEnabled()) {
                         audioTrack.enableDucking(DUCK_THRESHOLD, DUCK_TRACK_VOLUME);
                     } else {
                         audioTrack.disableDucking();
                     }
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, false);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_AUDIO_TRACK_SET_VOLUME: {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetAudioTrackVolume setAudioTrackVolume =
+                        (Command.SetAudioTrackVolume)command;
+                    final String audioTrackId = command.getItemId();
                     logd("OP_AUDIO_TRACK_SET_VOLUME: " + audioTrackId);
 
                     final AudioTrack audioTrack = videoEditor.getAudioTrack(audioTrackId);
@@ -2816,16 +3118,18 @@ public class ApiService extends Service {
                                 audioTrackId);
                     }
 
-                    audioTrack.setVolume(intent.getIntExtra(PARAM_VOLUME, 0));
+                    audioTrack.setVolume(setAudioTrackVolume.getVolume());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, false);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_AUDIO_TRACK_SET_MUTE: {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final Command.SetAudioTrackMute setAudioTrackMute =
+                        (Command.SetAudioTrackMute)command;
+                    final String audioTrackId = command.getItemId();
                     logd("OP_AUDIO_TRACK_SET_MUTE: " + audioTrackId);
 
                     final AudioTrack audioTrack = videoEditor.getAudioTrack(audioTrackId);
@@ -2834,16 +3138,16 @@ public class ApiService extends Service {
                                 audioTrackId);
                     }
 
-                    audioTrack.setMute(intent.getBooleanExtra(PARAM_MUTE, false));
+                    audioTrack.setMute(setAudioTrackMute.isMuted());
 
-                    completeRequest(intent, videoEditor, null, null, null, false);
+                    completeRequest(command, videoEditor, null, null, null, false);
                     generatePreview(videoEditor, false);
-                    completeRequest(intent);
+                    completeRequest(command);
                     break;
                 }
 
                 case OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM: {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final String audioTrackId = command.getItemId();
                     logd("OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM: " + audioTrackId);
 
                     final AudioTrack audioTrack = videoEditor.getAudioTrack(audioTrackId);
@@ -2854,11 +3158,13 @@ public class ApiService extends Service {
 
                     final WaveformData waveformData = audioTrack.getWaveformData();
                     if (waveformData == null) {
-                        extractAudioTrackAudioWaveform(intent, videoEditor, audioTrack);
-                        completeRequest(intent, videoEditor, null, audioTrack.getWaveformData(),
+                        extractAudioTrackAudioWaveform(
+                                (Command.ExtractAudioTrackAudioWaveform)command, videoEditor,
+                                audioTrack);
+                        completeRequest(command, videoEditor, null, audioTrack.getWaveformData(),
                                 null, true);
                     } else {
-                        completeRequest(intent, videoEditor, null, waveformData, null, true);
+                        completeRequest(command, videoEditor, null, waveformData, null, true);
                     }
                     break;
                 }
@@ -2869,27 +3175,28 @@ public class ApiService extends Service {
             }
         } catch (Exception ex) {
             ex.printStackTrace();
-            completeRequest(intent, videoEditor, ex, null, null, true);
+            completeRequest(command, videoEditor, ex, null, null, true);
         }
     }
 
     /**
      * Complete the request
      *
-     * @param intent The intent
+     * @param command The command
      * @param videoEditor The video editor
      * @param exception The exception
      * @param result The result object
      * @param extraResult The extra result object
      * @param finalize true if the request should be finalized
      */
-    private void completeRequest(final Intent intent, final VideoEditor videoEditor,
+    private void completeRequest(final Command command, final VideoEditor videoEditor,
             final Exception exception, final Object result, final Object extraResult,
             final boolean finalize) {
         mHandler.post(new Runnable() {
             @Override
             public void run() {
-                onIntentProcessed(intent, videoEditor, result, extraResult, exception, finalize);
+                onCommandProcessed(command, videoEditor, result, extraResult, exception,
+                        finalize);
             }
         });
     }
@@ -2897,22 +3204,21 @@ public class ApiService extends Service {
     /**
      * Complete the request
      *
-     * @param intent The intent
+     * @param command The command
      */
-    private void completeRequest(final Intent intent) {
+    private void completeRequest(final Command command) {
         mHandler.post (new Runnable() {
             @Override
             public void run() {
-                finalizeRequest(intent);
-                mIntentPool.put(intent);
+                finalizeRequest(command);
             }
         });
     }
 
     /**
-     * Callback called after the specified intent is processed.
+     * Callback called after the specified command is processed.
      *
-     * @param intent The intent
+     * @param command The command
      * @param videoEditor The VideoEditor on which the operation was performed
      * @param result The result object
      * @param extraResult The extra result object
@@ -2920,19 +3226,20 @@ public class ApiService extends Service {
      * @param finalize true if the request should be finalized
      */
     @SuppressWarnings("unchecked")
-    public void onIntentProcessed(final Intent intent, VideoEditor videoEditor,
+    public void onCommandProcessed(final Command command, VideoEditor videoEditor,
             Object result, Object extraResult, Exception ex, boolean finalize) {
 
-        final String projectPath = intent.getStringExtra(PARAM_PROJECT_PATH);
-        final int op = intent.getIntExtra(PARAM_OP, -1);
+        final String projectPath = command.getProjectPath();
+        final int op = command.getOp();
         switch (op) {
             case OP_VIDEO_EDITOR_LOAD_PROJECTS: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final List<VideoEditorProject> projects = (List<VideoEditorProject>)result;
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PROJECTS, null)) {
                     listener.onProjectsLoaded(projects, ex);
                 }
 
@@ -2941,7 +3248,7 @@ public class ApiService extends Service {
 
             case OP_VIDEO_EDITOR_CREATE: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 // Release the old project
@@ -2956,7 +3263,8 @@ public class ApiService extends Service {
                     mVideoProject = (VideoEditorProject)result;
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PROJECT, projectPath)) {
                     listener.onVideoEditorCreated(projectPath, mVideoProject,
                             videoEditor != null ? videoEditor.getAllMediaItems() : null,
                             videoEditor != null ? videoEditor.getAllAudioTracks() : null, ex);
@@ -2967,7 +3275,7 @@ public class ApiService extends Service {
 
             case OP_VIDEO_EDITOR_LOAD: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 if (result != null) { // A new project was created
@@ -2978,7 +3286,8 @@ public class ApiService extends Service {
                     mVideoProject = (VideoEditorProject)result;
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PROJECT, projectPath)) {
                     listener.onVideoEditorLoaded(projectPath, mVideoProject,
                             ex == null ? videoEditor.getAllMediaItems() : null,
                             ex == null ? videoEditor.getAllAudioTracks() : null, ex);
@@ -2988,12 +3297,12 @@ public class ApiService extends Service {
             }
 
             case OP_VIDEO_EDITOR_SET_ASPECT_RATIO: {
+                final Command.SetAspectRatio setAspectRatio = (Command.SetAspectRatio)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final int aspectRatio = intent.getIntExtra(PARAM_ASPECT_RATIO,
-                        MediaProperties.ASPECT_RATIO_UNDEFINED);
+                final int aspectRatio = setAspectRatio.getAspectRatio();
                 if (ex == null) {
                     final VideoEditorProject videoProject = getProject(projectPath);
                     if (videoProject != null) {
@@ -3001,7 +3310,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PROJECT, projectPath)) {
                     listener.onVideoEditorAspectRatioSet(projectPath, aspectRatio, ex);
                 }
 
@@ -3009,35 +3319,75 @@ public class ApiService extends Service {
             }
 
             case OP_VIDEO_EDITOR_APPLY_THEME: {
+                final Command.ApplyTheme applyTheme = (Command.ApplyTheme)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String theme = intent.getStringExtra(PARAM_THEME);
+                final String theme = applyTheme.getThemeId();
+                final TimelineDelta delta = (TimelineDelta)result;
                 if (ex == null) {
                     final VideoEditorProject videoProject = getProject(projectPath);
                     if (videoProject != null) {
                         videoProject.setTheme(theme);
-                        videoProject.setMediaItems((List<MovieMediaItem>)result);
-                        videoProject.setAudioTracks((List<MovieAudioTrack>)extraResult);
+                        videoProject.applyDelta(delta);
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
-                    listener.onVideoEditorThemeApplied(projectPath, theme, ex);
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PROJECT, projectPath)) {
+                    listener.onVideoEditorThemeApplied(projectPath, theme, delta, ex);
                 }
 
                 break;
             }
 
-            case OP_VIDEO_EDITOR_GENERATE_PREVIEW_PROGRESS: {
-                final String className = intent.getStringExtra(PARAM_ATTRIBUTES);
-                final String itemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final int action = intent.getIntExtra(PARAM_ACTION,
-                        VideoEditor.MediaProcessingProgressListener.ACTION_DECODE);
-                final int progress = intent.getIntExtra(PARAM_PROGRESS_VALUE, 0);
+            case OP_VIDEO_EDITOR_BULK_EDIT: {
+                final Command.ApplyBulkEdit applyBulkEdit = (Command.ApplyBulkEdit)command;
+                if (finalize) {
+                    finalizeRequest(command);
+                }
+
+                final BulkEdit.Result bulkEditResult = (BulkEdit.Result)result;
+                final VideoEditorProject videoProject = getProject(projectPath);
+                if (videoProject != null) {
+                    if (ex == null) {
+                        videoProject.applyBulkEdit(bulkEditResult);
+                    } else {
+                        // Restore the rendering modes set by the application
+                        for (Bundle edit : applyBulkEdit.getEdits()) {
+                            if (edit.getInt(BulkEdit.ATTR_TYPE) !=
+                                    BulkEdit.EDIT_SET_RENDERING_MODE) {
+                                continue;
+                            }
+
+                            final MovieMediaItem mediaItem = videoProject.getMediaItem(
+                                    edit.getString(BulkEdit.ATTR_MEDIA_ITEM_ID));
+                            if (mediaItem != null) {
+                                mediaItem.setAppRenderingMode(mediaItem.getRenderingMode());
+                            }
+                        }
+                    }
+                }
+
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PROJECT, projectPath)) {
+                    listener.onBulkEditApplied(projectPath, bulkEditResult, ex);
+                }
 
-                for (ApiServiceListener listener : mListeners) {
+                break;
+            }
+
+            case OP_VIDEO_EDITOR_GENERATE_PREVIEW_PROGRESS: {
+                final Command.GeneratePreviewProgress generatePreviewProgress =
+                    (Command.GeneratePreviewProgress)command;
+                final String className = generatePreviewProgress.getClassName();
+                final String itemId = command.getItemId();
+                final int action = generatePreviewProgress.getAction();
+                final int progress = generatePreviewProgress.getProgress();
+
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PREVIEW, projectPath)) {
                     listener.onVideoEditorGeneratePreviewProgress(projectPath, className, itemId,
                             action, progress);
                 }
@@ -3046,66 +3396,47 @@ public class ApiService extends Service {
             }
 
             case OP_VIDEO_EDITOR_EXPORT: {
-                // The finalizeRequest() call and listener callbacks are done in
-                // OP_VIDEO_EDITOR_EXPORT_STATUS intent handling (where we are
-                // called originalIntent).
-                break;
-            }
+                final Command.ExportMovie exportMovie = (Command.ExportMovie)command;
+                // The request is finalized and the listeners are notified
+                // when the export job finishes, unless the job could not be
+                // queued.
+                if (ex == null) {
+                    break;
+                }
 
-            case OP_VIDEO_EDITOR_CANCEL_EXPORT: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                for (ApiServiceListener listener : mListeners) {
-                    listener.onVideoEditorExportCanceled(projectPath,
-                            intent.getStringExtra(PARAM_FILENAME));
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_EXPORT, projectPath)) {
+                    listener.onVideoEditorExportComplete(projectPath,
+                            exportMovie.getFilename(), ex, false);
                 }
                 break;
             }
 
-            case OP_VIDEO_EDITOR_EXPORT_STATUS: {
-                // This operation is for the service internal use only
+            case OP_VIDEO_EDITOR_CANCEL_EXPORT: {
+                final Command.CancelExport cancelExport = (Command.CancelExport)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String filename = intent.getStringExtra(PARAM_FILENAME);
-                if (intent.hasExtra(PARAM_EXCEPTION)) { // Complete
-                    final Intent originalIntent = (Intent)intent.getParcelableExtra(PARAM_INTENT);
-                    finalizeRequest(originalIntent);
-                    mIntentPool.put(originalIntent);
-
-                    final Exception exception =
-                        (Exception)intent.getSerializableExtra(PARAM_EXCEPTION);
-                    final VideoEditorProject videoProject = getProject(projectPath);
-                    final boolean cancelled = intent.getBooleanExtra(PARAM_CANCELLED, false);
-                    if (!cancelled && videoProject != null && exception == null) {
-                        final Uri uri = (Uri)intent.getParcelableExtra(PARAM_MOVIE_URI);
-                        videoProject.addExportedMovieUri(uri);
-                    }
-
-                    for (ApiServiceListener listener : mListeners) {
-                        listener.onVideoEditorExportComplete(
-                                projectPath, filename, exception, cancelled);
-                    }
-                } else { // Progress
-                    for (ApiServiceListener listener : mListeners) {
-                        listener.onVideoEditorExportProgress(projectPath, filename,
-                                intent.getIntExtra(PARAM_PROGRESS_VALUE, -1));
-                    }
-
-                    // The original request is still pending
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_EXPORT, projectPath)) {
+                    listener.onVideoEditorExportCanceled(projectPath,
+                            cancelExport.getFilename());
                 }
                 break;
             }
 
             case OP_VIDEO_EDITOR_SAVE: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PROJECT, projectPath)) {
                     listener.onVideoEditorSaved(projectPath, ex);
                 }
                 break;
@@ -3113,7 +3444,7 @@ public class ApiService extends Service {
 
             case OP_VIDEO_EDITOR_RELEASE: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final VideoEditorProject videoProject = getProject(projectPath);
@@ -3124,7 +3455,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PROJECT, projectPath)) {
                     listener.onVideoEditorReleased(projectPath, ex);
                 }
 
@@ -3133,7 +3465,7 @@ public class ApiService extends Service {
 
             case OP_VIDEO_EDITOR_DELETE: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final VideoEditorProject videoProject = getProject(projectPath);
@@ -3144,7 +3476,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_PROJECT, projectPath)) {
                     listener.onVideoEditorDeleted(projectPath, ex);
                 }
 
@@ -3152,12 +3485,12 @@ public class ApiService extends Service {
             }
 
             case OP_MEDIA_ITEM_ADD_VIDEO_URI: {
+                final Command.AddVideoUri addVideoUri = (Command.AddVideoUri)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String afterMediaItemId =
-                    intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                final String afterMediaItemId = addVideoUri.getAfterMediaItemId();
 
                 final MovieMediaItem movieMediaItem = (MovieMediaItem)result;
                 final VideoEditorProject videoProject = getProject(projectPath);
@@ -3172,9 +3505,10 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
                     listener.onMediaItemAdded(projectPath,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID), movieMediaItem,
+                            command.getItemId(), movieMediaItem,
                             afterMediaItemId, MediaVideoItem.class, (Integer)extraResult, ex);
                 }
 
@@ -3182,12 +3516,12 @@ public class ApiService extends Service {
             }
 
             case OP_MEDIA_ITEM_ADD_IMAGE_URI: {
+                final Command.AddImageUri addImageUri = (Command.AddImageUri)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String afterMediaItemId =
-                    intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                final String afterMediaItemId = addImageUri.getAfterMediaItemId();
 
                 final MovieMediaItem movieMediaItem = (MovieMediaItem)result;
                 final VideoEditorProject videoProject = getProject(projectPath);
@@ -3202,71 +3536,154 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
                     listener.onMediaItemAdded(projectPath,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID), movieMediaItem,
+                            command.getItemId(), movieMediaItem,
                             afterMediaItemId, MediaImageItem.class, (Integer)extraResult, ex);
                 }
 
                 break;
             }
 
+            case OP_MEDIA_ITEM_ADD_URIS: {
+                final Command.AddUris addUris = (Command.AddUris)command;
+                if (finalize) {
+                    finalizeRequest(command);
+                }
+
+                final String afterMediaItemId = addUris.getAfterMediaItemId();
+
+                final ImportResult importResult = (ImportResult)result;
+                final List<MovieMediaItem> movieMediaItems;
+                final Map<String, Class<?>> failedMediaItems;
+                if (importResult != null) {
+                    movieMediaItems = importResult.mMediaItems;
+                    failedMediaItems = importResult.mFailedMediaItems;
+                } else {
+                    movieMediaItems = null;
+                    failedMediaItems = null;
+                }
+
+                final VideoEditorProject videoProject = getProject(projectPath);
+                if (videoProject != null && movieMediaItems != null) {
+                    if (extraResult != null) {
+                        // The aspect ratio has changed
+                        videoProject.setAspectRatio((Integer)extraResult);
+                    }
+
+                    String insertAfterMediaItemId = afterMediaItemId;
+                    for (MovieMediaItem movieMediaItem : movieMediaItems) {
+                        videoProject.insertMediaItem(movieMediaItem, insertAfterMediaItemId);
+                        insertAfterMediaItemId = movieMediaItem.getId();
+                    }
+                }
+
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
+                    listener.onMediaItemsAdded(projectPath, movieMediaItems, afterMediaItemId,
+                            (Integer)extraResult, failedMediaItems, ex);
+                }
+
+                break;
+            }
+
+            case OP_MEDIA_ITEM_ADD_URIS_PROGRESS: {
+                final Command.AddUrisProgress addUrisProgress = (Command.AddUrisProgress)command;
+                final String mediaItemId = command.getItemId();
+                final int progress = addUrisProgress.getProgress();
+                final int count = addUrisProgress.getCount();
+
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
+                    listener.onMediaItemsAddProgress(projectPath, mediaItemId, progress, count);
+                }
+
+                break;
+            }
+
             case OP_MEDIA_ITEM_LOAD: {
+                final Command.LoadMedia loadMedia = (Command.LoadMedia)command;
                 // Note that this message is handled only if the download
                 // cannot start.
-                final Uri data = (Uri)intent.getParcelableExtra(PARAM_FILENAME);
-                final String mimeType = intent.getStringExtra(PARAM_ATTRIBUTES);
+                final Uri data = loadMedia.getUri();
+                final String mimeType = loadMedia.getMimeType();
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
                     listener.onMediaLoaded(projectPath, data, mimeType, null, ex);
                 }
                 break;
             }
 
-            case OP_MEDIA_ITEM_LOAD_STATUS: {
-                if (finalize) {
-                    finalizeRequest(intent);
+            case OP_MEDIA_ITEM_LOAD_PROGRESS: {
+                final Command.LoadMediaProgress loadMediaProgress =
+                    (Command.LoadMediaProgress)command;
+                final Uri data = loadMediaProgress.getUri();
+                final String mimeType = loadMediaProgress.getMimeType();
+                final int progress = loadMediaProgress.getProgress();
+
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
+                    listener.onMediaLoadProgress(projectPath, data, mimeType, progress);
                 }
 
-                final Intent originalIntent = (Intent)intent.getParcelableExtra(PARAM_INTENT);
-                final Uri data = (Uri)originalIntent.getParcelableExtra(PARAM_FILENAME);
-                final String mimeType = originalIntent.getStringExtra(PARAM_ATTRIBUTES);
+                break;
+            }
+
+            case OP_MEDIA_ITEM_LOAD_STATUS: {
+                final Command.LoadMediaStatus loadMediaStatus = (Command.LoadMediaStatus)command;
+                final Command.LoadMedia loadMedia = loadMediaStatus.getRequest();
+                final Uri data = loadMedia.getUri();
+                final String mimeType = loadMedia.getMimeType();
 
-                finalizeRequest(originalIntent);
-                mIntentPool.put(originalIntent);
+                finalizeRequest(loadMedia);
 
-                final String filename = intent.getStringExtra(PARAM_FILENAME);
+                final String filename = loadMediaStatus.getFilename();
 
                 if (ex == null && filename != null) {
                     final VideoEditorProject videoProject = getProject(projectPath);
                     videoProject.addDownload(data.toString(), mimeType, filename);
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
                     listener.onMediaLoaded(projectPath, data, mimeType, filename, ex);
                 }
                 break;
             }
 
             case OP_MEDIA_ITEM_MOVE: {
+                final Command.MoveMediaItem moveMediaItem = (Command.MoveMediaItem)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                if (ex == null) {
-                    final VideoEditorProject videoProject = getProject(projectPath);
-                    if (videoProject != null) {
-                        videoProject.setMediaItems((List<MovieMediaItem>)result);
+                // The listeners were notified when the move was applied to
+                // the model. Notify them again only if the service result
+                // differs from the model.
+                boolean changed = false;
+                final VideoEditorProject videoProject = getProject(projectPath);
+                if (videoProject != null) {
+                    final String requestId = command.getRequestId();
+                    if (ex == null) {
+                        changed = videoProject.confirmEdit(requestId, (TimelineDelta)result);
+                    } else {
+                        changed = videoProject.rejectEdit(requestId);
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
-                    listener.onMediaItemMoved(projectPath,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
-                            intent.getStringExtra(PARAM_RELATIVE_STORYBOARD_ITEM_ID), ex);
+                if (changed || ex != null) {
+                    for (ApiServiceListener listener : mListeners.get(
+                            ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
+                        listener.onMediaItemMoved(projectPath,
+                                command.getItemId(),
+                                moveMediaItem.getAfterMediaItemId(),
+                                (TimelineDelta)result, ex);
+                    }
                 }
 
                 break;
@@ -3274,48 +3691,83 @@ public class ApiService extends Service {
 
             case OP_MEDIA_ITEM_REMOVE: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                final String mediaItemId = command.getItemId();
                 final MovieTransition transition = (MovieTransition)result;
-                if (ex == null) {
-                    final VideoEditorProject videoProject = getProject(projectPath);
-                    if (videoProject != null) {
-                        videoProject.removeMediaItem(mediaItemId, transition);
+                // The listeners were notified when the media item was removed
+                // from the model
+                boolean applied = false;
+                final VideoEditorProject videoProject = getProject(projectPath);
+                if (videoProject != null) {
+                    final String requestId = command.getRequestId();
+                    if (ex != null) {
+                        videoProject.rejectEdit(requestId);
+                    } else {
+                        applied = videoProject.confirmRemoveMediaItem(requestId, mediaItemId,
+                                transition);
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
-                    listener.onMediaItemRemoved(projectPath, mediaItemId, transition, ex);
+                if (!applied) {
+                    for (ApiServiceListener listener : mListeners.get(
+                            ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
+                        listener.onMediaItemRemoved(projectPath, mediaItemId, transition, ex);
+                    }
+                } else if (transition != null &&
+                        videoProject.getTransition(transition.getId()) != null) {
+                    // Add the transition set by the theme at the removal position
+                    final MovieMediaItem afterMediaItem =
+                        videoProject.getPreviousMediaItem(transition);
+                    for (ApiServiceListener listener : mListeners.get(
+                            ApiServiceListener.EVENT_TRANSITION, projectPath)) {
+                        listener.onTransitionInserted(projectPath, transition,
+                                afterMediaItem != null ? afterMediaItem.getId() : null, null);
+                    }
                 }
 
                 break;
             }
 
             case OP_MEDIA_ITEM_SET_RENDERING_MODE: {
+                final Command.SetMediaItemRenderingMode setMediaItemRenderingMode =
+                    (Command.SetMediaItemRenderingMode)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final int renderingMode = intent.getIntExtra(PARAM_MEDIA_ITEM_RENDERING_MODE,
-                        MediaItem.RENDERING_MODE_BLACK_BORDER);
+                final String mediaItemId = command.getItemId();
+                final int renderingMode = setMediaItemRenderingMode.getRenderingMode();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
+                    // The model holds the edit unless it was discarded when an
+                    // older edit was rejected
+                    final String requestId = command.getRequestId();
+                    boolean applied = false;
+                    if (ex == null) {
+                        applied = videoProject.confirmEdit(requestId);
+                    } else {
+                        videoProject.rejectEdit(requestId);
+                    }
+
                     final MovieMediaItem mediaItem = videoProject.getMediaItem(mediaItemId);
                     if (mediaItem != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
                             mediaItem.setRenderingMode(renderingMode);
+                            if (!applied) {
+                                mediaItem.setAppRenderingMode(renderingMode);
+                            }
                         } else {
                             mediaItem.setAppRenderingMode(mediaItem.getRenderingMode());
                         }
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
                     listener.onMediaItemRenderingModeSet(projectPath, mediaItemId, renderingMode,
                             ex);
                 }
@@ -3324,17 +3776,20 @@ public class ApiService extends Service {
             }
 
             case OP_MEDIA_ITEM_SET_DURATION: {
+                final Command.SetMediaItemDuration setMediaItemDuration =
+                    (Command.SetMediaItemDuration)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                final String mediaItemId = command.getItemId();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
                     if (ex == null) {
+                        videoProject.confirmEdit(command.getRequestId());
                         videoProject.updateMediaItem((MovieMediaItem)result);
-                    } else {
+                    } else if (!videoProject.rejectEdit(command.getRequestId())) {
                         final MovieMediaItem oldMediaItem = videoProject.getMediaItem(mediaItemId);
                         if (oldMediaItem != null) {
                             videoProject.setClean(false);
@@ -3343,20 +3798,23 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
                     listener.onMediaItemDurationSet(projectPath, mediaItemId,
-                            intent.getLongExtra(PARAM_DURATION, 0), ex);
+                            setMediaItemDuration.getDurationMs(), ex);
                 }
 
                 break;
             }
 
             case OP_MEDIA_ITEM_SET_BOUNDARIES: {
+                final Command.SetMediaItemBoundaries setMediaItemBoundaries =
+                    (Command.SetMediaItemBoundaries)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                final String mediaItemId = command.getItemId();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
@@ -3374,28 +3832,32 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_MEDIA_ITEM, projectPath)) {
                     listener.onMediaItemBoundariesSet(projectPath, mediaItemId,
-                            intent.getLongExtra(PARAM_BEGIN_BOUNDARY, 0),
-                            intent.getLongExtra(PARAM_END_BOUNDARY, 0), ex);
+                            setMediaItemBoundaries.getBeginBoundaryMs(),
+                            setMediaItemBoundaries.getEndBoundaryMs(), ex);
                 }
 
                 break;
             }
 
             case OP_MEDIA_ITEM_GET_THUMBNAILS: {
+                final Command.GetMediaItemThumbnails getMediaItemThumbnails =
+                    (Command.GetMediaItemThumbnails)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                     break;
                 }
 
                 final Bitmap bitmap = (Bitmap)result;
                 final int index = (Integer)extraResult;
                 boolean used = false;
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_THUMBNAIL, projectPath)) {
                     used |= listener.onMediaItemThumbnail(projectPath,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
-                            bitmap, index, intent.getIntExtra(PARAM_TOKEN, 0),
+                            command.getItemId(),
+                            bitmap, index, getMediaItemThumbnails.getToken(),
                             ex);
                 }
 
@@ -3409,18 +3871,20 @@ public class ApiService extends Service {
             }
 
             case OP_MEDIA_ITEM_SET_VOLUME: {
+                final Command.SetMediaItemVolume setMediaItemVolume =
+                    (Command.SetMediaItemVolume)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final String mediaItemId = command.getItemId();
                     final MovieMediaItem mediaItem = videoProject.getMediaItem(mediaItemId);
                     if (mediaItem != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
-                            mediaItem.setVolume(intent.getIntExtra(PARAM_VOLUME, 0));
+                            mediaItem.setVolume(setMediaItemVolume.getVolume());
                         } else {
                             mediaItem.setAppVolume(mediaItem.getVolume());
                         }
@@ -3431,18 +3895,19 @@ public class ApiService extends Service {
             }
 
             case OP_MEDIA_ITEM_SET_MUTE: {
+                final Command.SetMediaItemMute setMediaItemMute = (Command.SetMediaItemMute)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
-                    final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final String mediaItemId = command.getItemId();
                     final MovieMediaItem mediaItem = videoProject.getMediaItem(mediaItemId);
                     if (mediaItem != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
-                            mediaItem.setMute(intent.getBooleanExtra(PARAM_MUTE, false));
+                            mediaItem.setMute(setMediaItemMute.isMuted());
                         } else {
                             mediaItem.setAppMute(mediaItem.isMuted());
                         }
@@ -3453,14 +3918,17 @@ public class ApiService extends Service {
             }
 
             case OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM_STATUS: {
+                final Command.MediaItemAudioWaveformProgress mediaItemAudioWaveformProgress =
+                    (Command.MediaItemAudioWaveformProgress)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final int progress = intent.getIntExtra(PARAM_PROGRESS_VALUE, 0);
+                final String mediaItemId = command.getItemId();
+                final int progress = mediaItemAudioWaveformProgress.getProgress();
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_AUDIO_WAVEFORM, projectPath)) {
                     listener.onMediaItemExtractAudioWaveformProgress(projectPath, mediaItemId,
                         progress);
                 }
@@ -3470,10 +3938,10 @@ public class ApiService extends Service {
 
             case OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                final String mediaItemId = command.getItemId();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (ex == null && videoProject != null) {
@@ -3486,7 +3954,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_AUDIO_WAVEFORM, projectPath)) {
                     listener.onMediaItemExtractAudioWaveformComplete(projectPath, mediaItemId, ex);
                 }
 
@@ -3497,12 +3966,12 @@ public class ApiService extends Service {
             case OP_TRANSITION_INSERT_CROSSFADE:
             case OP_TRANSITION_INSERT_FADE_BLACK:
             case OP_TRANSITION_INSERT_SLIDING: {
+                final Command.InsertTransition insertTransition = (Command.InsertTransition)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String afterMediaItemId = intent.getStringExtra(
-                        PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                final String afterMediaItemId = insertTransition.getAfterMediaItemId();
 
                 final MovieTransition movieTransition;
                 final VideoEditorProject videoProject = getProject(projectPath);
@@ -3519,7 +3988,8 @@ public class ApiService extends Service {
                     movieTransition = null;
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_TRANSITION, projectPath)) {
                     listener.onTransitionInserted(projectPath, movieTransition,
                             afterMediaItemId, ex);
                 }
@@ -3529,47 +3999,73 @@ public class ApiService extends Service {
 
             case OP_TRANSITION_REMOVE: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String transitionId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                final String transitionId = command.getItemId();
 
+                // The listeners were notified when the transition was removed
+                // from the model
+                boolean applied = false;
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
-                    if (ex == null) {
-                        videoProject.removeTransition(transitionId);
+                    final String requestId = command.getRequestId();
+                    if (ex != null) {
+                        videoProject.rejectEdit(requestId);
+                    } else {
+                        applied = videoProject.confirmEdit(requestId);
+                        if (!applied) {
+                            videoProject.removeTransition(transitionId);
+                        }
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
-                    listener.onTransitionRemoved(projectPath, transitionId, ex);
+                if (!applied) {
+                    for (ApiServiceListener listener : mListeners.get(
+                            ApiServiceListener.EVENT_TRANSITION, projectPath)) {
+                        listener.onTransitionRemoved(projectPath, transitionId, ex);
+                    }
                 }
 
                 break;
             }
 
             case OP_TRANSITION_SET_DURATION: {
+                final Command.SetTransitionDuration setTransitionDuration =
+                    (Command.SetTransitionDuration)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String transitionId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final long durationMs = intent.getLongExtra(PARAM_DURATION, 0);
+                final String transitionId = command.getItemId();
+                final long durationMs = setTransitionDuration.getDurationMs();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
+                    final String requestId = command.getRequestId();
+                    boolean applied = false;
+                    if (ex == null) {
+                        applied = videoProject.confirmEdit(requestId);
+                    } else {
+                        videoProject.rejectEdit(requestId);
+                    }
+
                     final MovieTransition transition = videoProject.getTransition(transitionId);
                     if (transition != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
                             transition.setDuration(durationMs);
+                            if (!applied) {
+                                transition.setAppDuration(durationMs);
+                            }
                         } else {
                             transition.setAppDuration(transition.getDuration());
                         }
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_TRANSITION, projectPath)) {
                     listener.onTransitionDurationSet(projectPath, transitionId, durationMs, ex);
                 }
 
@@ -3578,14 +4074,15 @@ public class ApiService extends Service {
 
             case OP_TRANSITION_GET_THUMBNAIL: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final Bitmap[] bitmaps = (Bitmap[])result;
                 boolean used = false;
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_THUMBNAIL, projectPath)) {
                     used |= listener.onTransitionThumbnails(projectPath,
-                            intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID),
+                            command.getItemId(),
                             bitmaps, ex);
                 }
 
@@ -3603,75 +4100,112 @@ public class ApiService extends Service {
             }
 
             case OP_OVERLAY_ADD: {
+                final Command.AddOverlay addOverlay = (Command.AddOverlay)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(
-                        PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                final String mediaItemId = addOverlay.getMediaItemId();
 
                 final MovieOverlay movieOverlay = (MovieOverlay)result;
+                // The listeners were notified when the overlay was added to
+                // the model
+                boolean applied = false;
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
-                    if (ex == null) {
-                        videoProject.addOverlay(mediaItemId, movieOverlay);
+                    final String requestId = command.getRequestId();
+                    if (ex != null) {
+                        videoProject.rejectEdit(requestId);
+                    } else {
+                        applied = videoProject.confirmEdit(requestId);
+                        if (!applied) {
+                            videoProject.addOverlay(mediaItemId, movieOverlay);
+                        }
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
-                    listener.onOverlayAdded(projectPath, movieOverlay, mediaItemId, ex);
+                if (!applied) {
+                    for (ApiServiceListener listener : mListeners.get(
+                            ApiServiceListener.EVENT_OVERLAY, projectPath)) {
+                        listener.onOverlayAdded(projectPath, movieOverlay, mediaItemId, ex);
+                    }
                 }
 
                 break;
             }
 
             case OP_OVERLAY_REMOVE: {
+                final Command.RemoveOverlay removeOverlay = (Command.RemoveOverlay)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(
-                        PARAM_RELATIVE_STORYBOARD_ITEM_ID);
-                final String overlayId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                final String mediaItemId = removeOverlay.getMediaItemId();
+                final String overlayId = command.getItemId();
 
+                // The listeners were notified when the overlay was removed
+                // from the model
+                boolean applied = false;
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
-                    if (ex == null) {
-                        videoProject.removeOverlay(mediaItemId, overlayId);
+                    final String requestId = command.getRequestId();
+                    if (ex != null) {
+                        videoProject.rejectEdit(requestId);
+                    } else {
+                        applied = videoProject.confirmEdit(requestId);
+                        if (!applied) {
+                            videoProject.removeOverlay(mediaItemId, overlayId);
+                        }
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
-                    listener.onOverlayRemoved(projectPath, overlayId, mediaItemId, ex);
+                if (!applied) {
+                    for (ApiServiceListener listener : mListeners.get(
+                            ApiServiceListener.EVENT_OVERLAY, projectPath)) {
+                        listener.onOverlayRemoved(projectPath, overlayId, mediaItemId, ex);
+                    }
                 }
 
                 break;
             }
 
             case OP_OVERLAY_SET_START_TIME: {
+                final Command.SetOverlayStartTime setOverlayStartTime =
+                    (Command.SetOverlayStartTime)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(
-                        PARAM_RELATIVE_STORYBOARD_ITEM_ID);
-                final String overlayId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final long startTimeMs = intent.getLongExtra(PARAM_START_TIME, 0);
+                final String mediaItemId = setOverlayStartTime.getMediaItemId();
+                final String overlayId = command.getItemId();
+                final long startTimeMs = setOverlayStartTime.getStartTimeMs();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
+                    final String requestId = command.getRequestId();
+                    boolean applied = false;
+                    if (ex == null) {
+                        applied = videoProject.confirmEdit(requestId);
+                    } else {
+                        videoProject.rejectEdit(requestId);
+                    }
+
                     final MovieOverlay overlay = videoProject.getOverlay(mediaItemId, overlayId);
                     if (overlay != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
                             overlay.setStartTime(startTimeMs);
+                            if (!applied) {
+                                overlay.setAppStartTime(startTimeMs);
+                            }
                         } else {
                             overlay.setAppStartTime(overlay.getStartTime());
                         }
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_OVERLAY, projectPath)) {
                     listener.onOverlayStartTimeSet(projectPath, overlayId, mediaItemId,
                             startTimeMs, ex);
                 }
@@ -3680,29 +4214,42 @@ public class ApiService extends Service {
             }
 
             case OP_OVERLAY_SET_DURATION: {
+                final Command.SetOverlayDuration setOverlayDuration =
+                    (Command.SetOverlayDuration)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(
-                        PARAM_RELATIVE_STORYBOARD_ITEM_ID);
-                final String overlayId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final long durationMs = intent.getLongExtra(PARAM_DURATION, 0);
+                final String mediaItemId = setOverlayDuration.getMediaItemId();
+                final String overlayId = command.getItemId();
+                final long durationMs = setOverlayDuration.getDurationMs();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
+                    final String requestId = command.getRequestId();
+                    boolean applied = false;
+                    if (ex == null) {
+                        applied = videoProject.confirmEdit(requestId);
+                    } else {
+                        videoProject.rejectEdit(requestId);
+                    }
+
                     final MovieOverlay overlay = videoProject.getOverlay(mediaItemId, overlayId);
                     if (overlay != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
                             overlay.setDuration(durationMs);
+                            if (!applied) {
+                                overlay.setAppDuration(durationMs);
+                            }
                         } else {
                             overlay.setAppDuration(overlay.getDuration());
                         }
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_OVERLAY, projectPath)) {
                     listener.onOverlayDurationSet(projectPath, overlayId, mediaItemId,
                             durationMs, ex);
                 }
@@ -3711,14 +4258,15 @@ public class ApiService extends Service {
             }
 
             case OP_OVERLAY_SET_ATTRIBUTES: {
+                final Command.SetOverlayUserAttributes setOverlayUserAttributes =
+                    (Command.SetOverlayUserAttributes)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(
-                        PARAM_RELATIVE_STORYBOARD_ITEM_ID);
-                final String overlayId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final Bundle userAttributes = intent.getBundleExtra(PARAM_ATTRIBUTES);
+                final String mediaItemId = setOverlayUserAttributes.getMediaItemId();
+                final String overlayId = command.getItemId();
+                final Bundle userAttributes = setOverlayUserAttributes.getUserAttributes();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
@@ -3732,7 +4280,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_OVERLAY, projectPath)) {
                     listener.onOverlayUserAttributesSet(projectPath, overlayId, mediaItemId,
                             userAttributes, ex);
                 }
@@ -3742,12 +4291,12 @@ public class ApiService extends Service {
 
             case OP_EFFECT_ADD_COLOR:
             case OP_EFFECT_ADD_IMAGE_KEN_BURNS:{
+                final Command.AddEffect addEffect = (Command.AddEffect)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(
-                        PARAM_RELATIVE_STORYBOARD_ITEM_ID);
+                final String mediaItemId = addEffect.getMediaItemId();
 
                 final MovieEffect movieEffect = (MovieEffect)result;
                 final VideoEditorProject videoProject = getProject(projectPath);
@@ -3757,7 +4306,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_EFFECT, projectPath)) {
                     listener.onEffectAdded(projectPath, movieEffect, mediaItemId, ex);
                 }
 
@@ -3765,13 +4315,13 @@ public class ApiService extends Service {
             }
 
             case OP_EFFECT_REMOVE: {
+                final Command.RemoveEffect removeEffect = (Command.RemoveEffect)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String mediaItemId = intent.getStringExtra(
-                        PARAM_RELATIVE_STORYBOARD_ITEM_ID);
-                final String effectId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                final String mediaItemId = removeEffect.getMediaItemId();
+                final String effectId = command.getItemId();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
@@ -3780,7 +4330,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_EFFECT, projectPath)) {
                     listener.onEffectRemoved(projectPath, effectId, mediaItemId, ex);
                 }
 
@@ -3789,7 +4340,7 @@ public class ApiService extends Service {
 
             case OP_AUDIO_TRACK_ADD: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final MovieAudioTrack movieAudioTrack = (MovieAudioTrack)result;
@@ -3800,7 +4351,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_AUDIO_TRACK, projectPath)) {
                     listener.onAudioTrackAdded(projectPath, movieAudioTrack, ex);
                 }
 
@@ -3809,10 +4361,10 @@ public class ApiService extends Service {
 
             case OP_AUDIO_TRACK_REMOVE: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                final String audioTrackId = command.getItemId();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
@@ -3821,7 +4373,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_AUDIO_TRACK, projectPath)) {
                     listener.onAudioTrackRemoved(projectPath, audioTrackId, ex);
                 }
 
@@ -3829,13 +4382,15 @@ public class ApiService extends Service {
             }
 
             case OP_AUDIO_TRACK_SET_BOUNDARIES: {
+                final Command.SetAudioTrackBoundaries setAudioTrackBoundaries =
+                    (Command.SetAudioTrackBoundaries)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final long beginBoundary = intent.getLongExtra(PARAM_BEGIN_BOUNDARY, 0);
-                final long endBoundary = intent.getLongExtra(PARAM_END_BOUNDARY, 0);
+                final String audioTrackId = command.getItemId();
+                final long beginBoundary = setAudioTrackBoundaries.getBeginBoundaryMs();
+                final long endBoundary = setAudioTrackBoundaries.getEndBoundaryMs();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
@@ -3849,7 +4404,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_AUDIO_TRACK, projectPath)) {
                     listener.onAudioTrackBoundariesSet(projectPath, audioTrackId,
                             beginBoundary, endBoundary, ex);
                 }
@@ -3858,18 +4414,20 @@ public class ApiService extends Service {
             }
 
             case OP_AUDIO_TRACK_SET_LOOP: {
+                final Command.SetAudioTrackLoop setAudioTrackLoop =
+                    (Command.SetAudioTrackLoop)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final String audioTrackId = command.getItemId();
                     final MovieAudioTrack audioTrack = videoProject.getAudioTrack(audioTrackId);
                     if (audioTrack != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
-                            audioTrack.enableLoop(intent.getBooleanExtra(PARAM_LOOP, false));
+                            audioTrack.enableLoop(setAudioTrackLoop.isLooping());
                         } else {
                             audioTrack.enableAppLoop(audioTrack.isLooping());
                         }
@@ -3880,18 +4438,20 @@ public class ApiService extends Service {
             }
 
             case OP_AUDIO_TRACK_SET_DUCK: {
+                final Command.SetAudioTrackDuck setAudioTrackDuck =
+                    (Command.SetAudioTrackDuck)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final String audioTrackId = command.getItemId();
                     final MovieAudioTrack audioTrack = videoProject.getAudioTrack(audioTrackId);
                     if (audioTrack != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
-                            audioTrack.enableDucking(intent.getBooleanExtra(PARAM_DUCK, false));
+                            audioTrack.enableDucking(setAudioTrackDuck.isDuckingEnabled());
                         } else {
                             audioTrack.enableAppDucking(audioTrack.isDuckingEnabled());
                         }
@@ -3902,18 +4462,20 @@ public class ApiService extends Service {
             }
 
             case OP_AUDIO_TRACK_SET_VOLUME: {
+                final Command.SetAudioTrackVolume setAudioTrackVolume =
+                    (Command.SetAudioTrackVolume)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final String audioTrackId = command.getItemId();
                     final MovieAudioTrack audioTrack = videoProject.getAudioTrack(audioTrackId);
                     if (audioTrack != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
-                            audioTrack.setVolume(intent.getIntExtra(PARAM_VOLUME, 0));
+                            audioTrack.setVolume(setAudioTrackVolume.getVolume());
                         } else {
                             audioTrack.setAppVolume(audioTrack.getVolume());
                         }
@@ -3924,18 +4486,20 @@ public class ApiService extends Service {
             }
 
             case OP_AUDIO_TRACK_SET_MUTE: {
+                final Command.SetAudioTrackMute setAudioTrackMute =
+                    (Command.SetAudioTrackMute)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (videoProject != null) {
-                    final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                    final String audioTrackId = command.getItemId();
                     final MovieAudioTrack audioTrack = videoProject.getAudioTrack(audioTrackId);
                     if (audioTrack != null) {
                         videoProject.setClean(false);
                         if (ex == null) {
-                            audioTrack.setMute(intent.getBooleanExtra(PARAM_MUTE, false));
+                            audioTrack.setMute(setAudioTrackMute.isMuted());
                         } else {
                             audioTrack.setAppMute(audioTrack.isMuted());
                         }
@@ -3946,14 +4510,17 @@ public class ApiService extends Service {
             }
 
             case OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM_STATUS: {
+                final Command.AudioTrackAudioWaveformProgress audioTrackAudioWaveformProgress =
+                    (Command.AudioTrackAudioWaveformProgress)command;
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
-                final int progress = intent.getIntExtra(PARAM_PROGRESS_VALUE, 0);
+                final String audioTrackId = command.getItemId();
+                final int progress = audioTrackAudioWaveformProgress.getProgress();
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_AUDIO_WAVEFORM, projectPath)) {
                     listener.onAudioTrackExtractAudioWaveformProgress(projectPath, audioTrackId,
                             progress);
                 }
@@ -3963,10 +4530,10 @@ public class ApiService extends Service {
 
             case OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
 
-                final String audioTrackId = intent.getStringExtra(PARAM_STORYBOARD_ITEM_ID);
+                final String audioTrackId = command.getItemId();
 
                 final VideoEditorProject videoProject = getProject(projectPath);
                 if (ex == null && videoProject != null) {
@@ -3980,7 +4547,8 @@ public class ApiService extends Service {
                     }
                 }
 
-                for (ApiServiceListener listener : mListeners) {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_AUDIO_WAVEFORM, projectPath)) {
                     listener.onAudioTrackExtractAudioWaveformComplete(projectPath,
                             audioTrackId, ex);
                 }
@@ -3990,42 +4558,34 @@ public class ApiService extends Service {
 
             default: {
                 if (finalize) {
-                    finalizeRequest(intent);
+                    finalizeRequest(command);
                 }
                 break;
             }
         }
-
-        if (finalize) {
-            mIntentPool.put(intent);
-        }
     }
 
     /**
      * Finalizes a request. Calls the listeners that are interested in project status
-     * change and stops this service if there are no more pending intents.
+     * change and stops this service if there are no more pending requests.
      *
-     * @param intent The intent that just completed
+     * @param command The command that just completed
      */
-    private void finalizeRequest(Intent intent) {
-        mPendingIntents.remove(intent.getStringExtra(PARAM_REQUEST_ID));
-
-        final String projectPath = intent.getStringExtra(PARAM_PROJECT_PATH);
-        if (projectPath != null) {
-            final boolean projectEdited = isProjectBeingEdited(projectPath);
-            if (projectEdited == false) {
-                for (ApiServiceListener listener : mListeners) {
-                    listener.onProjectEditState(projectPath, projectEdited);
-                }
-            }
+    private void finalizeRequest(Command command) {
+        // The notifications are not pending requests
+        if (command.getRequestId() == null) {
+            return;
         }
 
-        if (mPendingIntents.size() == 0) {
+        // The listeners are notified if the project is not edited anymore
+        mPendingRequests.remove(command.getRequestId());
+
+        if (mPendingRequests.isEmpty()) {
             // Cancel the current timer if any. Extend the timeout by 5000 ms.
             mHandler.removeCallbacks(mStopRunnable);
 
             // Start a timer which will stop the service if the queue of
-            // pending intent will be empty at that time.
+            // pending requests will be empty at that time.
             // This prevents the service from starting & stopping too often.
             mHandler.postDelayed(mStopRunnable, 5000);
             logd("completeRequest: Stopping service in 5000 ms");
@@ -4120,6 +4680,191 @@ public class ApiService extends Service {
         return mVideoEditor;
     }
 
+    /**
+     * Get the filename of a video from its media store URI
+     *
+     * @param uri The video URI
+     *
+     * @return The filename
+     */
+    private String getVideoFilename(Uri uri) {
+        String filename = null;
+        Cursor cursor = null;
+        try {
+            cursor = getContentResolver().query(uri,
+                    new String[] {Video.Media.DATA}, null, null, null);
+            if (cursor.moveToFirst()) {
+                filename = cursor.getString(0);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        if (filename == null) {
+            throw new IllegalArgumentException("Media file not found: " + uri);
+        }
+
+        return filename;
+    }
+
+    /**
+     * Get the filename of an image from its media store URI. JPEG images
+     * are rotated according to their EXIF orientation.
+     *
+     * @param projectPath The project path
+     * @param uri The image URI
+     *
+     * @return The filename of the image or of the rotated image
+     */
+    private String getImageFilename(String projectPath, Uri uri) {
+        String filename = null;
+        Cursor cursor = null;
+        try {
+            cursor = getContentResolver().query(uri,
+                    new String[] {Images.Media.DATA, Images.Media.MIME_TYPE},
+                    null, null, null);
+            if (cursor.moveToFirst()) {
+                filename = cursor.getString(0);
+                final String mimeType = cursor.getString(1);
+                if ("image/jpeg".equals(mimeType)) {
+                    filename = transformJpeg(projectPath, filename);
+                }
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        if (filename == null) {
+            throw new IllegalArgumentException("Media file not found: " + uri);
+        }
+
+        return filename;
+    }
+
+    /**
+     * Rotate a JPEG according to its EXIF orientation
+     *
+     * @param projectPath The project path
+     * @param filename The JPEG filename
+     *
+     * @return The filename of the rotated image or the input filename if the
+     *      image was not rotated
+     */
+    private static String transformJpeg(String projectPath, String filename) {
+        try {
+            final File outputFile = new File(projectPath,
+                    ImageUtils.getTransformedJpegName(filename, "gallery_image_"));
+            if (ImageUtils.transformJpeg(filename, outputFile)) {
+                return outputFile.getAbsolutePath();
+            }
+        } catch (Exception ex) {
+            // Ignore the exception and continue
+            Log.w(TAG, "Could not transform JPEG: " + filename, ex);
+        }
+
+        return filename;
+    }
+
+    /**
+     * Resolve the filenames of the media files to import and rotate the JPEG
+     * images. The files are prepared in parallel and a progress notification
+     * is sent as each file is done. Failures are recorded in the import files.
+     *
+     * @param projectPath The project path
+     * @param files The files to prepare
+     */
+    private void prepareImportFiles(final String projectPath, final ImportFile[] files)
+            throws InterruptedException {
+        final int count = files.length;
+        if (count == 0) {
+            return;
+        }
+
+        final AtomicInteger prepared = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(count, Runtime.getRuntime().availableProcessors()));
+        try {
+            for (final ImportFile file : files) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            prepareImportFile(projectPath, file);
+                        } catch (Exception ex) {
+                            Log.w(TAG, "Cannot import: " + file.mUri, ex);
+                            file.mException = ex;
+                        }
+
+                        completeRequest(new Command.AddUrisProgress(projectPath,
+                                file.mMediaItemId, prepared.incrementAndGet(), count), null, null,
+                                null, null, true);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Termination makes the results of the workers visible to this thread
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Prepare a media file to import
+     *
+     * @param projectPath The project path
+     * @param file The file to prepare
+     */
+    private void prepareImportFile(String projectPath, ImportFile file) throws IOException {
+        if (file.mUri != null) {
+            final String mimeType = getContentResolver().getType(file.mUri);
+            if (mimeType == null) {
+                throw new IllegalArgumentException("Unknown media type: " + file.mUri);
+            }
+
+            file.mImage = mimeType.startsWith("image/");
+            file.mTypeKnown = true;
+            if (file.mImage) {
+                file.mFilename = getImageFilename(projectPath, file.mUri);
+            } else {
+                file.mFilename = getVideoFilename(file.mUri);
+            }
+        } else if (file.mImage) {
+            if (MediaProbe.probe(file.mFilename).getType() == MediaProbe.TYPE_JPEG) {
+                file.mFilename = transformJpeg(projectPath, file.mFilename);
+            }
+        }
+
+        if (!file.mImage) {
+            probeVideo(file.mFilename);
+        }
+    }
+
+    /**
+     * Probe the header of a video file before the video editor parses it.
+     * The probe is advisory: the video editor decides whether the file is
+     * supported, so the unexpected headers are only logged.
+     *
+     * @param filename The video filename
+     */
+    private static void probeVideo(String filename) {
+        try {
+            final MediaProbe.Metadata metadata = MediaProbe.probe(filename);
+            if (metadata.getType() != MediaProbe.TYPE_MP4) {
+                Log.w(TAG, "Unknown video container: " + filename);
+            } else if (metadata.getDurationMs() > 0 && !metadata.hasDimensions()) {
+                // The dimensions are unknown if the movie box was not parsed
+                Log.w(TAG, "No video track found: " + filename);
+            }
+        } catch (IOException ex) {
+            Log.w(TAG, "Cannot probe video: " + filename, ex);
+        }
+    }
+
     /**
      * Generate the preview
      *
@@ -4141,92 +4886,763 @@ public class ApiService extends Service {
     }
 
     /**
-     * Exports a movie in a distinct worker thread.
+     * Take a snapshot of the saved project for an export job, so that the
+     * job loads its own video editor and the project can be edited while
+     * the job is pending. The storyboard is copied with the files of the
+     * project folder which it references, such as the overlay frames and
+     * the transformed images, because the editing of the project rewrites
+     * or deletes them. The media files outside of the project folder are
+     * referenced in place.
      *
-     * @param videoEditor The video editor
-     * @param intent The intent
+     * @param projectPath The project path
+     * @param jobId The job id
+     *
+     * @return The snapshot folder
      */
-    private void exportMovie(final VideoEditor videoEditor, final Intent intent) {
-        mExportCancelled = false;
-        new Thread() {
-            @Override
-            public void run() {
-                final String filename = intent.getStringExtra(PARAM_FILENAME);
-                final int height = intent.getIntExtra(PARAM_HEIGHT, -1);
-                final int bitrate = intent.getIntExtra(PARAM_BITRATE, -1);
-
-                // Create the export status Intent
-                final Intent statusIntent = mIntentPool.get();
-                statusIntent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_EXPORT_STATUS);
-                statusIntent.putExtra(PARAM_PROJECT_PATH, intent.getStringExtra(
-                        PARAM_PROJECT_PATH));
-                statusIntent.putExtra(PARAM_FILENAME, filename);
-                statusIntent.putExtra(PARAM_INTENT, intent);
-                Exception resultException = null;
+    private static File createExportSnapshot(String projectPath, String jobId)
+            throws IOException {
+        final File snapshotDir = new File(projectPath, EXPORT_SNAPSHOT_PREFIX + jobId);
+        if (!snapshotDir.mkdirs()) {
+            throw new IOException("Cannot create the export snapshot: " + snapshotDir);
+        }
+
+        final File projectDir = new File(projectPath);
+        String storyboard = readFile(new File(projectDir, VIDEO_EDITOR_FILENAME));
+        for (String filename : getProjectFiles(storyboard, projectDir)) {
+            final File snapshotFile = new File(snapshotDir, new File(filename).getName());
+            FileUtils.copyFile(new File(filename), snapshotFile);
+            storyboard = storyboard.replace('"' + filename + '"',
+                    '"' + snapshotFile.getAbsolutePath() + '"');
+        }
+
+        final FileOutputStream out = new FileOutputStream(
+                new File(snapshotDir, VIDEO_EDITOR_FILENAME));
+        try {
+            out.write(storyboard.getBytes("UTF-8"));
+            out.flush();
+        } finally {
+            out.close();
+        }
 
+        return snapshotDir;
+    }
+
+    /**
+     * @param storyboard The storyboard saved by the video editor
+     * @param projectDir The project folder
+     *
+     * @return The files of the project folder referenced by the attributes of
+     *      the storyboard
+     */
+    private static Set<String> getProjectFiles(String storyboard, File projectDir)
+            throws IOException {
+        final Set<String> filenames = new HashSet<String>();
+        try {
+            final XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(new StringReader(storyboard));
+            int eventType = parser.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    for (int i = 0; i < parser.getAttributeCount(); i++) {
+                        final File file = new File(parser.getAttributeValue(i));
+                        if (file.isAbsolute() && projectDir.equals(file.getParentFile())
+                                && file.isFile()) {
+                            filenames.add(file.getAbsolutePath());
+                        }
+                    }
+                }
+                eventType = parser.next();
+            }
+        } catch (XmlPullParserException ex) {
+            throw new IOException("Cannot parse the storyboard: " + ex.getMessage());
+        }
+
+        return filenames;
+    }
+
+    /**
+     * @param file The file
+     *
+     * @return The UTF-8 content of the file
+     */
+    private static String readFile(File file) throws IOException {
+        final FileInputStream fis = new FileInputStream(file);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = fis.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Export the movie of a job. The movie exported from the same timeline
+     * is reused if it still exists. The storyboard is exported in segments
+     * when possible, and the checkpoints of a previous attempt of the job
+     * are reused.
+     *
+     * @param job The export job
+     * @param outputFilename The output filename
+     * @param exportCache The export cache of the project
+     * @param manifest The manifest of the export
+     *
+     * @return The fingerprint of the timeline
+     */
+    private String exportMovie(final ExportJob job, String outputFilename,
+            ExportCache exportCache, ExportManifest manifest) throws Exception {
+        final String filename = job.getFilename();
+        final String fingerprint;
+        List<ExportSegment> segments = null;
+        final VideoEditor snapshotEditor = VideoEditorFactory.load(job.getSnapshotPath(), false);
+        try {
+            final List<String> mediaItemIds = new ArrayList<String>();
+            for (MediaItem mediaItem : snapshotEditor.getAllMediaItems()) {
+                mediaItemIds.add(mediaItem.getId());
+            }
+            fingerprint = ExportCache.getFingerprint(snapshotEditor, mediaItemIds, 0,
+                    job.getHeight(), job.getBitrate());
+            job.getStats().start(snapshotEditor.getDuration());
+
+            segments = getExportSegments(snapshotEditor, job);
+            if (segments != null) {
+                // The passthrough segments are encoded if they cannot be
+                // joined, so they have fingerprints as well
+                for (ExportSegment segment : segments) {
+                    segment.mFingerprint = ExportCache.getFingerprint(snapshotEditor,
+                            segment.mMediaItemIds, segment.mStartTimeMs, job.getHeight(),
+                            job.getBitrate());
+                }
+            }
+        } finally {
+            snapshotEditor.release();
+        }
+
+        // Reuse the movie exported from the same timeline if it still exists
+        final String exportedFilename = exportCache.getMovie(fingerprint);
+        if (exportedFilename != null && !exportedFilename.equals(filename)) {
+            try {
+                FileUtils.copyFile(new File(exportedFilename), new File(outputFilename));
+                job.getStats().setReusedDuration(job.getStats().getDurationMs());
+                postExportProgress(job, 100);
+                logv("Export reused: " + exportedFilename + " for: " + filename);
+                return fingerprint;
+            } catch (IOException ex) {
+                Log.w(TAG, "Cannot reuse the exported movie: " + exportedFilename, ex);
+            }
+        }
+
+        if (segments != null) {
+            manifest.open(fingerprint);
+            // The segments of this export are not evicted by the exports
+            // which run concurrently until they are joined
+            final List<String> segmentFingerprints = new ArrayList<String>(segments.size());
+            for (ExportSegment segment : segments) {
+                segmentFingerprints.add(segment.mFingerprint);
+            }
+            exportCache.pinSegments(segmentFingerprints);
+            try {
                 try {
-                    videoEditor.export(filename, height, bitrate, new ExportProgressListener() {
+                    exportSegments(job, segments, outputFilename, exportCache, manifest);
+                } catch (IOException ex) {
+                    // The source clips may not be joined with the encoded
+                    // segments. Encode them as well.
+                    if (job.isCancelled() || !clearPassthrough(segments)) {
+                        throw ex;
+                    }
+                    Log.w(TAG, "Cannot join the source clips, encoding them: " + filename, ex);
+                    exportSegments(job, segments, outputFilename, exportCache, manifest);
+                }
+
+                logv("Exported " + segments.size() + " segments for: " + filename);
+                return fingerprint;
+            } catch (Exception ex) {
+                if (job.isCancelled()) {
+                    return fingerprint;
+                }
+                // The segments may not be joined, for instance if their
+                // formats differ. Export the whole movie instead.
+                Log.w(TAG, "Segment export failed, exporting serially: " + filename, ex);
+            } finally {
+                for (int i = 0; i < segments.size(); i++) {
+                    FileUtils.deleteDir(new File(job.getSnapshotPath(),
+                            EXPORT_SEGMENT_PREFIX + i));
+                }
+                exportCache.releaseSegments(segmentFingerprints);
+                exportCache.trimSegments();
+            }
+        }
+
+        // The serial export encodes the whole movie
+        job.getStats().setReusedDuration(0);
+        final VideoEditor videoEditor = VideoEditorFactory.load(job.getSnapshotPath(), false);
+        try {
+            if (!job.addVideoEditor(videoEditor, outputFilename)) {
+                return fingerprint;
+            }
+
+            try {
+                videoEditor.export(outputFilename, job.getHeight(), job.getBitrate(),
+                        new ExportProgressListener() {
+                    @Override
+                    public void onProgress(VideoEditor videoEditor, String exportFilename,
+                            int progress) {
+                        postExportProgress(job, progress);
+                    }
+                });
+            } finally {
+                job.removeVideoEditor(videoEditor);
+            }
+        } finally {
+            videoEditor.release();
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * @param filename The export filename
+     *
+     * @return The hidden file to which the movie is written until it is
+     *      complete. The file has the extension of the export file.
+     */
+    private static File getPartialExportFile(String filename) {
+        final File file = new File(filename);
+        return new File(file.getParentFile(), "." + file.getName());
+    }
+
+    /**
+     * Verify an exported movie and move it to the export file in one step
+     *
+     * @param partialFile The exported movie
+     * @param file The export file
+     */
+    private static void commitExport(File partialFile, File file) throws IOException {
+        if (!partialFile.exists()) {
+            throw new IllegalStateException("Export file does not exist: " + partialFile);
+        }
+
+        // The movie must be readable
+        if (Mp4Concatenator.getDurationMs(partialFile.getAbsolutePath()) <= 0) {
+            throw new IOException("Empty export file: " + partialFile);
+        }
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace the export file: " + file);
+        }
+
+        if (!partialFile.renameTo(file)) {
+            throw new IOException("Cannot rename the export file: " + partialFile);
+        }
+    }
+
+    /**
+     * Split the storyboard into segments which can be exported concurrently.
+     * The storyboard is split after the media items which are not followed
+     * by a transition. If every video clip can be copied without being
+     * re-encoded, each clip forms its own segment. Otherwise the parts are grouped
+     * into one segment per processor, or into segments of about a minute in
+     * long movies, balanced by duration.
+     *
+     * @param videoEditor The video editor
+     * @param job The export job
+     *
+     * @return The segments, null if the movie should be exported serially
+     */
+    private static List<ExportSegment> getExportSegments(VideoEditor videoEditor,
+            ExportJob job) {
+        final List<MediaItem> mediaItems = videoEditor.getAllMediaItems();
+        final int mediaItemsCount = mediaItems.size();
+        if (mediaItemsCount == 0) {
+            return null;
+        }
+
+        // A looping audio track cannot be split
+        for (AudioTrack audioTrack : videoEditor.getAllAudioTracks()) {
+            if (audioTrack.isLooping()) {
+                return null;
+            }
+        }
+
+        // The encoded segments never share the sample descriptions of the
+        // source clips, so they could not be joined with them. The source
+        // clips are copied only if all the media items can be copied and
+        // the clips can be joined together.
+        boolean copySources = mSmartRenderEnabled;
+        if (copySources) {
+            final List<String> sourceFilenames = new ArrayList<String>(mediaItemsCount);
+            long startTimeMs = 0;
+            for (MediaItem mediaItem : mediaItems) {
+                if (!isPassthroughCandidate(videoEditor, mediaItem, startTimeMs, job)) {
+                    copySources = false;
+                    break;
+                }
+                sourceFilenames.add(mediaItem.getFilename());
+                // The candidates have no transitions
+                startTimeMs += mediaItem.getTimelineDuration();
+            }
+
+            copySources = copySources && Mp4Concatenator.isCompatible(sourceFilenames);
+        }
+
+        final List<ExportSegment> parts = new ArrayList<ExportSegment>();
+        ExportSegment part = null;
+        long timeMs = 0;
+        long encodedDurationMs = 0;
+        boolean hasPassthrough = false;
+        for (int i = 0; i < mediaItemsCount; i++) {
+            final MediaItem mediaItem = mediaItems.get(i);
+            final Transition endTransition = mediaItem.getEndTransition();
+            final boolean last = i == mediaItemsCount - 1;
+            long durationMs = mediaItem.getTimelineDuration();
+
+            if (copySources) {
+                // The media item has no transition so no part is open
+                final MediaVideoItem videoItem = (MediaVideoItem)mediaItem;
+                final ExportSegment passthrough = new ExportSegment(timeMs);
+                passthrough.mMediaItemIds.add(mediaItem.getId());
+                passthrough.mDurationMs = durationMs;
+                passthrough.mPassthrough = true;
+                passthrough.mSourceFilename = videoItem.getFilename();
+                passthrough.mSourceBeginMs = videoItem.getBoundaryBeginTime();
+                passthrough.mSourceEndMs = videoItem.getBoundaryEndTime();
+                parts.add(passthrough);
+                hasPassthrough = true;
+                timeMs += durationMs;
+                continue;
+            }
+
+            if (part == null) {
+                part = new ExportSegment(timeMs);
+            }
+            part.mMediaItemIds.add(mediaItem.getId());
+
+            // A transition overlaps the media items on both of its sides
+            if (endTransition != null && !last) {
+                durationMs -= endTransition.getDuration();
+            }
+            part.mDurationMs += durationMs;
+            timeMs += durationMs;
+            encodedDurationMs += durationMs;
+
+            if (endTransition == null || last) {
+                parts.add(part);
+                part = null;
+            }
+        }
+
+        // Long movies are split further so that the export can be resumed
+        // from a checkpoint
+        final int parallelSegments = mParallelExportEnabled ?
+                (int)Math.min(Runtime.getRuntime().availableProcessors(),
+                        encodedDurationMs / MIN_EXPORT_SEGMENT_DURATION_MS) : 1;
+        final int maxSegments = (int)Math.max(parallelSegments,
+                encodedDurationMs / MAX_EXPORT_SEGMENT_DURATION_MS);
+        if (!hasPassthrough && (parts.size() < 2 || maxSegments < 2)) {
+            return null;
+        }
+
+        final List<ExportSegment> segments = new ArrayList<ExportSegment>();
+        ExportSegment segment = null;
+        int encodedSegmentsCount = 0;
+        long segmentsDurationMs = 0;
+        for (ExportSegment p : parts) {
+            if (p.mPassthrough) {
+                if (segment != null) {
+                    segments.add(segment);
+                    segment = null;
+                }
+                segments.add(p);
+                continue;
+            }
+
+            if (segment == null) {
+                segment = new ExportSegment(p.mStartTimeMs);
+                encodedSegmentsCount++;
+            }
+            segment.mMediaItemIds.addAll(p.mMediaItemIds);
+            segment.mDurationMs += p.mDurationMs;
+            segmentsDurationMs += p.mDurationMs;
+
+            if (encodedSegmentsCount < maxSegments &&
+                    segmentsDurationMs >= encodedDurationMs * encodedSegmentsCount / maxSegments) {
+                segments.add(segment);
+                segment = null;
+            }
+        }
+
+        if (segment != null) {
+            segments.add(segment);
+        }
+
+        return segments.size() > 1 || hasPassthrough ? segments : null;
+    }
+
+    /**
+     * Check if a media item can be copied into the exported movie without
+     * being re-encoded
+     *
+     * @param videoEditor The video editor
+     * @param mediaItem The media item
+     * @param startTimeMs The start time of the media item in the storyboard
+     * @param job The export job
+     *
+     * @return true if the source clip of the media item can be copied
+     */
+    private static boolean isPassthroughCandidate(VideoEditor videoEditor, MediaItem mediaItem,
+            long startTimeMs, ExportJob job) {
+        if (!(mediaItem instanceof MediaVideoItem)) {
+            return false;
+        }
+
+        final MediaVideoItem videoItem = (MediaVideoItem)mediaItem;
+        if (videoItem.getBeginTransition() != null || videoItem.getEndTransition() != null ||
+                videoItem.getAllEffects().size() > 0 || videoItem.getAllOverlays().size() > 0) {
+            return false;
+        }
+
+        if (videoItem.getFileType() != MediaProperties.FILE_MP4 &&
+                videoItem.getFileType() != MediaProperties.FILE_3GP) {
+            return false;
+        }
+
+        // The exported video and audio must match the source
+        if (videoItem.getVideoType() != MediaProperties.VCODEC_H264 ||
+                videoItem.getHeight() != job.getHeight() ||
+                videoItem.getAspectRatio() != videoEditor.getAspectRatio() ||
+                videoItem.getVideoBitrate() > job.getBitrate() ||
+                videoItem.getAudioType() != MediaProperties.ACODEC_AAC_LC ||
+                videoItem.isMuted() || videoItem.getVolume() != 100) {
+            return false;
+        }
+
+        // The audio tracks start at the beginning of the storyboard and are
+        // mixed with the audio of the media items they overlap
+        for (AudioTrack audioTrack : videoEditor.getAllAudioTracks()) {
+            if (startTimeMs < audioTrack.getTimelineDuration()) {
+                return false;
+            }
+        }
+
+        // The source clip is cut at a sync frame
+        try {
+            final long syncTimeMs = Mp4Concatenator.getSyncTime(videoItem.getFilename(),
+                    videoItem.getBoundaryBeginTime());
+            return videoItem.getBoundaryBeginTime() - syncTimeMs <= MAX_PASSTHROUGH_SYNC_OFFSET_MS;
+        } catch (IOException ex) {
+            Log.w(TAG, "Cannot read the sync frames of: " + videoItem.getFilename(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Encode the passthrough segments which could not be copied
+     *
+     * @param segments The segments
+     *
+     * @return true if a segment was a passthrough segment
+     */
+    private static boolean clearPassthrough(List<ExportSegment> segments) {
+        boolean cleared = false;
+        for (ExportSegment segment : segments) {
+            if (segment.mPassthrough) {
+                segment.mPassthrough = false;
+                cleared = true;
+            }
+        }
+
+        return cleared;
+    }
+
+    /**
+     * Export the segments of a movie concurrently and join them. The
+     * segments which were already exported, the segments checkpointed by a
+     * previous attempt of the export, the segments found in the cache and
+     * the passthrough segments are not exported again.
+     *
+     * @param job The export job
+     * @param segments The segments
+     * @param outputFilename The output filename
+     * @param exportCache The export cache of the project
+     * @param manifest The manifest of the export
+     */
+    private void exportSegments(final ExportJob job, final List<ExportSegment> segments,
+            String outputFilename, final ExportCache exportCache,
+            final ExportManifest manifest) throws Exception {
+        final File snapshotDir = new File(job.getSnapshotPath());
+        final int count = segments.size();
+        final int[] progress = new int[count];
+        final List<Integer> pendingSegments = new ArrayList<Integer>();
+        long totalDurationMs = 0;
+        long reusedDurationMs = 0;
+        for (int i = 0; i < count; i++) {
+            final ExportSegment segment = segments.get(i);
+            totalDurationMs += segment.mDurationMs;
+            if (!segment.mPassthrough && segment.mFilename == null) {
+                segment.mFilename = manifest.getCheckpoint(i, segment.mFingerprint);
+                segment.mReused = segment.mFilename != null;
+            }
+
+            if (!segment.mPassthrough && segment.mFilename == null) {
+                final File cachedFile = exportCache.getSegment(segment.mFingerprint);
+                if (cachedFile != null) {
+                    logv("Segment reused: " + i + " for: " + job.getFilename());
+                    segment.mFilename = cachedFile.getAbsolutePath();
+                    segment.mReused = true;
+                }
+            }
+
+            if (segment.mPassthrough || segment.mReused) {
+                reusedDurationMs += segment.mDurationMs;
+            }
+
+            if (segment.mPassthrough || segment.mFilename != null) {
+                progress[i] = 100;
+            } else {
+                pendingSegments.add(i);
+            }
+        }
+        job.getStats().setReusedDuration(reusedDurationMs);
+
+        final long durationMs = Math.max(1, totalDurationMs);
+        final Exception[] exceptions = new Exception[count];
+        if (pendingSegments.size() > 0) {
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+                    pendingSegments.size(), mParallelExportEnabled ?
+                            Runtime.getRuntime().availableProcessors() : 1));
+            try {
+                for (final int index : pendingSegments) {
+                    executor.execute(new Runnable() {
                         @Override
-                        public void onProgress(VideoEditor videoEditor, String filename,
-                                int progress) {
-                            final Intent progressIntent = mIntentPool.get();
-                            progressIntent.putExtra(PARAM_OP, OP_VIDEO_EDITOR_EXPORT_STATUS);
-                            progressIntent.putExtra(PARAM_PROJECT_PATH, intent.getStringExtra(
-                                    PARAM_PROJECT_PATH));
-                            progressIntent.putExtra(PARAM_FILENAME, filename);
-                            progressIntent.putExtra(PARAM_INTENT, intent);
-                            progressIntent.putExtra(PARAM_PROGRESS_VALUE, progress);
-                            mVideoThread.submit(progressIntent);
-                            logv("Export progress: " + progress + " for: " + filename);
+                        public void run() {
+                            final ExportSegment segment = segments.get(index);
+                            job.getStats().onSegmentStarted(index);
+                            try {
+                                exportSegment(job, snapshotDir, index, segment,
+                                        new ExportProgressListener() {
+                                    @Override
+                                    public void onProgress(VideoEditor videoEditor,
+                                            String filename, int segmentProgress) {
+                                        long doneMs = 0;
+                                        synchronized (progress) {
+                                            progress[index] = segmentProgress;
+                                            for (int j = 0; j < count; j++) {
+                                                doneMs += progress[j]
+                                                        * segments.get(j).mDurationMs;
+                                            }
+                                        }
+                                        postExportProgress(job, (int)(doneMs / durationMs));
+                                    }
+                                });
+
+                                if (segment.mFilename != null) {
+                                    job.getStats().onSegmentCompleted(index,
+                                            segment.mDurationMs);
+                                    segment.mFilename = exportCache.putSegment(
+                                            segment.mFingerprint, new File(segment.mFilename))
+                                            .getAbsolutePath();
+                                    manifest.addCheckpoint(index, segment.mFingerprint,
+                                            segment.mFilename);
+                                }
+                            } catch (Exception ex) {
+                                Log.w(TAG, "Cannot export segment: " + index, ex);
+                                exceptions[index] = ex;
+                            }
                         }
                     });
+                }
+            } finally {
+                executor.shutdown();
+            }
 
-                    statusIntent.putExtra(PARAM_CANCELLED, mExportCancelled);
-                    if (!mExportCancelled) {
-                        if (new File(filename).exists()) {
-                            statusIntent.putExtra(PARAM_MOVIE_URI, exportToGallery(filename));
-                        } else {
-                            resultException = new IllegalStateException("Export file does not exist: " + filename);
-                        }
-                        logv("Export complete for: " + filename);
-                    } else {
-                        logv("Export cancelled by user, file name: " + filename);
-                    }
-                } catch (Exception ex) {
-                    logv("Export error for: " + filename);
-                    ex.printStackTrace();
-                    resultException = ex;
+            // Termination makes the results of the workers visible to this thread
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        if (job.isCancelled()) {
+            return;
+        }
+
+        final List<Mp4Concatenator.Clip> clips = new ArrayList<Mp4Concatenator.Clip>(count);
+        for (int i = 0; i < count; i++) {
+            if (exceptions[i] != null) {
+                throw exceptions[i];
+            }
+
+            final ExportSegment segment = segments.get(i);
+            if (segment.mPassthrough) {
+                clips.add(new Mp4Concatenator.Clip(segment.mSourceFilename,
+                        segment.mSourceBeginMs, segment.mSourceEndMs));
+            } else {
+                clips.add(new Mp4Concatenator.Clip(segment.mFilename));
+            }
+        }
+
+        Mp4Concatenator.concatenate(clips, outputFilename);
+    }
+
+    /**
+     * Export a segment of a movie. The storyboard of the job snapshot is
+     * loaded in a folder of the segment, in which the video editor writes
+     * its temporary files, and the media items and audio outside of the
+     * segment are removed.
+     *
+     * @param job The export job
+     * @param snapshotDir The snapshot folder
+     * @param index The index of the segment
+     * @param segment The segment
+     * @param listener The progress listener
+     */
+    private static void exportSegment(ExportJob job, File snapshotDir, int index,
+            ExportSegment segment, ExportProgressListener listener) throws Exception {
+        final File segmentDir = new File(snapshotDir, EXPORT_SEGMENT_PREFIX + index);
+        FileUtils.deleteDir(segmentDir);
+        if (!segmentDir.mkdirs()) {
+            throw new IOException("Cannot create the segment folder: " + segmentDir);
+        }
+
+        FileUtils.copyFile(new File(snapshotDir, VIDEO_EDITOR_FILENAME),
+                new File(segmentDir, VIDEO_EDITOR_FILENAME));
+
+        final String filename = new File(segmentDir, EXPORT_SEGMENT_PREFIX + index + ".mp4")
+                .getAbsolutePath();
+        final VideoEditor videoEditor = VideoEditorFactory.load(segmentDir.getAbsolutePath(),
+                false);
+        try {
+            for (MediaItem mediaItem :
+                    new ArrayList<MediaItem>(videoEditor.getAllMediaItems())) {
+                if (!segment.mMediaItemIds.contains(mediaItem.getId())) {
+                    videoEditor.removeMediaItem(mediaItem.getId());
+                }
+            }
+
+            // The audio tracks start at the beginning of the storyboard
+            for (AudioTrack audioTrack :
+                    new ArrayList<AudioTrack>(videoEditor.getAllAudioTracks())) {
+                final long beginMs = audioTrack.getBoundaryBeginTime() + segment.mStartTimeMs;
+                if (beginMs >= audioTrack.getBoundaryEndTime()) {
+                    videoEditor.removeAudioTrack(audioTrack.getId());
+                } else {
+                    audioTrack.setExtractBoundaries(beginMs, audioTrack.getBoundaryEndTime());
                 }
+            }
 
-                // Complete the request
-                statusIntent.putExtra(PARAM_EXCEPTION, resultException);
-                mVideoThread.submit(statusIntent);
+            if (!job.addVideoEditor(videoEditor, filename)) {
+                return;
             }
-        }.start();
+
+            try {
+                videoEditor.export(filename, job.getHeight(), job.getBitrate(), listener);
+            } finally {
+                job.removeVideoEditor(videoEditor);
+            }
+        } finally {
+            videoEditor.release();
+        }
+
+        if (job.isCancelled()) {
+            return;
+        }
+
+        if (!new File(filename).exists()) {
+            throw new IllegalStateException("Segment file does not exist: " + filename);
+        }
+
+        segment.mFilename = filename;
+    }
+
+    /**
+     * @param projectPath The project path
+     *
+     * @return The export cache of the project
+     */
+    private static ExportCache getExportCache(String projectPath) {
+        synchronized (mExportCaches) {
+            ExportCache exportCache = mExportCaches.get(projectPath);
+            if (exportCache == null) {
+                exportCache = new ExportCache(projectPath);
+                mExportCaches.put(projectPath, exportCache);
+            }
+
+            return exportCache;
+        }
+    }
+
+    /**
+     * Report the progress of an export job
+     *
+     * @param job The export job
+     * @param progress The export progress (0, 100)
+     */
+    private void postExportProgress(ExportJob job, final int progress) {
+        final String projectPath = job.getProjectPath();
+        final String filename = job.getFilename();
+        job.setProgress(progress);
+        job.getStats().onProgress(progress);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (ApiServiceListener listener : mListeners.get(
+                        ApiServiceListener.EVENT_EXPORT, projectPath)) {
+                    listener.onVideoEditorExportProgress(projectPath, filename, progress);
+                }
+            }
+        });
+        logv("Export progress: " + progress + " for: " + filename);
+    }
+
+    /**
+     * An export job finished
+     *
+     * @param job The job
+     * @param uri The URI of the exported movie
+     * @param exception The exception which occurred
+     */
+    private void onExportJobFinished(ExportJob job, Uri uri, Exception exception) {
+        final String projectPath = job.getProjectPath();
+        final boolean cancelled = job.getState() == ExportJob.STATE_CANCELLED;
+
+        // The jobs restored from a previous instance of the service do not
+        // have a pending request
+        final Command command = mPendingRequests.get(job.getId());
+        if (command != null) {
+            finalizeRequest(command);
+        } else if (mPendingRequests.isEmpty()) {
+            mHandler.removeCallbacks(mStopRunnable);
+            mHandler.postDelayed(mStopRunnable, 5000);
+        }
+
+        final VideoEditorProject videoProject = getProject(projectPath);
+        if (!cancelled && videoProject != null && exception == null) {
+            videoProject.addExportedMovieUri(uri);
+        }
+
+        for (ApiServiceListener listener : mListeners.get(
+                ApiServiceListener.EVENT_EXPORT, projectPath)) {
+            listener.onVideoEditorExportComplete(projectPath, job.getFilename(), exception,
+                    cancelled);
+        }
     }
 
     /**
      * Extract the audio waveform of a media item
      *
-     * @param intent The original Intent
+     * @param command The original command
      * @param videoEditor The video editor
      * @param mediaItem The media item
      */
-    private void extractMediaItemAudioWaveform(final Intent intent, final VideoEditor videoEditor,
-            final MediaVideoItem mediaItem) throws IOException {
+    private void extractMediaItemAudioWaveform(final Command.ExtractMediaItemAudioWaveform command,
+            final VideoEditor videoEditor, final MediaVideoItem mediaItem) throws IOException {
         mediaItem.extractAudioWaveform(
             new ExtractAudioWaveformProgressListener() {
             @Override
             public void onProgress(int progress) {
-                final Intent progressIntent = mIntentPool.get();
-                progressIntent.putExtra(PARAM_OP, OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM_STATUS);
-                progressIntent.putExtra(PARAM_PROJECT_PATH,
-                        intent.getStringExtra(PARAM_PROJECT_PATH));
-                progressIntent.putExtra(PARAM_INTENT, intent);
-                progressIntent.putExtra(PARAM_STORYBOARD_ITEM_ID, mediaItem.getId());
-                progressIntent.putExtra(PARAM_PROGRESS_VALUE, progress);
-
-                completeRequest(progressIntent, videoEditor, null, null, null, true);
+                completeRequest(new Command.MediaItemAudioWaveformProgress(command, progress),
+                        videoEditor, null, null, null, true);
             }
         });
     }
@@ -4234,26 +5650,19 @@ public class ApiService extends Service {
     /**
      * Extract the audio waveform of an AudioTrack
      *
-     * @param intent The original Intent
+     * @param command The original command
      * @param videoEditor The video editor
      * @param audioTrack The audio track
      */
-    private void extractAudioTrackAudioWaveform(final Intent intent, final VideoEditor videoEditor,
+    private void extractAudioTrackAudioWaveform(
+            final Command.ExtractAudioTrackAudioWaveform command, final VideoEditor videoEditor,
             final AudioTrack audioTrack) throws IOException {
         audioTrack.extractAudioWaveform(
             new ExtractAudioWaveformProgressListener() {
             @Override
             public void onProgress(int progress) {
-                final Intent progressIntent = mIntentPool.get();
-                progressIntent.putExtra(PARAM_OP,
-                        OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM_STATUS);
-                progressIntent.putExtra(PARAM_PROJECT_PATH,
-                        intent.getStringExtra(PARAM_PROJECT_PATH));
-                progressIntent.putExtra(PARAM_INTENT, intent);
-                progressIntent.putExtra(PARAM_STORYBOARD_ITEM_ID, audioTrack.getId());
-                progressIntent.putExtra(PARAM_PROGRESS_VALUE, progress);
-
-                completeRequest(progressIntent, videoEditor, null, null, null, true);
+                completeRequest(new Command.AudioTrackAudioWaveformProgress(command, progress),
+                        videoEditor, null, null, null, true);
             }
         });
     }
@@ -4386,7 +5795,7 @@ public class ApiService extends Service {
             }
 
             final Overlay overlay = new OverlayFrame(mediaItem, generateId(),
-                    ImageUtils.buildOverlayBitmap(getApplicationContext(), null,
+                    ImageUtils.copyOverlayBitmap(getApplicationContext(),
                             movieOverlay.getType(), movieOverlay.getTitle(),
                             movieOverlay.getSubtitle(), scaledWidth, scaledHeight),
                             movieOverlay.getStartTime(), movieOverlay.getDuration());
@@ -4519,7 +5928,7 @@ public class ApiService extends Service {
                 }
 
                 final Overlay overlay = new OverlayFrame(mediaItem, generateId(),
-                        ImageUtils.buildOverlayBitmap(getApplicationContext(), null,
+                        ImageUtils.copyOverlayBitmap(getApplicationContext(),
                                 movieOverlay.getType(), movieOverlay.getTitle(),
                                 movieOverlay.getSubtitle(), scaledWidth, scaledHeight),
                         movieOverlay.getStartTime(),
@@ -4647,6 +6056,203 @@ public class ApiService extends Service {
         applyThemeToMediaItem(videoEditor, themeId, movedMediaItem);
     }
 
+    /**
+     * Apply a list of edits. The edits are validated before any of them is
+     * applied and the applied edits are undone if an edit fails.
+     *
+     * @param videoEditor The video editor
+     * @param edits The edits
+     *
+     * @return The applied edits
+     */
+    private BulkEdit.Result applyBulkEdit(final VideoEditor videoEditor,
+            List<Bundle> edits) {
+        // Check that all the edited items exist
+        for (Bundle edit : edits) {
+            final String mediaItemId = edit.getString(BulkEdit.ATTR_MEDIA_ITEM_ID);
+            final String id = edit.getString(BulkEdit.ATTR_ID);
+            switch (edit.getInt(BulkEdit.ATTR_TYPE)) {
+                case BulkEdit.EDIT_SET_RENDERING_MODE:
+                case BulkEdit.EDIT_ADD_EFFECT_COLOR:
+                case BulkEdit.EDIT_REMOVE_EFFECT: {
+                    if (videoEditor.getMediaItem(mediaItemId) == null) {
+                        throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
+                    }
+                    break;
+                }
+
+                case BulkEdit.EDIT_INSERT_CROSSFADE_TRANSITION:
+                case BulkEdit.EDIT_INSERT_FADE_BLACK_TRANSITION:
+                case BulkEdit.EDIT_INSERT_SLIDING_TRANSITION: {
+                    if (mediaItemId == null ? nextMediaItem(videoEditor, null) == null :
+                            videoEditor.getMediaItem(mediaItemId) == null) {
+                        throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
+                    }
+                    break;
+                }
+
+                case BulkEdit.EDIT_REMOVE_TRANSITION: {
+                    if (videoEditor.getTransition(id) == null) {
+                        throw new IllegalArgumentException("Transition not found: " + id);
+                    }
+                    break;
+                }
+
+                default: {
+                    throw new IllegalArgumentException("Unhandled edit: " +
+                            edit.getInt(BulkEdit.ATTR_TYPE));
+                }
+            }
+        }
+
+        final BulkEdit.Result result = new BulkEdit.Result();
+        // The operations which undo the applied edits, most recent first
+        final List<Runnable> undoList = new ArrayList<Runnable>(edits.size());
+        try {
+            for (Bundle edit : edits) {
+                final int type = edit.getInt(BulkEdit.ATTR_TYPE);
+                final String mediaItemId = edit.getString(BulkEdit.ATTR_MEDIA_ITEM_ID);
+                final String id = edit.getString(BulkEdit.ATTR_ID);
+                switch (type) {
+                    case BulkEdit.EDIT_SET_RENDERING_MODE: {
+                        final MediaItem mediaItem = videoEditor.getMediaItem(mediaItemId);
+                        final int oldRenderingMode = mediaItem.getRenderingMode();
+                        final int renderingMode = edit.getInt(BulkEdit.ATTR_RENDERING_MODE);
+                        mediaItem.setRenderingMode(renderingMode);
+                        undoList.add(0, new Runnable() {
+                            @Override
+                            public void run() {
+                                mediaItem.setRenderingMode(oldRenderingMode);
+                            }
+                        });
+
+                        result.add(new BulkEdit.AppliedEdit(type, mediaItemId, null,
+                                renderingMode, null, null));
+                        break;
+                    }
+
+                    case BulkEdit.EDIT_ADD_EFFECT_COLOR: {
+                        final MediaItem mediaItem = videoEditor.getMediaItem(mediaItemId);
+                        // Remove any existing effect
+                        final List<Effect> oldEffects =
+                            new ArrayList<Effect>(mediaItem.getAllEffects());
+                        for (Effect effect : oldEffects) {
+                            mediaItem.removeEffect(effect.getId());
+                        }
+
+                        final Effect effect = new EffectColor(mediaItem, id,
+                                edit.getLong(BulkEdit.ATTR_START_TIME, -1),
+                                edit.getLong(BulkEdit.ATTR_DURATION),
+                                edit.getInt(BulkEdit.ATTR_EFFECT_TYPE, -1),
+                                edit.getInt(BulkEdit.ATTR_EFFECT_PARAM, -1));
+                        mediaItem.addEffect(effect);
+                        undoList.add(0, new Runnable() {
+                            @Override
+                            public void run() {
+                                mediaItem.removeEffect(effect.getId());
+                                for (Effect oldEffect : oldEffects) {
+                                    mediaItem.addEffect(oldEffect);
+                                }
+                            }
+                        });
+
+                        result.add(new BulkEdit.AppliedEdit(type, mediaItemId, null, 0,
+                                new MovieEffect(effect), null));
+                        break;
+                    }
+
+                    case BulkEdit.EDIT_REMOVE_EFFECT: {
+                        final MediaItem mediaItem = videoEditor.getMediaItem(mediaItemId);
+                        final Effect effect = mediaItem.removeEffect(id);
+                        if (effect != null) {
+                            undoList.add(0, new Runnable() {
+                                @Override
+                                public void run() {
+                                    mediaItem.addEffect(effect);
+                                }
+                            });
+                        }
+
+                        result.add(new BulkEdit.AppliedEdit(type, mediaItemId, id, 0, null,
+                                null));
+                        break;
+                    }
+
+                    case BulkEdit.EDIT_INSERT_CROSSFADE_TRANSITION:
+                    case BulkEdit.EDIT_INSERT_FADE_BLACK_TRANSITION:
+                    case BulkEdit.EDIT_INSERT_SLIDING_TRANSITION: {
+                        final MediaItem afterMediaItem = mediaItemId != null ?
+                                videoEditor.getMediaItem(mediaItemId) : null;
+                        final MediaItem beforeMediaItem = nextMediaItem(videoEditor, mediaItemId);
+                        final Transition oldTransition = afterMediaItem != null ?
+                                afterMediaItem.getEndTransition() :
+                                    beforeMediaItem.getBeginTransition();
+
+                        final long durationMs = edit.getLong(BulkEdit.ATTR_DURATION);
+                        final int behavior = edit.getInt(BulkEdit.ATTR_BEHAVIOR,
+                                Transition.BEHAVIOR_LINEAR);
+                        final Transition transition;
+                        if (type == BulkEdit.EDIT_INSERT_CROSSFADE_TRANSITION) {
+                            transition = new TransitionCrossfade(id, afterMediaItem,
+                                    beforeMediaItem, durationMs, behavior);
+                        } else if (type == BulkEdit.EDIT_INSERT_FADE_BLACK_TRANSITION) {
+                            transition = new TransitionFadeBlack(id, afterMediaItem,
+                                    beforeMediaItem, durationMs, behavior);
+                        } else {
+                            transition = new TransitionSliding(id, afterMediaItem,
+                                    beforeMediaItem, durationMs, behavior,
+                                    edit.getInt(BulkEdit.ATTR_DIRECTION,
+                                            TransitionSliding.DIRECTION_RIGHT_OUT_LEFT_IN));
+                        }
+
+                        videoEditor.addTransition(transition);
+                        undoList.add(0, new Runnable() {
+                            @Override
+                            public void run() {
+                                videoEditor.removeTransition(transition.getId());
+                                if (oldTransition != null) {
+                                    videoEditor.addTransition(oldTransition);
+                                }
+                            }
+                        });
+
+                        result.add(new BulkEdit.AppliedEdit(type, mediaItemId, null, 0, null,
+                                new MovieTransition(transition)));
+                        break;
+                    }
+
+                    case BulkEdit.EDIT_REMOVE_TRANSITION: {
+                        final Transition transition = videoEditor.removeTransition(id);
+                        final MediaItem afterMediaItem = transition.getAfterMediaItem();
+                        undoList.add(0, new Runnable() {
+                            @Override
+                            public void run() {
+                                videoEditor.addTransition(transition);
+                            }
+                        });
+
+                        result.add(new BulkEdit.AppliedEdit(type,
+                                afterMediaItem != null ? afterMediaItem.getId() : null, id, 0,
+                                null, null));
+                        break;
+                    }
+
+                    default: {
+                        break;
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            Log.w(TAG, "Bulk edit failed, undoing " + undoList.size() + " edits", ex);
+            for (Runnable undo : undoList) {
+                undo.run();
+            }
+            throw ex;
+        }
+
+        return result;
+    }
+
     /**
      * Copy the media items
      *
@@ -4705,21 +6311,21 @@ public class ApiService extends Service {
     }
 
     /**
-     * Worker thread that processes intents and maintains its own intent queue.
+     * Worker thread that processes commands and maintains its own command queue.
      */
-    private class IntentProcessor extends Thread {
-        private final BlockingQueue<Intent> mIntentQueue;
+    private class CommandProcessor extends Thread {
+        private final BlockingQueue<Command> mCommandQueue;
 
-        public IntentProcessor(String threadName) {
-            super("IntentProcessor-" + threadName);
-            mIntentQueue = new LinkedBlockingQueue<Intent>();
+        public CommandProcessor(String threadName) {
+            super("CommandProcessor-" + threadName);
+            mCommandQueue = new LinkedBlockingQueue<Command>();
         }
 
         @Override
         public void run() {
             try {
                 while(true) {
-                    processIntent(mIntentQueue.take());
+                    processCommand(mCommandQueue.take());
                 }
             } catch (InterruptedException e) {
                 Log.e(TAG, "Terminating " + getName());
@@ -4727,39 +6333,39 @@ public class ApiService extends Service {
         }
 
         /**
-         * Submits a new intent for processing.
+         * Submits a new command for processing.
          *
-         * @param intent The intent to be processed
+         * @param command The command to be processed
          */
-        public void submit(Intent intent) {
+        public void submit(Command command) {
             if (isAlive()) {
-                mIntentQueue.add(intent);
+                mCommandQueue.add(command);
             } else {
                 Log.e(TAG, getName() + " should be started before submitting tasks.");
             }
         }
 
         /**
-         * Removes an intent from the queue.
+         * Removes a command from the queue.
          *
-         * @param intent The intent to be removed
+         * @param command The command to be removed
          *
-         * @return true if the intent is removed
+         * @return true if the command is removed
          */
-        public boolean cancel(Intent intent) {
-            return mIntentQueue.remove(intent);
+        public boolean cancel(Command command) {
+            return mCommandQueue.remove(command);
         }
 
-        public Iterator<Intent> getIntentQueueIterator() {
-            return mIntentQueue.iterator();
+        public Iterator<Command> getCommandQueueIterator() {
+            return mCommandQueue.iterator();
         }
 
         public void quit() {
             // Display an error if the queue is not empty and clear it.
-            final int queueSize = mIntentQueue.size();
+            final int queueSize = mCommandQueue.size();
             if (queueSize > 0) {
                 Log.e(TAG, "Thread queue is not empty. Size: " + queueSize);
-                mIntentQueue.clear();
+                mCommandQueue.clear();
             }
             interrupt();
         }
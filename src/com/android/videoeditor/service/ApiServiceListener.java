@@ -23,6 +23,7 @@ import android.net.Uri;
 import android.os.Bundle;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interface for API service listener. This interface declares various callbacks that
@@ -31,6 +32,20 @@ import java.util.List;
  * See {@link ProjectsCarouselView} for example usage.
  */
 public class ApiServiceListener {
+    // Event types. A listener subscribes to a combination of event types.
+    public static final int EVENT_PROJECTS = 1 << 0;
+    public static final int EVENT_PROJECT = 1 << 1;
+    public static final int EVENT_PREVIEW = 1 << 2;
+    public static final int EVENT_EXPORT = 1 << 3;
+    public static final int EVENT_MEDIA_ITEM = 1 << 4;
+    public static final int EVENT_THUMBNAIL = 1 << 5;
+    public static final int EVENT_AUDIO_WAVEFORM = 1 << 6;
+    public static final int EVENT_TRANSITION = 1 << 7;
+    public static final int EVENT_OVERLAY = 1 << 8;
+    public static final int EVENT_EFFECT = 1 << 9;
+    public static final int EVENT_AUDIO_TRACK = 1 << 10;
+    public static final int EVENT_ALL = (1 << 11) - 1;
+
     /**
      * The list of projects was loaded
      *
@@ -85,9 +100,12 @@ public class ApiServiceListener {
      *
      * @param projectPath The project path
      * @param theme The theme
+     * @param delta The transitions, overlays and audio tracks which were
+     *      replaced by the theme
      * @param exception The exception that occurred
      */
-    public void onVideoEditorThemeApplied(String projectPath, String theme, Exception exception) {}
+    public void onVideoEditorThemeApplied(String projectPath, String theme, TimelineDelta delta,
+            Exception exception) {}
 
     /**
      * Generate preview progress status
@@ -129,6 +147,14 @@ public class ApiServiceListener {
      */
     public void onVideoEditorExportCanceled(String projectPath, String filename) {}
 
+    /**
+     * The pending export jobs or their queue positions changed
+     *
+     * @param jobs The pending export jobs: the running jobs followed by the
+     *      queued jobs
+     */
+    public void onVideoEditorExportQueueChanged(List<ExportJob> jobs) {}
+
     /**
      * The VideoEditor state was saved
      *
@@ -168,6 +194,35 @@ public class ApiServiceListener {
             MovieMediaItem mediaItem, String afterMediaId, Class<?> mediaItemClass,
             Integer aspectRatio, Exception exception) {}
 
+    /**
+     * Several media items were added
+     *
+     * @param projectPath The project path
+     * @param mediaItems The newly added media items in timeline order (null
+     *      if the operation failed)
+     * @param afterMediaId The media item id preceding the media items
+     * @param aspectRatio The aspectRatio
+     * @param failedMediaItems The classes of the media items which could not
+     *      be added, indexed by media item id. The class is null if the type
+     *      of the media file is unknown. Null if the operation failed.
+     * @param exception The exception which occurred. Media items which could
+     *      be added are reported even if some of them failed.
+     */
+    public void onMediaItemsAdded(String projectPath, List<MovieMediaItem> mediaItems,
+            String afterMediaId, Integer aspectRatio, Map<String, Class<?>> failedMediaItems,
+            Exception exception) {}
+
+    /**
+     * The file of a media item being added by a batch operation was prepared
+     *
+     * @param projectPath The project path
+     * @param mediaItemId The id of the media item
+     * @param progress The number of files prepared so far
+     * @param count The number of files to prepare
+     */
+    public void onMediaItemsAddProgress(String projectPath, String mediaItemId, int progress,
+            int count) {}
+
     /**
      * Media load complete
      *
@@ -181,15 +236,34 @@ public class ApiServiceListener {
             String filename, Exception exception) {}
 
     /**
-     * A media item was moved
+     * Media load progress
+     *
+     * @param projectPath The project path
+     * @param mediaUri The media URI
+     * @param mimeType The mime type
+     * @param progress The progress in percent, -1 if the size of the media
+     *      is unknown
+     */
+    public void onMediaLoadProgress(String projectPath, Uri mediaUri, String mimeType,
+            int progress) {}
+
+    /**
+     * A media item was moved. This method is invoked when the move is applied
+     * to the project, before the service completes it. It is invoked again if
+     * the service result differs from the project (for example when a theme
+     * adds transitions) or if the service fails to move the media item, in
+     * which case the project is restored as it was before the move.
      *
      * @param projectPath The project path
      * @param mediaItemId The id of the media item which moved
      * @param afterMediaItemId The id of the relative media item id
+     * @param delta The changes made by the service which the project did
+     *      not hold, null when the move is applied to the project or if the
+     *      move failed
      * @param exception The exception which occurred
      */
     public void onMediaItemMoved(String projectPath, String mediaItemId,
-            String afterMediaItemId, Exception exception) {}
+            String afterMediaItemId, TimelineDelta delta, Exception exception) {}
 
     /**
      * A media item was removed
@@ -401,6 +475,16 @@ public class ApiServiceListener {
     public void onEffectRemoved(String projectPath, String effectId,
             String mediaItemId, Exception exception) {}
 
+    /**
+     * A bulk edit was applied. Either all the edits were applied or none was.
+     *
+     * @param projectPath The project path
+     * @param result The applied edits
+     * @param exception The exception which occurred
+     */
+    public void onBulkEditApplied(String projectPath, BulkEdit.Result result,
+            Exception exception) {}
+
     /**
      * A new audio track was added
      *
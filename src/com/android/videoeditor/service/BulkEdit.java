@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import android.os.Bundle;
+
+/**
+ * A list of edits of several media items and transitions. The edits are
+ * applied by the service in one pass: either all of them are applied or
+ * none is, the listeners are notified once and the preview is generated
+ * once.
+ */
+public class BulkEdit {
+    // Edit types
+    static final int EDIT_SET_RENDERING_MODE = 1;
+    static final int EDIT_ADD_EFFECT_COLOR = 2;
+    static final int EDIT_REMOVE_EFFECT = 3;
+    static final int EDIT_INSERT_CROSSFADE_TRANSITION = 4;
+    static final int EDIT_INSERT_FADE_BLACK_TRANSITION = 5;
+    static final int EDIT_INSERT_SLIDING_TRANSITION = 6;
+    static final int EDIT_REMOVE_TRANSITION = 7;
+
+    // Edit attributes
+    static final String ATTR_TYPE = "type";
+    static final String ATTR_MEDIA_ITEM_ID = "media_item_id";
+    static final String ATTR_ID = "id";
+    static final String ATTR_RENDERING_MODE = "rendering_mode";
+    static final String ATTR_START_TIME = "start_time";
+    static final String ATTR_DURATION = "duration";
+    static final String ATTR_EFFECT_TYPE = "effect_type";
+    static final String ATTR_EFFECT_PARAM = "effect_param";
+    static final String ATTR_BEHAVIOR = "behavior";
+    static final String ATTR_DIRECTION = "direction";
+
+    // Instance variables
+    private final ArrayList<Bundle> mEdits;
+
+    /**
+     * The edits applied by the service
+     */
+    public static class Result {
+        // Instance variables
+        private final List<AppliedEdit> mAppliedEdits;
+        private final Set<String> mMediaItemIds;
+        private final Map<String, MovieTransition> mTransitions;
+
+        /**
+         * Constructor
+         */
+        Result() {
+            mAppliedEdits = new ArrayList<AppliedEdit>();
+            mMediaItemIds = new LinkedHashSet<String>();
+            mTransitions = new LinkedHashMap<String, MovieTransition>();
+        }
+
+        /**
+         * Record an applied edit
+         *
+         * @param appliedEdit The applied edit
+         */
+        void add(AppliedEdit appliedEdit) {
+            mAppliedEdits.add(appliedEdit);
+            switch (appliedEdit.mType) {
+                case EDIT_INSERT_CROSSFADE_TRANSITION:
+                case EDIT_INSERT_FADE_BLACK_TRANSITION:
+                case EDIT_INSERT_SLIDING_TRANSITION: {
+                    mTransitions.put(appliedEdit.mMediaItemId, appliedEdit.mTransition);
+                    break;
+                }
+
+                case EDIT_REMOVE_TRANSITION: {
+                    mTransitions.put(appliedEdit.mMediaItemId, null);
+                    break;
+                }
+
+                default: {
+                    mMediaItemIds.add(appliedEdit.mMediaItemId);
+                    break;
+                }
+            }
+        }
+
+        /**
+         * @return The applied edits in the order in which they were applied
+         */
+        List<AppliedEdit> getAppliedEdits() {
+            return mAppliedEdits;
+        }
+
+        /**
+         * @return The ids of the media items whose rendering mode or effect
+         *      changed
+         */
+        public Set<String> getMediaItemIds() {
+            return Collections.unmodifiableSet(mMediaItemIds);
+        }
+
+        /**
+         * @return The transitions of the slots which changed, keyed by the id
+         *      of the media item which precedes the slot (null for the
+         *      beginning of the timeline). A null transition indicates that
+         *      the transition of the slot was removed.
+         */
+        public Map<String, MovieTransition> getTransitions() {
+            return Collections.unmodifiableMap(mTransitions);
+        }
+    }
+
+    /**
+     * An edit applied by the service
+     */
+    static class AppliedEdit {
+        // Instance variables
+        final int mType;
+        final String mMediaItemId;
+        final String mId;
+        final int mRenderingMode;
+        final MovieEffect mEffect;
+        final MovieTransition mTransition;
+
+        /**
+         * Constructor
+         *
+         * @param type The edit type
+         * @param mediaItemId The id of the edited media item, or of the media
+         *      item preceding the inserted or removed transition
+         * @param id The id of the removed effect or transition
+         * @param renderingMode The rendering mode
+         * @param effect The added effect
+         * @param transition The inserted transition
+         */
+        AppliedEdit(int type, String mediaItemId, String id, int renderingMode,
+                MovieEffect effect, MovieTransition transition) {
+            mType = type;
+            mMediaItemId = mediaItemId;
+            mId = id;
+            mRenderingMode = renderingMode;
+            mEffect = effect;
+            mTransition = transition;
+        }
+    }
+
+    /**
+     * Constructor
+     */
+    public BulkEdit() {
+        mEdits = new ArrayList<Bundle>();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param edits The edits
+     */
+    BulkEdit(ArrayList<Bundle> edits) {
+        mEdits = edits;
+    }
+
+    /**
+     * Set the rendering mode of a media item
+     *
+     * @param mediaItemId The id of the media item
+     * @param renderingMode The rendering mode
+     *
+     * @return This bulk edit
+     */
+    public BulkEdit setMediaItemRenderingMode(String mediaItemId, int renderingMode) {
+        final Bundle edit = newEdit(EDIT_SET_RENDERING_MODE, mediaItemId, null);
+        edit.putInt(ATTR_RENDERING_MODE, renderingMode);
+        return this;
+    }
+
+    /**
+     * Add a color effect to a media item. The existing effect is replaced.
+     *
+     * @param mediaItemId The id of the media item
+     * @param effectId The effect id
+     * @param startTimeMs The start time
+     * @param durationMs The duration of the effect
+     * @param type The effect type
+     * @param param The effect param (if any)
+     *
+     * @return This bulk edit
+     */
+    public BulkEdit addEffectColor(String mediaItemId, String effectId, long startTimeMs,
+            long durationMs, int type, int param) {
+        final Bundle edit = newEdit(EDIT_ADD_EFFECT_COLOR, mediaItemId, effectId);
+        edit.putLong(ATTR_START_TIME, startTimeMs);
+        edit.putLong(ATTR_DURATION, durationMs);
+        edit.putInt(ATTR_EFFECT_TYPE, type);
+        edit.putInt(ATTR_EFFECT_PARAM, param);
+        return this;
+    }
+
+    /**
+     * Remove the effect of a media item
+     *
+     * @param mediaItemId The id of the media item
+     * @param effectId The effect id
+     *
+     * @return This bulk edit
+     */
+    public BulkEdit removeEffect(String mediaItemId, String effectId) {
+        newEdit(EDIT_REMOVE_EFFECT, mediaItemId, effectId);
+        return this;
+    }
+
+    /**
+     * Insert a crossfade transition
+     *
+     * @param afterMediaItemId Insert the transition after this media item id
+     *      (null to insert at the beginning of the timeline)
+     * @param transitionId The transition id
+     * @param durationMs The duration of the transition
+     * @param behavior The transition behavior
+     *
+     * @return This bulk edit
+     */
+    public BulkEdit insertCrossfadeTransition(String afterMediaItemId, String transitionId,
+            long durationMs, int behavior) {
+        final Bundle edit = newEdit(EDIT_INSERT_CROSSFADE_TRANSITION, afterMediaItemId,
+                transitionId);
+        edit.putLong(ATTR_DURATION, durationMs);
+        edit.putInt(ATTR_BEHAVIOR, behavior);
+        return this;
+    }
+
+    /**
+     * Insert a fade-to-black transition
+     *
+     * @param afterMediaItemId Insert the transition after this media item id
+     *      (null to insert at the beginning of the timeline)
+     * @param transitionId The transition id
+     * @param durationMs The duration of the transition
+     * @param behavior The transition behavior
+     *
+     * @return This bulk edit
+     */
+    public BulkEdit insertFadeBlackTransition(String afterMediaItemId, String transitionId,
+            long durationMs, int behavior) {
+        final Bundle edit = newEdit(EDIT_INSERT_FADE_BLACK_TRANSITION, afterMediaItemId,
+                transitionId);
+        edit.putLong(ATTR_DURATION, durationMs);
+        edit.putInt(ATTR_BEHAVIOR, behavior);
+        return this;
+    }
+
+    /**
+     * Insert a sliding transition
+     *
+     * @param afterMediaItemId Insert the transition after this media item id
+     *      (null to insert at the beginning of the timeline)
+     * @param transitionId The transition id
+     * @param durationMs The duration of the transition
+     * @param behavior The transition behavior
+     * @param direction The slide direction
+     *
+     * @return This bulk edit
+     */
+    public BulkEdit insertSlidingTransition(String afterMediaItemId, String transitionId,
+            long durationMs, int behavior, int direction) {
+        final Bundle edit = newEdit(EDIT_INSERT_SLIDING_TRANSITION, afterMediaItemId,
+                transitionId);
+        edit.putLong(ATTR_DURATION, durationMs);
+        edit.putInt(ATTR_BEHAVIOR, behavior);
+        edit.putInt(ATTR_DIRECTION, direction);
+        return this;
+    }
+
+    /**
+     * Remove a transition
+     *
+     * @param transitionId The transition id
+     *
+     * @return This bulk edit
+     */
+    public BulkEdit removeTransition(String transitionId) {
+        newEdit(EDIT_REMOVE_TRANSITION, null, transitionId);
+        return this;
+    }
+
+    /**
+     * @return The number of edits
+     */
+    public int size() {
+        return mEdits.size();
+    }
+
+    /**
+     * @return The edits
+     */
+    ArrayList<Bundle> getEdits() {
+        return mEdits;
+    }
+
+    /**
+     * Append an edit
+     *
+     * @param type The edit type
+     * @param mediaItemId The media item id
+     * @param id The id of the effect or transition
+     *
+     * @return The edit
+     */
+    private Bundle newEdit(int type, String mediaItemId, String id) {
+        final Bundle edit = new Bundle();
+        edit.putInt(ATTR_TYPE, type);
+        edit.putString(ATTR_MEDIA_ITEM_ID, mediaItemId);
+        edit.putString(ATTR_ID, id);
+        mEdits.add(edit);
+        return edit;
+    }
+}
@@ -0,0 +1,1988 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.android.videoeditor.util.StringUtils;
+
+/**
+ * A command processed by the service. There is one immutable command class
+ * for each operation. The requests of the clients have a request id; the
+ * notifications which the service sends to itself do not. The arguments
+ * are copied when the command is created, so a command can be passed
+ * between threads without synchronization.
+ */
+abstract class Command {
+    // Instance variables
+    private final int mOp;
+    private final String mRequestId;
+    private final String mProjectPath;
+    private final String mItemId;
+
+    /**
+     * Constructor
+     *
+     * @param op The operation (ApiService.OP_*)
+     * @param requestId The request id, null for a notification
+     * @param projectPath The project path, null if the command does not
+     *      apply to a project
+     * @param itemId The id of the item to which the command applies, null
+     *      if none
+     */
+    protected Command(int op, String requestId, String projectPath, String itemId) {
+        mOp = op;
+        mRequestId = requestId;
+        mProjectPath = projectPath;
+        mItemId = itemId;
+    }
+
+    /**
+     * @return The operation
+     */
+    public int getOp() {
+        return mOp;
+    }
+
+    /**
+     * @return The request id, null for a notification
+     */
+    public String getRequestId() {
+        return mRequestId;
+    }
+
+    /**
+     * @return The project path, null if the command does not apply to a
+     *      project
+     */
+    public String getProjectPath() {
+        return mProjectPath;
+    }
+
+    /**
+     * @return The id of the item to which the command applies, null if none
+     */
+    public String getItemId() {
+        return mItemId;
+    }
+
+    /**
+     * @return A new request id
+     */
+    private static String newRequestId() {
+        return StringUtils.randomString(8);
+    }
+
+    /**
+     * Load the projects
+     */
+    static final class LoadProjects extends Command {
+        /**
+         * Constructor
+         */
+        public LoadProjects() {
+            super(ApiService.OP_VIDEO_EDITOR_LOAD_PROJECTS, newRequestId(), null, null);
+        }
+    }
+
+    /**
+     * Create a project
+     */
+    static final class CreateProject extends Command {
+        // Instance variables
+        private final String mProjectName;
+        private final String[] mMovies;
+        private final String[] mPhotos;
+        private final String mThemeId;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param projectName The project name
+         * @param movies The movie files added to the project
+         * @param photos The photo files added to the project
+         * @param themeId The theme id, null if none
+         */
+        public CreateProject(String projectPath, String projectName, String[] movies,
+                String[] photos, String themeId) {
+            super(ApiService.OP_VIDEO_EDITOR_CREATE, newRequestId(), projectPath, null);
+            mProjectName = projectName;
+            mMovies = movies != null ? movies.clone() : null;
+            mPhotos = photos != null ? photos.clone() : null;
+            mThemeId = themeId;
+        }
+
+        /**
+         * @return The project name
+         */
+        public String getProjectName() {
+            return mProjectName;
+        }
+
+        /**
+         * The returned array must not be modified.
+         *
+         * @return The movie files added to the project
+         */
+        public String[] getMovies() {
+            return mMovies;
+        }
+
+        /**
+         * The returned array must not be modified.
+         *
+         * @return The photo files added to the project
+         */
+        public String[] getPhotos() {
+            return mPhotos;
+        }
+
+        /**
+         * @return The theme id, null if none
+         */
+        public String getThemeId() {
+            return mThemeId;
+        }
+    }
+
+    /**
+     * Load a project
+     */
+    static final class LoadProject extends Command {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         */
+        public LoadProject(String projectPath) {
+            super(ApiService.OP_VIDEO_EDITOR_LOAD, newRequestId(), projectPath, null);
+        }
+    }
+
+    /**
+     * Save a project
+     */
+    static final class SaveProject extends Command {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         */
+        public SaveProject(String projectPath) {
+            super(ApiService.OP_VIDEO_EDITOR_SAVE, newRequestId(), projectPath, null);
+        }
+    }
+
+    /**
+     * Export the movie of a project
+     */
+    static final class ExportMovie extends Command {
+        // Instance variables
+        private final int mHeight;
+        private final int mBitrate;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param filename The export filename
+         * @param height The movie height
+         * @param bitrate The movie bitrate
+         */
+        public ExportMovie(String projectPath, String filename, int height, int bitrate) {
+            super(ApiService.OP_VIDEO_EDITOR_EXPORT, newRequestId(), projectPath, filename);
+            mHeight = height;
+            mBitrate = bitrate;
+        }
+
+        /**
+         * @return The export filename
+         */
+        public String getFilename() {
+            return getItemId();
+        }
+
+        /**
+         * @return The movie height
+         */
+        public int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * @return The movie bitrate
+         */
+        public int getBitrate() {
+            return mBitrate;
+        }
+    }
+
+    /**
+     * Cancel the export of a movie
+     */
+    static final class CancelExport extends Command {
+        // Instance variables
+        private final String mFilename;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param filename The export filename
+         */
+        public CancelExport(String projectPath, String filename) {
+            super(ApiService.OP_VIDEO_EDITOR_CANCEL_EXPORT, newRequestId(), projectPath, null);
+            mFilename = filename;
+        }
+
+        /**
+         * @return The export filename
+         */
+        public String getFilename() {
+            return mFilename;
+        }
+    }
+
+    /**
+     * Release a project
+     */
+    static final class ReleaseProject extends Command {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         */
+        public ReleaseProject(String projectPath) {
+            super(ApiService.OP_VIDEO_EDITOR_RELEASE, newRequestId(), projectPath, null);
+        }
+    }
+
+    /**
+     * Delete a project
+     */
+    static final class DeleteProject extends Command {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         */
+        public DeleteProject(String projectPath) {
+            super(ApiService.OP_VIDEO_EDITOR_DELETE, newRequestId(), projectPath, null);
+        }
+    }
+
+    /**
+     * Set the aspect ratio of a project
+     */
+    static final class SetAspectRatio extends Command {
+        // Instance variables
+        private final int mAspectRatio;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param aspectRatio The aspect ratio
+         */
+        public SetAspectRatio(String projectPath, int aspectRatio) {
+            super(ApiService.OP_VIDEO_EDITOR_SET_ASPECT_RATIO, newRequestId(), projectPath, null);
+            mAspectRatio = aspectRatio;
+        }
+
+        /**
+         * @return The aspect ratio
+         */
+        public int getAspectRatio() {
+            return mAspectRatio;
+        }
+    }
+
+    /**
+     * Apply a theme to a project
+     */
+    static final class ApplyTheme extends Command {
+        // Instance variables
+        private final String mThemeId;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param themeId The theme id
+         */
+        public ApplyTheme(String projectPath, String themeId) {
+            super(ApiService.OP_VIDEO_EDITOR_APPLY_THEME, newRequestId(), projectPath, null);
+            mThemeId = themeId;
+        }
+
+        /**
+         * @return The theme id
+         */
+        public String getThemeId() {
+            return mThemeId;
+        }
+    }
+
+    /**
+     * The progress of the preview generation
+     */
+    static final class GeneratePreviewProgress extends Command {
+        // Instance variables
+        private final String mClassName;
+        private final int mAction;
+        private final int mProgress;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The id of the storyboard item, null for the last notification
+         * @param className The class name of the storyboard item, null for the last notification
+         * @param action The action (MediaProcessingProgressListener.ACTION_*)
+         * @param progress The progress
+         */
+        public GeneratePreviewProgress(String projectPath, String itemId, String className,
+                int action, int progress) {
+            super(ApiService.OP_VIDEO_EDITOR_GENERATE_PREVIEW_PROGRESS, null, projectPath, itemId);
+            mClassName = className;
+            mAction = action;
+            mProgress = progress;
+        }
+
+        /**
+         * @return The class name of the storyboard item, null for the last notification
+         */
+        public String getClassName() {
+            return mClassName;
+        }
+
+        /**
+         * @return The action (MediaProcessingProgressListener.ACTION_*)
+         */
+        public int getAction() {
+            return mAction;
+        }
+
+        /**
+         * @return The progress
+         */
+        public int getProgress() {
+            return mProgress;
+        }
+    }
+
+    /**
+     * Apply several edits at once
+     */
+    static final class ApplyBulkEdit extends Command {
+        // Instance variables
+        private final List<Bundle> mEdits;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param edits The edits
+         */
+        public ApplyBulkEdit(String projectPath, List<Bundle> edits) {
+            super(ApiService.OP_VIDEO_EDITOR_BULK_EDIT, newRequestId(), projectPath, null);
+            mEdits = new ArrayList<Bundle>(edits);
+        }
+
+        /**
+         * The returned list must not be modified.
+         *
+         * @return The edits
+         */
+        public List<Bundle> getEdits() {
+            return mEdits;
+        }
+    }
+
+    /**
+     * Add a video media item
+     */
+    static final class AddVideoUri extends Command {
+        // Instance variables
+        private final String mAfterMediaItemId;
+        private final Uri mUri;
+        private final int mRenderingMode;
+        private final String mThemeId;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param afterMediaItemId The id of the media item preceding the media item
+         * @param uri The media item URI
+         * @param renderingMode The rendering mode
+         * @param themeId The theme id, null if none
+         */
+        public AddVideoUri(String projectPath, String itemId, String afterMediaItemId, Uri uri,
+                int renderingMode, String themeId) {
+            super(ApiService.OP_MEDIA_ITEM_ADD_VIDEO_URI, newRequestId(), projectPath, itemId);
+            mAfterMediaItemId = afterMediaItemId;
+            mUri = uri;
+            mRenderingMode = renderingMode;
+            mThemeId = themeId;
+        }
+
+        /**
+         * @return The id of the media item preceding the media item
+         */
+        public String getAfterMediaItemId() {
+            return mAfterMediaItemId;
+        }
+
+        /**
+         * @return The media item URI
+         */
+        public Uri getUri() {
+            return mUri;
+        }
+
+        /**
+         * @return The rendering mode
+         */
+        public int getRenderingMode() {
+            return mRenderingMode;
+        }
+
+        /**
+         * @return The theme id, null if none
+         */
+        public String getThemeId() {
+            return mThemeId;
+        }
+    }
+
+    /**
+     * Add an image media item
+     */
+    static final class AddImageUri extends Command {
+        // Instance variables
+        private final String mAfterMediaItemId;
+        private final Uri mUri;
+        private final int mRenderingMode;
+        private final long mDurationMs;
+        private final String mThemeId;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param afterMediaItemId The id of the media item preceding the media item
+         * @param uri The media item URI
+         * @param renderingMode The rendering mode
+         * @param durationMs The duration of the media item
+         * @param themeId The theme id, null if none
+         */
+        public AddImageUri(String projectPath, String itemId, String afterMediaItemId, Uri uri,
+                int renderingMode, long durationMs, String themeId) {
+            super(ApiService.OP_MEDIA_ITEM_ADD_IMAGE_URI, newRequestId(), projectPath, itemId);
+            mAfterMediaItemId = afterMediaItemId;
+            mUri = uri;
+            mRenderingMode = renderingMode;
+            mDurationMs = durationMs;
+            mThemeId = themeId;
+        }
+
+        /**
+         * @return The id of the media item preceding the media item
+         */
+        public String getAfterMediaItemId() {
+            return mAfterMediaItemId;
+        }
+
+        /**
+         * @return The media item URI
+         */
+        public Uri getUri() {
+            return mUri;
+        }
+
+        /**
+         * @return The rendering mode
+         */
+        public int getRenderingMode() {
+            return mRenderingMode;
+        }
+
+        /**
+         * @return The duration of the media item
+         */
+        public long getDurationMs() {
+            return mDurationMs;
+        }
+
+        /**
+         * @return The theme id, null if none
+         */
+        public String getThemeId() {
+            return mThemeId;
+        }
+    }
+
+    /**
+     * Add several media items
+     */
+    static final class AddUris extends Command {
+        // Instance variables
+        private final String[] mMediaItemIds;
+        private final String mAfterMediaItemId;
+        private final Uri[] mUris;
+        private final int mRenderingMode;
+        private final long mImageDurationMs;
+        private final String mThemeId;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param mediaItemIds The ids of the media items
+         * @param afterMediaItemId The id of the media item preceding the media items
+         * @param uris The media item URIs
+         * @param renderingMode The rendering mode
+         * @param imageDurationMs The duration of the image media items
+         * @param themeId The theme id, null if none
+         */
+        public AddUris(String projectPath, String[] mediaItemIds, String afterMediaItemId,
+                Uri[] uris, int renderingMode, long imageDurationMs, String themeId) {
+            super(ApiService.OP_MEDIA_ITEM_ADD_URIS, newRequestId(), projectPath, null);
+            mMediaItemIds = mediaItemIds != null ? mediaItemIds.clone() : null;
+            mAfterMediaItemId = afterMediaItemId;
+            mUris = uris != null ? uris.clone() : null;
+            mRenderingMode = renderingMode;
+            mImageDurationMs = imageDurationMs;
+            mThemeId = themeId;
+        }
+
+        /**
+         * The returned array must not be modified.
+         *
+         * @return The ids of the media items
+         */
+        public String[] getMediaItemIds() {
+            return mMediaItemIds;
+        }
+
+        /**
+         * @return The id of the media item preceding the media items
+         */
+        public String getAfterMediaItemId() {
+            return mAfterMediaItemId;
+        }
+
+        /**
+         * The returned array must not be modified.
+         *
+         * @return The media item URIs
+         */
+        public Uri[] getUris() {
+            return mUris;
+        }
+
+        /**
+         * @return The rendering mode
+         */
+        public int getRenderingMode() {
+            return mRenderingMode;
+        }
+
+        /**
+         * @return The duration of the image media items
+         */
+        public long getImageDurationMs() {
+            return mImageDurationMs;
+        }
+
+        /**
+         * @return The theme id, null if none
+         */
+        public String getThemeId() {
+            return mThemeId;
+        }
+    }
+
+    /**
+     * The progress of the import of several media items
+     */
+    static final class AddUrisProgress extends Command {
+        // Instance variables
+        private final int mProgress;
+        private final int mCount;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The id of the prepared media item
+         * @param progress The number of media files prepared
+         * @param count The number of media files
+         */
+        public AddUrisProgress(String projectPath, String itemId, int progress, int count) {
+            super(ApiService.OP_MEDIA_ITEM_ADD_URIS_PROGRESS, null, projectPath, itemId);
+            mProgress = progress;
+            mCount = count;
+        }
+
+        /**
+         * @return The number of media files prepared
+         */
+        public int getProgress() {
+            return mProgress;
+        }
+
+        /**
+         * @return The number of media files
+         */
+        public int getCount() {
+            return mCount;
+        }
+    }
+
+    /**
+     * Download or copy a media file
+     */
+    static final class LoadMedia extends Command {
+        // Instance variables
+        private final Uri mUri;
+        private final String mMimeType;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param uri The media URI
+         * @param mimeType The MIME type
+         */
+        public LoadMedia(String projectPath, Uri uri, String mimeType) {
+            super(ApiService.OP_MEDIA_ITEM_LOAD, newRequestId(), projectPath, null);
+            mUri = uri;
+            mMimeType = mimeType;
+        }
+
+        /**
+         * @return The media URI
+         */
+        public Uri getUri() {
+            return mUri;
+        }
+
+        /**
+         * @return The MIME type
+         */
+        public String getMimeType() {
+            return mMimeType;
+        }
+    }
+
+    /**
+     * The progress of a media download
+     */
+    static final class LoadMediaProgress extends Command {
+        // Instance variables
+        private final Uri mUri;
+        private final String mMimeType;
+        private final int mProgress;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param uri The media URI
+         * @param mimeType The MIME type
+         * @param progress The percentage downloaded, -1 if unknown
+         */
+        public LoadMediaProgress(String projectPath, Uri uri, String mimeType, int progress) {
+            super(ApiService.OP_MEDIA_ITEM_LOAD_PROGRESS, null, projectPath, null);
+            mUri = uri;
+            mMimeType = mimeType;
+            mProgress = progress;
+        }
+
+        /**
+         * @return The media URI
+         */
+        public Uri getUri() {
+            return mUri;
+        }
+
+        /**
+         * @return The MIME type
+         */
+        public String getMimeType() {
+            return mMimeType;
+        }
+
+        /**
+         * @return The percentage downloaded, -1 if unknown
+         */
+        public int getProgress() {
+            return mProgress;
+        }
+    }
+
+    /**
+     * The result of a media download
+     */
+    static final class LoadMediaStatus extends Command {
+        // Instance variables
+        private final LoadMedia mRequest;
+        private final String mFilename;
+        private final Exception mException;
+
+        /**
+         * Constructor
+         *
+         * @param request The download request
+         * @param filename The downloaded file, null if the download failed
+         * @param exception The download exception, null if the download succeeded
+         */
+        public LoadMediaStatus(LoadMedia request, String filename, Exception exception) {
+            super(ApiService.OP_MEDIA_ITEM_LOAD_STATUS, null, request.getProjectPath(), null);
+            mRequest = request;
+            mFilename = filename;
+            mException = exception;
+        }
+
+        /**
+         * @return The download request
+         */
+        public LoadMedia getRequest() {
+            return mRequest;
+        }
+
+        /**
+         * @return The downloaded file, null if the download failed
+         */
+        public String getFilename() {
+            return mFilename;
+        }
+
+        /**
+         * @return The download exception, null if the download succeeded
+         */
+        public Exception getException() {
+            return mException;
+        }
+    }
+
+    /**
+     * Move a media item
+     */
+    static final class MoveMediaItem extends Command {
+        // Instance variables
+        private final String mAfterMediaItemId;
+        private final String mThemeId;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param afterMediaItemId The id of the media item preceding the moved media item
+         * @param themeId The theme id, null if none
+         */
+        public MoveMediaItem(String projectPath, String itemId, String afterMediaItemId,
+                String themeId) {
+            super(ApiService.OP_MEDIA_ITEM_MOVE, newRequestId(), projectPath, itemId);
+            mAfterMediaItemId = afterMediaItemId;
+            mThemeId = themeId;
+        }
+
+        /**
+         * @return The id of the media item preceding the moved media item
+         */
+        public String getAfterMediaItemId() {
+            return mAfterMediaItemId;
+        }
+
+        /**
+         * @return The theme id, null if none
+         */
+        public String getThemeId() {
+            return mThemeId;
+        }
+    }
+
+    /**
+     * Remove a media item
+     */
+    static final class RemoveMediaItem extends Command {
+        // Instance variables
+        private final String mThemeId;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param themeId The theme id, null if none
+         */
+        public RemoveMediaItem(String projectPath, String itemId, String themeId) {
+            super(ApiService.OP_MEDIA_ITEM_REMOVE, newRequestId(), projectPath, itemId);
+            mThemeId = themeId;
+        }
+
+        /**
+         * @return The theme id, null if none
+         */
+        public String getThemeId() {
+            return mThemeId;
+        }
+    }
+
+    /**
+     * Set the rendering mode of a media item
+     */
+    static final class SetMediaItemRenderingMode extends Command {
+        // Instance variables
+        private final int mRenderingMode;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param renderingMode The rendering mode
+         */
+        public SetMediaItemRenderingMode(String projectPath, String itemId, int renderingMode) {
+            super(ApiService.OP_MEDIA_ITEM_SET_RENDERING_MODE, newRequestId(), projectPath, itemId);
+            mRenderingMode = renderingMode;
+        }
+
+        /**
+         * @return The rendering mode
+         */
+        public int getRenderingMode() {
+            return mRenderingMode;
+        }
+    }
+
+    /**
+     * Set the duration of an image media item
+     */
+    static final class SetMediaItemDuration extends Command {
+        // Instance variables
+        private final long mDurationMs;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param durationMs The duration
+         */
+        public SetMediaItemDuration(String projectPath, String itemId, long durationMs) {
+            super(ApiService.OP_MEDIA_ITEM_SET_DURATION, newRequestId(), projectPath, itemId);
+            mDurationMs = durationMs;
+        }
+
+        /**
+         * @return The duration
+         */
+        public long getDurationMs() {
+            return mDurationMs;
+        }
+    }
+
+    /**
+     * Set the boundaries of a video media item
+     */
+    static final class SetMediaItemBoundaries extends Command {
+        // Instance variables
+        private final long mBeginBoundaryMs;
+        private final long mEndBoundaryMs;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param beginBoundaryMs The begin boundary
+         * @param endBoundaryMs The end boundary
+         */
+        public SetMediaItemBoundaries(String projectPath, String itemId, long beginBoundaryMs,
+                long endBoundaryMs) {
+            super(ApiService.OP_MEDIA_ITEM_SET_BOUNDARIES, newRequestId(), projectPath, itemId);
+            mBeginBoundaryMs = beginBoundaryMs;
+            mEndBoundaryMs = endBoundaryMs;
+        }
+
+        /**
+         * @return The begin boundary
+         */
+        public long getBeginBoundaryMs() {
+            return mBeginBoundaryMs;
+        }
+
+        /**
+         * @return The end boundary
+         */
+        public long getEndBoundaryMs() {
+            return mEndBoundaryMs;
+        }
+    }
+
+    /**
+     * Set the volume of a video media item
+     */
+    static final class SetMediaItemVolume extends Command {
+        // Instance variables
+        private final int mVolume;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param volume The volume in percent
+         */
+        public SetMediaItemVolume(String projectPath, String itemId, int volume) {
+            super(ApiService.OP_MEDIA_ITEM_SET_VOLUME, newRequestId(), projectPath, itemId);
+            mVolume = volume;
+        }
+
+        /**
+         * @return The volume in percent
+         */
+        public int getVolume() {
+            return mVolume;
+        }
+    }
+
+    /**
+     * Mute or unmute a video media item
+     */
+    static final class SetMediaItemMute extends Command {
+        // Instance variables
+        private final boolean mMuted;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param muted true to mute the media item
+         */
+        public SetMediaItemMute(String projectPath, String itemId, boolean muted) {
+            super(ApiService.OP_MEDIA_ITEM_SET_MUTE, newRequestId(), projectPath, itemId);
+            mMuted = muted;
+        }
+
+        /**
+         * @return true to mute the media item
+         */
+        public boolean isMuted() {
+            return mMuted;
+        }
+    }
+
+    /**
+     * Extract the audio waveform of a video media item
+     */
+    static final class ExtractMediaItemAudioWaveform extends Command {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         */
+        public ExtractMediaItemAudioWaveform(String projectPath, String itemId) {
+            super(ApiService.OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM, newRequestId(), projectPath,
+                    itemId);
+        }
+    }
+
+    /**
+     * The progress of the extraction of a media item waveform
+     */
+    static final class MediaItemAudioWaveformProgress extends Command {
+        // Instance variables
+        private final int mProgress;
+
+        /**
+         * Constructor
+         *
+         * @param request The extraction request
+         * @param progress The progress
+         */
+        public MediaItemAudioWaveformProgress(ExtractMediaItemAudioWaveform request, int progress) {
+            super(ApiService.OP_MEDIA_ITEM_EXTRACT_AUDIO_WAVEFORM_STATUS, null,
+                    request.getProjectPath(), request.getItemId());
+            mProgress = progress;
+        }
+
+        /**
+         * @return The progress
+         */
+        public int getProgress() {
+            return mProgress;
+        }
+    }
+
+    /**
+     * Get the thumbnails of a media item
+     */
+    static final class GetMediaItemThumbnails extends Command {
+        // Instance variables
+        private final int mWidth;
+        private final int mHeight;
+        private final long mStartMs;
+        private final long mEndMs;
+        private final int mCount;
+        private final int mToken;
+        private final int[] mIndices;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The media item id
+         * @param width The thumbnail width
+         * @param height The thumbnail height
+         * @param startMs The start time
+         * @param endMs The end time
+         * @param count The number of thumbnails
+         * @param token The token of the request
+         * @param indices The indices of the requested thumbnails
+         */
+        public GetMediaItemThumbnails(String projectPath, String itemId, int width, int height,
+                long startMs, long endMs, int count, int token, int[] indices) {
+            super(ApiService.OP_MEDIA_ITEM_GET_THUMBNAILS, newRequestId(), projectPath, itemId);
+            mWidth = width;
+            mHeight = height;
+            mStartMs = startMs;
+            mEndMs = endMs;
+            mCount = count;
+            mToken = token;
+            mIndices = indices != null ? indices.clone() : null;
+        }
+
+        /**
+         * @return The thumbnail width
+         */
+        public int getWidth() {
+            return mWidth;
+        }
+
+        /**
+         * @return The thumbnail height
+         */
+        public int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * @return The start time
+         */
+        public long getStartMs() {
+            return mStartMs;
+        }
+
+        /**
+         * @return The end time
+         */
+        public long getEndMs() {
+            return mEndMs;
+        }
+
+        /**
+         * @return The number of thumbnails
+         */
+        public int getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return The token of the request
+         */
+        public int getToken() {
+            return mToken;
+        }
+
+        /**
+         * The returned array must not be modified.
+         *
+         * @return The indices of the requested thumbnails
+         */
+        public int[] getIndices() {
+            return mIndices;
+        }
+    }
+
+    /**
+     * Add an effect to a media item
+     */
+    abstract static class AddEffect extends Command {
+        // Instance variables
+        private final String mMediaItemId;
+        private final long mStartTimeMs;
+        private final long mDurationMs;
+
+        /**
+         * Constructor
+         *
+         * @param op The operation
+         * @param projectPath The project path
+         * @param itemId The effect id
+         * @param mediaItemId The media item id
+         * @param startTimeMs The start time
+         * @param durationMs The duration
+         */
+        protected AddEffect(int op, String projectPath, String itemId, String mediaItemId,
+                long startTimeMs, long durationMs) {
+            super(op, newRequestId(), projectPath, itemId);
+            mMediaItemId = mediaItemId;
+            mStartTimeMs = startTimeMs;
+            mDurationMs = durationMs;
+        }
+
+        /**
+         * @return The media item id
+         */
+        public String getMediaItemId() {
+            return mMediaItemId;
+        }
+
+        /**
+         * @return The start time
+         */
+        public long getStartTimeMs() {
+            return mStartTimeMs;
+        }
+
+        /**
+         * @return The duration
+         */
+        public long getDurationMs() {
+            return mDurationMs;
+        }
+    }
+
+    /**
+     * Add a color effect to a media item
+     */
+    static final class AddColorEffect extends AddEffect {
+        // Instance variables
+        private final int mType;
+        private final int mParam;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The effect id
+         * @param mediaItemId The media item id
+         * @param startTimeMs The start time
+         * @param durationMs The duration
+         * @param type The effect type
+         * @param param The effect parameter
+         */
+        public AddColorEffect(String projectPath, String itemId, String mediaItemId,
+                long startTimeMs, long durationMs, int type, int param) {
+            super(ApiService.OP_EFFECT_ADD_COLOR, projectPath, itemId, mediaItemId, startTimeMs,
+                    durationMs);
+            mType = type;
+            mParam = param;
+        }
+
+        /**
+         * @return The effect type
+         */
+        public int getType() {
+            return mType;
+        }
+
+        /**
+         * @return The effect parameter
+         */
+        public int getParam() {
+            return mParam;
+        }
+    }
+
+    /**
+     * Add a Ken Burns effect to a media item
+     */
+    static final class AddKenBurnsEffect extends AddEffect {
+        // Instance variables
+        private final Rect mStartRect;
+        private final Rect mEndRect;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The effect id
+         * @param mediaItemId The media item id
+         * @param startTimeMs The start time
+         * @param durationMs The duration
+         * @param startRect The start rectangle
+         * @param endRect The end rectangle
+         */
+        public AddKenBurnsEffect(String projectPath, String itemId, String mediaItemId,
+                long startTimeMs, long durationMs, Rect startRect, Rect endRect) {
+            super(ApiService.OP_EFFECT_ADD_IMAGE_KEN_BURNS, projectPath, itemId, mediaItemId,
+                    startTimeMs, durationMs);
+            mStartRect = startRect != null ? new Rect(startRect) : null;
+            mEndRect = endRect != null ? new Rect(endRect) : null;
+        }
+
+        /**
+         * The returned rectangle must not be modified.
+         *
+         * @return The start rectangle
+         */
+        public Rect getStartRect() {
+            return mStartRect;
+        }
+
+        /**
+         * The returned rectangle must not be modified.
+         *
+         * @return The end rectangle
+         */
+        public Rect getEndRect() {
+            return mEndRect;
+        }
+    }
+
+    /**
+     * Remove an effect
+     */
+    static final class RemoveEffect extends Command {
+        // Instance variables
+        private final String mMediaItemId;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The effect id
+         * @param mediaItemId The media item id
+         */
+        public RemoveEffect(String projectPath, String itemId, String mediaItemId) {
+            super(ApiService.OP_EFFECT_REMOVE, newRequestId(), projectPath, itemId);
+            mMediaItemId = mediaItemId;
+        }
+
+        /**
+         * @return The media item id
+         */
+        public String getMediaItemId() {
+            return mMediaItemId;
+        }
+    }
+
+    /**
+     * Insert a transition
+     */
+    abstract static class InsertTransition extends Command {
+        // Instance variables
+        private final String mAfterMediaItemId;
+        private final long mDurationMs;
+        private final int mBehavior;
+
+        /**
+         * Constructor
+         *
+         * @param op The operation
+         * @param projectPath The project path
+         * @param itemId The transition id
+         * @param afterMediaItemId The id of the media item preceding the transition
+         * @param durationMs The duration
+         * @param behavior The behavior
+         */
+        protected InsertTransition(int op, String projectPath, String itemId,
+                String afterMediaItemId, long durationMs, int behavior) {
+            super(op, newRequestId(), projectPath, itemId);
+            mAfterMediaItemId = afterMediaItemId;
+            mDurationMs = durationMs;
+            mBehavior = behavior;
+        }
+
+        /**
+         * @return The id of the media item preceding the transition
+         */
+        public String getAfterMediaItemId() {
+            return mAfterMediaItemId;
+        }
+
+        /**
+         * @return The duration
+         */
+        public long getDurationMs() {
+            return mDurationMs;
+        }
+
+        /**
+         * @return The behavior
+         */
+        public int getBehavior() {
+            return mBehavior;
+        }
+    }
+
+    /**
+     * Insert an alpha transition
+     */
+    static final class InsertAlphaTransition extends InsertTransition {
+        // Instance variables
+        private final int mMaskRawResourceId;
+        private final int mBlending;
+        private final boolean mInvert;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The transition id
+         * @param afterMediaItemId The id of the media item preceding the transition
+         * @param durationMs The duration
+         * @param behavior The behavior
+         * @param maskRawResourceId The mask raw resource id
+         * @param blending The blending percentage
+         * @param invert true to invert the mask
+         */
+        public InsertAlphaTransition(String projectPath, String itemId, String afterMediaItemId,
+                long durationMs, int behavior, int maskRawResourceId, int blending,
+                boolean invert) {
+            super(ApiService.OP_TRANSITION_INSERT_ALPHA, projectPath, itemId, afterMediaItemId,
+                    durationMs, behavior);
+            mMaskRawResourceId = maskRawResourceId;
+            mBlending = blending;
+            mInvert = invert;
+        }
+
+        /**
+         * @return The mask raw resource id
+         */
+        public int getMaskRawResourceId() {
+            return mMaskRawResourceId;
+        }
+
+        /**
+         * @return The blending percentage
+         */
+        public int getBlending() {
+            return mBlending;
+        }
+
+        /**
+         * @return true to invert the mask
+         */
+        public boolean isInverted() {
+            return mInvert;
+        }
+    }
+
+    /**
+     * Insert a crossfade transition
+     */
+    static final class InsertCrossfadeTransition extends InsertTransition {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The transition id
+         * @param afterMediaItemId The id of the media item preceding the transition
+         * @param durationMs The duration
+         * @param behavior The behavior
+         */
+        public InsertCrossfadeTransition(String projectPath, String itemId, String afterMediaItemId,
+                long durationMs, int behavior) {
+            super(ApiService.OP_TRANSITION_INSERT_CROSSFADE, projectPath, itemId, afterMediaItemId,
+                    durationMs, behavior);
+        }
+    }
+
+    /**
+     * Insert a fade to black transition
+     */
+    static final class InsertFadeBlackTransition extends InsertTransition {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The transition id
+         * @param afterMediaItemId The id of the media item preceding the transition
+         * @param durationMs The duration
+         * @param behavior The behavior
+         */
+        public InsertFadeBlackTransition(String projectPath, String itemId, String afterMediaItemId,
+                long durationMs, int behavior) {
+            super(ApiService.OP_TRANSITION_INSERT_FADE_BLACK, projectPath, itemId, afterMediaItemId,
+                    durationMs, behavior);
+        }
+    }
+
+    /**
+     * Insert a sliding transition
+     */
+    static final class InsertSlidingTransition extends InsertTransition {
+        // Instance variables
+        private final int mDirection;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The transition id
+         * @param afterMediaItemId The id of the media item preceding the transition
+         * @param durationMs The duration
+         * @param behavior The behavior
+         * @param direction The slide direction
+         */
+        public InsertSlidingTransition(String projectPath, String itemId, String afterMediaItemId,
+                long durationMs, int behavior, int direction) {
+            super(ApiService.OP_TRANSITION_INSERT_SLIDING, projectPath, itemId, afterMediaItemId,
+                    durationMs, behavior);
+            mDirection = direction;
+        }
+
+        /**
+         * @return The slide direction
+         */
+        public int getDirection() {
+            return mDirection;
+        }
+    }
+
+    /**
+     * Remove a transition
+     */
+    static final class RemoveTransition extends Command {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The transition id
+         */
+        public RemoveTransition(String projectPath, String itemId) {
+            super(ApiService.OP_TRANSITION_REMOVE, newRequestId(), projectPath, itemId);
+        }
+    }
+
+    /**
+     * Set the duration of a transition
+     */
+    static final class SetTransitionDuration extends Command {
+        // Instance variables
+        private final long mDurationMs;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The transition id
+         * @param durationMs The duration
+         */
+        public SetTransitionDuration(String projectPath, String itemId, long durationMs) {
+            super(ApiService.OP_TRANSITION_SET_DURATION, newRequestId(), projectPath, itemId);
+            mDurationMs = durationMs;
+        }
+
+        /**
+         * @return The duration
+         */
+        public long getDurationMs() {
+            return mDurationMs;
+        }
+    }
+
+    /**
+     * Get the thumbnails of a transition
+     */
+    static final class GetTransitionThumbnails extends Command {
+        // Instance variables
+        private final int mHeight;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The transition id
+         * @param height The thumbnail height
+         */
+        public GetTransitionThumbnails(String projectPath, String itemId, int height) {
+            super(ApiService.OP_TRANSITION_GET_THUMBNAIL, newRequestId(), projectPath, itemId);
+            mHeight = height;
+        }
+
+        /**
+         * @return The thumbnail height
+         */
+        public int getHeight() {
+            return mHeight;
+        }
+    }
+
+    /**
+     * Add an overlay to a media item
+     */
+    static final class AddOverlay extends Command {
+        // Instance variables
+        private final String mMediaItemId;
+        private final Bundle mUserAttributes;
+        private final long mStartTimeMs;
+        private final long mDurationMs;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The overlay id
+         * @param mediaItemId The media item id
+         * @param userAttributes The user attributes
+         * @param startTimeMs The start time
+         * @param durationMs The duration
+         */
+        public AddOverlay(String projectPath, String itemId, String mediaItemId,
+                Bundle userAttributes, long startTimeMs, long durationMs) {
+            super(ApiService.OP_OVERLAY_ADD, newRequestId(), projectPath, itemId);
+            mMediaItemId = mediaItemId;
+            mUserAttributes = userAttributes != null ? new Bundle(userAttributes) : null;
+            mStartTimeMs = startTimeMs;
+            mDurationMs = durationMs;
+        }
+
+        /**
+         * @return The media item id
+         */
+        public String getMediaItemId() {
+            return mMediaItemId;
+        }
+
+        /**
+         * The returned bundle must not be modified.
+         *
+         * @return The user attributes
+         */
+        public Bundle getUserAttributes() {
+            return mUserAttributes;
+        }
+
+        /**
+         * @return The start time
+         */
+        public long getStartTimeMs() {
+            return mStartTimeMs;
+        }
+
+        /**
+         * @return The duration
+         */
+        public long getDurationMs() {
+            return mDurationMs;
+        }
+    }
+
+    /**
+     * Remove an overlay
+     */
+    static final class RemoveOverlay extends Command {
+        // Instance variables
+        private final String mMediaItemId;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The overlay id
+         * @param mediaItemId The media item id
+         */
+        public RemoveOverlay(String projectPath, String itemId, String mediaItemId) {
+            super(ApiService.OP_OVERLAY_REMOVE, newRequestId(), projectPath, itemId);
+            mMediaItemId = mediaItemId;
+        }
+
+        /**
+         * @return The media item id
+         */
+        public String getMediaItemId() {
+            return mMediaItemId;
+        }
+    }
+
+    /**
+     * Set the start time of an overlay
+     */
+    static final class SetOverlayStartTime extends Command {
+        // Instance variables
+        private final String mMediaItemId;
+        private final long mStartTimeMs;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The overlay id
+         * @param mediaItemId The media item id
+         * @param startTimeMs The start time
+         */
+        public SetOverlayStartTime(String projectPath, String itemId, String mediaItemId,
+                long startTimeMs) {
+            super(ApiService.OP_OVERLAY_SET_START_TIME, newRequestId(), projectPath, itemId);
+            mMediaItemId = mediaItemId;
+            mStartTimeMs = startTimeMs;
+        }
+
+        /**
+         * @return The media item id
+         */
+        public String getMediaItemId() {
+            return mMediaItemId;
+        }
+
+        /**
+         * @return The start time
+         */
+        public long getStartTimeMs() {
+            return mStartTimeMs;
+        }
+    }
+
+    /**
+     * Set the duration of an overlay
+     */
+    static final class SetOverlayDuration extends Command {
+        // Instance variables
+        private final String mMediaItemId;
+        private final long mDurationMs;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The overlay id
+         * @param mediaItemId The media item id
+         * @param durationMs The duration
+         */
+        public SetOverlayDuration(String projectPath, String itemId, String mediaItemId,
+                long durationMs) {
+            super(ApiService.OP_OVERLAY_SET_DURATION, newRequestId(), projectPath, itemId);
+            mMediaItemId = mediaItemId;
+            mDurationMs = durationMs;
+        }
+
+        /**
+         * @return The media item id
+         */
+        public String getMediaItemId() {
+            return mMediaItemId;
+        }
+
+        /**
+         * @return The duration
+         */
+        public long getDurationMs() {
+            return mDurationMs;
+        }
+    }
+
+    /**
+     * Set the user attributes of an overlay
+     */
+    static final class SetOverlayUserAttributes extends Command {
+        // Instance variables
+        private final String mMediaItemId;
+        private final Bundle mUserAttributes;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The overlay id
+         * @param mediaItemId The media item id
+         * @param userAttributes The user attributes
+         */
+        public SetOverlayUserAttributes(String projectPath, String itemId, String mediaItemId,
+                Bundle userAttributes) {
+            super(ApiService.OP_OVERLAY_SET_ATTRIBUTES, newRequestId(), projectPath, itemId);
+            mMediaItemId = mediaItemId;
+            mUserAttributes = userAttributes != null ? new Bundle(userAttributes) : null;
+        }
+
+        /**
+         * @return The media item id
+         */
+        public String getMediaItemId() {
+            return mMediaItemId;
+        }
+
+        /**
+         * The returned bundle must not be modified.
+         *
+         * @return The user attributes
+         */
+        public Bundle getUserAttributes() {
+            return mUserAttributes;
+        }
+    }
+
+    /**
+     * Add an audio track
+     */
+    static final class AddAudioTrack extends Command {
+        // Instance variables
+        private final Uri mUri;
+        private final boolean mLoop;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The audio track id
+         * @param uri The audio track URI
+         * @param loop true to loop the audio track
+         */
+        public AddAudioTrack(String projectPath, String itemId, Uri uri, boolean loop) {
+            super(ApiService.OP_AUDIO_TRACK_ADD, newRequestId(), projectPath, itemId);
+            mUri = uri;
+            mLoop = loop;
+        }
+
+        /**
+         * @return The audio track URI
+         */
+        public Uri getUri() {
+            return mUri;
+        }
+
+        /**
+         * @return true to loop the audio track
+         */
+        public boolean isLooping() {
+            return mLoop;
+        }
+    }
+
+    /**
+     * Remove an audio track
+     */
+    static final class RemoveAudioTrack extends Command {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The audio track id
+         */
+        public RemoveAudioTrack(String projectPath, String itemId) {
+            super(ApiService.OP_AUDIO_TRACK_REMOVE, newRequestId(), projectPath, itemId);
+        }
+    }
+
+    /**
+     * Set the volume of an audio track
+     */
+    static final class SetAudioTrackVolume extends Command {
+        // Instance variables
+        private final int mVolume;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The audio track id
+         * @param volume The volume in percent
+         */
+        public SetAudioTrackVolume(String projectPath, String itemId, int volume) {
+            super(ApiService.OP_AUDIO_TRACK_SET_VOLUME, newRequestId(), projectPath, itemId);
+            mVolume = volume;
+        }
+
+        /**
+         * @return The volume in percent
+         */
+        public int getVolume() {
+            return mVolume;
+        }
+    }
+
+    /**
+     * Mute or unmute an audio track
+     */
+    static final class SetAudioTrackMute extends Command {
+        // Instance variables
+        private final boolean mMuted;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The audio track id
+         * @param muted true to mute the audio track
+         */
+        public SetAudioTrackMute(String projectPath, String itemId, boolean muted) {
+            super(ApiService.OP_AUDIO_TRACK_SET_MUTE, newRequestId(), projectPath, itemId);
+            mMuted = muted;
+        }
+
+        /**
+         * @return true to mute the audio track
+         */
+        public boolean isMuted() {
+            return mMuted;
+        }
+    }
+
+    /**
+     * Set the boundaries of an audio track
+     */
+    static final class SetAudioTrackBoundaries extends Command {
+        // Instance variables
+        private final long mBeginBoundaryMs;
+        private final long mEndBoundaryMs;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The audio track id
+         * @param beginBoundaryMs The begin boundary
+         * @param endBoundaryMs The end boundary
+         */
+        public SetAudioTrackBoundaries(String projectPath, String itemId, long beginBoundaryMs,
+                long endBoundaryMs) {
+            super(ApiService.OP_AUDIO_TRACK_SET_BOUNDARIES, newRequestId(), projectPath, itemId);
+            mBeginBoundaryMs = beginBoundaryMs;
+            mEndBoundaryMs = endBoundaryMs;
+        }
+
+        /**
+         * @return The begin boundary
+         */
+        public long getBeginBoundaryMs() {
+            return mBeginBoundaryMs;
+        }
+
+        /**
+         * @return The end boundary
+         */
+        public long getEndBoundaryMs() {
+            return mEndBoundaryMs;
+        }
+    }
+
+    /**
+     * Loop or unloop an audio track
+     */
+    static final class SetAudioTrackLoop extends Command {
+        // Instance variables
+        private final boolean mLoop;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The audio track id
+         * @param loop true to loop the audio track
+         */
+        public SetAudioTrackLoop(String projectPath, String itemId, boolean loop) {
+            super(ApiService.OP_AUDIO_TRACK_SET_LOOP, newRequestId(), projectPath, itemId);
+            mLoop = loop;
+        }
+
+        /**
+         * @return true to loop the audio track
+         */
+        public boolean isLooping() {
+            return mLoop;
+        }
+    }
+
+    /**
+     * Enable or disable the ducking of an audio track
+     */
+    static final class SetAudioTrackDuck extends Command {
+        // Instance variables
+        private final boolean mDuck;
+
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The audio track id
+         * @param duck true to enable ducking
+         */
+        public SetAudioTrackDuck(String projectPath, String itemId, boolean duck) {
+            super(ApiService.OP_AUDIO_TRACK_SET_DUCK, newRequestId(), projectPath, itemId);
+            mDuck = duck;
+        }
+
+        /**
+         * @return true to enable ducking
+         */
+        public boolean isDuckingEnabled() {
+            return mDuck;
+        }
+    }
+
+    /**
+     * Extract the audio waveform of an audio track
+     */
+    static final class ExtractAudioTrackAudioWaveform extends Command {
+        /**
+         * Constructor
+         *
+         * @param projectPath The project path
+         * @param itemId The audio track id
+         */
+        public ExtractAudioTrackAudioWaveform(String projectPath, String itemId) {
+            super(ApiService.OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM, newRequestId(), projectPath,
+                    itemId);
+        }
+    }
+
+    /**
+     * The progress of the extraction of an audio track waveform
+     */
+    static final class AudioTrackAudioWaveformProgress extends Command {
+        // Instance variables
+        private final int mProgress;
+
+        /**
+         * Constructor
+         *
+         * @param request The extraction request
+         * @param progress The progress
+         */
+        public AudioTrackAudioWaveformProgress(ExtractAudioTrackAudioWaveform request,
+                int progress) {
+            super(ApiService.OP_AUDIO_TRACK_EXTRACT_AUDIO_WAVEFORM_STATUS, null,
+                    request.getProjectPath(), request.getItemId());
+            mProgress = progress;
+        }
+
+        /**
+         * @return The progress
+         */
+        public int getProgress() {
+            return mProgress;
+        }
+    }
+}
@@ -0,0 +1,560 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlSerializer;
+
+import android.graphics.Rect;
+import android.media.videoeditor.AudioTrack;
+import android.media.videoeditor.Effect;
+import android.media.videoeditor.EffectColor;
+import android.media.videoeditor.EffectKenBurns;
+import android.media.videoeditor.MediaImageItem;
+import android.media.videoeditor.MediaItem;
+import android.media.videoeditor.MediaVideoItem;
+import android.media.videoeditor.Overlay;
+import android.media.videoeditor.Transition;
+import android.media.videoeditor.TransitionAlpha;
+import android.media.videoeditor.TransitionSliding;
+import android.media.videoeditor.VideoEditor;
+import android.util.Log;
+import android.util.Xml;
+
+/**
+ * The export results of a project, keyed by the fingerprint of the timeline
+ * which produced them. The exported movies are reused when the project is
+ * exported again without changes and the exported segments are reused when
+ * only some segments changed.
+ */
+class ExportCache {
+    // Logging
+    private static final String TAG = "ExportCache";
+
+    // The folder of the cache in the project folder
+    private static final String CACHE_FOLDER = "export_cache";
+    // The file which maps the fingerprints to the exported movies
+    private static final String MOVIES_FILENAME = "movies.xml";
+    // The maximum size of the cached segments
+    private static final long MAX_SEGMENTS_SIZE = 256 * 1024 * 1024;
+
+    // The XML tags and attributes of the movies file
+    private static final String TAG_MOVIES = "movies";
+    private static final String TAG_MOVIE = "movie";
+    private static final String ATTR_FINGERPRINT = "fingerprint";
+    private static final String ATTR_FILENAME = "filename";
+    private static final String ATTR_SIZE = "size";
+    private static final String ATTR_LAST_MODIFIED = "last_modified";
+
+    /**
+     * An exported movie. The size and modification time identify the file
+     * which was exported.
+     */
+    private static class Movie {
+        // Instance variables
+        private final String mFilename;
+        private final long mSize;
+        private final long mLastModified;
+
+        /**
+         * Constructor
+         *
+         * @param filename The filename of the movie
+         * @param size The size of the file
+         * @param lastModified The modification time of the file
+         */
+        public Movie(String filename, long size, long lastModified) {
+            mFilename = filename;
+            mSize = size;
+            mLastModified = lastModified;
+        }
+
+        /**
+         * @return true if the file is the exported movie
+         */
+        public boolean isValid() {
+            final File file = new File(mFilename);
+            return file.isFile() && file.length() == mSize &&
+                    file.lastModified() == mLastModified;
+        }
+    }
+
+    // Instance variables
+    private final File mCacheDir;
+    private final Map<String, Movie> mMovies;
+    // The number of running exports which use each segment
+    private final Map<String, Integer> mPinnedSegments;
+    private boolean mLoaded;
+
+    /**
+     * Computes a fingerprint from the values which affect an export
+     */
+    private static class Fingerprint {
+        // Instance variables
+        private final MessageDigest mDigest;
+
+        /**
+         * Constructor
+         */
+        public Fingerprint() {
+            try {
+                mDigest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        public void add(String value) {
+            add(value != null ? value.length() : -1);
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    final char c = value.charAt(i);
+                    mDigest.update((byte)(c >> 8));
+                    mDigest.update((byte)c);
+                }
+            }
+        }
+
+        public void add(long value) {
+            for (int i = 56; i >= 0; i -= 8) {
+                mDigest.update((byte)(value >> i));
+            }
+        }
+
+        public void add(boolean value) {
+            mDigest.update((byte)(value ? 1 : 0));
+        }
+
+        public void add(Rect rect) {
+            add(rect != null);
+            if (rect != null) {
+                add(rect.left);
+                add(rect.top);
+                add(rect.right);
+                add(rect.bottom);
+            }
+        }
+
+        /**
+         * Add the name, size and modification time of a file so that the
+         * fingerprint changes when the file changes
+         *
+         * @param filename The filename
+         */
+        public void addFile(String filename) {
+            add(filename);
+            if (filename != null) {
+                final File file = new File(filename);
+                add(file.length());
+                add(file.lastModified());
+            }
+        }
+
+        /**
+         * @return The fingerprint as a hexadecimal string
+         */
+        public String get() {
+            final StringBuilder sb = new StringBuilder();
+            for (byte b : mDigest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param projectPath The project path
+     */
+    ExportCache(String projectPath) {
+        mCacheDir = new File(projectPath, CACHE_FOLDER);
+        mMovies = new HashMap<String, Movie>();
+        mPinnedSegments = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Compute the fingerprint of a part of the storyboard. The fingerprint
+     * covers the media files, the boundaries, the effects, the overlays, the
+     * transitions, the audio tracks and the export settings.
+     *
+     * @param videoEditor The video editor
+     * @param mediaItemIds The ids of the media items of the part
+     * @param startTimeMs The start time of the part in the storyboard
+     * @param height The output movie height
+     * @param bitrate The output movie bitrate
+     *
+     * @return The fingerprint
+     */
+    static String getFingerprint(VideoEditor videoEditor, List<String> mediaItemIds,
+            long startTimeMs, int height, int bitrate) {
+        final Fingerprint fingerprint = new Fingerprint();
+        fingerprint.add(height);
+        fingerprint.add(bitrate);
+        fingerprint.add(videoEditor.getAspectRatio());
+        fingerprint.add(startTimeMs);
+
+        for (String mediaItemId : mediaItemIds) {
+            final MediaItem mediaItem = videoEditor.getMediaItem(mediaItemId);
+            fingerprint.add(mediaItem.getClass().getName());
+            fingerprint.addFile(mediaItem.getFilename());
+            fingerprint.add(mediaItem.getRenderingMode());
+            fingerprint.add(mediaItem.getTimelineDuration());
+            if (mediaItem instanceof MediaVideoItem) {
+                final MediaVideoItem videoItem = (MediaVideoItem)mediaItem;
+                fingerprint.add(videoItem.getBoundaryBeginTime());
+                fingerprint.add(videoItem.getBoundaryEndTime());
+                fingerprint.add(videoItem.getVolume());
+                fingerprint.add(videoItem.isMuted());
+            } else if (mediaItem instanceof MediaImageItem) {
+                fingerprint.add(mediaItem.getDuration());
+            }
+
+            final List<Effect> effects = mediaItem.getAllEffects();
+            fingerprint.add(effects.size());
+            for (Effect effect : effects) {
+                fingerprint.add(effect.getClass().getName());
+                fingerprint.add(effect.getStartTime());
+                fingerprint.add(effect.getDuration());
+                if (effect instanceof EffectColor) {
+                    fingerprint.add(((EffectColor)effect).getType());
+                    fingerprint.add(((EffectColor)effect).getColor());
+                } else if (effect instanceof EffectKenBurns) {
+                    fingerprint.add(((EffectKenBurns)effect).getStartRect());
+                    fingerprint.add(((EffectKenBurns)effect).getEndRect());
+                }
+            }
+
+            final List<Overlay> overlays = mediaItem.getAllOverlays();
+            fingerprint.add(overlays.size());
+            for (Overlay overlay : overlays) {
+                fingerprint.add(overlay.getStartTime());
+                fingerprint.add(overlay.getDuration());
+                // The overlay bitmap is generated from the user attributes
+                for (Map.Entry<String, String> entry :
+                        new TreeMap<String, String>(overlay.getUserAttributes()).entrySet()) {
+                    fingerprint.add(entry.getKey());
+                    fingerprint.add(entry.getValue());
+                }
+            }
+
+            addTransition(fingerprint, mediaItem.getBeginTransition());
+            addTransition(fingerprint, mediaItem.getEndTransition());
+        }
+
+        final List<AudioTrack> audioTracks = videoEditor.getAllAudioTracks();
+        fingerprint.add(audioTracks.size());
+        for (AudioTrack audioTrack : audioTracks) {
+            fingerprint.addFile(audioTrack.getFilename());
+            fingerprint.add(audioTrack.getStartTime());
+            fingerprint.add(audioTrack.getBoundaryBeginTime());
+            fingerprint.add(audioTrack.getBoundaryEndTime());
+            fingerprint.add(audioTrack.getVolume());
+            fingerprint.add(audioTrack.isMuted());
+            fingerprint.add(audioTrack.isLooping());
+            fingerprint.add(audioTrack.isDuckingEnabled());
+            fingerprint.add(audioTrack.getDuckingThreshhold());
+            fingerprint.add(audioTrack.getDuckedTrackVolume());
+        }
+
+        return fingerprint.get();
+    }
+
+    /**
+     * Add a transition to a fingerprint
+     *
+     * @param fingerprint The fingerprint
+     * @param transition The transition, may be null
+     */
+    private static void addTransition(Fingerprint fingerprint, Transition transition) {
+        fingerprint.add(transition != null);
+        if (transition == null) {
+            return;
+        }
+
+        fingerprint.add(transition.getClass().getName());
+        fingerprint.add(transition.getDuration());
+        fingerprint.add(transition.getBehavior());
+        if (transition instanceof TransitionSliding) {
+            fingerprint.add(((TransitionSliding)transition).getDirection());
+        } else if (transition instanceof TransitionAlpha) {
+            final TransitionAlpha alpha = (TransitionAlpha)transition;
+            fingerprint.addFile(alpha.getMaskFilename());
+            fingerprint.add(alpha.getBlendingPercent());
+            fingerprint.add(alpha.isInvert());
+        }
+    }
+
+    /**
+     * @param fingerprint The fingerprint of the timeline
+     *
+     * @return The filename of a movie exported from the same timeline, null
+     *      if none still exists
+     */
+    synchronized String getMovie(String fingerprint) {
+        load();
+        final Movie movie = mMovies.get(fingerprint);
+        if (movie == null) {
+            return null;
+        }
+
+        // The movie may have been deleted, truncated or replaced
+        if (!movie.isValid()) {
+            mMovies.remove(fingerprint);
+            save();
+            return null;
+        }
+
+        return movie.mFilename;
+    }
+
+    /**
+     * Record an exported movie
+     *
+     * @param fingerprint The fingerprint of the timeline
+     * @param filename The filename of the movie
+     */
+    synchronized void putMovie(String fingerprint, String filename) {
+        load();
+        final File file = new File(filename);
+        mMovies.put(fingerprint, new Movie(filename, file.length(), file.lastModified()));
+        save();
+    }
+
+    /**
+     * Protect segments from eviction while an export uses them. The segments
+     * need not be cached yet.
+     *
+     * @param fingerprints The fingerprints of the segments, null entries are
+     *      ignored
+     */
+    synchronized void pinSegments(List<String> fingerprints) {
+        for (String fingerprint : fingerprints) {
+            if (fingerprint != null) {
+                final Integer count = mPinnedSegments.get(fingerprint);
+                mPinnedSegments.put(fingerprint, count != null ? count + 1 : 1);
+            }
+        }
+    }
+
+    /**
+     * Release segments pinned by {@link #pinSegments(List)}
+     *
+     * @param fingerprints The fingerprints of the segments, null entries are
+     *      ignored
+     */
+    synchronized void releaseSegments(List<String> fingerprints) {
+        for (String fingerprint : fingerprints) {
+            if (fingerprint == null) {
+                continue;
+            }
+
+            final Integer count = mPinnedSegments.get(fingerprint);
+            if (count == null || count <= 1) {
+                mPinnedSegments.remove(fingerprint);
+            } else {
+                mPinnedSegments.put(fingerprint, count - 1);
+            }
+        }
+    }
+
+    /**
+     * @param fingerprint The fingerprint of the segment
+     *
+     * @return The cached segment file, null if not found
+     */
+    synchronized File getSegment(String fingerprint) {
+        final File file = getSegmentFile(fingerprint);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        // Keep the recently used segments when the cache is trimmed
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Move an exported segment to the cache
+     *
+     * @param fingerprint The fingerprint of the segment
+     * @param file The exported segment file
+     *
+     * @return The cached segment file
+     */
+    synchronized File putSegment(String fingerprint, File file) {
+        if (!mCacheDir.isDirectory() && !mCacheDir.mkdirs()) {
+            Log.w(TAG, "Cannot create the cache folder: " + mCacheDir);
+            return file;
+        }
+
+        final File cachedFile = getSegmentFile(fingerprint);
+        if (!file.renameTo(cachedFile)) {
+            Log.w(TAG, "Cannot cache the segment: " + file);
+            return file;
+        }
+
+        return cachedFile;
+    }
+
+    /**
+     * @param fingerprint The fingerprint of the segment
+     *
+     * @return The file of the segment in the cache
+     */
+    private File getSegmentFile(String fingerprint) {
+        return new File(mCacheDir, fingerprint + ".mp4");
+    }
+
+    /**
+     * Delete the least recently used segments until the cache fits its
+     * maximum size. The pinned segments are not evicted so that the segments
+     * of the running exports remain available until they are joined.
+     */
+    synchronized void trimSegments() {
+        final File[] files = mCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                final long time1 = file1.lastModified();
+                final long time2 = file2.lastModified();
+                return time1 < time2 ? 1 : (time1 > time2 ? -1 : 0);
+            }
+        });
+
+        long size = 0;
+        for (File file : files) {
+            final String name = file.getName();
+            if (!name.endsWith(".mp4")) {
+                continue;
+            }
+
+            size += file.length();
+            if (size > MAX_SEGMENTS_SIZE &&
+                    !mPinnedSegments.containsKey(name.substring(0, name.length() - 4))) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Evicting segment: " + file.getName());
+                }
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Load the exported movies the first time the cache is used
+     */
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+
+        mLoaded = true;
+        final File moviesFile = new File(mCacheDir, MOVIES_FILENAME);
+        if (!moviesFile.exists()) {
+            return;
+        }
+
+        try {
+            final FileInputStream fis = new FileInputStream(moviesFile);
+            try {
+                final XmlPullParser parser = Xml.newPullParser();
+                parser.setInput(fis, "UTF-8");
+                int eventType = parser.getEventType();
+                while (eventType != XmlPullParser.END_DOCUMENT) {
+                    if (eventType == XmlPullParser.START_TAG &&
+                            parser.getName().equalsIgnoreCase(TAG_MOVIE)) {
+                        final String size = parser.getAttributeValue("", ATTR_SIZE);
+                        final String lastModified =
+                            parser.getAttributeValue("", ATTR_LAST_MODIFIED);
+                        // The movies recorded without their size cannot be verified
+                        if (size != null && lastModified != null) {
+                            mMovies.put(parser.getAttributeValue("", ATTR_FINGERPRINT),
+                                    new Movie(parser.getAttributeValue("", ATTR_FILENAME),
+                                            Long.parseLong(size), Long.parseLong(lastModified)));
+                        }
+                    }
+                    eventType = parser.next();
+                }
+            } finally {
+                fis.close();
+            }
+        } catch (XmlPullParserException ex) {
+            Log.e(TAG, "Cannot load the exported movies", ex);
+        } catch (IOException ex) {
+            Log.e(TAG, "Cannot load the exported movies", ex);
+        } catch (NumberFormatException ex) {
+            Log.e(TAG, "Cannot load the exported movies", ex);
+        }
+    }
+
+    /**
+     * Save the exported movies
+     */
+    private void save() {
+        try {
+            if (!mCacheDir.isDirectory() && !mCacheDir.mkdirs()) {
+                throw new IOException("Cannot create the cache folder: " + mCacheDir);
+            }
+
+            final XmlSerializer serializer = Xml.newSerializer();
+            final StringWriter writer = new StringWriter();
+            serializer.setOutput(writer);
+            serializer.startDocument("UTF-8", true);
+            serializer.startTag("", TAG_MOVIES);
+            for (Map.Entry<String, Movie> entry : mMovies.entrySet()) {
+                final Movie movie = entry.getValue();
+                serializer.startTag("", TAG_MOVIE);
+                serializer.attribute("", ATTR_FINGERPRINT, entry.getKey());
+                serializer.attribute("", ATTR_FILENAME, movie.mFilename);
+                serializer.attribute("", ATTR_SIZE, Long.toString(movie.mSize));
+                serializer.attribute("", ATTR_LAST_MODIFIED, Long.toString(movie.mLastModified));
+                serializer.endTag("", TAG_MOVIE);
+            }
+            serializer.endTag("", TAG_MOVIES);
+            serializer.endDocument();
+
+            final FileOutputStream out = new FileOutputStream(new File(mCacheDir,
+                    MOVIES_FILENAME));
+            out.write(writer.toString().getBytes("UTF-8"));
+            out.flush();
+            out.close();
+        } catch (IOException ex) {
+            Log.e(TAG, "Cannot save the exported movies", ex);
+        }
+    }
+}
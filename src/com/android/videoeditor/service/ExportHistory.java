@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedList;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlSerializer;
+
+import android.util.Log;
+import android.util.Xml;
+
+/**
+ * The history of the completed exports. The history predicts the duration
+ * and the size of an export for a movie height and bitrate.
+ */
+public class ExportHistory {
+    // Logging
+    private static final String TAG = "ExportHistory";
+
+    // The maximum number of exports in the history
+    private static final int MAX_RECORDS = 50;
+
+    // The XML tags and attributes of the history file
+    private static final String TAG_HISTORY = "history";
+    private static final String TAG_EXPORT = "export";
+    private static final String ATTR_HEIGHT = "height";
+    private static final String ATTR_BITRATE = "bitrate";
+    private static final String ATTR_DURATION = "duration";
+    private static final String ATTR_ELAPSED_TIME = "elapsed_time";
+    private static final String ATTR_SIZE = "size";
+
+    /**
+     * A completed export
+     */
+    private static class Record {
+        // Instance variables
+        private final int mHeight;
+        private final int mBitrate;
+        private final long mDurationMs;
+        private final long mElapsedTimeMs;
+        private final long mSize;
+
+        /**
+         * Constructor
+         *
+         * @param height The movie height
+         * @param bitrate The movie bitrate
+         * @param durationMs The encoded media time
+         * @param elapsedTimeMs The wall time of the export
+         * @param size The size of the movie
+         */
+        public Record(int height, int bitrate, long durationMs, long elapsedTimeMs, long size) {
+            mHeight = height;
+            mBitrate = bitrate;
+            mDurationMs = durationMs;
+            mElapsedTimeMs = elapsedTimeMs;
+            mSize = size;
+        }
+    }
+
+    /**
+     * The predicted cost of an export
+     */
+    public static class Prediction {
+        // Instance variables
+        private final long mDurationMs;
+        private final long mSize;
+
+        /**
+         * Constructor
+         *
+         * @param durationMs The predicted export duration, -1 if unknown
+         * @param size The predicted movie size
+         */
+        Prediction(long durationMs, long size) {
+            mDurationMs = durationMs;
+            mSize = size;
+        }
+
+        /**
+         * @return The predicted export duration, -1 if there is no history
+         */
+        public long getDurationMs() {
+            return mDurationMs;
+        }
+
+        /**
+         * @return The predicted movie size in bytes
+         */
+        public long getSize() {
+            return mSize;
+        }
+    }
+
+    // Instance variables
+    private final File mFile;
+    private final LinkedList<Record> mRecords;
+
+    /**
+     * Constructor
+     *
+     * @param file The history file
+     */
+    ExportHistory(File file) {
+        mFile = file;
+        mRecords = new LinkedList<Record>();
+        if (mFile.exists()) {
+            try {
+                load();
+            } catch (Exception ex) {
+                Log.e(TAG, "Cannot load the export history", ex);
+                mRecords.clear();
+            }
+        }
+    }
+
+    /**
+     * Record a completed export
+     *
+     * @param height The movie height
+     * @param bitrate The movie bitrate
+     * @param stats The statistics of the export
+     * @param size The size of the movie
+     */
+    synchronized void add(int height, int bitrate, ExportStats stats, long size) {
+        final long durationMs = stats.getEncodedDurationMs();
+        final long elapsedTimeMs = stats.getElapsedTimeMs();
+        // The exports which reused most of the movie do not measure the encoder
+        if (durationMs < stats.getDurationMs() / 2 || elapsedTimeMs <= 0) {
+            return;
+        }
+
+        mRecords.add(new Record(height, bitrate, durationMs, elapsedTimeMs, size));
+        while (mRecords.size() > MAX_RECORDS) {
+            mRecords.removeFirst();
+        }
+
+        try {
+            save();
+        } catch (IOException ex) {
+            Log.e(TAG, "Cannot save the export history", ex);
+        }
+    }
+
+    /**
+     * Predict the cost of an export from the exports with the same settings,
+     * or else from the exports with the same height, or else from all the
+     * exports
+     *
+     * @param height The movie height
+     * @param bitrate The movie bitrate
+     * @param durationMs The duration of the movie
+     *
+     * @return The prediction
+     */
+    public synchronized Prediction predict(int height, int bitrate, long durationMs) {
+        long mediaTimeMs = 0;
+        long elapsedTimeMs = 0;
+        long size = 0;
+        for (int pass = 0; pass < 3 && elapsedTimeMs == 0; pass++) {
+            for (Record record : mRecords) {
+                if ((pass < 2 && record.mHeight != height) ||
+                        (pass < 1 && record.mBitrate != bitrate)) {
+                    continue;
+                }
+
+                mediaTimeMs += record.mDurationMs;
+                elapsedTimeMs += record.mElapsedTimeMs;
+                if (pass == 0) {
+                    size += record.mSize;
+                }
+            }
+        }
+
+        final long predictedSize;
+        if (size > 0) {
+            predictedSize = size * durationMs / mediaTimeMs;
+        } else {
+            predictedSize = (long)bitrate * durationMs / 8000;
+        }
+
+        if (elapsedTimeMs == 0) {
+            return new Prediction(-1, predictedSize);
+        }
+
+        return new Prediction(durationMs * elapsedTimeMs / mediaTimeMs, predictedSize);
+    }
+
+    /**
+     * Load the history
+     */
+    private void load() throws XmlPullParserException, IOException {
+        final FileInputStream fis = new FileInputStream(mFile);
+        try {
+            final XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(fis, "UTF-8");
+            int eventType = parser.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG &&
+                        parser.getName().equalsIgnoreCase(TAG_EXPORT)) {
+                    mRecords.add(new Record(
+                            Integer.parseInt(parser.getAttributeValue("", ATTR_HEIGHT)),
+                            Integer.parseInt(parser.getAttributeValue("", ATTR_BITRATE)),
+                            Long.parseLong(parser.getAttributeValue("", ATTR_DURATION)),
+                            Long.parseLong(parser.getAttributeValue("", ATTR_ELAPSED_TIME)),
+                            Long.parseLong(parser.getAttributeValue("", ATTR_SIZE))));
+                }
+                eventType = parser.next();
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Save the history
+     */
+    private void save() throws IOException {
+        final XmlSerializer serializer = Xml.newSerializer();
+        final StringWriter writer = new StringWriter();
+        serializer.setOutput(writer);
+        serializer.startDocument("UTF-8", true);
+        serializer.startTag("", TAG_HISTORY);
+        for (Record record : mRecords) {
+            serializer.startTag("", TAG_EXPORT);
+            serializer.attribute("", ATTR_HEIGHT, Integer.toString(record.mHeight));
+            serializer.attribute("", ATTR_BITRATE, Integer.toString(record.mBitrate));
+            serializer.attribute("", ATTR_DURATION, Long.toString(record.mDurationMs));
+            serializer.attribute("", ATTR_ELAPSED_TIME, Long.toString(record.mElapsedTimeMs));
+            serializer.attribute("", ATTR_SIZE, Long.toString(record.mSize));
+            serializer.endTag("", TAG_EXPORT);
+        }
+        serializer.endTag("", TAG_HISTORY);
+        serializer.endDocument();
+
+        final FileOutputStream out = new FileOutputStream(mFile);
+        out.write(writer.toString().getBytes("UTF-8"));
+        out.flush();
+        out.close();
+    }
+}
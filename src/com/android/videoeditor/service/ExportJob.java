@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.media.videoeditor.VideoEditor;
+
+/**
+ * An export of a project movie. The job exports a snapshot of the project
+ * taken when the export was requested, so the project can be edited while
+ * the job is queued or running.
+ */
+public class ExportJob {
+    // Job states
+    public static final int STATE_QUEUED = 0;
+    public static final int STATE_RUNNING = 1;
+    public static final int STATE_COMPLETED = 2;
+    public static final int STATE_FAILED = 3;
+    public static final int STATE_CANCELLED = 4;
+
+    // Instance variables
+    private final String mId;
+    private final String mProjectPath;
+    private final String mSnapshotPath;
+    private final String mFilename;
+    private final int mHeight;
+    private final int mBitrate;
+    private volatile int mState;
+    private volatile int mProgress;
+    private volatile int mQueuePosition;
+    // The cancellation token of this job
+    private volatile boolean mCancelled;
+    // The video editors which export the movie or its segments while the
+    // job is running, mapped to their output filenames
+    private final Map<VideoEditor, String> mVideoEditors = new HashMap<VideoEditor, String>();
+    // The throughput of the export
+    private final ExportStats mStats = new ExportStats();
+
+    /**
+     * Constructor
+     *
+     * @param id The job id
+     * @param projectPath The project path
+     * @param snapshotPath The path of the project snapshot
+     * @param filename The export filename
+     * @param height The output movie height
+     * @param bitrate The output movie bitrate
+     */
+    ExportJob(String id, String projectPath, String snapshotPath, String filename, int height,
+            int bitrate) {
+        mId = id;
+        mProjectPath = projectPath;
+        mSnapshotPath = snapshotPath;
+        mFilename = filename;
+        mHeight = height;
+        mBitrate = bitrate;
+        mState = STATE_QUEUED;
+    }
+
+    /**
+     * @return The job id
+     */
+    public String getId() {
+        return mId;
+    }
+
+    /**
+     * @return The project path
+     */
+    public String getProjectPath() {
+        return mProjectPath;
+    }
+
+    /**
+     * @return The path of the project snapshot
+     */
+    String getSnapshotPath() {
+        return mSnapshotPath;
+    }
+
+    /**
+     * @return The export filename
+     */
+    public String getFilename() {
+        return mFilename;
+    }
+
+    /**
+     * @return The output movie height
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return The output movie bitrate
+     */
+    public int getBitrate() {
+        return mBitrate;
+    }
+
+    /**
+     * @param state The job state
+     */
+    void setState(int state) {
+        mState = state;
+    }
+
+    /**
+     * @return The job state
+     */
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * @param progress The export progress (0, 100)
+     */
+    void setProgress(int progress) {
+        mProgress = progress;
+    }
+
+    /**
+     * @return The export progress (0, 100)
+     */
+    public int getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * @return The throughput of the export
+     */
+    public ExportStats getStats() {
+        return mStats;
+    }
+
+    /**
+     * @param queuePosition The queue position
+     */
+    void setQueuePosition(int queuePosition) {
+        mQueuePosition = queuePosition;
+    }
+
+    /**
+     * @return The number of jobs which will start before this job, 0 if the
+     *      job is running or finished
+     */
+    public int getQueuePosition() {
+        return mQueuePosition;
+    }
+
+    /**
+     * @return true if the job was cancelled
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * @return true if the job is queued or running
+     */
+    public boolean isPending() {
+        return mState == STATE_QUEUED || mState == STATE_RUNNING;
+    }
+
+    /**
+     * Cancel the job. The running exports are stopped.
+     */
+    synchronized void cancel() {
+        mCancelled = true;
+        for (Map.Entry<VideoEditor, String> entry : mVideoEditors.entrySet()) {
+            entry.getKey().cancelExport(entry.getValue());
+        }
+    }
+
+    /**
+     * @param videoEditor A video editor which starts exporting the movie or
+     *      one of its segments
+     * @param filename The output filename of the video editor
+     *
+     * @return false if the job was cancelled
+     */
+    synchronized boolean addVideoEditor(VideoEditor videoEditor, String filename) {
+        if (mCancelled) {
+            return false;
+        }
+
+        mVideoEditors.put(videoEditor, filename);
+        return true;
+    }
+
+    /**
+     * @param videoEditor A video editor which ended its export
+     */
+    synchronized void removeVideoEditor(VideoEditor videoEditor) {
+        mVideoEditors.remove(videoEditor);
+    }
+}
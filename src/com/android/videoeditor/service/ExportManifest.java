@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlSerializer;
+
+import android.util.Log;
+import android.util.Xml;
+
+import com.android.videoeditor.util.Mp4Concatenator;
+
+/**
+ * The checkpoints of an export. The manifest is saved next to the exported
+ * movie and lists the segments which were completely exported, so that an
+ * export interrupted by the death of the process continues from the last
+ * checkpoint when it is restarted.
+ */
+class ExportManifest {
+    // Logging
+    private static final String TAG = "ExportManifest";
+
+    // The XML tags and attributes of the manifest
+    private static final String TAG_MANIFEST = "manifest";
+    private static final String TAG_SEGMENT = "segment";
+    private static final String ATTR_FINGERPRINT = "fingerprint";
+    private static final String ATTR_INDEX = "index";
+    private static final String ATTR_FILENAME = "filename";
+    private static final String ATTR_SIZE = "size";
+    private static final String ATTR_DURATION = "duration";
+
+    /**
+     * A completely exported segment
+     */
+    private static class Checkpoint {
+        // Instance variables
+        private final String mFingerprint;
+        private final String mFilename;
+        private final long mSize;
+        private final long mDurationMs;
+
+        /**
+         * Constructor
+         *
+         * @param fingerprint The fingerprint of the segment
+         * @param filename The segment file
+         * @param size The size of the file
+         * @param durationMs The duration of the segment movie
+         */
+        public Checkpoint(String fingerprint, String filename, long size, long durationMs) {
+            mFingerprint = fingerprint;
+            mFilename = filename;
+            mSize = size;
+            mDurationMs = durationMs;
+        }
+    }
+
+    // Instance variables
+    private final File mFile;
+    private final Map<Integer, Checkpoint> mCheckpoints;
+    private String mFingerprint;
+
+    /**
+     * Constructor
+     *
+     * @param filename The export filename
+     */
+    ExportManifest(String filename) {
+        final File file = new File(filename);
+        mFile = new File(file.getParentFile(), "." + file.getName() + ".manifest");
+        mCheckpoints = new TreeMap<Integer, Checkpoint>();
+    }
+
+    /**
+     * Load the checkpoints of a previous attempt of the export. The
+     * checkpoints are discarded if the timeline changed.
+     *
+     * @param fingerprint The fingerprint of the timeline
+     */
+    synchronized void open(String fingerprint) {
+        mCheckpoints.clear();
+        mFingerprint = null;
+        if (mFile.exists()) {
+            try {
+                load();
+            } catch (Exception ex) {
+                Log.w(TAG, "Cannot load the export manifest: " + mFile, ex);
+                mCheckpoints.clear();
+            }
+        }
+
+        if (!fingerprint.equals(mFingerprint)) {
+            mCheckpoints.clear();
+            mFingerprint = fingerprint;
+            save();
+        } else if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Resuming export with " + mCheckpoints.size() + " checkpoints: " + mFile);
+        }
+    }
+
+    /**
+     * Get a completely exported segment. The segment file is verified.
+     *
+     * @param index The index of the segment
+     * @param fingerprint The fingerprint of the segment
+     *
+     * @return The segment file, null if the segment was not exported or the
+     *      file is not valid
+     */
+    synchronized String getCheckpoint(int index, String fingerprint) {
+        final Checkpoint checkpoint = mCheckpoints.get(index);
+        if (checkpoint == null) {
+            return null;
+        }
+
+        boolean valid = checkpoint.mFingerprint.equals(fingerprint) &&
+                new File(checkpoint.mFilename).length() == checkpoint.mSize;
+        if (valid) {
+            try {
+                valid = Mp4Concatenator.getDurationMs(checkpoint.mFilename) ==
+                        checkpoint.mDurationMs;
+            } catch (IOException ex) {
+                valid = false;
+            }
+        }
+
+        if (!valid) {
+            Log.w(TAG, "Invalid checkpoint: " + index + " in: " + mFile);
+            mCheckpoints.remove(index);
+            save();
+            return null;
+        }
+
+        return checkpoint.mFilename;
+    }
+
+    /**
+     * Record a completely exported segment
+     *
+     * @param index The index of the segment
+     * @param fingerprint The fingerprint of the segment
+     * @param filename The segment file
+     */
+    synchronized void addCheckpoint(int index, String fingerprint, String filename)
+            throws IOException {
+        mCheckpoints.put(index, new Checkpoint(fingerprint, filename,
+                new File(filename).length(), Mp4Concatenator.getDurationMs(filename)));
+        save();
+    }
+
+    /**
+     * Delete the manifest when the export ends
+     */
+    synchronized void delete() {
+        mCheckpoints.clear();
+        mFile.delete();
+    }
+
+    /**
+     * Load the manifest
+     */
+    private void load() throws XmlPullParserException, IOException {
+        final FileInputStream fis = new FileInputStream(mFile);
+        try {
+            final XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(fis, "UTF-8");
+            int eventType = parser.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    final String name = parser.getName();
+                    if (name.equalsIgnoreCase(TAG_MANIFEST)) {
+                        mFingerprint = parser.getAttributeValue("", ATTR_FINGERPRINT);
+                    } else if (name.equalsIgnoreCase(TAG_SEGMENT)) {
+                        mCheckpoints.put(
+                                Integer.parseInt(parser.getAttributeValue("", ATTR_INDEX)),
+                                new Checkpoint(parser.getAttributeValue("", ATTR_FINGERPRINT),
+                                        parser.getAttributeValue("", ATTR_FILENAME),
+                                        Long.parseLong(parser.getAttributeValue("", ATTR_SIZE)),
+                                        Long.parseLong(
+                                                parser.getAttributeValue("", ATTR_DURATION))));
+                    }
+                }
+                eventType = parser.next();
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Save the manifest. The manifest is written to a temporary file which
+     * replaces the previous manifest so that it is never partially written.
+     */
+    private void save() {
+        try {
+            final XmlSerializer serializer = Xml.newSerializer();
+            final StringWriter writer = new StringWriter();
+            serializer.setOutput(writer);
+            serializer.startDocument("UTF-8", true);
+            serializer.startTag("", TAG_MANIFEST);
+            serializer.attribute("", ATTR_FINGERPRINT, mFingerprint);
+            for (Map.Entry<Integer, Checkpoint> entry : mCheckpoints.entrySet()) {
+                final Checkpoint checkpoint = entry.getValue();
+                serializer.startTag("", TAG_SEGMENT);
+                serializer.attribute("", ATTR_INDEX, Integer.toString(entry.getKey()));
+                serializer.attribute("", ATTR_FINGERPRINT, checkpoint.mFingerprint);
+                serializer.attribute("", ATTR_FILENAME, checkpoint.mFilename);
+                serializer.attribute("", ATTR_SIZE, Long.toString(checkpoint.mSize));
+                serializer.attribute("", ATTR_DURATION, Long.toString(checkpoint.mDurationMs));
+                serializer.endTag("", TAG_SEGMENT);
+            }
+            serializer.endTag("", TAG_MANIFEST);
+            serializer.endDocument();
+
+            final File tmpFile = new File(mFile.getPath() + ".tmp");
+            final FileOutputStream out = new FileOutputStream(tmpFile);
+            try {
+                out.write(writer.toString().getBytes("UTF-8"));
+                out.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+
+            if (!tmpFile.renameTo(mFile)) {
+                throw new IOException("Cannot replace the manifest: " + mFile);
+            }
+        } catch (IOException ex) {
+            Log.e(TAG, "Cannot save the export manifest", ex);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlSerializer;
+
+import android.util.Log;
+import android.util.Xml;
+
+/**
+ * The queue of the export jobs. Each job runs in its own thread and at most
+ * a configurable number of jobs run concurrently. The pending jobs are saved
+ * to a file so that they are resumed when the service is restarted.
+ */
+class ExportQueue {
+    // Logging
+    private static final String TAG = "ExportQueue";
+
+    // The XML tags and attributes of the queue file
+    private static final String TAG_QUEUE = "queue";
+    private static final String TAG_JOB = "job";
+    private static final String ATTR_ID = "id";
+    private static final String ATTR_PROJECT_PATH = "project_path";
+    private static final String ATTR_SNAPSHOT_PATH = "snapshot_path";
+    private static final String ATTR_FILENAME = "filename";
+    private static final String ATTR_HEIGHT = "height";
+    private static final String ATTR_BITRATE = "bitrate";
+
+    /**
+     * Runs the export jobs
+     */
+    interface Exporter {
+        /**
+         * Export the movie of a job. This method is called from the thread
+         * of the job.
+         *
+         * @param job The job
+         */
+        public void export(ExportJob job) throws Exception;
+
+        /**
+         * A job finished. This method is called from the thread of the job.
+         *
+         * @param job The job
+         * @param exception The exception which occurred, null if the job
+         *      completed or was cancelled
+         */
+        public void onJobFinished(ExportJob job, Exception exception);
+
+        /**
+         * The jobs or their queue positions changed
+         *
+         * @param jobs The pending jobs
+         */
+        public void onQueueChanged(List<ExportJob> jobs);
+    }
+
+    // Instance variables
+    private final File mQueueFile;
+    private final LinkedList<ExportJob> mQueuedJobs;
+    private final List<ExportJob> mRunningJobs;
+    private Exporter mExporter;
+    private int mMaxConcurrentJobs;
+    private boolean mRestored;
+
+    /**
+     * Constructor
+     *
+     * @param queueFile The file in which the pending jobs are saved
+     * @param maxConcurrentJobs The maximum number of jobs running concurrently
+     */
+    ExportQueue(File queueFile, int maxConcurrentJobs) {
+        mQueueFile = queueFile;
+        mQueuedJobs = new LinkedList<ExportJob>();
+        mRunningJobs = new ArrayList<ExportJob>();
+        mMaxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    /**
+     * Start running the jobs. The jobs saved by a previous instance of the
+     * service are restored the first time this method is called.
+     *
+     * @param exporter The exporter
+     */
+    synchronized void start(Exporter exporter) {
+        mExporter = exporter;
+        if (!mRestored) {
+            mRestored = true;
+            try {
+                restore();
+            } catch (Exception ex) {
+                Log.e(TAG, "Cannot restore the export queue", ex);
+            }
+        }
+
+        schedule();
+    }
+
+    /**
+     * Append a job to the queue
+     *
+     * @param job The job
+     */
+    synchronized void submit(ExportJob job) {
+        mQueuedJobs.add(job);
+        schedule();
+    }
+
+    /**
+     * Cancel a job
+     *
+     * @param projectPath The project path
+     * @param filename The export filename
+     *
+     * @return The cancelled job, null if no such job is pending
+     */
+    synchronized ExportJob cancel(String projectPath, String filename) {
+        final ExportJob job = getJob(projectPath, filename);
+        if (job != null) {
+            cancel(job);
+        }
+
+        return job;
+    }
+
+    /**
+     * Cancel all the jobs of a project
+     *
+     * @param projectPath The project path
+     */
+    synchronized void cancelAll(String projectPath) {
+        for (ExportJob job : getJobs()) {
+            if (job.getProjectPath().equals(projectPath)) {
+                cancel(job);
+            }
+        }
+    }
+
+    /**
+     * @param projectPath The project path
+     * @param filename The export filename
+     *
+     * @return The pending job, null if not found
+     */
+    synchronized ExportJob getJob(String projectPath, String filename) {
+        for (ExportJob job : getJobs()) {
+            if (job.getProjectPath().equals(projectPath) && job.getFilename().equals(filename)) {
+                return job;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The pending jobs: the running jobs followed by the queued jobs
+     */
+    synchronized List<ExportJob> getJobs() {
+        final List<ExportJob> jobs = new ArrayList<ExportJob>(mRunningJobs);
+        jobs.addAll(mQueuedJobs);
+        return jobs;
+    }
+
+    /**
+     * @return true if no job is pending
+     */
+    synchronized boolean isEmpty() {
+        return mRunningJobs.isEmpty() && mQueuedJobs.isEmpty();
+    }
+
+    /**
+     * @param maxConcurrentJobs The maximum number of jobs running concurrently
+     */
+    synchronized void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        if (maxConcurrentJobs < 1) {
+            throw new IllegalArgumentException("Invalid concurrency: " + maxConcurrentJobs);
+        }
+
+        mMaxConcurrentJobs = maxConcurrentJobs;
+        schedule();
+    }
+
+    /**
+     * Cancel a job. A queued job is removed from the queue; a running job
+     * is removed when its thread finishes.
+     *
+     * @param job The job
+     */
+    private void cancel(ExportJob job) {
+        job.cancel();
+        if (mQueuedJobs.remove(job)) {
+            job.setState(ExportJob.STATE_CANCELLED);
+            mExporter.onJobFinished(job, null);
+            onQueueChanged();
+        }
+    }
+
+    /**
+     * Start the queued jobs while the concurrency allows it
+     */
+    private void schedule() {
+        if (mExporter == null) {
+            return;
+        }
+
+        while (mRunningJobs.size() < mMaxConcurrentJobs && mQueuedJobs.size() > 0) {
+            final ExportJob job = mQueuedJobs.removeFirst();
+            job.setState(ExportJob.STATE_RUNNING);
+            mRunningJobs.add(job);
+            new Thread("ExportThread-" + job.getId()) {
+                @Override
+                public void run() {
+                    runJob(job);
+                }
+            }.start();
+        }
+
+        onQueueChanged();
+    }
+
+    /**
+     * Run a job
+     *
+     * @param job The job
+     */
+    private void runJob(ExportJob job) {
+        Exception exception = null;
+        try {
+            mExporter.export(job);
+        } catch (Exception ex) {
+            Log.e(TAG, "Export error for: " + job.getFilename(), ex);
+            exception = ex;
+        }
+
+        if (job.isCancelled()) {
+            job.setState(ExportJob.STATE_CANCELLED);
+            exception = null;
+        } else if (exception != null) {
+            job.setState(ExportJob.STATE_FAILED);
+        } else {
+            job.setState(ExportJob.STATE_COMPLETED);
+        }
+
+        synchronized (this) {
+            mRunningJobs.remove(job);
+            schedule();
+        }
+
+        mExporter.onJobFinished(job, exception);
+    }
+
+    /**
+     * Update the queue positions, save the queue and notify the exporter
+     */
+    private void onQueueChanged() {
+        for (ExportJob job : mRunningJobs) {
+            job.setQueuePosition(0);
+        }
+
+        int position = 1;
+        for (ExportJob job : mQueuedJobs) {
+            job.setQueuePosition(position++);
+        }
+
+        try {
+            save();
+        } catch (IOException ex) {
+            Log.e(TAG, "Cannot save the export queue", ex);
+        }
+
+        mExporter.onQueueChanged(getJobs());
+    }
+
+    /**
+     * Save the pending jobs
+     */
+    private void save() throws IOException {
+        final XmlSerializer serializer = Xml.newSerializer();
+        final StringWriter writer = new StringWriter();
+        serializer.setOutput(writer);
+        serializer.startDocument("UTF-8", true);
+        serializer.startTag("", TAG_QUEUE);
+        // The running jobs are restarted from the beginning
+        for (ExportJob job : getJobs()) {
+            serializer.startTag("", TAG_JOB);
+            serializer.attribute("", ATTR_ID, job.getId());
+            serializer.attribute("", ATTR_PROJECT_PATH, job.getProjectPath());
+            serializer.attribute("", ATTR_SNAPSHOT_PATH, job.getSnapshotPath());
+            serializer.attribute("", ATTR_FILENAME, job.getFilename());
+            serializer.attribute("", ATTR_HEIGHT, Integer.toString(job.getHeight()));
+            serializer.attribute("", ATTR_BITRATE, Integer.toString(job.getBitrate()));
+            serializer.endTag("", TAG_JOB);
+        }
+        serializer.endTag("", TAG_QUEUE);
+        serializer.endDocument();
+
+        final FileOutputStream out = new FileOutputStream(mQueueFile);
+        out.write(writer.toString().getBytes("UTF-8"));
+        out.flush();
+        out.close();
+    }
+
+    /**
+     * Queue the jobs saved by a previous instance of the service
+     */
+    private void restore() throws XmlPullParserException, IOException {
+        if (!mQueueFile.exists()) {
+            return;
+        }
+
+        final FileInputStream fis = new FileInputStream(mQueueFile);
+        try {
+            final XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(fis, "UTF-8");
+            int eventType = parser.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG &&
+                        parser.getName().equalsIgnoreCase(TAG_JOB)) {
+                    final ExportJob job = new ExportJob(
+                            parser.getAttributeValue("", ATTR_ID),
+                            parser.getAttributeValue("", ATTR_PROJECT_PATH),
+                            parser.getAttributeValue("", ATTR_SNAPSHOT_PATH),
+                            parser.getAttributeValue("", ATTR_FILENAME),
+                            Integer.parseInt(parser.getAttributeValue("", ATTR_HEIGHT)),
+                            Integer.parseInt(parser.getAttributeValue("", ATTR_BITRATE)));
+                    if (new File(job.getSnapshotPath()).exists()) {
+                        mQueuedJobs.add(job);
+                    } else {
+                        Log.w(TAG, "Snapshot not found for export: " + job.getFilename());
+                    }
+                }
+                eventType = parser.next();
+            }
+        } finally {
+            fis.close();
+        }
+    }
+}
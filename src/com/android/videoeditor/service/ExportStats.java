@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.os.SystemClock;
+
+/**
+ * The throughput of an export job: the media time encoded per second of
+ * wall time, overall and per segment. The smoothed throughput gives the
+ * estimated time remaining and an export which stops progressing is
+ * reported as stalled.
+ */
+public class ExportStats {
+    // The minimum interval between two throughput samples
+    private static final long SAMPLE_INTERVAL_MS = 1000;
+    // The weight of the latest throughput sample in the smoothed throughput
+    private static final float SMOOTHING_FACTOR = 0.3f;
+    // The time without progress after which an export is stalled
+    private static final long STALL_TIMEOUT_MS = 30000;
+
+    // Instance variables
+    private long mDurationMs;
+    private long mStartTimeMs;
+    private long mEndTimeMs;
+    // The media time which was not encoded because it was reused
+    private long mReusedDurationMs;
+    private int mProgress;
+    private long mLastProgressTimeMs;
+    private long mSampleTimeMs;
+    private long mSampleMediaTimeMs;
+    // The smoothed throughput in media milliseconds per wall millisecond
+    private float mThroughput;
+    private final Map<Integer, Float> mSegmentThroughputs = new HashMap<Integer, Float>();
+    private final Map<Integer, Long> mSegmentStartTimes = new HashMap<Integer, Long>();
+
+    /**
+     * Start measuring
+     *
+     * @param durationMs The duration of the exported movie
+     */
+    synchronized void start(long durationMs) {
+        mDurationMs = durationMs;
+        mStartTimeMs = mLastProgressTimeMs = mSampleTimeMs = SystemClock.elapsedRealtime();
+        mEndTimeMs = 0;
+        mReusedDurationMs = 0;
+        mProgress = 0;
+        mSampleMediaTimeMs = -1;
+        mThroughput = 0;
+        mSegmentThroughputs.clear();
+        mSegmentStartTimes.clear();
+    }
+
+    /**
+     * Stop measuring
+     */
+    synchronized void stop() {
+        mEndTimeMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @param durationMs The part of the movie which is reused instead of
+     *      being encoded
+     */
+    synchronized void setReusedDuration(long durationMs) {
+        mReusedDurationMs = durationMs;
+    }
+
+    /**
+     * The export progressed
+     *
+     * @param progress The export progress (0, 100)
+     */
+    synchronized void onProgress(int progress) {
+        final long now = SystemClock.elapsedRealtime();
+        if (progress != mProgress) {
+            mProgress = progress;
+            mLastProgressTimeMs = now;
+        }
+
+        final long mediaTimeMs = mDurationMs * progress / 100;
+        if (mSampleMediaTimeMs < 0) {
+            // The first progress includes the reused parts of the movie
+            mSampleMediaTimeMs = mediaTimeMs;
+            mSampleTimeMs = now;
+            return;
+        }
+
+        final long intervalMs = now - mSampleTimeMs;
+        if (intervalMs >= SAMPLE_INTERVAL_MS) {
+            final float throughput = (float)(mediaTimeMs - mSampleMediaTimeMs) / intervalMs;
+            mThroughput = mThroughput == 0 ? throughput :
+                SMOOTHING_FACTOR * throughput + (1 - SMOOTHING_FACTOR) * mThroughput;
+            mSampleMediaTimeMs = mediaTimeMs;
+            mSampleTimeMs = now;
+        }
+    }
+
+    /**
+     * A segment started
+     *
+     * @param index The index of the segment
+     */
+    synchronized void onSegmentStarted(int index) {
+        mSegmentStartTimes.put(index, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * A segment was exported
+     *
+     * @param index The index of the segment
+     * @param durationMs The duration of the segment
+     */
+    synchronized void onSegmentCompleted(int index, long durationMs) {
+        final Long startTimeMs = mSegmentStartTimes.get(index);
+        if (startTimeMs != null) {
+            final long elapsedMs = Math.max(1, SystemClock.elapsedRealtime() - startTimeMs);
+            mSegmentThroughputs.put(index, (float)durationMs / elapsedMs);
+        }
+    }
+
+    /**
+     * @return The duration of the exported movie
+     */
+    public synchronized long getDurationMs() {
+        return mDurationMs;
+    }
+
+    /**
+     * @return The media time encoded so far, excluding the reused parts
+     */
+    public synchronized long getEncodedDurationMs() {
+        return Math.max(0, mDurationMs * mProgress / 100 - mReusedDurationMs);
+    }
+
+    /**
+     * @return The wall time of the export
+     */
+    public synchronized long getElapsedTimeMs() {
+        if (mStartTimeMs == 0) {
+            return 0;
+        }
+
+        return (mEndTimeMs != 0 ? mEndTimeMs : SystemClock.elapsedRealtime()) - mStartTimeMs;
+    }
+
+    /**
+     * @return The smoothed throughput in seconds of media per second, 0 if
+     *      not known yet
+     */
+    public synchronized float getThroughput() {
+        return mThroughput;
+    }
+
+    /**
+     * @return The throughput of the exported segments, keyed by segment index
+     */
+    public synchronized Map<Integer, Float> getSegmentThroughputs() {
+        return new HashMap<Integer, Float>(mSegmentThroughputs);
+    }
+
+    /**
+     * @return The estimated time remaining, -1 if not known yet
+     */
+    public synchronized long getRemainingTimeMs() {
+        if (mThroughput <= 0) {
+            return -1;
+        }
+
+        return (long)(mDurationMs * (100 - mProgress) / 100 / mThroughput);
+    }
+
+    /**
+     * @return true if the export did not progress for a while
+     */
+    public synchronized boolean isStalled() {
+        return mStartTimeMs != 0 && mEndTimeMs == 0 && mProgress < 100 &&
+                SystemClock.elapsedRealtime() - mLastProgressTimeMs > STALL_TIMEOUT_MS;
+    }
+}
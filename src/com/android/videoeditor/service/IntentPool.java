@@ -16,8 +16,8 @@
 
 package com.android.videoeditor.service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import android.content.ComponentName;
 import android.content.Context;
@@ -26,29 +26,68 @@ import android.os.Bundle;
 import android.util.Log;
 
 /**
- * A pool of Intents
+ * A bounded pool of Intents. The pool is a lock-free stack so that the
+ * threads which start the service do not contend on a lock. The Intents
+ * returned beyond the capacity of the pool are dropped.
  */
 class IntentPool {
     // Logging
     private static final String TAG = "IntentPool";
 
+    /**
+     * A node of the stack
+     */
+    private static class Node {
+        // Instance variables
+        private final Intent mIntent;
+        private final Node mNext;
+
+        /**
+         * Constructor
+         *
+         * @param intent The pooled Intent
+         * @param next The next node
+         */
+        public Node(Intent intent, Node next) {
+            mIntent = intent;
+            mNext = next;
+        }
+    }
+
     // Instance variables
-    private final List<Intent> mIntentPool;
+    private final int mCapacity;
+    private final AtomicReference<Node> mHead;
+    private final AtomicInteger mSize;
+    // The largest number of pooled Intents
+    private final AtomicInteger mHighWaterMark;
+    // The number of Intents allocated because the pool was empty
+    private final AtomicInteger mMisses;
+    // The number of Intents dropped because the pool was full
+    private final AtomicInteger mDrops;
 
     /**
      * Constructor
      *
-     * @param initialSize The initial size of the pool
+     * @param capacity The maximum number of pooled Intents
      */
-    public IntentPool(int initialSize) {
-        mIntentPool = new ArrayList<Intent>(initialSize);
+    public IntentPool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+
+        mCapacity = capacity;
+        mHead = new AtomicReference<Node>();
+        mSize = new AtomicInteger();
+        mHighWaterMark = new AtomicInteger();
+        mMisses = new AtomicInteger();
+        mDrops = new AtomicInteger();
     }
 
     /**
      * @return The Intent is retrieved from the pool or if the pool is empty
      *      a new Intent is allocated
      */
-    public synchronized Intent get(Context context, Class<?> cls) {
+    public Intent get(Context context, Class<?> cls) {
         final Intent intent = get();
         intent.setComponent(new ComponentName(context, cls));
         return intent;
@@ -58,28 +97,72 @@ class IntentPool {
      * @return The Intent is retrieved from the pool or if the pool is empty
      *      a new Intent is allocated
      */
-    public synchronized Intent get() {
-        if (mIntentPool.size() > 0) {
-            final Intent intent = mIntentPool.remove(0);
-            // Clear the content of the Intent
-            final Bundle extras = intent.getExtras();
-            for (String keys : extras.keySet()) {
-                intent.removeExtra(keys);
+    public Intent get() {
+        while (true) {
+            final Node head = mHead.get();
+            if (head == null) {
+                mMisses.incrementAndGet();
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Pool empty");
+                }
+                return new Intent();
             }
-            intent.setComponent(null);
-            return intent;
-        } else {
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "Pool enlarged");
+
+            if (mHead.compareAndSet(head, head.mNext)) {
+                mSize.decrementAndGet();
+                return head.mIntent;
             }
-            return new Intent();
         }
     }
 
     /**
-     * @param intent Return an Intent to the pool
+     * @param intent Return an Intent to the pool. The Intent is cleared.
+     */
+    public void put(Intent intent) {
+        // Reserve a place in the pool
+        int size;
+        do {
+            size = mSize.get();
+            if (size >= mCapacity) {
+                mDrops.incrementAndGet();
+                return;
+            }
+        } while (!mSize.compareAndSet(size, size + 1));
+
+        int highWaterMark;
+        do {
+            highWaterMark = mHighWaterMark.get();
+        } while (size + 1 > highWaterMark &&
+                !mHighWaterMark.compareAndSet(highWaterMark, size + 1));
+
+        // Clear the content of the Intent
+        intent.replaceExtras((Bundle)null);
+        intent.setComponent(null);
+
+        Node head;
+        do {
+            head = mHead.get();
+        } while (!mHead.compareAndSet(head, new Node(intent, head)));
+    }
+
+    /**
+     * @return The largest number of Intents which were pooled at once
+     */
+    public int getHighWaterMark() {
+        return mHighWaterMark.get();
+    }
+
+    /**
+     * @return The number of Intents allocated because the pool was empty
+     */
+    public int getMisses() {
+        return mMisses.get();
+    }
+
+    /**
+     * @return The number of Intents dropped because the pool was full
      */
-    public synchronized void put(Intent intent) {
-        mIntentPool.add(intent);
+    public int getDrops() {
+        return mDrops.get();
     }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The subscriptions of the service listeners. A listener subscribes to a
+ * combination of event types, for one project or for all projects. The
+ * routing tables are rebuilt when the subscriptions change, so an event is
+ * dispatched to an array of its subscribers without locking or filtering.
+ */
+class ListenerRegistry {
+    // The number of event types
+    private static final int EVENT_TYPES =
+        Integer.bitCount(ApiServiceListener.EVENT_ALL);
+
+    private static final ApiServiceListener[] NO_LISTENERS = new ApiServiceListener[0];
+
+    /**
+     * A subscription of a listener
+     */
+    private static class Subscription {
+        // Instance variables
+        private final ApiServiceListener mListener;
+        private final String mProjectPath;
+        private final int mEvents;
+
+        /**
+         * Constructor
+         *
+         * @param listener The listener
+         * @param projectPath The project path, null for all projects
+         * @param events The event types
+         */
+        public Subscription(ApiServiceListener listener, String projectPath, int events) {
+            mListener = listener;
+            mProjectPath = projectPath;
+            mEvents = events;
+        }
+    }
+
+    /**
+     * The routing tables for each event type. The tables are not modified
+     * once they are built.
+     */
+    private static class Routes {
+        // Instance variables
+        // The subscribers to all projects
+        private final ApiServiceListener[][] mAllProjects;
+        // All the subscribers, for the events which are not about a project
+        private final ApiServiceListener[][] mBroadcast;
+        // The subscribers to each project, including the subscribers to all
+        // projects
+        private final List<Map<String, ApiServiceListener[]>> mProjects;
+
+        /**
+         * Constructor
+         *
+         * @param subscriptions The subscriptions
+         */
+        public Routes(List<Subscription> subscriptions) {
+            mAllProjects = new ApiServiceListener[EVENT_TYPES][];
+            mBroadcast = new ApiServiceListener[EVENT_TYPES][];
+            mProjects = new ArrayList<Map<String, ApiServiceListener[]>>(EVENT_TYPES);
+            for (int type = 0; type < EVENT_TYPES; type++) {
+                final int event = 1 << type;
+                mAllProjects[type] = getListeners(subscriptions, event, null, false);
+                mBroadcast[type] = getListeners(subscriptions, event, null, true);
+
+                final Map<String, ApiServiceListener[]> projects =
+                    new HashMap<String, ApiServiceListener[]>();
+                for (Subscription subscription : subscriptions) {
+                    if ((subscription.mEvents & event) != 0 && subscription.mProjectPath != null
+                            && !projects.containsKey(subscription.mProjectPath)) {
+                        projects.put(subscription.mProjectPath, getListeners(subscriptions, event,
+                                subscription.mProjectPath, false));
+                    }
+                }
+                mProjects.add(projects);
+            }
+        }
+
+        /**
+         * @param subscriptions The subscriptions
+         * @param event The event type
+         * @param projectPath The project path, null for the subscribers to all
+         *      projects
+         * @param broadcast true to include the subscribers to any project
+         *
+         * @return The subscribers, in order of subscription
+         */
+        private static ApiServiceListener[] getListeners(List<Subscription> subscriptions,
+                int event, String projectPath, boolean broadcast) {
+            final List<ApiServiceListener> listeners = new ArrayList<ApiServiceListener>();
+            for (Subscription subscription : subscriptions) {
+                if ((subscription.mEvents & event) != 0 && (broadcast ||
+                        subscription.mProjectPath == null ||
+                        subscription.mProjectPath.equals(projectPath))) {
+                    listeners.add(subscription.mListener);
+                }
+            }
+
+            return listeners.size() > 0 ?
+                    listeners.toArray(new ApiServiceListener[listeners.size()]) : NO_LISTENERS;
+        }
+    }
+
+    // Instance variables
+    private final List<Subscription> mSubscriptions;
+    private volatile Routes mRoutes;
+
+    /**
+     * Constructor
+     */
+    public ListenerRegistry() {
+        mSubscriptions = new ArrayList<Subscription>();
+        mRoutes = new Routes(mSubscriptions);
+    }
+
+    /**
+     * Subscribe a listener. The previous subscription of the listener is
+     * replaced.
+     *
+     * @param listener The listener
+     * @param projectPath The project path, null for all projects
+     * @param events The event types (ApiServiceListener.EVENT_*)
+     */
+    public synchronized void register(ApiServiceListener listener, String projectPath,
+            int events) {
+        if (events == 0 || (events & ~ApiServiceListener.EVENT_ALL) != 0) {
+            throw new IllegalArgumentException("Invalid events: " + events);
+        }
+
+        remove(listener);
+        mSubscriptions.add(new Subscription(listener, projectPath, events));
+        mRoutes = new Routes(mSubscriptions);
+    }
+
+    /**
+     * Unsubscribe a listener
+     *
+     * @param listener The listener
+     */
+    public synchronized void unregister(ApiServiceListener listener) {
+        if (remove(listener)) {
+            mRoutes = new Routes(mSubscriptions);
+        }
+    }
+
+    /**
+     * Get the subscribers of an event. The returned array must not be
+     * modified.
+     *
+     * @param event The event type (ApiServiceListener.EVENT_*)
+     * @param projectPath The project of the event, null if the event is not
+     *      about a project
+     *
+     * @return The subscribers
+     */
+    public ApiServiceListener[] get(int event, String projectPath) {
+        final Routes routes = mRoutes;
+        final int type = Integer.numberOfTrailingZeros(event);
+        if (projectPath == null) {
+            return routes.mBroadcast[type];
+        }
+
+        final ApiServiceListener[] listeners = routes.mProjects.get(type).get(projectPath);
+        return listeners != null ? listeners : routes.mAllProjects[type];
+    }
+
+    /**
+     * @param listener The listener
+     *
+     * @return true if the listener was subscribed
+     */
+    private boolean remove(ApiServiceListener listener) {
+        for (int i = 0; i < mSubscriptions.size(); i++) {
+            if (mSubscriptions.get(i).mListener == listener) {
+                mSubscriptions.remove(i);
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
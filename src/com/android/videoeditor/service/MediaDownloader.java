@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.StatFs;
+import android.util.Log;
+
+/**
+ * Copies media content from content providers into the project folder.
+ * File backed content is transferred channel to channel; streamed content
+ * is copied through a direct buffer. Partial copies are resumed from the
+ * length of the local file.
+ */
+class MediaDownloader {
+    // Logging
+    private static final String TAG = "MediaDownloader";
+
+    // The maximum number of simultaneous downloads
+    private static final int MAX_CONCURRENT_DOWNLOADS = 2;
+
+    // The size of the transfers and of the buffer used for streamed content
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    // Download threads are released when idle for this amount of time
+    private static final long IDLE_TIMEOUT_MS = 30000;
+
+    // The executor which limits the number of simultaneous downloads
+    private static ExecutorService sExecutor;
+
+    /**
+     * Download progress listener
+     */
+    interface ProgressListener {
+        /**
+         * @param downloadedBytes The number of bytes in the local file
+         * @param totalBytes The size of the content, -1 if unknown
+         */
+        public void onProgress(long downloadedBytes, long totalBytes);
+    }
+
+    /**
+     * It is not possible to instantiate this class
+     */
+    private MediaDownloader() {
+    }
+
+    /**
+     * Run a download. At most MAX_CONCURRENT_DOWNLOADS downloads run at
+     * the same time, the others are queued.
+     *
+     * @param download The download
+     */
+    static synchronized void execute(Runnable download) {
+        if (sExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_CONCURRENT_DOWNLOADS,
+                    MAX_CONCURRENT_DOWNLOADS, IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+
+        sExecutor.execute(download);
+    }
+
+    /**
+     * Copy the content of a URI to a file. If the file already holds a prefix
+     * of the content the copy resumes at the end of the file.
+     *
+     * @param resolver The content resolver
+     * @param uri The content URI
+     * @param file The local file
+     * @param listener The progress listener
+     */
+    static void download(ContentResolver resolver, Uri uri, File file,
+            ProgressListener listener) throws IOException {
+        AssetFileDescriptor afd = null;
+        try {
+            afd = resolver.openAssetFileDescriptor(uri, "r");
+        } catch (FileNotFoundException ex) {
+            // The provider can only stream the content
+        }
+
+        if (afd != null) {
+            try {
+                final long length = afd.getLength();
+                final FileChannel in = afd.createInputStream().getChannel();
+                final long start = afd.getStartOffset();
+                final long total = length != AssetFileDescriptor.UNKNOWN_LENGTH ?
+                        length : in.size() - start;
+                final long offset = getResumeOffset(file, total);
+                checkAvailableSpace(file, total - offset);
+
+                final FileChannel out = new FileOutputStream(file, offset > 0).getChannel();
+                try {
+                    long position = offset;
+                    while (position < total) {
+                        final long transferred = in.transferTo(start + position,
+                                Math.min(CHUNK_SIZE, total - position), out);
+                        if (transferred <= 0) {
+                            throw new IOException("Unexpected end of content: " + uri);
+                        }
+                        position += transferred;
+                        listener.onProgress(position, total);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                afd.close();
+            }
+        } else {
+            final InputStream is = resolver.openInputStream(uri);
+            if (is == null) {
+                throw new FileNotFoundException("Cannot open: " + uri);
+            }
+
+            try {
+                final long offset = getResumeOffset(file, -1);
+                long skipped = 0;
+                while (skipped < offset) {
+                    final long count = is.skip(offset - skipped);
+                    if (count <= 0) {
+                        throw new IOException("Cannot resume download: " + uri);
+                    }
+                    skipped += count;
+                }
+
+                final ReadableByteChannel in = Channels.newChannel(is);
+                final FileChannel out = new FileOutputStream(file, offset > 0).getChannel();
+                try {
+                    final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+                    long position = offset;
+                    while (in.read(buffer) >= 0) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            position += out.write(buffer);
+                        }
+                        buffer.clear();
+                        listener.onProgress(position, -1);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                is.close();
+            }
+        }
+    }
+
+    /**
+     * @param file The local file
+     * @param total The size of the content, -1 if unknown
+     *
+     * @return The offset at which the download resumes
+     */
+    private static long getResumeOffset(File file, long total) {
+        final long length = file.length();
+        if (length > 0 && (total < 0 || length <= total)) {
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Resuming download: " + file + " at: " + length);
+            }
+            return length;
+        }
+
+        // The content changed since the file was written
+        return 0;
+    }
+
+    /**
+     * Check that the project storage can hold the remaining content
+     *
+     * @param file The local file
+     * @param remaining The number of bytes to download
+     */
+    private static void checkAvailableSpace(File file, long remaining) throws IOException {
+        final StatFs stat = new StatFs(file.getParent());
+        final long available = (long)stat.getAvailableBlocks() * stat.getBlockSize();
+        if (remaining > available) {
+            throw new IOException("Not enough space for: " + file + ", required: " +
+                    remaining + ", available: " + available);
+        }
+    }
+}
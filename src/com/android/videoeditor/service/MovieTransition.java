@@ -286,7 +286,8 @@ public class MovieTransition {
         if (TransitionCrossfade.class.equals(mTypeClass)) {
             return TransitionType.TRANSITION_TYPE_CROSSFADE;
         } else if (TransitionAlpha.class.equals(mTypeClass)) {
-            final int rawId = FileUtils.getMaskRawId(mAlphaMaskFilename);
+            final int rawId = mAlphaMaskFilename != null ?
+                    FileUtils.getMaskRawId(mAlphaMaskFilename) : mAlphaMaskResId;
             switch (rawId) {
                 case R.raw.mask_contour: {
                     return TransitionType.TRANSITION_TYPE_ALPHA_CONTOUR;
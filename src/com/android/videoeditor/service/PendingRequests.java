@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of the pending requests. The requests are indexed by request
+ * id, by operation and storyboard item, and by project, so that the pending
+ * state of an item or a project is known without scanning the requests.
+ * The queries do not lock; the updates are serialized.
+ */
+class PendingRequests {
+    // Listener
+    public interface Listener {
+        /**
+         * The edit state of a project changed
+         *
+         * @param projectPath The project path
+         * @param projectEdited true if the timeline of the project is being
+         *      modified
+         */
+        public void onProjectEditStateChanged(String projectPath, boolean projectEdited);
+    }
+
+    /**
+     * A pending request and its index keys
+     */
+    private static class Request {
+        // Instance variables
+        private final Command mCommand;
+        private final String mProjectPath;
+        private final String mItemKey;
+        private final boolean mEditing;
+
+        /**
+         * Constructor
+         *
+         * @param command The request command
+         * @param projectPath The project path
+         * @param itemKey The key of the operation and item
+         * @param editing true if the request modifies the timeline
+         */
+        public Request(Command command, String projectPath, String itemKey, boolean editing) {
+            mCommand = command;
+            mProjectPath = projectPath;
+            mItemKey = itemKey;
+            mEditing = editing;
+        }
+    }
+
+    // Instance variables
+    private final Listener mListener;
+    private final ConcurrentHashMap<String, Request> mRequests;
+    // The number of pending requests for each operation and item
+    private final ConcurrentHashMap<String, Integer> mItemCounts;
+    // The number of pending requests which modify the timeline of each project
+    private final ConcurrentHashMap<String, Integer> mEditCounts;
+
+    /**
+     * Constructor
+     *
+     * @param listener The listener notified when the edit state of a project
+     *      changes. The listener is called by the thread which adds or
+     *      removes the request.
+     */
+    public PendingRequests(Listener listener) {
+        mListener = listener;
+        mRequests = new ConcurrentHashMap<String, Request>();
+        mItemCounts = new ConcurrentHashMap<String, Integer>();
+        mEditCounts = new ConcurrentHashMap<String, Integer>();
+    }
+
+    /**
+     * Add a pending request. The request is indexed by the project and the
+     * item of its command.
+     *
+     * @param command The request command
+     * @param editing true if the request modifies the timeline of the project
+     */
+    public void add(Command command, boolean editing) {
+        final String projectPath = command.getProjectPath();
+        final boolean projectEdited;
+        synchronized (this) {
+            if (projectPath == null) {
+                mRequests.put(command.getRequestId(), new Request(command, null, null, false));
+                return;
+            }
+
+            final String itemKey = getItemKey(command.getOp(), projectPath, command.getItemId());
+            mRequests.put(command.getRequestId(),
+                    new Request(command, projectPath, itemKey, editing));
+            increment(mItemCounts, itemKey);
+            projectEdited = editing && increment(mEditCounts, projectPath) == 1;
+        }
+
+        if (projectEdited) {
+            mListener.onProjectEditStateChanged(projectPath, true);
+        }
+    }
+
+    /**
+     * Remove a request which completed or was cancelled
+     *
+     * @param requestId The request id
+     *
+     * @return The request command, null if the request is not pending
+     */
+    public Command remove(String requestId) {
+        final Request request;
+        final boolean projectEditEnded;
+        synchronized (this) {
+            request = mRequests.remove(requestId);
+            if (request == null) {
+                return null;
+            }
+
+            if (request.mProjectPath == null) {
+                return request.mCommand;
+            }
+
+            decrement(mItemCounts, request.mItemKey);
+            projectEditEnded = request.mEditing &&
+                    decrement(mEditCounts, request.mProjectPath) == 0;
+        }
+
+        if (projectEditEnded) {
+            mListener.onProjectEditStateChanged(request.mProjectPath, false);
+        }
+
+        return request.mCommand;
+    }
+
+    /**
+     * @param requestId The request id
+     *
+     * @return The request command, null if the request is not pending
+     */
+    public Command get(String requestId) {
+        final Request request = mRequests.get(requestId);
+        return request != null ? request.mCommand : null;
+    }
+
+    /**
+     * @return true if no request is pending
+     */
+    public boolean isEmpty() {
+        return mRequests.isEmpty();
+    }
+
+    /**
+     * Check if a request is pending for an item
+     *
+     * @param op The operation
+     * @param projectPath The project path
+     * @param itemId The item id
+     *
+     * @return true if a request for this operation and item is pending
+     */
+    public boolean isPending(int op, String projectPath, String itemId) {
+        return mItemCounts.containsKey(getItemKey(op, projectPath, itemId));
+    }
+
+    /**
+     * @param projectPath The project path
+     *
+     * @return true if a request which modifies the timeline of the project
+     *      is pending
+     */
+    public boolean isProjectEdited(String projectPath) {
+        return mEditCounts.containsKey(projectPath);
+    }
+
+    /**
+     * @param op The operation
+     * @param projectPath The project path
+     * @param itemId The item id
+     *
+     * @return The key of the operation and item
+     */
+    private static String getItemKey(int op, String projectPath, String itemId) {
+        return op + "\n" + itemId + "\n" + projectPath;
+    }
+
+    /**
+     * @param counts The counts
+     * @param key The key
+     *
+     * @return The incremented count of the key
+     */
+    private static int increment(ConcurrentHashMap<String, Integer> counts, String key) {
+        final Integer count = counts.get(key);
+        final int newCount = count != null ? count + 1 : 1;
+        counts.put(key, newCount);
+        return newCount;
+    }
+
+    /**
+     * @param counts The counts
+     * @param key The key
+     *
+     * @return The decremented count of the key. Keys are removed when their
+     *      count reaches 0.
+     */
+    private static int decrement(ConcurrentHashMap<String, Integer> counts, String key) {
+        final Integer count = counts.get(key);
+        if (count == null || count <= 1) {
+            counts.remove(key);
+            return 0;
+        }
+
+        counts.put(key, count - 1);
+        return count - 1;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.media.videoeditor.AudioTrack;
+import android.media.videoeditor.MediaItem;
+import android.media.videoeditor.Overlay;
+import android.media.videoeditor.Transition;
+import android.media.videoeditor.VideoEditor;
+
+/**
+ * The structural changes of the timeline made by a service operation. The
+ * delta is applied in place to the project and to the timeline views
+ * instead of copying all the media items.
+ *
+ * A transition slot is identified by the id of the media item which
+ * precedes it, or null for the slot at the beginning of the timeline.
+ */
+public class TimelineDelta {
+    // Instance variables
+    private String mMovedMediaItemId;
+    private String mMoveAfterMediaItemId;
+    private final Map<String, MovieTransition> mTransitions;
+    private final Map<String, MovieOverlay> mOverlays;
+    private List<MovieAudioTrack> mAudioTracks;
+
+    /**
+     * The transition, overlay and audio track ids of the timeline before
+     * the operation
+     */
+    static class Snapshot {
+        // Instance variables
+        private final Map<String, String> mTransitionIds;
+        private final Map<String, String> mOverlayIds;
+        private final List<String> mAudioTrackIds;
+
+        /**
+         * Constructor
+         *
+         * @param videoEditor The video editor
+         */
+        Snapshot(VideoEditor videoEditor) {
+            mTransitionIds = new HashMap<String, String>();
+            mOverlayIds = new HashMap<String, String>();
+            mAudioTrackIds = getAudioTrackIds(videoEditor.getAllAudioTracks());
+
+            final List<MediaItem> mediaItems = videoEditor.getAllMediaItems();
+
+            final int mediaItemsCount = mediaItems.size();
+            for (int i = 0; i < mediaItemsCount; i++) {
+                final MediaItem mediaItem = mediaItems.get(i);
+                if (i == 0) {
+                    mTransitionIds.put(null, getId(mediaItem.getBeginTransition()));
+                }
+
+                mTransitionIds.put(mediaItem.getId(), getId(mediaItem.getEndTransition()));
+                mOverlayIds.put(mediaItem.getId(), getOverlayId(mediaItem));
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     */
+    TimelineDelta() {
+        mTransitions = new HashMap<String, MovieTransition>();
+        mOverlays = new HashMap<String, MovieOverlay>();
+    }
+
+    /**
+     * Record a media item move
+     *
+     * @param mediaItemId The id of the moved media item
+     * @param afterMediaItemId The media item was moved after this media item
+     */
+    void setMove(String mediaItemId, String afterMediaItemId) {
+        mMovedMediaItemId = mediaItemId;
+        mMoveAfterMediaItemId = afterMediaItemId;
+    }
+
+    /**
+     * Record the transitions, overlays and audio tracks which differ from
+     * the snapshot
+     *
+     * @param snapshot The timeline before the operation
+     * @param videoEditor The video editor after the operation
+     */
+    void addChanges(Snapshot snapshot, VideoEditor videoEditor) {
+        final List<MediaItem> mediaItems = videoEditor.getAllMediaItems();
+        final int mediaItemsCount = mediaItems.size();
+        for (int i = 0; i < mediaItemsCount; i++) {
+            final MediaItem mediaItem = mediaItems.get(i);
+            if (i == 0) {
+                addTransitionChange(snapshot, null, mediaItem.getBeginTransition());
+            }
+
+            addTransitionChange(snapshot, mediaItem.getId(), mediaItem.getEndTransition());
+
+            final String overlayId = getOverlayId(mediaItem);
+            if (!equals(overlayId, snapshot.mOverlayIds.get(mediaItem.getId()))) {
+                mOverlays.put(mediaItem.getId(), overlayId != null ?
+                        new MovieOverlay(mediaItem.getAllOverlays().get(0)) : null);
+            }
+        }
+
+        final List<AudioTrack> audioTracks = videoEditor.getAllAudioTracks();
+        if (!getAudioTrackIds(audioTracks).equals(snapshot.mAudioTrackIds)) {
+            mAudioTracks = new ArrayList<MovieAudioTrack>(audioTracks.size());
+            for (AudioTrack audioTrack : audioTracks) {
+                mAudioTracks.add(new MovieAudioTrack(audioTrack));
+            }
+        }
+    }
+
+    /**
+     * @return true if the delta moves a media item
+     */
+    public boolean isMove() {
+        return mMovedMediaItemId != null;
+    }
+
+    /**
+     * @return The id of the moved media item
+     */
+    public String getMovedMediaItemId() {
+        return mMovedMediaItemId;
+    }
+
+    /**
+     * @return The id of the media item preceding the moved media item, null
+     *      if the media item was moved at the beginning
+     */
+    public String getMoveAfterMediaItemId() {
+        return mMoveAfterMediaItemId;
+    }
+
+    /**
+     * @return The transitions of the slots which changed. A null transition
+     *      indicates that the slot has no transition.
+     */
+    public Map<String, MovieTransition> getTransitions() {
+        return Collections.unmodifiableMap(mTransitions);
+    }
+
+    /**
+     * @return The overlays of the media items whose overlay changed. A null
+     *      overlay indicates that the overlay was removed.
+     */
+    public Map<String, MovieOverlay> getOverlays() {
+        return Collections.unmodifiableMap(mOverlays);
+    }
+
+    /**
+     * @return The new audio tracks, null if the audio tracks did not change
+     */
+    public List<MovieAudioTrack> getAudioTracks() {
+        return mAudioTracks;
+    }
+
+    /**
+     * Record a transition slot if it differs from the snapshot
+     *
+     * @param snapshot The timeline before the operation
+     * @param afterMediaItemId The id of the media item preceding the slot
+     * @param transition The transition of the slot
+     */
+    private void addTransitionChange(Snapshot snapshot, String afterMediaItemId,
+            Transition transition) {
+        final String transitionId = getId(transition);
+        if (!snapshot.mTransitionIds.containsKey(afterMediaItemId) ||
+                !equals(transitionId, snapshot.mTransitionIds.get(afterMediaItemId))) {
+            mTransitions.put(afterMediaItemId,
+                    transition != null ? new MovieTransition(transition) : null);
+        }
+    }
+
+    /**
+     * @param transition The transition
+     *
+     * @return The transition id, null if there is no transition
+     */
+    private static String getId(Transition transition) {
+        return transition != null ? transition.getId() : null;
+    }
+
+    /**
+     * @param audioTracks The audio tracks
+     *
+     * @return The ids of the audio tracks
+     */
+    private static List<String> getAudioTrackIds(List<AudioTrack> audioTracks) {
+        final List<String> audioTrackIds = new ArrayList<String>(audioTracks.size());
+        for (AudioTrack audioTrack : audioTracks) {
+            audioTrackIds.add(audioTrack.getId());
+        }
+
+        return audioTrackIds;
+    }
+
+    /**
+     * @param mediaItem The media item
+     *
+     * @return The id of the overlay of the media item, null if none
+     */
+    private static String getOverlayId(MediaItem mediaItem) {
+        final List<Overlay> overlays = mediaItem.getAllOverlays();
+        return overlays.size() > 0 ? overlays.get(0).getId() : null;
+    }
+
+    /**
+     * @param id1 The first id
+     * @param id2 The second id
+     *
+     * @return true if both ids are null or equal
+     */
+    private static boolean equals(String id1, String id2) {
+        return id1 == null ? id2 == null : id1.equals(id2);
+    }
+}
@@ -23,12 +23,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
 
+import android.media.videoeditor.MediaItem;
 import android.media.videoeditor.MediaProperties;
 import android.media.videoeditor.MediaVideoItem;
 import android.media.videoeditor.VideoEditor;
@@ -61,6 +65,7 @@ public class VideoEditorProject {
     private static final String ATTR_MIME = "mime";
     private static final String ATTR_FILENAME = "filename";
     private static final String ATTR_TIME = "time";
+    private static final String ATTR_COMPLETE = "complete";
 
     // Instance variables
     private final VideoEditor mVideoEditor;
@@ -77,6 +82,10 @@ public class VideoEditorProject {
     private List<MovieMediaItem> mMediaItems = new ArrayList<MovieMediaItem>();
     private List<MovieAudioTrack> mAudioTracks = new ArrayList<MovieAudioTrack>();
     private boolean mClean;
+    // The edits applied to the model which the service did not complete,
+    // in the order in which they were applied
+    private final Map<String, PendingEdit> mPendingEdits =
+            new LinkedHashMap<String, PendingEdit>();
 
     /**
      * Download item
@@ -86,6 +95,7 @@ public class VideoEditorProject {
         private final String mMimeType;
         private final String mFilename;
         private final long mTime;
+        private final boolean mComplete;
 
         /**
          * Constructor
@@ -94,12 +104,15 @@ public class VideoEditorProject {
          * @param mimeType The mime type
          * @param filename The filename
          * @param time The time when the file was downloaded
+         * @param complete true if the download is complete
          */
-        private Download(String mediaUri, String mimeType, String filename, long time) {
+        private Download(String mediaUri, String mimeType, String filename, long time,
+                boolean complete) {
             mMediaUri = mediaUri;
             mMimeType = mimeType;
             mFilename = filename;
             mTime = time;
+            mComplete = complete;
         }
 
         /**
@@ -129,6 +142,103 @@ public class VideoEditorProject {
         public long getTime() {
             return mTime;
         }
+
+        /**
+         * @return true if the download is complete, false if the file holds
+         *      a partial download which can be resumed
+         */
+        public boolean isComplete() {
+            return mComplete;
+        }
+    }
+
+    /**
+     * An edit applied to the model before the service completes it. The
+     * edit records the timeline it replaced so it can be reverted if the
+     * service rejects it.
+     */
+    private static class PendingEdit {
+        // Instance variables
+        private final List<MovieMediaItem> mMediaItems;
+        private final MovieTransition[] mBeginTransitions;
+        private final MovieTransition[] mEndTransitions;
+        private final MovieOverlay[] mOverlays;
+        // The id of the media item which precedes the edited position
+        private String mAfterMediaItemId;
+
+        /**
+         * Constructor
+         *
+         * @param mediaItems The media items before the edit
+         */
+        private PendingEdit(List<MovieMediaItem> mediaItems) {
+            final int mediaItemsCount = mediaItems.size();
+            mMediaItems = new ArrayList<MovieMediaItem>(mediaItems);
+            mBeginTransitions = new MovieTransition[mediaItemsCount];
+            mEndTransitions = new MovieTransition[mediaItemsCount];
+            mOverlays = new MovieOverlay[mediaItemsCount];
+            for (int i = 0; i < mediaItemsCount; i++) {
+                final MovieMediaItem mediaItem = mediaItems.get(i);
+                mBeginTransitions[i] = mediaItem.getBeginTransition();
+                mEndTransitions[i] = mediaItem.getEndTransition();
+                mOverlays[i] = mediaItem.getOverlay();
+            }
+        }
+
+        /**
+         * Replace a media item which the service updated
+         *
+         * @param newMediaItem The new instance of the media item
+         */
+        private void replaceMediaItem(MovieMediaItem newMediaItem) {
+            final int index = mMediaItems.indexOf(newMediaItem);
+            if (index >= 0) {
+                mMediaItems.set(index, newMediaItem);
+            }
+        }
+
+        /**
+         * Restore the timeline. The application values of the rendering
+         * modes, the image durations, the transition durations and the
+         * overlay times are reset to the values set by the service.
+         *
+         * @return The media items before the edit
+         */
+        private List<MovieMediaItem> restore() {
+            final int mediaItemsCount = mMediaItems.size();
+            for (int i = 0; i < mediaItemsCount; i++) {
+                final MovieMediaItem mediaItem = mMediaItems.get(i);
+                mediaItem.setBeginTransition(mBeginTransitions[i]);
+                mediaItem.setEndTransition(mEndTransitions[i]);
+
+                final MovieOverlay overlay = mediaItem.getOverlay();
+                if (overlay != null) {
+                    mediaItem.removeOverlay(overlay.getId());
+                }
+
+                if (mOverlays[i] != null) {
+                    mediaItem.addOverlay(mOverlays[i]);
+                    mOverlays[i].setAppStartTime(mOverlays[i].getStartTime());
+                    mOverlays[i].setAppDuration(mOverlays[i].getDuration());
+                }
+
+                mediaItem.setAppRenderingMode(mediaItem.getRenderingMode());
+                if (mediaItem.isImage()) {
+                    mediaItem.setAppExtractBoundaries(mediaItem.getBoundaryBeginTime(),
+                            mediaItem.getBoundaryEndTime());
+                }
+
+                if (mBeginTransitions[i] != null) {
+                    mBeginTransitions[i].setAppDuration(mBeginTransitions[i].getDuration());
+                }
+
+                if (mEndTransitions[i] != null) {
+                    mEndTransitions[i].setAppDuration(mEndTransitions[i].getDuration());
+                }
+            }
+
+            return mMediaItems;
+        }
     }
 
     /**
@@ -357,6 +467,11 @@ public class VideoEditorProject {
      *      item or an updated version of the same instance.
      */
     void updateMediaItem(MovieMediaItem newMediaItem) {
+        // A rejected edit restores the new instance
+        for (PendingEdit edit : mPendingEdits.values()) {
+            edit.replaceMediaItem(newMediaItem);
+        }
+
         final String newMediaItemId = newMediaItem.getId();
         final int count = mMediaItems.size();
         for (int i = 0; i < count; i++) {
@@ -414,6 +529,448 @@ public class VideoEditorProject {
         }
     }
 
+    /**
+     * Move a media item before the service completes the move. The edit is
+     * completed by {@link #confirmEdit(String, TimelineDelta)} or
+     * {@link #rejectEdit(String)}.
+     *
+     * @param requestId The id of the service request
+     * @param mediaItemId The id of the media item to move
+     * @param afterMediaItemId Move after this media item id
+     */
+    void applyMoveMediaItem(String requestId, String mediaItemId, String afterMediaItemId) {
+        final MovieMediaItem movedMediaItem = getMediaItem(mediaItemId);
+        if (movedMediaItem == null) {
+            throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
+        }
+
+        if (afterMediaItemId != null && getMediaItem(afterMediaItemId) == null) {
+            throw new IllegalArgumentException("MediaItem not found: " + afterMediaItemId);
+        }
+
+        mPendingEdits.put(requestId, new PendingEdit(mMediaItems));
+        moveMediaItem(movedMediaItem, afterMediaItemId);
+    }
+
+    /**
+     * Remove a media item before the service completes the removal. The
+     * edit is completed by
+     * {@link #confirmRemoveMediaItem(String, String, MovieTransition)} or
+     * {@link #rejectEdit(String)}.
+     *
+     * @param requestId The id of the service request
+     * @param mediaItemId The id of the media item to remove
+     */
+    void applyRemoveMediaItem(String requestId, String mediaItemId) {
+        final MovieMediaItem mediaItem = getMediaItem(mediaItemId);
+        if (mediaItem == null) {
+            throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
+        }
+
+        final PendingEdit edit = new PendingEdit(mMediaItems);
+        final int index = mMediaItems.indexOf(mediaItem);
+        edit.mAfterMediaItemId = index > 0 ? mMediaItems.get(index - 1).getId() : null;
+        mPendingEdits.put(requestId, edit);
+        removeMediaItem(mediaItemId, null);
+    }
+
+    /**
+     * Set the rendering mode of a media item before the service sets it
+     *
+     * @param requestId The id of the service request
+     * @param mediaItemId The id of the media item
+     * @param renderingMode The rendering mode
+     */
+    void applySetMediaItemRenderingMode(String requestId, String mediaItemId,
+            int renderingMode) {
+        final MovieMediaItem mediaItem = getMediaItem(mediaItemId);
+        if (mediaItem == null) {
+            throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
+        }
+
+        mPendingEdits.put(requestId, new PendingEdit(mMediaItems));
+        mediaItem.setAppRenderingMode(renderingMode);
+    }
+
+    /**
+     * Set the duration of an image media item before the service sets it
+     *
+     * @param requestId The id of the service request
+     * @param mediaItemId The id of the media item
+     * @param durationMs The duration of the media item
+     */
+    void applySetMediaItemDuration(String requestId, String mediaItemId, long durationMs) {
+        final MovieMediaItem mediaItem = getMediaItem(mediaItemId);
+        if (mediaItem == null) {
+            throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
+        }
+
+        mPendingEdits.put(requestId, new PendingEdit(mMediaItems));
+        final long beginMs = mediaItem.getAppBoundaryBeginTime();
+        mediaItem.setAppExtractBoundaries(beginMs, beginMs + durationMs);
+    }
+
+    /**
+     * Add a transition before the service adds it
+     *
+     * @param requestId The id of the service request
+     * @param transition The transition
+     * @param afterMediaItemId Add the transition after this media item id,
+     *      null to add it at the beginning of the timeline
+     */
+    void applyAddTransition(String requestId, MovieTransition transition,
+            String afterMediaItemId) {
+        final PendingEdit edit = new PendingEdit(mMediaItems);
+        addTransition(transition, afterMediaItemId);
+        mPendingEdits.put(requestId, edit);
+    }
+
+    /**
+     * Remove a transition before the service removes it
+     *
+     * @param requestId The id of the service request
+     * @param transitionId The transition id
+     */
+    void applyRemoveTransition(String requestId, String transitionId) {
+        if (getTransition(transitionId) == null) {
+            throw new IllegalArgumentException("Transition not found: " + transitionId);
+        }
+
+        mPendingEdits.put(requestId, new PendingEdit(mMediaItems));
+        removeTransition(transitionId);
+    }
+
+    /**
+     * Set the duration of a transition before the service sets it
+     *
+     * @param requestId The id of the service request
+     * @param transitionId The transition id
+     * @param durationMs The duration of the transition
+     */
+    void applySetTransitionDuration(String requestId, String transitionId, long durationMs) {
+        final MovieTransition transition = getTransition(transitionId);
+        if (transition == null) {
+            throw new IllegalArgumentException("Transition not found: " + transitionId);
+        }
+
+        mPendingEdits.put(requestId, new PendingEdit(mMediaItems));
+        transition.setAppDuration(durationMs);
+    }
+
+    /**
+     * Add an overlay before the service adds it
+     *
+     * @param requestId The id of the service request
+     * @param mediaItemId The media item id
+     * @param overlay The overlay
+     */
+    void applyAddOverlay(String requestId, String mediaItemId, MovieOverlay overlay) {
+        if (getMediaItem(mediaItemId) == null) {
+            throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
+        }
+
+        mPendingEdits.put(requestId, new PendingEdit(mMediaItems));
+        addOverlay(mediaItemId, overlay);
+    }
+
+    /**
+     * Remove an overlay before the service removes it
+     *
+     * @param requestId The id of the service request
+     * @param mediaItemId The media item id
+     * @param overlayId The overlay id
+     */
+    void applyRemoveOverlay(String requestId, String mediaItemId, String overlayId) {
+        getEditedOverlay(mediaItemId, overlayId);
+
+        mPendingEdits.put(requestId, new PendingEdit(mMediaItems));
+        removeOverlay(mediaItemId, overlayId);
+    }
+
+    /**
+     * Set the start time of an overlay before the service sets it
+     *
+     * @param requestId The id of the service request
+     * @param mediaItemId The media item id
+     * @param overlayId The overlay id
+     * @param startTimeMs The start time of the overlay
+     */
+    void applySetOverlayStartTime(String requestId, String mediaItemId, String overlayId,
+            long startTimeMs) {
+        final MovieOverlay overlay = getEditedOverlay(mediaItemId, overlayId);
+
+        mPendingEdits.put(requestId, new PendingEdit(mMediaItems));
+        overlay.setAppStartTime(startTimeMs);
+    }
+
+    /**
+     * Set the duration of an overlay before the service sets it
+     *
+     * @param requestId The id of the service request
+     * @param mediaItemId The media item id
+     * @param overlayId The overlay id
+     * @param durationMs The duration of the overlay
+     */
+    void applySetOverlayDuration(String requestId, String mediaItemId, String overlayId,
+            long durationMs) {
+        final MovieOverlay overlay = getEditedOverlay(mediaItemId, overlayId);
+
+        mPendingEdits.put(requestId, new PendingEdit(mMediaItems));
+        overlay.setAppDuration(durationMs);
+    }
+
+    /**
+     * @param mediaItemId The media item id
+     * @param overlayId The overlay id
+     *
+     * @return The overlay to edit
+     */
+    private MovieOverlay getEditedOverlay(String mediaItemId, String overlayId) {
+        final MovieMediaItem mediaItem = getMediaItem(mediaItemId);
+        if (mediaItem == null) {
+            throw new IllegalArgumentException("MediaItem not found: " + mediaItemId);
+        }
+
+        final MovieOverlay overlay = mediaItem.getOverlay();
+        if (overlay == null || !overlay.getId().equals(overlayId)) {
+            throw new IllegalArgumentException("Overlay not found: " + overlayId);
+        }
+
+        return overlay;
+    }
+
+    /**
+     * The service completed an edit
+     *
+     * @param requestId The id of the service request
+     *
+     * @return true if the model holds the edit. Otherwise the edit was
+     *      discarded when an older edit was rejected and the service result
+     *      must be applied to the model.
+     */
+    boolean confirmEdit(String requestId) {
+        return mPendingEdits.remove(requestId) != null;
+    }
+
+    /**
+     * The service completed an edit. The changes computed by the service
+     * which the model does not hold yet are applied in place.
+     *
+     * @param requestId The id of the service request
+     * @param delta The changes made by the service
+     *
+     * @return true if the model changed
+     */
+    boolean confirmEdit(String requestId, TimelineDelta delta) {
+        // If the edit was discarded the model does not hold the structural
+        // change
+        return applyDelta(delta, !confirmEdit(requestId));
+    }
+
+    /**
+     * The service removed a media item. The transition set by the theme at
+     * the removal position is added in place.
+     *
+     * @param requestId The id of the service request
+     * @param mediaItemId The id of the removed media item
+     * @param transition The transition set at the removal position, null if
+     *      none
+     *
+     * @return true if the model holds the removal
+     */
+    boolean confirmRemoveMediaItem(String requestId, String mediaItemId,
+            MovieTransition transition) {
+        final PendingEdit edit = mPendingEdits.remove(requestId);
+        if (edit == null) {
+            removeMediaItem(mediaItemId, transition);
+            return false;
+        }
+
+        if (transition != null) {
+            setTransition(edit.mAfterMediaItemId, transition);
+            mClean = false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Apply the changes made by the service
+     *
+     * @param delta The changes made by the service
+     *
+     * @return true if the model changed
+     */
+    boolean applyDelta(TimelineDelta delta) {
+        return applyDelta(delta, true);
+    }
+
+    /**
+     * Apply the changes made by the service
+     *
+     * @param delta The changes made by the service
+     * @param structural true to apply the structural change of the delta
+     *
+     * @return true if the model changed
+     */
+    private boolean applyDelta(TimelineDelta delta, boolean structural) {
+        boolean changed = false;
+        if (structural && delta.isMove()) {
+            final MovieMediaItem movedMediaItem = getMediaItem(delta.getMovedMediaItemId());
+            if (movedMediaItem != null) {
+                moveMediaItem(movedMediaItem, delta.getMoveAfterMediaItemId());
+                changed = true;
+            }
+        }
+
+        for (Map.Entry<String, MovieTransition> entry : delta.getTransitions().entrySet()) {
+            changed |= setTransition(entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<String, MovieOverlay> entry : delta.getOverlays().entrySet()) {
+            final MovieMediaItem mediaItem = getMediaItem(entry.getKey());
+            if (mediaItem == null) {
+                continue;
+            }
+
+            final MovieOverlay overlay = mediaItem.getOverlay();
+            if (overlay != null) {
+                mediaItem.removeOverlay(overlay.getId());
+            }
+
+            if (entry.getValue() != null) {
+                mediaItem.addOverlay(entry.getValue());
+            }
+            changed = true;
+        }
+
+        if (delta.getAudioTracks() != null) {
+            setAudioTracks(delta.getAudioTracks());
+            changed = true;
+        }
+
+        if (changed) {
+            mClean = false;
+        }
+
+        return changed;
+    }
+
+    /**
+     * The service rejected an edit. The model is restored as it was before
+     * the edit. The newer edits are discarded and the model is replaced by
+     * the service result when they complete.
+     *
+     * @param requestId The id of the service request
+     *
+     * @return true if the model changed
+     */
+    boolean rejectEdit(String requestId) {
+        final PendingEdit edit = mPendingEdits.get(requestId);
+        if (edit == null) {
+            return false;
+        }
+
+        boolean discard = false;
+        final Iterator<String> iterator = mPendingEdits.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().equals(requestId)) {
+                discard = true;
+            }
+
+            if (discard) {
+                iterator.remove();
+            }
+        }
+
+        mMediaItems = edit.restore();
+        mClean = false;
+        return true;
+    }
+
+    /**
+     * Move a media item. The transitions at the original and at the new
+     * position are removed.
+     *
+     * @param movedMediaItem The media item to move
+     * @param afterMediaItemId Move after this media item id
+     */
+    private void moveMediaItem(MovieMediaItem movedMediaItem, String afterMediaItemId) {
+        final int index = mMediaItems.indexOf(movedMediaItem);
+        if (index > 0) {
+            mMediaItems.get(index - 1).setEndTransition(null);
+        }
+
+        if (index < mMediaItems.size() - 1) {
+            mMediaItems.get(index + 1).setBeginTransition(null);
+        }
+
+        mMediaItems.remove(index);
+        movedMediaItem.setBeginTransition(null);
+        movedMediaItem.setEndTransition(null);
+        insertMediaItem(movedMediaItem, afterMediaItemId);
+    }
+
+    /**
+     * Set the transition of a slot
+     *
+     * @param afterMediaItemId The id of the media item preceding the slot,
+     *      null for the slot at the beginning of the timeline
+     * @param transition The transition, null to clear the slot
+     *
+     * @return true if the transition of the slot changed
+     */
+    private boolean setTransition(String afterMediaItemId, MovieTransition transition) {
+        final int count = mMediaItems.size();
+        if (count == 0) {
+            return false;
+        }
+
+        final int index;
+        if (afterMediaItemId != null) {
+            final MovieMediaItem afterMediaItem = getMediaItem(afterMediaItemId);
+            if (afterMediaItem == null) {
+                return false;
+            }
+
+            if (isSameTransition(afterMediaItem.getEndTransition(), transition)) {
+                return false;
+            }
+
+            index = mMediaItems.indexOf(afterMediaItem);
+        } else {
+            if (isSameTransition(mMediaItems.get(0).getBeginTransition(), transition)) {
+                return false;
+            }
+
+            index = -1;
+        }
+
+        if (index >= 0) {
+            mMediaItems.get(index).setEndTransition(transition);
+        }
+
+        if (index < count - 1) {
+            mMediaItems.get(index + 1).setBeginTransition(transition);
+        }
+
+        return true;
+    }
+
+    /**
+     * @param t1 The first transition
+     * @param t2 The second transition
+     *
+     * @return true if both transitions are null or have the same id
+     */
+    private static boolean isSameTransition(MovieTransition t1, MovieTransition t2) {
+        if (t1 == null || t2 == null) {
+            return t1 == t2;
+        }
+
+        return t1.getId().equals(t2.getId());
+    }
+
     /**
      * @return The media items list
      */
@@ -890,6 +1447,53 @@ public class VideoEditorProject {
         mClean = false;
     }
 
+    /**
+     * Apply the edits of a bulk edit in the order in which they were applied
+     * by the service
+     *
+     * @param result The applied edits
+     */
+    void applyBulkEdit(BulkEdit.Result result) {
+        for (BulkEdit.AppliedEdit edit : result.getAppliedEdits()) {
+            switch (edit.mType) {
+                case BulkEdit.EDIT_SET_RENDERING_MODE: {
+                    final MovieMediaItem mediaItem = getMediaItem(edit.mMediaItemId);
+                    mediaItem.setRenderingMode(edit.mRenderingMode);
+                    mediaItem.setAppRenderingMode(edit.mRenderingMode);
+                    break;
+                }
+
+                case BulkEdit.EDIT_ADD_EFFECT_COLOR: {
+                    addEffect(edit.mMediaItemId, edit.mEffect);
+                    break;
+                }
+
+                case BulkEdit.EDIT_REMOVE_EFFECT: {
+                    removeEffect(edit.mMediaItemId, edit.mId);
+                    break;
+                }
+
+                case BulkEdit.EDIT_INSERT_CROSSFADE_TRANSITION:
+                case BulkEdit.EDIT_INSERT_FADE_BLACK_TRANSITION:
+                case BulkEdit.EDIT_INSERT_SLIDING_TRANSITION: {
+                    addTransition(edit.mTransition, edit.mMediaItemId);
+                    break;
+                }
+
+                case BulkEdit.EDIT_REMOVE_TRANSITION: {
+                    removeTransition(edit.mId);
+                    break;
+                }
+
+                default: {
+                    break;
+                }
+            }
+        }
+
+        mClean = false;
+    }
+
     /**
      * Get the specified effect
      *
@@ -1059,6 +1663,41 @@ public class VideoEditorProject {
         }
     }
 
+    /**
+     * Extract frames of a video media item. The frames are evenly spaced
+     * between the start and the end time.
+     *
+     * @param mediaItemId The media item id
+     * @param width The frame width
+     * @param height The frame height
+     * @param startMs The time of the first frame
+     * @param endMs The time of the last frame
+     * @param count The number of frames
+     * @param callback The callback invoked for each frame
+     *
+     * @return false if the media item is not a video clip of this project
+     */
+    public boolean getMediaItemFrames(String mediaItemId, int width, int height, long startMs,
+            long endMs, int count, MediaItem.GetThumbnailListCallback callback)
+            throws IOException {
+        if (mVideoEditor == null) {
+            return false;
+        }
+
+        final MediaItem mediaItem = mVideoEditor.getMediaItem(mediaItemId);
+        if (!(mediaItem instanceof MediaVideoItem)) {
+            return false;
+        }
+
+        final int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = i;
+        }
+
+        mediaItem.getThumbnailList(width, height, startMs, endMs, count, indices, callback);
+        return true;
+    }
+
     /**
      * Start the preview of all the storyboard items applied on all MediaItems
      * This method does not block (does not wait for the preview to complete).
@@ -1131,16 +1770,63 @@ public class VideoEditorProject {
      * @param filename The local filename
      */
     public void addDownload(String mediaUri, String mimeType, String filename) {
-        mDownloads.add(new Download(mediaUri, mimeType, filename, System.currentTimeMillis()));
+        putDownload(new Download(mediaUri, mimeType, filename, System.currentTimeMillis(),
+                true));
+    }
+
+    /**
+     * Record a download in progress. The download can be resumed if it is
+     * interrupted.
+     *
+     * @param mediaUri The media URI
+     * @param mimeType The mime type
+     * @param filename The local filename
+     */
+    void addPartialDownload(String mediaUri, String mimeType, String filename) {
+        putDownload(new Download(mediaUri, mimeType, filename, System.currentTimeMillis(),
+                false));
+    }
+
+    /**
+     * Add a download replacing any download of the same media URI
+     *
+     * @param download The download
+     */
+    private synchronized void putDownload(Download download) {
+        final int count = mDownloads.size();
+        for (int i = 0; i < count; i++) {
+            if (download.getMediaUri().equals(mDownloads.get(i).getMediaUri())) {
+                mDownloads.remove(i);
+                break;
+            }
+        }
+
+        mDownloads.add(download);
         mClean = false;
     }
 
+    /**
+     * @param mediaUri The media URI
+     *
+     * @return The download of the media URI, null if the URI was never
+     *      downloaded
+     */
+    public synchronized Download getDownload(String mediaUri) {
+        for (Download download : mDownloads) {
+            if (mediaUri.equals(download.getMediaUri())) {
+                return download;
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Remove a download
      *
      * @param mediaUri The media URI
      */
-    public void removeDownload(String mediaUri) {
+    public synchronized void removeDownload(String mediaUri) {
         final int count = mDownloads.size();
         for (int i = 0; i < count; i++) {
             final Download download = mDownloads.get(i);
@@ -1212,7 +1898,9 @@ public class VideoEditorProject {
                             downloads.add(new Download(parser.getAttributeValue("", ATTR_URI),
                                     parser.getAttributeValue("", ATTR_MIME),
                                     parser.getAttributeValue("", ATTR_FILENAME),
-                                    Long.parseLong(parser.getAttributeValue("", ATTR_TIME))));
+                                    Long.parseLong(parser.getAttributeValue("", ATTR_TIME)),
+                                    !"false".equals(parser.getAttributeValue("",
+                                            ATTR_COMPLETE))));
                         }
 
                         break;
@@ -1263,13 +1951,16 @@ public class VideoEditorProject {
             serializer.endTag("", TAG_MOVIE);
         }
 
-        for (Download download : mDownloads) {
-            serializer.startTag("", TAG_DOWNLOAD);
-            serializer.attribute("", ATTR_URI, download.getMediaUri());
-            serializer.attribute("", ATTR_MIME, download.getMimeType());
-            serializer.attribute("", ATTR_FILENAME, download.getFilename());
-            serializer.attribute("", ATTR_TIME, Long.toString(download.getTime()));
-            serializer.endTag("", TAG_DOWNLOAD);
+        synchronized (this) {
+            for (Download download : mDownloads) {
+                serializer.startTag("", TAG_DOWNLOAD);
+                serializer.attribute("", ATTR_URI, download.getMediaUri());
+                serializer.attribute("", ATTR_MIME, download.getMimeType());
+                serializer.attribute("", ATTR_FILENAME, download.getFilename());
+                serializer.attribute("", ATTR_TIME, Long.toString(download.getTime()));
+                serializer.attribute("", ATTR_COMPLETE, Boolean.toString(download.isComplete()));
+                serializer.endTag("", TAG_DOWNLOAD);
+            }
         }
         serializer.endTag("", TAG_PROJECT);
         serializer.endDocument();
@@ -17,6 +17,7 @@
 package com.android.videoeditor.util;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -289,6 +290,31 @@ public class FileUtils {
         return dir.delete();
     }
 
+    /**
+     * Copy a file
+     *
+     * @param src The source file
+     * @param dst The destination file
+     */
+    public static void copyFile(File src, File dst) throws IOException {
+        final FileInputStream in = new FileInputStream(src);
+        try {
+            final FileOutputStream out = new FileOutputStream(dst);
+            try {
+                final byte[] buffer = new byte[16 * 1024];
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, count);
+                }
+                out.flush();
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
     /**
      * Get the name of the file
      *
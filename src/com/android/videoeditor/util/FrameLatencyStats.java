@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.util;
+
+import java.io.PrintWriter;
+
+/**
+ * Statistics of the latency between the request of a frame and its display.
+ * The latencies are accumulated in a histogram of fixed size buckets so
+ * recording a frame does not allocate.
+ */
+public class FrameLatencyStats {
+    // The width of a histogram bucket
+    private static final int BUCKET_MS = 8;
+
+    // The number of buckets. The last bucket holds all the longer latencies.
+    private static final int BUCKET_COUNT = 64;
+
+    // Instance variables
+    private final String mName;
+    private final int[] mBuckets;
+    private int mFrameCount;
+    private int mDroppedCount;
+    private long mTotalLatencyMs;
+    private long mMaxLatencyMs;
+
+    /**
+     * Constructor
+     *
+     * @param name The name of the statistics
+     */
+    public FrameLatencyStats(String name) {
+        mName = name;
+        mBuckets = new int[BUCKET_COUNT];
+    }
+
+    /**
+     * A frame was displayed
+     *
+     * @param latencyMs The time elapsed since the frame was requested
+     */
+    public synchronized void recordFrame(long latencyMs) {
+        mFrameCount++;
+        mTotalLatencyMs += latencyMs;
+        mMaxLatencyMs = Math.max(mMaxLatencyMs, latencyMs);
+        mBuckets[(int)Math.min(BUCKET_COUNT - 1, latencyMs / BUCKET_MS)]++;
+    }
+
+    /**
+     * A frame was superseded by a newer request before it was displayed
+     */
+    public synchronized void recordDropped() {
+        mDroppedCount++;
+    }
+
+    /**
+     * @return The number of displayed frames
+     */
+    public synchronized int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return The number of dropped frames
+     */
+    public synchronized int getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * @return The average latency
+     */
+    public synchronized long getAverageLatencyMs() {
+        return mFrameCount > 0 ? mTotalLatencyMs / mFrameCount : 0;
+    }
+
+    /**
+     * @return The maximum latency
+     */
+    public synchronized long getMaxLatencyMs() {
+        return mMaxLatencyMs;
+    }
+
+    /**
+     * @param percentile The percentile (0 to 100)
+     *
+     * @return The upper bound of the histogram bucket holding the percentile
+     */
+    public synchronized long getPercentileLatencyMs(int percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+
+        final int threshold = (mFrameCount * percentile + 99) / 100;
+        int count = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            count += mBuckets[i];
+            if (count >= threshold) {
+                return (i + 1) * BUCKET_MS;
+            }
+        }
+
+        return mMaxLatencyMs;
+    }
+
+    /**
+     * Clear the statistics
+     */
+    public synchronized void reset() {
+        mFrameCount = 0;
+        mDroppedCount = 0;
+        mTotalLatencyMs = 0;
+        mMaxLatencyMs = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets[i] = 0;
+        }
+    }
+
+    /**
+     * Print the statistics
+     *
+     * @param prefix The line prefix
+     * @param writer The writer
+     */
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.print(mName);
+        writer.print(": frames=");
+        writer.print(mFrameCount);
+        writer.print(" dropped=");
+        writer.print(mDroppedCount);
+        writer.print(" avg=");
+        writer.print(getAverageLatencyMs());
+        writer.print("ms p50=");
+        writer.print(getPercentileLatencyMs(50));
+        writer.print("ms p95=");
+        writer.print(getPercentileLatencyMs(95));
+        writer.print("ms max=");
+        writer.print(mMaxLatencyMs);
+        writer.println("ms");
+    }
+}
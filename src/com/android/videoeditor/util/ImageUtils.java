@@ -33,8 +33,8 @@ import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
-import android.media.ExifInterface;
 import android.util.Log;
+import android.util.LruCache;
 
 import com.android.videoeditor.R;
 import com.android.videoeditor.service.MovieOverlay;
@@ -55,6 +55,12 @@ public class ImageUtils {
     public static int MATCH_SMALLER_DIMENSION = 1;
     public static int MATCH_LARGER_DIMENSION = 2;
 
+    // The maximum number of bytes of rendered overlays kept in memory
+    private static final int OVERLAY_CACHE_SIZE_BYTES = 6 * 1024 * 1024;
+
+    // The rendered overlays keyed by their attributes
+    private static LruCache<String, Bitmap> sOverlayCache;
+
     /**
      * It is not possible to instantiate this class
      */
@@ -73,12 +79,9 @@ public class ImageUtils {
      */
     public static Bitmap scaleImage(String filename, int width, int height, int match)
             throws IOException {
-        final BitmapFactory.Options dbo = new BitmapFactory.Options();
-        dbo.inJustDecodeBounds = true;
-        BitmapFactory.decodeFile(filename, dbo);
-
-        final int nativeWidth = dbo.outWidth;
-        final int nativeHeight = dbo.outHeight;
+        final int[] dimensions = getImageDimensions(filename);
+        final int nativeWidth = dimensions[0];
+        final int nativeHeight = dimensions[1];
 
         final Bitmap srcBitmap;
         float scaledWidth, scaledHeight;
@@ -127,34 +130,69 @@ public class ImageUtils {
      */
     public static boolean transformJpeg(String inputFilename, File outputFile)
             throws IOException {
-        final ExifInterface exif = new ExifInterface(inputFilename);
-        final int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION,
-                ExifInterface.ORIENTATION_UNDEFINED);
-
+        // Degrees by which we rotate the image.
+        final int degrees = MediaProbe.probe(inputFilename).getRotation();
         if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "Exif orientation: " + orientation);
+            Log.d(TAG, "Exif rotation: " + degrees);
         }
 
-        // Degrees by which we rotate the image.
-        int degrees = 0;
-        switch (orientation) {
-            case ExifInterface.ORIENTATION_ROTATE_90: {
-                degrees = 90;
-                break;
-            }
+        // The output file is not used by the callers if the image is upright
+        if (degrees == 0) {
+            return false;
+        }
 
-            case ExifInterface.ORIENTATION_ROTATE_180: {
-                degrees = 180;
-                break;
-            }
+        // The image was already rotated into this file
+        if (isTransformedJpeg(outputFile)) {
+            return true;
+        }
 
-            case ExifInterface.ORIENTATION_ROTATE_270: {
-                degrees = 270;
-                break;
+        // Write to a temporary file so an interrupted transform never leaves
+        // a truncated output file which would be reused. The name is unique
+        // because the same image may be transformed by concurrent imports.
+        final File tmpFile = File.createTempFile(outputFile.getName(), ".tmp",
+                outputFile.getParentFile());
+        try {
+            rotateAndScaleImage(inputFilename, degrees, tmpFile);
+            // A concurrent transform of the same image may have won the rename
+            if (!tmpFile.renameTo(outputFile) && !isTransformedJpeg(outputFile)) {
+                throw new IOException("Cannot rename: " + tmpFile + " to " + outputFile);
             }
+        } finally {
+            tmpFile.delete();
+        }
+
+        return true;
+    }
+
+    /**
+     * @param file The output file of a transform
+     *
+     * @return true if the file holds a JPEG image with known dimensions
+     */
+    private static boolean isTransformedJpeg(File file) throws IOException {
+        if (file.length() == 0) {
+            return false;
         }
-        rotateAndScaleImage(inputFilename, degrees, outputFile);
-        return degrees != 0;
+
+        final MediaProbe.Metadata metadata = MediaProbe.probe(file.getAbsolutePath());
+        return metadata.getType() == MediaProbe.TYPE_JPEG && metadata.hasDimensions();
+    }
+
+    /**
+     * Get the name of the file to which a JPEG is transformed. The name
+     * depends only on the source path, size and modification time so an
+     * image which is imported again reuses the rotated file.
+     *
+     * @param inputFilename The name of the input file
+     * @param prefix The prefix of the output filename
+     *
+     * @return The output filename
+     */
+    public static String getTransformedJpegName(String inputFilename, String prefix) {
+        final File file = new File(inputFilename);
+        return prefix + Integer.toHexString(inputFilename.hashCode()) + "_" +
+                Long.toHexString(file.length()) + "_" +
+                Long.toHexString(file.lastModified()) + ".jpg";
     }
 
     /**
@@ -173,13 +211,11 @@ public class ImageUtils {
         // accordingly.
 
         // Determine width and height of the original bitmap without allocating memory for it,
-        BitmapFactory.Options opt = new BitmapFactory.Options();
-        opt.inJustDecodeBounds = true;
-        BitmapFactory.decodeFile(inputFilename, opt);
+        final int[] dimensions = getImageDimensions(inputFilename);
 
         // Determine the scale factor based on the ratio of pixel count over max allowed pixels.
-        final int width = opt.outWidth;
-        final int height = opt.outHeight;
+        final int width = dimensions[0];
+        final int height = dimensions[1];
         final int pixelCount = width * height;
         final int MAX_PIXELS_FOR_SCALED_IMAGE = 2000000;
         double scale = Math.sqrt( (double) pixelCount / MAX_PIXELS_FOR_SCALED_IMAGE);
@@ -197,12 +233,13 @@ public class ImageUtils {
         opt2.inSampleSize = (int) scale;
         final Bitmap scaledBmp = BitmapFactory.decodeFile(inputFilename, opt2);
 
-        // Rotation matrix used to rotate the image.
+        // Rotation matrix used to rotate the image. Rotations by multiples of
+        // 90 degrees map pixels to pixels so filtering is not needed.
         final Matrix mtx = new Matrix();
         mtx.postRotate(orientation);
 
         final Bitmap rotatedBmp = Bitmap.createBitmap(scaledBmp, 0, 0,
-                scaledBmp.getWidth(), scaledBmp.getHeight(), mtx, true);
+                scaledBmp.getWidth(), scaledBmp.getHeight(), mtx, (orientation % 90) != 0);
         scaledBmp.recycle();
 
         // Save the rotated image to a file in the current project folder
@@ -213,6 +250,26 @@ public class ImageUtils {
         rotatedBmp.recycle();
     }
 
+    /**
+     * Get the dimensions of an image from the probed file header. The bounds
+     * are decoded only if the file format is not supported by the probe.
+     *
+     * @param filename The image filename
+     *
+     * @return The width and height of the image
+     */
+    private static int[] getImageDimensions(String filename) throws IOException {
+        final MediaProbe.Metadata metadata = MediaProbe.probe(filename);
+        if (metadata.hasDimensions()) {
+            return new int[] {metadata.getWidth(), metadata.getHeight()};
+        }
+
+        final BitmapFactory.Options dbo = new BitmapFactory.Options();
+        dbo.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(filename, dbo);
+        return new int[] {dbo.outWidth, dbo.outHeight};
+    }
+
     /**
      * Returns the next power of two.
      * Returns the input if it is already power of 2.
@@ -229,6 +286,87 @@ public class ImageUtils {
         return n + 1;
     }
 
+    /**
+     * Get a rendered overlay image. Overlays with the same attributes are
+     * rendered once. The bitmap is shared: it must not be modified or recycled.
+     *
+     * @param context The context
+     * @param overlayType The overlay type
+     * @param title The title
+     * @param subTitle The subtitle
+     * @param width The width
+     * @param height The height
+     *
+     * @return The bitmap
+     */
+    public static Bitmap getOverlayBitmap(Context context, int overlayType, String title,
+            String subTitle, int width, int height) {
+        final LruCache<String, Bitmap> cache = getOverlayCache();
+        final String key = getOverlayKey(overlayType, title, subTitle, width, height);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = buildOverlayBitmap(context, null, overlayType, title, subTitle, width,
+                    height);
+            cache.put(key, bitmap);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Get a copy of a rendered overlay image. Use this method when the
+     * bitmap is handed to an owner which recycles it (e.g. an OverlayFrame).
+     *
+     * @param context The context
+     * @param overlayType The overlay type
+     * @param title The title
+     * @param subTitle The subtitle
+     * @param width The width
+     * @param height The height
+     *
+     * @return The bitmap owned by the caller
+     */
+    public static Bitmap copyOverlayBitmap(Context context, int overlayType, String title,
+            String subTitle, int width, int height) {
+        return getOverlayBitmap(context, overlayType, title, subTitle, width, height).copy(
+                Bitmap.Config.ARGB_8888, true);
+    }
+
+    /**
+     * @return The rendered overlay cache
+     */
+    private static synchronized LruCache<String, Bitmap> getOverlayCache() {
+        if (sOverlayCache == null) {
+            sOverlayCache = new LruCache<String, Bitmap>(OVERLAY_CACHE_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getRowBytes() * value.getHeight();
+                }
+            };
+        }
+
+        return sOverlayCache;
+    }
+
+    /**
+     * @param overlayType The overlay type
+     * @param title The title
+     * @param subTitle The subtitle
+     * @param width The width
+     * @param height The height
+     *
+     * @return The key of the rendered overlay
+     */
+    private static String getOverlayKey(int overlayType, String title, String subTitle,
+            int width, int height) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(overlayType).append(':').append(width).append('x').append(height);
+        // Distinguish a missing title from an empty title
+        sb.append(':').append(title != null ? title.length() : -1).append(':').append(title);
+        sb.append(':').append(subTitle);
+        return sb.toString();
+    }
+
     /**
      * Build an overlay image
      *
@@ -0,0 +1,498 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import android.util.Log;
+import android.util.LruCache;
+
+/**
+ * Reads the metadata of image and video files (dimensions, orientation and
+ * duration) by parsing the file headers through a memory mapped buffer.
+ * Nothing is decoded. The results are cached per file path, size and
+ * modification time so repeated probes of the same file do not touch the
+ * file again.
+ */
+public class MediaProbe {
+    // Logging
+    private static final String TAG = "MediaProbe";
+
+    // The file types
+    public static final int TYPE_UNKNOWN = 0;
+    public static final int TYPE_JPEG = 1;
+    public static final int TYPE_PNG = 2;
+    public static final int TYPE_MP4 = 3;
+
+    // The maximum number of cached results
+    private static final int CACHE_SIZE = 64;
+
+    // The maximum size of a JPEG header that is mapped
+    private static final int MAX_JPEG_HEADER_SIZE = 256 * 1024;
+
+    // The maximum size of a MP4 movie box that is mapped
+    private static final int MAX_MOOV_SIZE = 16 * 1024 * 1024;
+
+    // The fixed point 16.16 representation of 1
+    private static final int FIXED_ONE = 0x10000;
+
+    // The four character codes
+    private static final int FOURCC_EXIF = fourcc("Exif");
+    private static final int FOURCC_FTYP = fourcc("ftyp");
+    private static final int FOURCC_MOOV = fourcc("moov");
+    private static final int FOURCC_MVHD = fourcc("mvhd");
+    private static final int FOURCC_TRAK = fourcc("trak");
+    private static final int FOURCC_TKHD = fourcc("tkhd");
+
+    // The cached results
+    private static final LruCache<String, Metadata> sCache =
+            new LruCache<String, Metadata>(CACHE_SIZE);
+
+    /**
+     * The metadata of a media file
+     */
+    public static class Metadata {
+        // Instance variables
+        private final int mType;
+        private int mWidth;
+        private int mHeight;
+        private int mRotation;
+        private long mDurationMs;
+
+        /**
+         * Constructor
+         *
+         * @param type The file type
+         */
+        private Metadata(int type) {
+            mType = type;
+        }
+
+        /**
+         * @return The file type
+         */
+        public int getType() {
+            return mType;
+        }
+
+        /**
+         * @return The width of the image or video before rotation, 0 if unknown
+         */
+        public int getWidth() {
+            return mWidth;
+        }
+
+        /**
+         * @return The height of the image or video before rotation, 0 if unknown
+         */
+        public int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * @return The clockwise rotation in degrees (0, 90, 180 or 270) that
+         *      must be applied to display the image or video upright
+         */
+        public int getRotation() {
+            return mRotation;
+        }
+
+        /**
+         * @return The duration of the video, 0 for images or if unknown
+         */
+        public long getDurationMs() {
+            return mDurationMs;
+        }
+
+        /**
+         * @return true if the dimensions are known
+         */
+        public boolean hasDimensions() {
+            return mWidth > 0 && mHeight > 0;
+        }
+    }
+
+    /**
+     * It is not possible to instantiate this class
+     */
+    private MediaProbe() {
+    }
+
+    /**
+     * Probe a media file
+     *
+     * @param filename The filename
+     *
+     * @return The metadata. Files of unknown type produce a metadata
+     *      of type TYPE_UNKNOWN.
+     */
+    public static Metadata probe(String filename) throws IOException {
+        final File file = new File(filename);
+        final String key = filename + ':' + file.length() + ':' + file.lastModified();
+        Metadata metadata = sCache.get(key);
+        if (metadata != null) {
+            return metadata;
+        }
+
+        final FileInputStream fis = new FileInputStream(file);
+        try {
+            metadata = probe(fis.getChannel());
+        } finally {
+            fis.close();
+        }
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Probed: " + filename + ", type: " + metadata.mType + ", size: " +
+                    metadata.mWidth + "x" + metadata.mHeight + ", rotation: " +
+                    metadata.mRotation + ", duration: " + metadata.mDurationMs);
+        }
+
+        sCache.put(key, metadata);
+        return metadata;
+    }
+
+    /**
+     * Probe a media file
+     *
+     * @param channel The file channel
+     *
+     * @return The metadata
+     */
+    private static Metadata probe(FileChannel channel) throws IOException {
+        final long size = channel.size();
+        final ByteBuffer signature = ByteBuffer.allocate(12);
+        channel.read(signature, 0);
+        if (signature.position() < 12) {
+            return new Metadata(TYPE_UNKNOWN);
+        }
+
+        if ((signature.get(0) & 0xff) == 0xff && (signature.get(1) & 0xff) == 0xd8) {
+            final Metadata metadata = new Metadata(TYPE_JPEG);
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(size, MAX_JPEG_HEADER_SIZE));
+            parseJpeg(buffer, metadata);
+            return metadata;
+        } else if (signature.getInt(0) == 0x89504e47 && signature.getInt(4) == 0x0d0a1a0a) {
+            // The IHDR chunk is always the first one
+            final Metadata metadata = new Metadata(TYPE_PNG);
+            final ByteBuffer ihdr = ByteBuffer.allocate(8);
+            channel.read(ihdr, 16);
+            if (ihdr.position() == 8) {
+                metadata.mWidth = ihdr.getInt(0);
+                metadata.mHeight = ihdr.getInt(4);
+            }
+            return metadata;
+        } else if (signature.getInt(4) == FOURCC_FTYP) {
+            final Metadata metadata = new Metadata(TYPE_MP4);
+            parseMp4(channel, size, metadata);
+            return metadata;
+        } else {
+            return new Metadata(TYPE_UNKNOWN);
+        }
+    }
+
+    /**
+     * Parse the JPEG markers up to the start of frame marker
+     *
+     * @param buffer The buffer holding the beginning of the file
+     * @param metadata The metadata to fill in
+     */
+    private static void parseJpeg(ByteBuffer buffer, Metadata metadata) {
+        final int limit = buffer.limit();
+        int pos = 2;
+        while (pos + 4 <= limit) {
+            if ((buffer.get(pos) & 0xff) != 0xff) {
+                return;
+            }
+
+            final int marker = buffer.get(pos + 1) & 0xff;
+            if (marker == 0xff) { // Fill byte
+                pos++;
+                continue;
+            } else if (marker == 0xd9 || marker == 0xda) { // End of image or start of scan
+                return;
+            } else if (marker == 0x01 || (marker >= 0xd0 && marker <= 0xd7)) {
+                pos += 2;
+                continue;
+            }
+
+            final int length = buffer.getShort(pos + 2) & 0xffff;
+            if (marker == 0xe1 && length >= 14 && buffer.getInt(pos + 4) == FOURCC_EXIF) {
+                parseExif(buffer, pos + 10, Math.min(pos + 2 + length, limit), metadata);
+            } else if (marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8
+                    && marker != 0xcc) {
+                if (pos + 9 <= limit) {
+                    metadata.mHeight = buffer.getShort(pos + 5) & 0xffff;
+                    metadata.mWidth = buffer.getShort(pos + 7) & 0xffff;
+                }
+                return;
+            }
+
+            pos += 2 + length;
+        }
+    }
+
+    /**
+     * Parse the orientation tag of the first EXIF image file directory
+     *
+     * @param buffer The buffer
+     * @param start The position of the TIFF header
+     * @param end The end of the EXIF segment
+     * @param metadata The metadata to fill in
+     */
+    private static void parseExif(ByteBuffer buffer, int start, int end, Metadata metadata) {
+        if (start + 8 > end) {
+            return;
+        }
+
+        final ByteBuffer tiff = buffer.duplicate();
+        tiff.order(tiff.getShort(start) == 0x4949 ? ByteOrder.LITTLE_ENDIAN :
+                ByteOrder.BIG_ENDIAN);
+        final int ifd = start + tiff.getInt(start + 4);
+        if (ifd < start || ifd + 2 > end) {
+            return;
+        }
+
+        final int entries = tiff.getShort(ifd) & 0xffff;
+        for (int i = 0; i < entries; i++) {
+            final int entry = ifd + 2 + (12 * i);
+            if (entry + 12 > end) {
+                return;
+            }
+
+            if ((tiff.getShort(entry) & 0xffff) == 0x0112) { // Orientation
+                metadata.mRotation = exifOrientationToDegrees(tiff.getShort(entry + 8));
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param orientation The EXIF orientation
+     *
+     * @return The clockwise rotation in degrees
+     */
+    public static int exifOrientationToDegrees(int orientation) {
+        switch (orientation) {
+            case 6: { // ExifInterface.ORIENTATION_ROTATE_90
+                return 90;
+            }
+
+            case 3: { // ExifInterface.ORIENTATION_ROTATE_180
+                return 180;
+            }
+
+            case 8: { // ExifInterface.ORIENTATION_ROTATE_270
+                return 270;
+            }
+
+            default: {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Walk the top level boxes of a MP4/3GP file and parse the movie box.
+     * Only the movie box is mapped since it may be located at the end of
+     * the file.
+     *
+     * @param channel The file channel
+     * @param size The file size
+     * @param metadata The metadata to fill in
+     */
+    private static void parseMp4(FileChannel channel, long size, Metadata metadata)
+            throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(16);
+        long pos = 0;
+        while (pos + 8 <= size) {
+            header.clear();
+            channel.read(header, pos);
+            if (header.position() < 8) {
+                return;
+            }
+
+            long boxSize = header.getInt(0) & 0xffffffffL;
+            final int type = header.getInt(4);
+            int headerSize = 8;
+            if (boxSize == 1) {
+                if (header.position() < 16) {
+                    return;
+                }
+                boxSize = header.getLong(8);
+                headerSize = 16;
+            } else if (boxSize == 0) {
+                boxSize = size - pos;
+            }
+
+            if (boxSize < headerSize) {
+                return;
+            }
+
+            if (type == FOURCC_MOOV) {
+                final long moovSize = Math.min(boxSize, size - pos) - headerSize;
+                if (moovSize > MAX_MOOV_SIZE) {
+                    Log.w(TAG, "Movie box too large: " + moovSize);
+                    return;
+                }
+
+                final ByteBuffer moov = channel.map(FileChannel.MapMode.READ_ONLY,
+                        pos + headerSize, moovSize);
+                parseMoov(moov, 0, moov.limit(), metadata);
+                return;
+            }
+
+            pos += boxSize;
+        }
+    }
+
+    /**
+     * Parse the movie box
+     *
+     * @param buffer The buffer
+     * @param start The start of the box content
+     * @param end The end of the box content
+     * @param metadata The metadata to fill in
+     */
+    private static void parseMoov(ByteBuffer buffer, int start, int end, Metadata metadata) {
+        int pos = start;
+        while (pos + 8 <= end) {
+            final int boxSize = buffer.getInt(pos);
+            final int type = buffer.getInt(pos + 4);
+            if (boxSize < 8 || pos + boxSize > end) {
+                return;
+            }
+
+            if (type == FOURCC_MVHD) {
+                parseMvhd(buffer, pos + 8, pos + boxSize, metadata);
+            } else if (type == FOURCC_TRAK) {
+                parseTrak(buffer, pos + 8, pos + boxSize, metadata);
+            }
+
+            pos += boxSize;
+        }
+    }
+
+    /**
+     * Parse the movie header box
+     *
+     * @param buffer The buffer
+     * @param start The start of the box content
+     * @param end The end of the box content
+     * @param metadata The metadata to fill in
+     */
+    private static void parseMvhd(ByteBuffer buffer, int start, int end, Metadata metadata) {
+        final long timescale, duration;
+        if (buffer.get(start) == 1) {
+            if (start + 32 > end) {
+                return;
+            }
+            timescale = buffer.getInt(start + 20) & 0xffffffffL;
+            duration = buffer.getLong(start + 24);
+        } else {
+            if (start + 20 > end) {
+                return;
+            }
+            timescale = buffer.getInt(start + 12) & 0xffffffffL;
+            duration = buffer.getInt(start + 16) & 0xffffffffL;
+        }
+
+        if (timescale > 0) {
+            metadata.mDurationMs = (duration * 1000) / timescale;
+        }
+    }
+
+    /**
+     * Parse the track header of a track box. The first track with
+     * non zero dimensions is the video track.
+     *
+     * @param buffer The buffer
+     * @param start The start of the box content
+     * @param end The end of the box content
+     * @param metadata The metadata to fill in
+     */
+    private static void parseTrak(ByteBuffer buffer, int start, int end, Metadata metadata) {
+        if (metadata.hasDimensions()) {
+            return;
+        }
+
+        int pos = start;
+        while (pos + 8 <= end) {
+            final int boxSize = buffer.getInt(pos);
+            if (boxSize < 8 || pos + boxSize > end) {
+                return;
+            }
+
+            if (buffer.getInt(pos + 4) == FOURCC_TKHD) {
+                final int content = pos + 8;
+                // The matrix and dimensions follow the version dependent time fields
+                final int matrix = content + (buffer.get(content) == 1 ? 52 : 40);
+                if (matrix + 44 > pos + boxSize) {
+                    return;
+                }
+
+                final int width = buffer.getInt(matrix + 36) >>> 16;
+                final int height = buffer.getInt(matrix + 40) >>> 16;
+                if (width > 0 && height > 0) {
+                    metadata.mWidth = width;
+                    metadata.mHeight = height;
+                    metadata.mRotation = matrixToDegrees(buffer.getInt(matrix),
+                            buffer.getInt(matrix + 4), buffer.getInt(matrix + 12),
+                            buffer.getInt(matrix + 16));
+                }
+                return;
+            }
+
+            pos += boxSize;
+        }
+    }
+
+    /**
+     * @param a The a coefficient of the track matrix
+     * @param b The b coefficient of the track matrix
+     * @param c The c coefficient of the track matrix
+     * @param d The d coefficient of the track matrix
+     *
+     * @return The clockwise rotation in degrees
+     */
+    private static int matrixToDegrees(int a, int b, int c, int d) {
+        if (a == 0 && b == FIXED_ONE && c == -FIXED_ONE && d == 0) {
+            return 90;
+        } else if (a == -FIXED_ONE && b == 0 && c == 0 && d == -FIXED_ONE) {
+            return 180;
+        } else if (a == 0 && b == -FIXED_ONE && c == FIXED_ONE && d == 0) {
+            return 270;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * @param code The four character code
+     *
+     * @return The integer value of the code
+     */
+    private static int fourcc(String code) {
+        return (code.charAt(0) << 24) | (code.charAt(1) << 16) | (code.charAt(2) << 8) |
+                code.charAt(3);
+    }
+}
@@ -0,0 +1,1203 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import android.util.Log;
+
+/**
+ * Joins MP4 files encoded with the same settings into one file without
+ * re-encoding. Each file may be cut at a video sync sample. The selected
+ * samples of the tracks are appended to each other, the media data of the
+ * files is copied into a single media data box and the chunk offsets are
+ * rebased accordingly.
+ */
+public class Mp4Concatenator {
+    // Logging
+    private static final String TAG = "Mp4Concatenator";
+
+    // The maximum size of a movie box
+    private static final int MAX_MOOV_SIZE = 64 * 1024 * 1024;
+
+    // The size of a box header
+    private static final int HEADER_SIZE = 8;
+
+    // The largest 32 bit unsigned value
+    private static final long MAX_UINT32 = 0xffffffffL;
+
+    // The four character codes
+    private static final int FOURCC_FTYP = fourcc("ftyp");
+    private static final int FOURCC_MOOV = fourcc("moov");
+    private static final int FOURCC_MDAT = fourcc("mdat");
+    private static final int FOURCC_MVHD = fourcc("mvhd");
+    private static final int FOURCC_TRAK = fourcc("trak");
+    private static final int FOURCC_TKHD = fourcc("tkhd");
+    private static final int FOURCC_EDTS = fourcc("edts");
+    private static final int FOURCC_MDIA = fourcc("mdia");
+    private static final int FOURCC_MDHD = fourcc("mdhd");
+    private static final int FOURCC_HDLR = fourcc("hdlr");
+    private static final int FOURCC_MINF = fourcc("minf");
+    private static final int FOURCC_STBL = fourcc("stbl");
+    private static final int FOURCC_STSD = fourcc("stsd");
+    private static final int FOURCC_STTS = fourcc("stts");
+    private static final int FOURCC_CTTS = fourcc("ctts");
+    private static final int FOURCC_STSS = fourcc("stss");
+    private static final int FOURCC_STSZ = fourcc("stsz");
+    private static final int FOURCC_STSC = fourcc("stsc");
+    private static final int FOURCC_STCO = fourcc("stco");
+    private static final int FOURCC_CO64 = fourcc("co64");
+    private static final int FOURCC_VIDE = fourcc("vide");
+
+    /**
+     * A box. Container boxes have children, the other boxes have data.
+     */
+    private static class Box {
+        // Instance variables
+        private final int mType;
+        private final byte[] mData;
+        private final List<Box> mChildren;
+
+        /**
+         * Constructor for a leaf box
+         *
+         * @param type The box type
+         * @param data The content of the box
+         */
+        public Box(int type, byte[] data) {
+            mType = type;
+            mData = data;
+            mChildren = null;
+        }
+
+        /**
+         * Constructor for a container box
+         *
+         * @param type The box type
+         * @param children The child boxes
+         */
+        public Box(int type, List<Box> children) {
+            mType = type;
+            mData = null;
+            mChildren = children;
+        }
+
+        /**
+         * @param type The box type
+         *
+         * @return The first child of the specified type, null if none
+         */
+        public Box find(int type) {
+            for (Box child : mChildren) {
+                if (child.mType == type) {
+                    return child;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * @param type The box type
+         *
+         * @return The first child of the specified type
+         */
+        public Box require(int type) throws IOException {
+            final Box child = find(type);
+            if (child == null) {
+                throw new IOException("Missing box: " + fourccToString(type) + " in: "
+                        + fourccToString(mType));
+            }
+
+            return child;
+        }
+
+        /**
+         * @return The size of the box including its header
+         */
+        public int getSize() {
+            if (mChildren == null) {
+                return HEADER_SIZE + mData.length;
+            }
+
+            int size = HEADER_SIZE;
+            for (Box child : mChildren) {
+                size += child.getSize();
+            }
+
+            return size;
+        }
+
+        /**
+         * Write the box
+         *
+         * @param out The output buffer
+         */
+        public void write(ByteBuffer out) {
+            out.putInt(getSize());
+            out.putInt(mType);
+            if (mChildren == null) {
+                out.put(mData);
+            } else {
+                for (Box child : mChildren) {
+                    child.write(out);
+                }
+            }
+        }
+    }
+
+    /**
+     * A growable array of long values
+     */
+    private static class LongArray {
+        // Instance variables
+        private long[] mValues = new long[64];
+        private int mSize;
+
+        public void add(long value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+
+        public long get(int index) {
+            return mValues[index];
+        }
+
+        public void set(int index, long value) {
+            mValues[index] = value;
+        }
+
+        public int size() {
+            return mSize;
+        }
+    }
+
+    /**
+     * A part of a MP4 file to concatenate
+     */
+    public static class Clip {
+        // Instance variables
+        private final String mFilename;
+        private final long mBeginMs;
+        private final long mEndMs;
+
+        /**
+         * Constructor for a whole file
+         *
+         * @param filename The filename
+         */
+        public Clip(String filename) {
+            this(filename, 0, Long.MAX_VALUE);
+        }
+
+        /**
+         * Constructor. The clip starts at the last video sync sample at or
+         * before the begin time so that no sample needs to be re-encoded.
+         *
+         * @param filename The filename
+         * @param beginMs The begin time of the clip in the file
+         * @param endMs The end time of the clip in the file
+         */
+        public Clip(String filename, long beginMs, long endMs) {
+            if (beginMs < 0 || endMs <= beginMs) {
+                throw new IllegalArgumentException("Invalid clip boundaries: " + beginMs + ", "
+                        + endMs);
+            }
+
+            mFilename = filename;
+            mBeginMs = beginMs;
+            mEndMs = endMs;
+        }
+    }
+
+    /**
+     * The sample table of a track. The samples are stored one by one so that
+     * a range of them can be selected.
+     */
+    private static class Track {
+        // Instance variables
+        private Box mTrak;
+        private int mHandler;
+        private long mTimescale;
+        private byte[] mSampleDescriptions;
+        private final LongArray mSampleSizes = new LongArray();
+        private final LongArray mSampleOffsets = new LongArray();
+        private final LongArray mSampleDeltas = new LongArray();
+        // The composition offsets, null if the track has none
+        private LongArray mCompositionOffsets;
+        // The sync sample numbers, null if all the samples are sync samples
+        private LongArray mSyncSamples;
+        // The selected samples
+        private int mFirstSample;
+        private int mEndSample;
+
+        /**
+         * @return The duration of the selected samples in the track timescale
+         */
+        public long getDuration() {
+            long duration = 0;
+            for (int i = mFirstSample; i < mEndSample; i++) {
+                duration += mSampleDeltas.get(i);
+            }
+
+            return duration;
+        }
+
+        /**
+         * @param time A time in the track timescale
+         *
+         * @return The index of the first sample starting at or after the time
+         */
+        public int getSampleAfter(long time) {
+            long sampleTime = 0;
+            final int samplesCount = mSampleSizes.size();
+            for (int i = 0; i < samplesCount; i++) {
+                if (sampleTime >= time) {
+                    return i;
+                }
+                sampleTime += mSampleDeltas.get(i);
+            }
+
+            return samplesCount;
+        }
+
+        /**
+         * @param time A time in the track timescale
+         *
+         * @return The start time of the last sync sample starting at or
+         *      before the time
+         */
+        public long getSyncSampleTime(long time) {
+            long syncTime = 0;
+            long sampleTime = 0;
+            int syncIndex = 0;
+            final int samplesCount = mSampleSizes.size();
+            for (int i = 0; i < samplesCount && sampleTime <= time; i++) {
+                if (mSyncSamples == null) {
+                    syncTime = sampleTime;
+                } else {
+                    while (syncIndex < mSyncSamples.size() && mSyncSamples.get(syncIndex) < i + 1) {
+                        syncIndex++;
+                    }
+                    if (syncIndex < mSyncSamples.size() && mSyncSamples.get(syncIndex) == i + 1) {
+                        syncTime = sampleTime;
+                    }
+                }
+                sampleTime += mSampleDeltas.get(i);
+            }
+
+            return syncTime;
+        }
+    }
+
+    /**
+     * A parsed MP4 file
+     */
+    private static class Movie {
+        // Instance variables
+        private final File mFile;
+        private Box mFtyp;
+        private Box mMoov;
+        private long mFileSize;
+        private long mTimescale;
+        private long mDuration;
+        private final List<Track> mTracks = new ArrayList<Track>();
+        // The range of the file which holds the selected samples
+        private long mCopyStart;
+        private long mCopyEnd;
+
+        public Movie(File file) {
+            mFile = file;
+        }
+
+        /**
+         * @return The first video track, null if none
+         */
+        public Track getVideoTrack() {
+            for (Track track : mTracks) {
+                if (track.mHandler == FOURCC_VIDE) {
+                    return track;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * It is not possible to instantiate this class
+     */
+    private Mp4Concatenator() {
+    }
+
+    /**
+     * Read a MP4 file and its sample tables
+     *
+     * @param filename The filename
+     *
+     * @return The duration of the movie in milliseconds
+     *
+     * @throws IOException if the file cannot be read or is not a valid
+     *      MP4 file
+     */
+    public static long getDurationMs(String filename) throws IOException {
+        final Movie movie = readMovie(new File(filename));
+        for (Track track : movie.mTracks) {
+            for (int i = 0; i < track.mSampleSizes.size(); i++) {
+                if (track.mSampleOffsets.get(i) + track.mSampleSizes.get(i) > movie.mFileSize) {
+                    throw new IOException("Samples beyond the end of: " + filename);
+                }
+            }
+        }
+
+        return movie.mDuration * 1000 / movie.mTimescale;
+    }
+
+    /**
+     * Get the time of the sync sample from which a clip starting at the
+     * specified time would be cut
+     *
+     * @param filename The filename
+     * @param timeMs The time in the file
+     *
+     * @return The start time of the last video sync sample at or before the
+     *      specified time
+     *
+     * @throws IOException if the file cannot be read or has no video track
+     */
+    public static long getSyncTime(String filename, long timeMs) throws IOException {
+        final Movie movie = readMovie(new File(filename));
+        final Track videoTrack = movie.getVideoTrack();
+        if (videoTrack == null) {
+            throw new IOException("No video track in: " + filename);
+        }
+
+        return videoTrack.getSyncSampleTime(toTimescale(timeMs, videoTrack.mTimescale)) * 1000
+                / videoTrack.mTimescale;
+    }
+
+    /**
+     * Check if MP4 files can be concatenated without reading their samples
+     *
+     * @param filenames The filenames
+     *
+     * @return true if the files have the same tracks in the same order with
+     *      identical sample descriptions and the same timescales
+     */
+    public static boolean isCompatible(List<String> filenames) {
+        Movie first = null;
+        for (String filename : filenames) {
+            final Movie movie;
+            try {
+                movie = readMovie(new File(filename));
+            } catch (IOException ex) {
+                Log.w(TAG, "Cannot read: " + filename, ex);
+                return false;
+            }
+
+            if (first == null) {
+                first = movie;
+            } else if (!isCompatible(first, movie)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param movie1 A movie
+     * @param movie2 Another movie
+     *
+     * @return true if the movies can be concatenated
+     */
+    private static boolean isCompatible(Movie movie1, Movie movie2) {
+        if (movie1.mTimescale != movie2.mTimescale ||
+                movie1.mTracks.size() != movie2.mTracks.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < movie1.mTracks.size(); i++) {
+            if (!isCompatible(movie1.mTracks.get(i), movie2.mTracks.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param track1 A track
+     * @param track2 Another track
+     *
+     * @return true if the samples of the tracks can be appended to each other
+     */
+    private static boolean isCompatible(Track track1, Track track2) {
+        return track1.mHandler == track2.mHandler && track1.mTimescale == track2.mTimescale &&
+                Arrays.equals(track1.mSampleDescriptions, track2.mSampleDescriptions);
+    }
+
+    /**
+     * Concatenate MP4 clips. The files must have the same tracks in the same
+     * order with identical sample descriptions and the same timescales, which
+     * is the case of files exported with the same settings or recorded by the
+     * same device.
+     *
+     * @param clips The clips in playback order
+     * @param output The output filename
+     *
+     * @throws IOException if a file cannot be read or the files are not
+     *      compatible
+     */
+    public static void concatenate(List<Clip> clips, String output) throws IOException {
+        if (clips.size() == 0) {
+            throw new IllegalArgumentException("No clips");
+        }
+
+        final List<Movie> movies = new ArrayList<Movie>(clips.size());
+        for (Clip clip : clips) {
+            final Movie movie = readMovie(new File(clip.mFilename));
+            selectSamples(movie, clip);
+            movies.add(movie);
+        }
+
+        final Movie first = movies.get(0);
+        long payloadSize = 0;
+        for (Movie movie : movies) {
+            if (!isCompatible(first, movie)) {
+                throw new IOException("Incompatible movie: " + movie.mFile);
+            }
+            payloadSize += movie.mCopyEnd - movie.mCopyStart;
+        }
+
+        final List<Track> tracks = new ArrayList<Track>(first.mTracks.size());
+        for (int i = 0; i < first.mTracks.size(); i++) {
+            tracks.add(mergeTracks(movies, i));
+        }
+
+        // The movie box precedes the media data so its size is needed to
+        // compute the chunk offsets. The size does not depend on the offsets.
+        final boolean largeOffsets =
+            first.mFtyp.getSize() + MAX_MOOV_SIZE + payloadSize + 16 > MAX_UINT32;
+        final int moovSize = buildMoov(first, tracks, 0, largeOffsets).getSize();
+        final int mdatHeaderSize = payloadSize + HEADER_SIZE > MAX_UINT32 ? 16 : HEADER_SIZE;
+        final long payloadStart = first.mFtyp.getSize() + moovSize + mdatHeaderSize;
+        final Box moov = buildMoov(first, tracks, payloadStart, largeOffsets);
+
+        final FileOutputStream out = new FileOutputStream(output);
+        try {
+            final FileChannel outChannel = out.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(
+                    first.mFtyp.getSize() + moov.getSize() + mdatHeaderSize);
+            first.mFtyp.write(header);
+            moov.write(header);
+            if (mdatHeaderSize == 16) {
+                header.putInt(1);
+                header.putInt(FOURCC_MDAT);
+                header.putLong(payloadSize + 16);
+            } else {
+                header.putInt((int)(payloadSize + HEADER_SIZE));
+                header.putInt(FOURCC_MDAT);
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                outChannel.write(header);
+            }
+
+            for (Movie movie : movies) {
+                copyMediaData(movie, outChannel);
+            }
+        } finally {
+            out.close();
+        }
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Concatenated " + movies.size() + " clips into: " + output);
+        }
+    }
+
+    /**
+     * Read the boxes of a MP4 file. Only the movie box is loaded in memory.
+     *
+     * @param file The file
+     *
+     * @return The movie
+     */
+    private static Movie readMovie(File file) throws IOException {
+        final Movie movie = new Movie(file);
+        final FileInputStream fis = new FileInputStream(file);
+        try {
+            final FileChannel channel = fis.getChannel();
+            final long size = channel.size();
+            final ByteBuffer header = ByteBuffer.allocate(16);
+            long pos = 0;
+            while (pos + HEADER_SIZE <= size) {
+                header.clear();
+                header.limit((int)Math.min(16, size - pos));
+                readFully(channel, header, pos);
+
+                long boxSize = header.getInt(0) & MAX_UINT32;
+                final int type = header.getInt(4);
+                int headerSize = HEADER_SIZE;
+                if (boxSize == 1) {
+                    if (header.limit() < 16) {
+                        throw new IOException("Truncated box header in: " + file);
+                    }
+                    boxSize = header.getLong(8);
+                    headerSize = 16;
+                } else if (boxSize == 0) {
+                    // The box extends to the end of the file
+                    boxSize = size - pos;
+                }
+
+                if (boxSize < headerSize || pos + boxSize > size) {
+                    throw new IOException("Invalid box size: " + boxSize + " in: " + file);
+                }
+
+                if (type == FOURCC_FTYP || type == FOURCC_MOOV) {
+                    final long contentSize = boxSize - headerSize;
+                    if (contentSize > MAX_MOOV_SIZE) {
+                        throw new IOException("Box too large: " + contentSize + " in: " + file);
+                    }
+
+                    final ByteBuffer content = ByteBuffer.allocate((int)contentSize);
+                    readFully(channel, content, pos + headerSize);
+                    if (type == FOURCC_FTYP) {
+                        movie.mFtyp = new Box(type, content.array());
+                    } else {
+                        movie.mMoov = new Box(type, parseBoxes(content, 0, content.limit()));
+                    }
+                }
+
+                pos += boxSize;
+            }
+            movie.mFileSize = size;
+        } finally {
+            fis.close();
+        }
+
+        if (movie.mFtyp == null || movie.mMoov == null) {
+            throw new IOException("Not a MP4 file: " + file);
+        }
+
+        final ByteBuffer mvhd = ByteBuffer.wrap(movie.mMoov.require(FOURCC_MVHD).mData);
+        if (mvhd.get(0) == 1) {
+            movie.mTimescale = mvhd.getInt(20) & MAX_UINT32;
+            movie.mDuration = mvhd.getLong(24);
+        } else {
+            movie.mTimescale = mvhd.getInt(12) & MAX_UINT32;
+            movie.mDuration = mvhd.getInt(16) & MAX_UINT32;
+        }
+
+        if (movie.mTimescale == 0) {
+            throw new IOException("Invalid timescale in: " + file);
+        }
+
+        for (Box box : movie.mMoov.mChildren) {
+            if (box.mType == FOURCC_TRAK) {
+                movie.mTracks.add(readTrack(box));
+            }
+        }
+
+        return movie;
+    }
+
+    /**
+     * Parse the boxes of a container box
+     *
+     * @param buffer The buffer
+     * @param start The start of the box content
+     * @param end The end of the box content
+     *
+     * @return The boxes
+     */
+    private static List<Box> parseBoxes(ByteBuffer buffer, int start, int end)
+            throws IOException {
+        final List<Box> boxes = new ArrayList<Box>();
+        int pos = start;
+        while (pos + HEADER_SIZE <= end) {
+            final int boxSize = buffer.getInt(pos);
+            final int type = buffer.getInt(pos + 4);
+            if (boxSize < HEADER_SIZE || pos + boxSize > end) {
+                throw new IOException("Invalid box size: " + boxSize);
+            }
+
+            if (type == FOURCC_TRAK || type == FOURCC_MDIA || type == FOURCC_MINF ||
+                    type == FOURCC_STBL) {
+                boxes.add(new Box(type, parseBoxes(buffer, pos + HEADER_SIZE, pos + boxSize)));
+            } else {
+                final byte[] data = new byte[boxSize - HEADER_SIZE];
+                final ByteBuffer content = buffer.duplicate();
+                content.position(pos + HEADER_SIZE);
+                content.get(data);
+                boxes.add(new Box(type, data));
+            }
+
+            pos += boxSize;
+        }
+
+        return boxes;
+    }
+
+    /**
+     * Read the sample table of a track
+     *
+     * @param trak The track box
+     *
+     * @return The track
+     */
+    private static Track readTrack(Box trak) throws IOException {
+        final Track track = new Track();
+        track.mTrak = trak;
+
+        final Box mdia = trak.require(FOURCC_MDIA);
+        track.mHandler = ByteBuffer.wrap(mdia.require(FOURCC_HDLR).mData).getInt(8);
+
+        final ByteBuffer mdhd = ByteBuffer.wrap(mdia.require(FOURCC_MDHD).mData);
+        track.mTimescale = (mdhd.get(0) == 1 ? mdhd.getInt(20) : mdhd.getInt(12)) & MAX_UINT32;
+        if (track.mTimescale == 0) {
+            throw new IOException("Invalid track timescale");
+        }
+
+        final Box stbl = mdia.require(FOURCC_MINF).require(FOURCC_STBL);
+        track.mSampleDescriptions = stbl.require(FOURCC_STSD).mData;
+
+        final ByteBuffer stsz = ByteBuffer.wrap(stbl.require(FOURCC_STSZ).mData);
+        final long sampleSize = stsz.getInt(4) & MAX_UINT32;
+        final int samplesCount = stsz.getInt(8);
+        for (int i = 0; i < samplesCount; i++) {
+            track.mSampleSizes.add(sampleSize != 0 ? sampleSize : stsz.getInt(12 + 4 * i)
+                    & MAX_UINT32);
+        }
+
+        final ByteBuffer stts = ByteBuffer.wrap(stbl.require(FOURCC_STTS).mData);
+        for (int i = 0, count = stts.getInt(4); i < count; i++) {
+            final long samples = stts.getInt(8 + 8 * i) & MAX_UINT32;
+            final long delta = stts.getInt(12 + 8 * i) & MAX_UINT32;
+            for (long j = 0; j < samples; j++) {
+                if (track.mSampleDeltas.size() == samplesCount) {
+                    throw new IOException("Inconsistent time to sample table");
+                }
+                track.mSampleDeltas.add(delta);
+            }
+        }
+
+        final Box cttsBox = stbl.find(FOURCC_CTTS);
+        if (cttsBox != null) {
+            track.mCompositionOffsets = new LongArray();
+            final ByteBuffer ctts = ByteBuffer.wrap(cttsBox.mData);
+            for (int i = 0, count = ctts.getInt(4); i < count; i++) {
+                final long samples = ctts.getInt(8 + 8 * i) & MAX_UINT32;
+                final int offset = ctts.getInt(12 + 8 * i);
+                for (long j = 0; j < samples; j++) {
+                    if (track.mCompositionOffsets.size() == samplesCount) {
+                        throw new IOException("Inconsistent composition offset table");
+                    }
+                    track.mCompositionOffsets.add(offset);
+                }
+            }
+        }
+
+        final Box stssBox = stbl.find(FOURCC_STSS);
+        if (stssBox != null) {
+            track.mSyncSamples = new LongArray();
+            final ByteBuffer stss = ByteBuffer.wrap(stssBox.mData);
+            for (int i = 0, count = stss.getInt(4); i < count; i++) {
+                track.mSyncSamples.add(stss.getInt(8 + 4 * i) & MAX_UINT32);
+            }
+        }
+
+        final LongArray chunkOffsets = new LongArray();
+        final Box stcoBox = stbl.find(FOURCC_STCO);
+        if (stcoBox != null) {
+            final ByteBuffer stco = ByteBuffer.wrap(stcoBox.mData);
+            for (int i = 0, count = stco.getInt(4); i < count; i++) {
+                chunkOffsets.add(stco.getInt(8 + 4 * i) & MAX_UINT32);
+            }
+        } else {
+            final ByteBuffer co64 = ByteBuffer.wrap(stbl.require(FOURCC_CO64).mData);
+            for (int i = 0, count = co64.getInt(4); i < count; i++) {
+                chunkOffsets.add(co64.getLong(8 + 8 * i));
+            }
+        }
+
+        // Compute the offset of each sample from the chunks
+        final ByteBuffer stsc = ByteBuffer.wrap(stbl.require(FOURCC_STSC).mData);
+        final int entriesCount = stsc.getInt(4);
+        int sample = 0;
+        for (int i = 0; i < entriesCount; i++) {
+            final long firstChunk = stsc.getInt(8 + 12 * i) & MAX_UINT32;
+            final long samplesPerChunk = stsc.getInt(12 + 12 * i) & MAX_UINT32;
+            if (stsc.getInt(16 + 12 * i) != 1) {
+                throw new IOException("Multiple sample descriptions are not supported");
+            }
+
+            final long lastChunk = i < entriesCount - 1 ?
+                    (stsc.getInt(8 + 12 * (i + 1)) & MAX_UINT32) - 1 : chunkOffsets.size();
+            for (long chunk = firstChunk; chunk <= lastChunk; chunk++) {
+                if (chunk < 1 || chunk > chunkOffsets.size()) {
+                    throw new IOException("Invalid chunk: " + chunk);
+                }
+
+                long offset = chunkOffsets.get((int)chunk - 1);
+                for (long j = 0; j < samplesPerChunk; j++) {
+                    if (sample == samplesCount) {
+                        throw new IOException("Inconsistent sample to chunk table");
+                    }
+                    track.mSampleOffsets.add(offset);
+                    offset += track.mSampleSizes.get(sample++);
+                }
+            }
+        }
+
+        if (sample != samplesCount || track.mSampleDeltas.size() != samplesCount ||
+                (track.mCompositionOffsets != null &&
+                        track.mCompositionOffsets.size() != samplesCount)) {
+            throw new IOException("Inconsistent sample tables");
+        }
+
+        track.mFirstSample = 0;
+        track.mEndSample = samplesCount;
+        return track;
+    }
+
+    /**
+     * Select the samples of a movie which belong to a clip
+     *
+     * @param movie The movie
+     * @param clip The clip
+     */
+    private static void selectSamples(Movie movie, Clip clip) throws IOException {
+        // Cut the video at a sync sample so that it can be decoded
+        final Track videoTrack = movie.getVideoTrack();
+        long cutMs = clip.mBeginMs;
+        long videoCutTime = 0;
+        if (videoTrack != null && clip.mBeginMs > 0) {
+            videoCutTime = videoTrack.getSyncSampleTime(
+                    toTimescale(clip.mBeginMs, videoTrack.mTimescale));
+            cutMs = videoCutTime * 1000 / videoTrack.mTimescale;
+        }
+
+        movie.mCopyStart = Long.MAX_VALUE;
+        movie.mCopyEnd = 0;
+        for (Track track : movie.mTracks) {
+            final long beginTime = track == videoTrack ? videoCutTime :
+                    toTimescale(cutMs, track.mTimescale);
+            track.mFirstSample = track.getSampleAfter(beginTime);
+            track.mEndSample = track.getSampleAfter(toTimescale(clip.mEndMs, track.mTimescale));
+            for (int i = track.mFirstSample; i < track.mEndSample; i++) {
+                final long offset = track.mSampleOffsets.get(i);
+                movie.mCopyStart = Math.min(movie.mCopyStart, offset);
+                movie.mCopyEnd = Math.max(movie.mCopyEnd, offset + track.mSampleSizes.get(i));
+            }
+        }
+
+        if (movie.mCopyEnd == 0) {
+            throw new IOException("No samples in clip: " + movie.mFile);
+        }
+
+        if (movie.mCopyEnd > movie.mFileSize) {
+            throw new IOException("Samples beyond the end of: " + movie.mFile);
+        }
+
+        final long endTime = Math.min(movie.mDuration,
+                toTimescale(clip.mEndMs, movie.mTimescale));
+        movie.mDuration = Math.max(0, endTime - toTimescale(cutMs, movie.mTimescale));
+    }
+
+    /**
+     * Append the selected samples of a track of all the movies. The chunk
+     * offsets of the merged track are relative to the start of the merged
+     * media data and each sample is stored in its own chunk.
+     *
+     * @param movies The movies
+     * @param index The index of the track
+     *
+     * @return The merged track
+     */
+    private static Track mergeTracks(List<Movie> movies, int index) throws IOException {
+        final Track reference = movies.get(0).mTracks.get(index);
+        boolean hasCtts = false;
+        boolean hasStss = false;
+        for (Movie movie : movies) {
+            final Track track = movie.mTracks.get(index);
+            if (!isCompatible(reference, track)) {
+                throw new IOException("Incompatible track: " + index + " in: " + movie.mFile);
+            }
+            hasCtts |= track.mCompositionOffsets != null;
+            hasStss |= track.mSyncSamples != null;
+        }
+
+        final Track merged = new Track();
+        merged.mTrak = reference.mTrak;
+        merged.mHandler = reference.mHandler;
+        merged.mTimescale = reference.mTimescale;
+        merged.mSampleDescriptions = reference.mSampleDescriptions;
+        if (hasCtts) {
+            merged.mCompositionOffsets = new LongArray();
+        }
+        if (hasStss) {
+            merged.mSyncSamples = new LongArray();
+        }
+
+        long payloadBase = 0;
+        final int moviesCount = movies.size();
+        for (int m = 0; m < moviesCount; m++) {
+            final Movie movie = movies.get(m);
+            final Track track = movie.mTracks.get(index);
+            final long sampleBase = merged.mSampleSizes.size() - track.mFirstSample;
+            for (int i = track.mFirstSample; i < track.mEndSample; i++) {
+                merged.mSampleSizes.add(track.mSampleSizes.get(i));
+                merged.mSampleDeltas.add(track.mSampleDeltas.get(i));
+                merged.mSampleOffsets.add(track.mSampleOffsets.get(i) - movie.mCopyStart
+                        + payloadBase);
+                if (hasCtts) {
+                    merged.mCompositionOffsets.add(track.mCompositionOffsets != null ?
+                            track.mCompositionOffsets.get(i) : 0);
+                }
+            }
+
+            if (hasStss) {
+                if (track.mSyncSamples != null) {
+                    for (int i = 0; i < track.mSyncSamples.size(); i++) {
+                        final long sample = track.mSyncSamples.get(i) - 1;
+                        if (sample >= track.mFirstSample && sample < track.mEndSample) {
+                            merged.mSyncSamples.add(sample + sampleBase + 1);
+                        }
+                    }
+                } else {
+                    for (int i = track.mFirstSample; i < track.mEndSample; i++) {
+                        merged.mSyncSamples.add(i + sampleBase + 1);
+                    }
+                }
+            }
+
+            // Keep the tracks in sync at the joins: each part of the track
+            // lasts as long as the clip it comes from
+            if (m < moviesCount - 1 && merged.mSampleDeltas.size() > 0) {
+                final long clipDuration = movie.mDuration * track.mTimescale / movie.mTimescale;
+                final int last = merged.mSampleDeltas.size() - 1;
+                final long delta = merged.mSampleDeltas.get(last) + clipDuration
+                        - track.getDuration();
+                if (delta > 0) {
+                    merged.mSampleDeltas.set(last, delta);
+                }
+            }
+
+            payloadBase += movie.mCopyEnd - movie.mCopyStart;
+        }
+
+        merged.mFirstSample = 0;
+        merged.mEndSample = merged.mSampleSizes.size();
+        return merged;
+    }
+
+    /**
+     * Build the movie box of the concatenated file
+     *
+     * @param first The first movie
+     * @param tracks The merged tracks
+     * @param payloadStart The file offset of the merged media data
+     * @param largeOffsets true to write 64 bit chunk offsets
+     *
+     * @return The movie box
+     */
+    private static Box buildMoov(Movie first, List<Track> tracks, long payloadStart,
+            boolean largeOffsets) throws IOException {
+        long movieDuration = 0;
+        for (Track track : tracks) {
+            movieDuration = Math.max(movieDuration,
+                    track.getDuration() * first.mTimescale / track.mTimescale);
+        }
+
+        final List<Box> children = new ArrayList<Box>();
+        int trackIndex = 0;
+        for (Box box : first.mMoov.mChildren) {
+            if (box.mType == FOURCC_MVHD) {
+                children.add(setDuration(box, 16, 24, movieDuration));
+            } else if (box.mType == FOURCC_TRAK) {
+                children.add(buildTrak(tracks.get(trackIndex++), first.mTimescale, payloadStart,
+                        largeOffsets));
+            } else {
+                children.add(box);
+            }
+        }
+
+        return new Box(FOURCC_MOOV, children);
+    }
+
+    /**
+     * Build a track box. The edit list is dropped since the edits of the
+     * first file do not apply to the concatenated track.
+     *
+     * @param track The merged track
+     * @param movieTimescale The movie timescale
+     * @param payloadStart The file offset of the merged media data
+     * @param largeOffsets true to write 64 bit chunk offsets
+     *
+     * @return The track box
+     */
+    private static Box buildTrak(Track track, long movieTimescale, long payloadStart,
+            boolean largeOffsets) throws IOException {
+        final long duration = track.getDuration();
+        final List<Box> children = new ArrayList<Box>();
+        for (Box box : track.mTrak.mChildren) {
+            if (box.mType == FOURCC_TKHD) {
+                children.add(setDuration(box, 20, 28,
+                        duration * movieTimescale / track.mTimescale));
+            } else if (box.mType == FOURCC_MDIA) {
+                final List<Box> mdiaChildren = new ArrayList<Box>();
+                for (Box mdiaBox : box.mChildren) {
+                    if (mdiaBox.mType == FOURCC_MDHD) {
+                        mdiaChildren.add(setDuration(mdiaBox, 16, 24, duration));
+                    } else if (mdiaBox.mType == FOURCC_MINF) {
+                        final List<Box> minfChildren = new ArrayList<Box>();
+                        for (Box minfBox : mdiaBox.mChildren) {
+                            if (minfBox.mType == FOURCC_STBL) {
+                                minfChildren.add(buildStbl(track, payloadStart, largeOffsets));
+                            } else {
+                                minfChildren.add(minfBox);
+                            }
+                        }
+                        mdiaChildren.add(new Box(FOURCC_MINF, minfChildren));
+                    } else {
+                        mdiaChildren.add(mdiaBox);
+                    }
+                }
+                children.add(new Box(FOURCC_MDIA, mdiaChildren));
+            } else if (box.mType != FOURCC_EDTS) {
+                children.add(box);
+            }
+        }
+
+        return new Box(FOURCC_TRAK, children);
+    }
+
+    /**
+     * Build the sample table box of a merged track
+     *
+     * @param track The merged track
+     * @param payloadStart The file offset of the merged media data
+     * @param largeOffsets true to write 64 bit chunk offsets
+     *
+     * @return The sample table box
+     */
+    private static Box buildStbl(Track track, long payloadStart, boolean largeOffsets) {
+        final int samplesCount = track.mSampleSizes.size();
+        final List<Box> children = new ArrayList<Box>();
+        children.add(new Box(FOURCC_STSD, track.mSampleDescriptions));
+        children.add(createRunLengthTable(FOURCC_STTS, track.mSampleDeltas));
+        if (track.mCompositionOffsets != null) {
+            children.add(createRunLengthTable(FOURCC_CTTS, track.mCompositionOffsets));
+        }
+
+        if (track.mSyncSamples != null) {
+            final ByteBuffer stss = ByteBuffer.allocate(8 + 4 * track.mSyncSamples.size());
+            stss.putInt(0);
+            stss.putInt(track.mSyncSamples.size());
+            for (int i = 0; i < track.mSyncSamples.size(); i++) {
+                stss.putInt((int)track.mSyncSamples.get(i));
+            }
+            children.add(new Box(FOURCC_STSS, stss.array()));
+        }
+
+        final ByteBuffer stsz = ByteBuffer.allocate(12 + 4 * samplesCount);
+        stsz.putInt(0);
+        stsz.putInt(0);
+        stsz.putInt(samplesCount);
+        for (int i = 0; i < samplesCount; i++) {
+            stsz.putInt((int)track.mSampleSizes.get(i));
+        }
+        children.add(new Box(FOURCC_STSZ, stsz.array()));
+
+        // One sample per chunk
+        final ByteBuffer stsc = ByteBuffer.allocate(samplesCount > 0 ? 20 : 8);
+        stsc.putInt(0);
+        if (samplesCount > 0) {
+            stsc.putInt(1);
+            stsc.putInt(1);
+            stsc.putInt(1);
+            stsc.putInt(1);
+        } else {
+            stsc.putInt(0);
+        }
+        children.add(new Box(FOURCC_STSC, stsc.array()));
+
+        final ByteBuffer offsets = ByteBuffer.allocate(8 + (largeOffsets ? 8 : 4) * samplesCount);
+        offsets.putInt(0);
+        offsets.putInt(samplesCount);
+        for (int i = 0; i < samplesCount; i++) {
+            final long offset = track.mSampleOffsets.get(i) + payloadStart;
+            if (largeOffsets) {
+                offsets.putLong(offset);
+            } else {
+                offsets.putInt((int)offset);
+            }
+        }
+        children.add(new Box(largeOffsets ? FOURCC_CO64 : FOURCC_STCO, offsets.array()));
+
+        return new Box(FOURCC_STBL, children);
+    }
+
+    /**
+     * Create a full box holding a run length encoded table of per sample
+     * values
+     *
+     * @param type The box type
+     * @param values The value of each sample
+     *
+     * @return The box
+     */
+    private static Box createRunLengthTable(int type, LongArray values) {
+        final LongArray counts = new LongArray();
+        final LongArray runValues = new LongArray();
+        for (int i = 0; i < values.size(); i++) {
+            final int last = runValues.size() - 1;
+            if (last >= 0 && runValues.get(last) == values.get(i)) {
+                counts.set(last, counts.get(last) + 1);
+            } else {
+                counts.add(1);
+                runValues.add(values.get(i));
+            }
+        }
+
+        final ByteBuffer table = ByteBuffer.allocate(8 + 8 * counts.size());
+        table.putInt(0);
+        table.putInt(counts.size());
+        for (int i = 0; i < counts.size(); i++) {
+            table.putInt((int)counts.get(i));
+            table.putInt((int)runValues.get(i));
+        }
+
+        return new Box(type, table.array());
+    }
+
+    /**
+     * Copy a header box with a new duration
+     *
+     * @param box The movie, track or media header box
+     * @param offset The offset of the duration in a version 0 box
+     * @param offset64 The offset of the duration in a version 1 box
+     * @param duration The duration
+     *
+     * @return The new box
+     */
+    private static Box setDuration(Box box, int offset, int offset64, long duration)
+            throws IOException {
+        final ByteBuffer data = ByteBuffer.wrap(box.mData.clone());
+        if (data.get(0) == 1) {
+            data.putLong(offset64, duration);
+        } else {
+            if (duration > MAX_UINT32) {
+                throw new IOException("Duration too long: " + duration);
+            }
+            data.putInt(offset, (int)duration);
+        }
+
+        return new Box(box.mType, data.array());
+    }
+
+    /**
+     * Copy the selected samples of a movie
+     *
+     * @param movie The movie
+     * @param out The output channel
+     */
+    private static void copyMediaData(Movie movie, FileChannel out) throws IOException {
+        final FileInputStream fis = new FileInputStream(movie.mFile);
+        try {
+            final FileChannel channel = fis.getChannel();
+            long pos = movie.mCopyStart;
+            long remaining = movie.mCopyEnd - movie.mCopyStart;
+            while (remaining > 0) {
+                final long count = channel.transferTo(pos, remaining, out);
+                if (count <= 0) {
+                    throw new IOException("Cannot copy the media data of: " + movie.mFile);
+                }
+                pos += count;
+                remaining -= count;
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * @param timeMs A time in milliseconds, Long.MAX_VALUE for the end of
+     *      the file
+     * @param timescale The timescale
+     *
+     * @return The time in the timescale
+     */
+    private static long toTimescale(long timeMs, long timescale) {
+        if (timeMs == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+
+        return timeMs * timescale / 1000;
+    }
+
+    /**
+     * Read from a channel until the buffer is full
+     *
+     * @param channel The channel
+     * @param buffer The buffer
+     * @param position The file position
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            final int count = channel.read(buffer, pos);
+            if (count < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            pos += count;
+        }
+    }
+
+    /**
+     * @param code The four character code
+     *
+     * @return The code as a big endian integer
+     */
+    private static int fourcc(String code) {
+        return (code.charAt(0) << 24) | (code.charAt(1) << 16) | (code.charAt(2) << 8) |
+                code.charAt(3);
+    }
+
+    /**
+     * @param fourcc The four character code as a big endian integer
+     *
+     * @return The four character code
+     */
+    private static String fourccToString(int fourcc) {
+        return new String(new char[] {(char)((fourcc >> 24) & 0xff),
+                (char)((fourcc >> 16) & 0xff), (char)((fourcc >> 8) & 0xff),
+                (char)(fourcc & 0xff)});
+    }
+}
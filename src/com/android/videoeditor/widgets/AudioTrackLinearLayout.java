@@ -65,6 +65,7 @@ public class AudioTrackLinearLayout extends LinearLayout {
     private VideoEditorProject mProject;
     private boolean mPlaybackInProgress;
     private long mTimelineDurationMs;
+    private final ItemViewIndex mViewIndex = new ItemViewIndex();
 
     /**
      * Activity listener
@@ -178,6 +179,9 @@ public class AudioTrackLinearLayout extends LinearLayout {
     public AudioTrackLinearLayout(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
 
+        // Keep the audio track views indexed by id
+        setOnHierarchyChangeListener(mViewIndex);
+
         mAudioTrackGestureListener = new ItemSimpleGestureListener() {
             @Override
             public boolean onSingleTapConfirmed(View view, int area, MotionEvent e) {
@@ -387,21 +391,16 @@ public class AudioTrackLinearLayout extends LinearLayout {
      * @return The view which was removed
      */
     public View removeAudioTrack(String audioTrackId) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final MovieAudioTrack audioTrack = (MovieAudioTrack)childView.getTag();
-            if (audioTrack != null && audioTrack.getId().equals(audioTrackId)) {
-                removeViewAt(i);
+        final View childView = getAudioTrackView(audioTrackId);
+        if (childView != null) {
+            removeView(childView);
 
-                updateAddAudioTrackButton();
+            updateAddAudioTrackButton();
 
-                requestLayout();
-                return childView;
-            }
+            requestLayout();
         }
 
-        return null;
+        return childView;
     }
 
     /**
@@ -634,16 +633,7 @@ public class AudioTrackLinearLayout extends LinearLayout {
      * @return The audio track view
      */
     private View getAudioTrackView(String audioTrackId) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final MovieAudioTrack audioTrack = (MovieAudioTrack)childView.getTag();
-            if (audioTrack != null && audioTrackId.equals(audioTrack.getId())) {
-                return childView;
-            }
-        }
-
-        return null;
+        return mViewIndex.get(audioTrackId);
     }
 
     /**
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.widgets;
+
+import java.util.List;
+
+import com.android.videoeditor.service.MovieMediaItem;
+import com.android.videoeditor.service.MovieTransition;
+
+/**
+ * The drop positions of a media item drag. The timeline segments of the
+ * media items are computed once when the drag starts and the segment under
+ * the playhead is found by binary search while the item moves.
+ */
+class DropSlotTable {
+    // Instance variables
+    private final MovieMediaItem[] mMediaItems;
+    // The segment of each media item in the timeline. The segments are
+    // contiguous: a segment begins where the previous one ends.
+    private final long[] mBeginMs;
+    private final long[] mEndMs;
+    // The begin time of each media item excluding its begin transition
+    private final long[] mDropBeginMs;
+    private final String mDragMediaItemId;
+    private int mDropIndex;
+    private MovieMediaItem mDropAfterMediaItem;
+
+    /**
+     * Constructor
+     *
+     * @param mediaItems The media items
+     * @param dragMediaItemId The id of the dragged media item
+     */
+    public DropSlotTable(List<MovieMediaItem> mediaItems, String dragMediaItemId) {
+        final int mediaItemsCount = mediaItems.size();
+        mMediaItems = mediaItems.toArray(new MovieMediaItem[mediaItemsCount]);
+        mBeginMs = new long[mediaItemsCount];
+        mEndMs = new long[mediaItemsCount];
+        mDropBeginMs = new long[mediaItemsCount];
+        mDragMediaItemId = dragMediaItemId;
+        mDropIndex = -1;
+
+        long beginMs = 0;
+        for (int i = 0; i < mediaItemsCount; i++) {
+            final MovieMediaItem mediaItem = mMediaItems[i];
+            long endMs = beginMs + mediaItem.getAppTimelineDuration();
+
+            final MovieTransition endTransition = mediaItem.getEndTransition();
+            if (endTransition != null && i < mediaItemsCount - 1) {
+                endMs -= endTransition.getAppDuration();
+            }
+
+            final MovieTransition beginTransition = mediaItem.getBeginTransition();
+            mBeginMs[i] = beginMs;
+            mEndMs[i] = endMs;
+            mDropBeginMs[i] = beginMs +
+                    (beginTransition != null ? beginTransition.getAppDuration() : 0);
+
+            beginMs = endMs;
+        }
+    }
+
+    /**
+     * Find the drop position before the media item under the playhead
+     *
+     * @param timeMs The playhead position
+     *
+     * @return The time of the drop position
+     */
+    public long getLeftDropPosition(long timeMs) {
+        // The media item such that begin < time <= end
+        final int i = findFirstEnd(timeMs, false);
+        if (i < 0 || timeMs <= mBeginMs[i]) {
+            return timeMs;
+        }
+
+        mDropAfterMediaItem = null;
+        mDropIndex = -1;
+        if (isDragged(i)) {
+            return mDropBeginMs[i];
+        }
+
+        if (i == 0) {
+            mDropIndex = 0;
+            return 0;
+        }
+
+        // Dropping after the previous media item is a valid move unless the
+        // previous media item is the one being dragged
+        if (!isDragged(i - 1)) {
+            mDropAfterMediaItem = mMediaItems[i - 1];
+            mDropIndex = i;
+        }
+
+        return mDropBeginMs[i];
+    }
+
+    /**
+     * Find the drop position after the media item under the playhead
+     *
+     * @param timeMs The playhead position
+     *
+     * @return The time of the drop position
+     */
+    public long getRightDropPosition(long timeMs) {
+        // The media item such that begin <= time < end
+        final int i = findFirstEnd(timeMs, true);
+        if (i < 0 || timeMs < mBeginMs[i]) {
+            return timeMs;
+        }
+
+        mDropAfterMediaItem = null;
+        mDropIndex = -1;
+        if (isDragged(i)) {
+            return mEndMs[i];
+        }
+
+        // Dropping after this media item is a valid move unless the next
+        // media item is the one being dragged
+        if (i == mMediaItems.length - 1 || !isDragged(i + 1)) {
+            mDropAfterMediaItem = mMediaItems[i];
+            mDropIndex = i;
+        }
+
+        return mEndMs[i];
+    }
+
+    /**
+     * @return The index of the drop position, -1 if the drop position is not
+     *      valid
+     */
+    public int getDropIndex() {
+        return mDropIndex;
+    }
+
+    /**
+     * @return The media item after which the dragged media item is dropped,
+     *      null to drop at the beginning of the timeline
+     */
+    public MovieMediaItem getDropAfterMediaItem() {
+        return mDropAfterMediaItem;
+    }
+
+    /**
+     * @param timeMs The time
+     * @param strict true to find the first end after the time, false to find
+     *      the first end at or after the time
+     *
+     * @return The index of the media item, -1 if the time is beyond the end
+     *      of the timeline
+     */
+    private int findFirstEnd(long timeMs, boolean strict) {
+        int low = 0;
+        int high = mEndMs.length - 1;
+        int result = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (strict ? mEndMs[mid] > timeMs : mEndMs[mid] >= timeMs) {
+                result = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param index The media item index
+     *
+     * @return true if the media item is the one being dragged
+     */
+    private boolean isDragged(int index) {
+        return mDragMediaItemId.equals(mMediaItems[index].getId());
+    }
+}
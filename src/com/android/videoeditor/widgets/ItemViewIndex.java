@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.videoeditor.widgets;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.android.videoeditor.service.MovieAudioTrack;
+import com.android.videoeditor.service.MovieMediaItem;
+import com.android.videoeditor.service.MovieTransition;
+
+/**
+ * Maps the ids of the storyboard items to the child views of a timeline
+ * layout. The views are indexed by the id of their tag when they are added
+ * to and removed from the layout.
+ */
+class ItemViewIndex implements ViewGroup.OnHierarchyChangeListener {
+    // Instance variables
+    private final Map<String, View> mViews;
+
+    /**
+     * Constructor
+     */
+    public ItemViewIndex() {
+        mViews = new HashMap<String, View>();
+    }
+
+    @Override
+    public void onChildViewAdded(View parent, View child) {
+        final String id = getId(child.getTag());
+        if (id != null) {
+            mViews.put(id, child);
+        }
+    }
+
+    @Override
+    public void onChildViewRemoved(View parent, View child) {
+        final String id = getId(child.getTag());
+        if (id != null && mViews.get(id) == child) {
+            mViews.remove(id);
+        }
+    }
+
+    /**
+     * Change the tag of a view which belongs to the layout
+     *
+     * @param view The view
+     * @param tag The new tag
+     */
+    public void setTag(View view, Object tag) {
+        onChildViewRemoved(null, view);
+        view.setTag(tag);
+        onChildViewAdded(null, view);
+    }
+
+    /**
+     * @param id The storyboard item id
+     *
+     * @return The view of the storyboard item, null if not found
+     */
+    public View get(String id) {
+        final View view = mViews.get(id);
+        if (view != null && id.equals(getId(view.getTag()))) {
+            return view;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param tag The view tag
+     *
+     * @return The id of the storyboard item, null if the tag is not a
+     *      storyboard item
+     */
+    private static String getId(Object tag) {
+        if (tag instanceof MovieMediaItem) {
+            return ((MovieMediaItem)tag).getId();
+        } else if (tag instanceof MovieTransition) {
+            return ((MovieTransition)tag).getId();
+        } else if (tag instanceof MovieAudioTrack) {
+            return ((MovieAudioTrack)tag).getId();
+        } else {
+            return null;
+        }
+    }
+}
@@ -113,11 +113,10 @@ public class MediaItemView extends View {
                     R.drawable.add_transition_selector);
             sEmptyFrameDrawable = getResources().getDrawable(
                     R.drawable.timeline_loading);
-
-            // Initialize the thumbnail cache, limit the memory usage to 3MB
-            sThumbnailCache = new ThumbnailCache(3*1024*1024);
         }
 
+        getThumbnailCache();
+
         // Get the screen width
         final Display display = ((WindowManager)context.getSystemService(
                 Context.WINDOW_SERVICE)).getDefaultDisplay();
@@ -599,6 +598,18 @@ public class MediaItemView extends View {
         return true;
     }
 
+    /**
+     * @return The thumbnail cache shared by the media item and transition views
+     */
+    static ThumbnailCache getThumbnailCache() {
+        if (sThumbnailCache == null) {
+            // Initialize the thumbnail cache, limit the memory usage to 3MB
+            sThumbnailCache = new ThumbnailCache(3*1024*1024);
+        }
+
+        return sThumbnailCache;
+    }
+
     private void releaseBitmapsAndClear() {
         sThumbnailCache.clearForMediaItemId(mMediaItem.getId());
         mPending.clear();
@@ -607,8 +618,13 @@ public class MediaItemView extends View {
 }
 
 class ThumbnailKey {
+    // Index used by the keys of the boundary frames displayed by transitions
+    public static final int BOUNDARY_FRAME = -1;
+
     public String mediaItemId;
     public int index;
+    public long timeMs;
+    public int height;
 
     public ThumbnailKey() {
     }
@@ -618,18 +634,36 @@ class ThumbnailKey {
         index = idx;
     }
 
+    /**
+     * Creates the key of a boundary frame of a media item. Boundary frames are
+     * keyed by the time of the frame rather than the thumbnail index so they
+     * survive the relayout of the media item view and become stale only when
+     * the media item is trimmed.
+     *
+     * @param id The media item id
+     * @param timeMs The time of the frame
+     * @param height The height of the frame
+     */
+    public ThumbnailKey(String id, long timeMs, int height) {
+        mediaItemId = id;
+        index = BOUNDARY_FRAME;
+        this.timeMs = timeMs;
+        this.height = height;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof ThumbnailKey)) {
             return false;
         }
         ThumbnailKey key = (ThumbnailKey) o;
-        return index == key.index && mediaItemId.equals(key.mediaItemId);
+        return index == key.index && timeMs == key.timeMs && height == key.height
+                && mediaItemId.equals(key.mediaItemId);
     }
 
     @Override
     public int hashCode() {
-        return mediaItemId.hashCode() ^ index;
+        return mediaItemId.hashCode() ^ index ^ (int) timeMs ^ (height << 16);
     }
 }
 
@@ -653,10 +687,16 @@ class ThumbnailCache {
         return mCache.get(key);
     }
 
+    /**
+     * Removes the indexed thumbnails of a media item. The boundary frames are
+     * kept since they do not depend on the layout of the media item view.
+     *
+     * @param id The media item id
+     */
     void clearForMediaItemId(String id) {
         Map<ThumbnailKey, Bitmap> map = mCache.snapshot();
         for (ThumbnailKey key : map.keySet()) {
-            if (key.mediaItemId.equals(id)) {
+            if (key.index != ThumbnailKey.BOUNDARY_FRAME && key.mediaItemId.equals(id)) {
                 mCache.remove(key);
             }
         }
@@ -16,7 +16,11 @@
 
 package com.android.videoeditor.widgets;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -55,6 +59,7 @@ import com.android.videoeditor.TransitionType;
 import com.android.videoeditor.TransitionsActivity;
 import com.android.videoeditor.VideoEditorActivity;
 import com.android.videoeditor.service.ApiService;
+import com.android.videoeditor.service.BulkEdit;
 import com.android.videoeditor.service.MovieEffect;
 import com.android.videoeditor.service.MovieMediaItem;
 import com.android.videoeditor.service.MovieOverlay;
@@ -107,6 +112,11 @@ public class MediaLinearLayout extends LinearLayout {
     private MovieMediaItem mDropAfterMediaItem;
     private int mDropIndex;
     private boolean mFirstEntered;
+    private DropSlotTable mDropSlots;
+    // The ids of the media items selected in multi-select mode
+    private final Set<String> mMultiSelectedMediaItemIds = new LinkedHashSet<String>();
+    private boolean mMultiSelectMode;
+    private final ItemViewIndex mViewIndex = new ItemViewIndex();
 
     /**
      * The media item action mode handler.
@@ -192,6 +202,23 @@ public class MediaLinearLayout extends LinearLayout {
             rmmi.setVisible(mProject.hasMultipleAspectRatios());
             rmmi.setEnabled(enable && mProject.hasMultipleAspectRatios());
 
+            final MenuItem smmi = menu.findItem(R.id.action_select_multiple);
+            smmi.setVisible(mProject.getMediaItemCount() > 1);
+            smmi.setChecked(mMultiSelectMode);
+
+            // The titles, transitions, pan zoom and removal apply to a single
+            // media item
+            if (mMultiSelectMode) {
+                menu.findItem(R.id.media_item_title_menu).setVisible(false);
+                btmi.setVisible(false);
+                etmi.setVisible(false);
+                menu.findItem(R.id.action_pan_zoom_effect).setVisible(false);
+                menu.findItem(R.id.action_delete_media_item).setVisible(false);
+            } else {
+                menu.findItem(R.id.media_item_title_menu).setVisible(true);
+                menu.findItem(R.id.action_delete_media_item).setVisible(true);
+            }
+
             return true;
         }
 
@@ -229,7 +256,9 @@ public class MediaLinearLayout extends LinearLayout {
                 }
 
                 case R.id.action_no_effect: {
-                    if (!item.isChecked()) {
+                    if (mMultiSelectMode) {
+                        removeSelectionEffects();
+                    } else if (!item.isChecked()) {
                         final Bundle bundle = new Bundle();
                         bundle.putString(PARAM_DIALOG_MEDIA_ITEM_ID, mMediaItem.getId());
                         ((Activity) getContext()).showDialog(
@@ -248,6 +277,12 @@ public class MediaLinearLayout extends LinearLayout {
                     break;
                 }
 
+                case R.id.action_select_multiple: {
+                    setMultiSelectMode(!mMultiSelectMode);
+                    mode.invalidate();
+                    break;
+                }
+
                 case R.id.action_delete_media_item: {
                     final Bundle bundle = new Bundle();
                     bundle.putString(PARAM_DIALOG_MEDIA_ITEM_ID, mMediaItem.getId());
@@ -266,6 +301,7 @@ public class MediaLinearLayout extends LinearLayout {
 
         @Override
         public void onDestroyActionMode(ActionMode mode) {
+            setMultiSelectMode(false);
             final View mediaItemView = getMediaItemView(mMediaItem.getId());
             if (mSelectedView != null) {
                 mLeftHandle.endMove();
@@ -277,7 +313,21 @@ public class MediaLinearLayout extends LinearLayout {
         }
 
         private void applyEffect(MenuItem clickedItem) {
-            if (!clickedItem.isChecked()) {
+            if (mMultiSelectMode) {
+                switch (clickedItem.getItemId()) {
+                    case R.id.action_gradient_effect:
+                        addSelectionEffect(EffectType.EFFECT_COLOR_GRADIENT);
+                        break;
+                    case R.id.action_sepia_effect:
+                        addSelectionEffect(EffectType.EFFECT_COLOR_SEPIA);
+                        break;
+                    case R.id.action_negative_effect:
+                        addSelectionEffect(EffectType.EFFECT_COLOR_NEGATIVE);
+                        break;
+                    default:
+                        break;
+                }
+            } else if (!clickedItem.isChecked()) {
                 switch(clickedItem.getItemId()) {
                     case R.id.action_gradient_effect:
                         addEffect(EffectType.EFFECT_COLOR_GRADIENT,
@@ -387,6 +437,9 @@ public class MediaLinearLayout extends LinearLayout {
     public MediaLinearLayout(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
 
+        // Keep the media item and transition views indexed by id
+        setOnHierarchyChangeListener(mViewIndex);
+
         mMediaItemGestureListener = new ItemSimpleGestureListener() {
             @Override
             public boolean onSingleTapConfirmed(View view, int area, MotionEvent e) {
@@ -394,6 +447,11 @@ public class MediaLinearLayout extends LinearLayout {
                     return false;
                 }
 
+                if (mMultiSelectMode) {
+                    toggleMultiSelection(view);
+                    return true;
+                }
+
                 switch (area) {
                     case ItemSimpleGestureListener.LEFT_AREA: {
                         if (view.isSelected()) {
@@ -690,6 +748,86 @@ public class MediaLinearLayout extends LinearLayout {
         ((MediaItemView)mediaItemView).setProjectPath(mProject.getPath());
 
         mediaItemView.setTag(mediaItem);
+        insertMediaItemView(mediaItemView, afterMediaItemId);
+    }
+
+    /**
+     * Moves a media item view after the specified media item id. The view is
+     * reused and the transitions at the original position are removed.
+     *
+     * @param mediaItemId The id of the media item to move
+     * @param afterMediaItemId The id of the media item preceding the media item
+     */
+    public void moveMediaItem(String mediaItemId, String afterMediaItemId) {
+        final View mediaItemView = getMediaItemView(mediaItemId);
+        if (mediaItemView == null) {
+            Log.e(TAG, "moveMediaItem: Media item not found: " + mediaItemId);
+            return;
+        }
+
+        // Find the previous media item (skip the before transition)
+        String prevMediaItemId = null;
+        for (int i = indexOfChild(mediaItemView) - 1; i >= 0; i--) {
+            final Object tag = getChildAt(i).getTag();
+            if (tag instanceof MovieMediaItem) {
+                prevMediaItemId = ((MovieMediaItem)tag).getId();
+                break;
+            } else if (!(tag instanceof MovieTransition)) {
+                break;
+            }
+        }
+
+        if (afterMediaItemId == null ? prevMediaItemId == null :
+                afterMediaItemId.equals(prevMediaItemId)) {
+            // The view is already in place
+            return;
+        }
+
+        removeMediaItem(mediaItemId, null);
+        insertMediaItemView(mediaItemView, afterMediaItemId);
+    }
+
+    /**
+     * Replaces the transitions of the specified slots.
+     *
+     * @param transitions The transitions keyed by the id of the media item
+     *      preceding the slot (null for the beginning of the timeline). A null
+     *      transition clears the slot.
+     */
+    public void updateTransitions(Map<String, MovieTransition> transitions) {
+        for (Map.Entry<String, MovieTransition> entry : transitions.entrySet()) {
+            final String afterMediaItemId = entry.getKey();
+            final int index;
+            if (afterMediaItemId != null) {
+                final int mediaItemViewIndex = getMediaItemViewIndex(afterMediaItemId);
+                if (mediaItemViewIndex < 0) {
+                    continue;
+                }
+                index = mediaItemViewIndex + 1;
+            } else {
+                index = 1;
+            }
+
+            if (index < getChildCount() && getChildAt(index).getTag() instanceof MovieTransition) {
+                removeViewAt(index);
+            }
+
+            if (entry.getValue() != null) {
+                addTransition(entry.getValue(), afterMediaItemId);
+            }
+        }
+
+        requestLayout();
+    }
+
+    /**
+     * Inserts a media item view after the specified media item id.
+     *
+     * @param mediaItemView The media item view
+     * @param afterMediaItemId The id of the media item preceding the media item
+     */
+    private void insertMediaItemView(View mediaItemView, String afterMediaItemId) {
+        final MovieMediaItem mediaItem = (MovieMediaItem)mediaItemView.getTag();
 
         int insertViewIndex;
         if (afterMediaItemId != null) {
@@ -759,46 +897,39 @@ public class MediaLinearLayout extends LinearLayout {
      * @param mediaItem The media item to be updated
      */
     public void updateMediaItem(MovieMediaItem mediaItem) {
-        final String mediaItemId = mediaItem.getId();
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final Object tag = childView.getTag();
-            if (tag != null && tag instanceof MovieMediaItem) {
-                final MovieMediaItem mi = (MovieMediaItem) tag;
-                if (mediaItemId.equals(mi.getId())) {
-                    if (mediaItem != mi) {
-                        // The media item is a new instance of the media item
-                        childView.setTag(mediaItem);
-                        if (mediaItem.getBeginTransition() != null) {
-                            if (i > 0) {
-                                final View tView = getChildAt(i - 1);
-                                final Object tagT = tView.getTag();
-                                if (tagT != null && tagT instanceof MovieTransition) {
-                                    tView.setTag(mediaItem.getBeginTransition());
-                                }
-                            }
-                        }
-
-                        if (mediaItem.getEndTransition() != null) {
-                            if (i < childrenCount - 1) {
-                                final View tView = getChildAt(i + 1);
-                                final Object tagT = tView.getTag();
-                                if (tagT != null && tagT instanceof MovieTransition) {
-                                    tView.setTag(mediaItem.getEndTransition());
-                                }
-                            }
+        final View childView = getMediaItemView(mediaItem.getId());
+        if (childView != null) {
+            final int i = indexOfChild(childView);
+            final int childrenCount = getChildCount();
+            final MovieMediaItem mi = (MovieMediaItem) childView.getTag();
+            if (mediaItem != mi) {
+                // The media item is a new instance of the media item
+                mViewIndex.setTag(childView, mediaItem);
+                if (mediaItem.getBeginTransition() != null) {
+                    if (i > 0) {
+                        final View tView = getChildAt(i - 1);
+                        final Object tagT = tView.getTag();
+                        if (tagT != null && tagT instanceof MovieTransition) {
+                            mViewIndex.setTag(tView, mediaItem.getBeginTransition());
                         }
                     }
+                }
 
-                    if (childView.isSelected()) {
-                        mLeftHandle.setEnabled(true);
-                        mRightHandle.setEnabled(true);
+                if (mediaItem.getEndTransition() != null) {
+                    if (i < childrenCount - 1) {
+                        final View tView = getChildAt(i + 1);
+                        final Object tagT = tView.getTag();
+                        if (tagT != null && tagT instanceof MovieTransition) {
+                            mViewIndex.setTag(tView, mediaItem.getEndTransition());
+                        }
                     }
-
-                    break;
                 }
             }
+
+            if (childView.isSelected()) {
+                mLeftHandle.setEnabled(true);
+                mRightHandle.setEnabled(true);
+            }
         }
 
         requestLayout();
@@ -818,59 +949,61 @@ public class MediaLinearLayout extends LinearLayout {
      * @return The view which was removed
      */
     public View removeMediaItem(String mediaItemId, MovieTransition transition) {
-        final int childrenCount = getChildCount();
+        final View childView = getMediaItemView(mediaItemId);
+        if (childView == null) {
+            return null;
+        }
+
+        int mediaItemViewIndex = indexOfChild(childView);
+
+        // Find the previous media item (skip the before transition)
         MovieMediaItem prevMediaItem = null;
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final Object tag = childView.getTag();
-            if (tag != null && tag instanceof MovieMediaItem) {
-                final MovieMediaItem mi = (MovieMediaItem)tag;
-                if (mediaItemId.equals(mi.getId())) {
-                    int mediaItemViewIndex = i;
-
-                    // Remove the before transition
-                    if (mediaItemViewIndex > 0) {
-                        final Object beforeTag = getChildAt(mediaItemViewIndex - 1).getTag();
-                        if (beforeTag != null && beforeTag instanceof MovieTransition) {
-                            // Remove the transition view
-                            removeViewAt(mediaItemViewIndex - 1);
-                            mediaItemViewIndex--;
-                        }
-                    }
+        for (int i = mediaItemViewIndex - 1; i >= 0; i--) {
+            final Object tag = getChildAt(i).getTag();
+            if (tag instanceof MovieMediaItem) {
+                prevMediaItem = (MovieMediaItem)tag;
+                break;
+            } else if (!(tag instanceof MovieTransition)) {
+                break;
+            }
+        }
 
-                    // Remove the after transition view
-                    if (mediaItemViewIndex < getChildCount() - 1) {
-                        final Object afterTag = getChildAt(mediaItemViewIndex + 1).getTag();
-                        if (afterTag != null && afterTag instanceof MovieTransition) {
-                            // Remove the transition view
-                            removeViewAt(mediaItemViewIndex + 1);
-                        }
-                    }
+        // Remove the before transition
+        if (mediaItemViewIndex > 0) {
+            final Object beforeTag = getChildAt(mediaItemViewIndex - 1).getTag();
+            if (beforeTag != null && beforeTag instanceof MovieTransition) {
+                // Remove the transition view
+                removeViewAt(mediaItemViewIndex - 1);
+                mediaItemViewIndex--;
+            }
+        }
 
-                    // Remove the media item view
-                    removeViewAt(mediaItemViewIndex);
+        // Remove the after transition view
+        if (mediaItemViewIndex < getChildCount() - 1) {
+            final Object afterTag = getChildAt(mediaItemViewIndex + 1).getTag();
+            if (afterTag != null && afterTag instanceof MovieTransition) {
+                // Remove the transition view
+                removeViewAt(mediaItemViewIndex + 1);
+            }
+        }
 
-                    if (transition != null) {
-                        addTransition(transition,
-                                prevMediaItem != null ? prevMediaItem.getId() : null);
-                    }
+        // Remove the media item view
+        removeViewAt(mediaItemViewIndex);
 
-                    if (mMediaItemActionMode != null) {
-                        mMediaItemActionMode.invalidate();
-                    }
+        if (transition != null) {
+            addTransition(transition, prevMediaItem != null ? prevMediaItem.getId() : null);
+        }
 
-                    if (mProject.getMediaItemCount() == 0) {
-                        // We cannot add clips by tapping the beginning view
-                        mLeftAddClipButton.setVisibility(View.GONE);
-                    }
-                    return childView;
-                }
+        if (mMediaItemActionMode != null) {
+            mMediaItemActionMode.invalidate();
+        }
 
-                prevMediaItem = mi;
-            }
+        if (mProject.getMediaItemCount() == 0) {
+            // We cannot add clips by tapping the beginning view
+            mLeftAddClipButton.setVisibility(View.GONE);
         }
 
-        return null;
+        return childView;
     }
 
     /**
@@ -1004,20 +1137,10 @@ public class MediaLinearLayout extends LinearLayout {
         // Determine the insert position
         int index;
         if (afterMediaItemId != null) {
-            index = -1;
-            final int childrenCount = getChildCount();
-            for (int i = 0; i < childrenCount; i++) {
-                final Object tag = getChildAt(i).getTag();
-                if (tag != null && tag instanceof MovieMediaItem) {
-                    final MovieMediaItem mi = (MovieMediaItem) tag;
-                    if (afterMediaItemId.equals(mi.getId())) {
-                        index = i + 1;
-                        break;
-                    }
-                }
-            }
-
-            if (index < 0) {
+            index = getMediaItemViewIndex(afterMediaItemId);
+            if (index >= 0) {
+                index++;
+            } else {
                 Log.e(TAG, "addTransition media item not found: " + afterMediaItemId);
                 return null;
             }
@@ -1061,25 +1184,17 @@ public class MediaLinearLayout extends LinearLayout {
      * @param transitionId The transition id
      */
     public void removeTransition(String transitionId) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final Object tag = getChildAt(i).getTag();
-            if (tag != null && tag instanceof MovieTransition) {
-                final MovieTransition transition = (MovieTransition)tag;
-                if (transitionId.equals(transition.getId())) {
-                    // Remove the view
-                    removeViewAt(i);
-
-                    // Adjust the size of all the views
-                    requestLayout();
+        final View transitionView = getTransitionView(transitionId);
+        if (transitionView != null) {
+            // Remove the view
+            removeView(transitionView);
 
-                    // If this transition was removed by the user invalidate the menu item
-                    if (mMediaItemActionMode != null) {
-                        mMediaItemActionMode.invalidate();
-                    }
+            // Adjust the size of all the views
+            requestLayout();
 
-                    return;
-                }
+            // If this transition was removed by the user invalidate the menu item
+            if (mMediaItemActionMode != null) {
+                mMediaItemActionMode.invalidate();
             }
         }
     }
@@ -1199,6 +1314,159 @@ public class MediaLinearLayout extends LinearLayout {
         }
     }
 
+    /**
+     * @return The ids of the selected media items. In multi-select mode all
+     *      the media items selected by the user, otherwise the selected media
+     *      item (if any).
+     */
+    public List<String> getSelectedMediaItemIds() {
+        final List<String> mediaItemIds = new ArrayList<String>();
+        if (mMultiSelectMode) {
+            for (String mediaItemId : mMultiSelectedMediaItemIds) {
+                if (mProject.getMediaItem(mediaItemId) != null) {
+                    mediaItemIds.add(mediaItemId);
+                }
+            }
+        } else if (mSelectedView != null && mSelectedView.getTag() instanceof MovieMediaItem) {
+            mediaItemIds.add(((MovieMediaItem)mSelectedView.getTag()).getId());
+        }
+
+        return mediaItemIds;
+    }
+
+    /**
+     * Enter or leave the multi-select mode. In multi-select mode tapping a
+     * media item adds it to or removes it from the selection and the effect
+     * and rendering mode actions apply to all the selected media items.
+     *
+     * @param multiSelect true to enter the multi-select mode
+     */
+    private void setMultiSelectMode(boolean multiSelect) {
+        if (multiSelect == mMultiSelectMode) {
+            return;
+        }
+
+        mMultiSelectMode = multiSelect;
+        if (multiSelect) {
+            // Trimming applies to a single media item
+            clearAndHideTrimHandles();
+            if (mSelectedView != null && mSelectedView.getTag() instanceof MovieMediaItem) {
+                mMultiSelectedMediaItemIds.add(((MovieMediaItem)mSelectedView.getTag()).getId());
+            }
+        } else {
+            for (String mediaItemId : mMultiSelectedMediaItemIds) {
+                final View mediaItemView = getMediaItemView(mediaItemId);
+                if (mediaItemView != null && mediaItemView != mSelectedView) {
+                    mediaItemView.setSelected(false);
+                }
+            }
+
+            mMultiSelectedMediaItemIds.clear();
+        }
+
+        invalidateAllChildren();
+    }
+
+    /**
+     * Add a media item to the multi-selection or remove it. The media item
+     * which started the action mode stays selected.
+     *
+     * @param mediaItemView The media item view
+     */
+    private void toggleMultiSelection(View mediaItemView) {
+        if (mediaItemView == mSelectedView) {
+            return;
+        }
+
+        final String mediaItemId = ((MovieMediaItem)mediaItemView.getTag()).getId();
+        if (mMultiSelectedMediaItemIds.remove(mediaItemId)) {
+            mediaItemView.setSelected(false);
+        } else {
+            mMultiSelectedMediaItemIds.add(mediaItemId);
+            mediaItemView.setSelected(true);
+        }
+
+        invalidateAllChildren();
+        if (mMediaItemActionMode != null) {
+            mMediaItemActionMode.invalidate();
+        }
+    }
+
+    /**
+     * Add a color effect to all the selected media items in one bulk edit.
+     *
+     * @param effectType The effect type
+     */
+    private void addSelectionEffect(int effectType) {
+        final BulkEdit bulkEdit = new BulkEdit();
+        for (String mediaItemId : getSelectedMediaItemIds()) {
+            final MovieMediaItem mediaItem = mProject.getMediaItem(mediaItemId);
+            final String id = ApiService.generateId();
+            switch (effectType) {
+                case EffectType.EFFECT_COLOR_GRADIENT: {
+                    bulkEdit.addEffectColor(mediaItemId, id, 0, mediaItem.getDuration(),
+                            EffectColor.TYPE_GRADIENT, EffectColor.GRAY);
+                    break;
+                }
+
+                case EffectType.EFFECT_COLOR_SEPIA: {
+                    bulkEdit.addEffectColor(mediaItemId, id, 0, mediaItem.getDuration(),
+                            EffectColor.TYPE_SEPIA, 0);
+                    break;
+                }
+
+                case EffectType.EFFECT_COLOR_NEGATIVE: {
+                    bulkEdit.addEffectColor(mediaItemId, id, 0, mediaItem.getDuration(),
+                            EffectColor.TYPE_NEGATIVE, 0);
+                    break;
+                }
+
+                default: {
+                    break;
+                }
+            }
+        }
+
+        if (bulkEdit.size() > 0) {
+            ApiService.applyBulkEdit(getContext(), mProject.getPath(), bulkEdit);
+        }
+    }
+
+    /**
+     * Remove the effects of all the selected media items in one bulk edit.
+     */
+    private void removeSelectionEffects() {
+        final BulkEdit bulkEdit = new BulkEdit();
+        for (String mediaItemId : getSelectedMediaItemIds()) {
+            final MovieEffect effect = mProject.getMediaItem(mediaItemId).getEffect();
+            if (effect != null) {
+                bulkEdit.removeEffect(mediaItemId, effect.getId());
+            }
+        }
+
+        if (bulkEdit.size() > 0) {
+            ApiService.applyBulkEdit(getContext(), mProject.getPath(), bulkEdit);
+        }
+    }
+
+    /**
+     * Set the rendering mode of all the selected media items in one bulk
+     * edit.
+     *
+     * @param renderingMode The rendering mode
+     */
+    private void setSelectionRenderingMode(int renderingMode) {
+        final BulkEdit bulkEdit = new BulkEdit();
+        for (String mediaItemId : getSelectedMediaItemIds()) {
+            mProject.getMediaItem(mediaItemId).setAppRenderingMode(renderingMode);
+            bulkEdit.setMediaItemRenderingMode(mediaItemId, renderingMode);
+        }
+
+        if (bulkEdit.size() > 0) {
+            ApiService.applyBulkEdit(getContext(), mProject.getPath(), bulkEdit);
+        }
+    }
+
     /**
      * Set the media item thumbnail.
      *
@@ -1211,19 +1479,12 @@ public class MediaLinearLayout extends LinearLayout {
      */
     public boolean setMediaItemThumbnail(
             String mediaItemId, Bitmap bitmap, int index, int token) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final Object tag = getChildAt(i).getTag();
-            if (tag != null && tag instanceof MovieMediaItem) {
-                final MovieMediaItem mi = (MovieMediaItem)tag;
-                if (mediaItemId.equals(mi.getId())) {
-                    return ((MediaItemView)getChildAt(i)).setBitmap(
-                            bitmap, index, token);
-                }
-            }
+        final View mediaItemView = getMediaItemView(mediaItemId);
+        if (mediaItemView == null) {
+            return false;
         }
 
-        return false;
+        return ((MediaItemView)mediaItemView).setBitmap(bitmap, index, token);
     }
 
     /**
@@ -1235,18 +1496,12 @@ public class MediaLinearLayout extends LinearLayout {
      * @return true if the bitmaps were used
      */
     public boolean setTransitionThumbnails(String transitionId, Bitmap[] bitmaps) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final Object tag = getChildAt(i).getTag();
-            if (tag != null && tag instanceof MovieTransition) {
-                final MovieTransition transition = (MovieTransition)tag;
-                if (transitionId.equals(transition.getId())) {
-                    return ((TransitionView)getChildAt(i)).setBitmaps(bitmaps);
-                }
-            }
+        final View transitionView = getTransitionView(transitionId);
+        if (transitionView == null) {
+            return false;
         }
 
-        return false;
+        return ((TransitionView)transitionView).setBitmaps(bitmaps);
     }
 
     @Override
@@ -1454,6 +1709,31 @@ public class MediaLinearLayout extends LinearLayout {
                         new DialogInterface.OnClickListener() {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
+                        if (mMultiSelectMode) {
+                            final int renderingMode;
+                            switch (which) {
+                                case 1: {
+                                    renderingMode = MediaItem.RENDERING_MODE_STRETCH;
+                                    break;
+                                }
+
+                                case 2: {
+                                    renderingMode = MediaItem.RENDERING_MODE_CROPPING;
+                                    break;
+                                }
+
+                                default: {
+                                    renderingMode = MediaItem.RENDERING_MODE_BLACK_BORDER;
+                                    break;
+                                }
+                            }
+
+                            setSelectionRenderingMode(renderingMode);
+                            activity.removeDialog(
+                                    VideoEditorActivity.DIALOG_CHANGE_RENDERING_MODE_ID);
+                            return;
+                        }
+
                         switch (which) {
                             case 0: {
                                 mediaItem.setAppRenderingMode(MediaItem.RENDERING_MODE_BLACK_BORDER);
@@ -1595,6 +1875,8 @@ public class MediaLinearLayout extends LinearLayout {
 
                 mDropAfterMediaItem = null;
                 mDropIndex = -1;
+                // The media items do not change until the drop
+                mDropSlots = new DropSlotTable(mProject.getMediaItems(), mDragMediaItemId);
 
                 mFirstEntered = true;
                 // This view accepts drag
@@ -1638,6 +1920,7 @@ public class MediaLinearLayout extends LinearLayout {
 
                 mDragMediaItemId = null;
                 mDropIndex = -1;
+                mDropSlots = null;
 
                 // Hide the handles while dragging
                 mLeftHandle.setVisibility(View.VISIBLE);
@@ -1798,113 +2081,22 @@ public class MediaLinearLayout extends LinearLayout {
      * @return The valid time location of the drop (-1 if none)
      */
     private long getLeftDropPosition() {
-        final List<MovieMediaItem> mediaItems = mProject.getMediaItems();
-        long beginMs = 0;
-        long endMs = 0;
-        long timeMs = mProject.getPlayheadPos();
-
-        final int mediaItemsCount = mediaItems.size();
-        for (int i = 0; i < mediaItemsCount; i++) {
-            final MovieMediaItem mediaItem = mediaItems.get(i);
-
-            endMs = beginMs + mediaItem.getAppTimelineDuration();
-
-            if (mediaItem.getEndTransition() != null) {
-                if (i < mediaItemsCount - 1) {
-                    endMs -= mediaItem.getEndTransition().getAppDuration();
-                }
-            }
-
-            if (timeMs > beginMs && timeMs <= endMs) {
-                if (mediaItem.getBeginTransition() != null) {
-                    beginMs += mediaItem.getBeginTransition().getAppDuration();
-                }
-
-                if (!mDragMediaItemId.equals(mediaItem.getId())) {
-                    if (i > 0) {
-                        // Check if the previous item is the drag item
-                        final MovieMediaItem prevMediaItem = mediaItems.get(i - 1);
-                        if (!mDragMediaItemId.equals(prevMediaItem.getId())) {
-                            mDropAfterMediaItem = prevMediaItem;
-                            mDropIndex = i;
-                            return beginMs;
-                        } else {
-                            mDropAfterMediaItem = null;
-                            mDropIndex = -1;
-                            return beginMs;
-                        }
-                    } else {
-                        mDropAfterMediaItem = null;
-                        mDropIndex = 0;
-                        return 0;
-                    }
-                } else {
-                    mDropAfterMediaItem = null;
-                    mDropIndex = -1;
-                    return beginMs;
-                }
-            }
-
-            beginMs = endMs;
-        }
-
-        return timeMs;
+        final long positionMs = mDropSlots.getLeftDropPosition(mProject.getPlayheadPos());
+        mDropAfterMediaItem = mDropSlots.getDropAfterMediaItem();
+        mDropIndex = mDropSlots.getDropIndex();
+        return positionMs;
     }
 
     /**
      * @return The valid time location of the drop (-1 if none)
      */
     private long getRightDropPosition() {
-        final List<MovieMediaItem> mediaItems = mProject.getMediaItems();
-        long beginMs = 0;
-        long endMs = 0;
-        long timeMs = mProject.getPlayheadPos();
-
-        final int mediaItemsCount = mediaItems.size();
-        for (int i = 0; i < mediaItemsCount; i++) {
-            final MovieMediaItem mediaItem = mediaItems.get(i);
-
-            endMs = beginMs + mediaItem.getAppTimelineDuration();
-
-            if (mediaItem.getEndTransition() != null) {
-                if (i < mediaItemsCount - 1) {
-                    endMs -= mediaItem.getEndTransition().getAppDuration();
-                }
-            }
-
-            if (timeMs >= beginMs && timeMs < endMs) {
-                if (!mDragMediaItemId.equals(mediaItem.getId())) {
-                    if (i < mediaItemsCount - 1) {
-                        // Check if the next item is the drag item
-                        final MovieMediaItem nextMediaItem = mediaItems.get(i + 1);
-                        if (!mDragMediaItemId.equals(nextMediaItem.getId())) {
-                            mDropAfterMediaItem = mediaItem;
-                            mDropIndex = i;
-                            return endMs;
-                        } else {
-                            mDropAfterMediaItem = null;
-                            mDropIndex = -1;
-                            return endMs;
-                        }
-                    } else {
-                        mDropAfterMediaItem = mediaItem;
-                        mDropIndex = i;
-                        return endMs;
-                    }
-                } else {
-                    mDropAfterMediaItem = null;
-                    mDropIndex = -1;
-                    return endMs;
-                }
-            }
-
-            beginMs = endMs;
-        }
-
-        return timeMs;
+        final long positionMs = mDropSlots.getRightDropPosition(mProject.getPlayheadPos());
+        mDropAfterMediaItem = mDropSlots.getDropAfterMediaItem();
+        mDropIndex = mDropSlots.getDropIndex();
+        return positionMs;
     }
 
-
     /**
      * Adds/edits title overlay of the specified media item.
      */
@@ -1994,41 +2186,25 @@ public class MediaLinearLayout extends LinearLayout {
      * @return The found media item view; null if not found
      */
     private View getMediaItemView(String mediaItemId) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final Object tag = childView.getTag();
-            if (tag != null && tag instanceof MovieMediaItem) {
-                final MovieMediaItem mediaItem = (MovieMediaItem)tag;
-                if (mediaItemId.equals(mediaItem.getId())) {
-                    return childView;
-                }
-            }
+        final View view = mViewIndex.get(mediaItemId);
+        if (view != null && view.getTag() instanceof MovieMediaItem) {
+            return view;
         }
 
         return null;
     }
 
     /**
-     * Finds the media item view index with the specified id.
+     * Finds the media item view index with the specified id. The view is
+     * found through the index, but its position is searched among the
+     * children.
      *
      * @param mediaItemId The media item id
      * @return The media item view index; -1 if not found
      */
     private int getMediaItemViewIndex(String mediaItemId) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final Object tag = childView.getTag();
-            if (tag != null && tag instanceof MovieMediaItem) {
-                final MovieMediaItem mediaItem = (MovieMediaItem)tag;
-                if (mediaItemId.equals(mediaItem.getId())) {
-                    return i;
-                }
-            }
-        }
-
-        return -1;
+        final View view = getMediaItemView(mediaItemId);
+        return view != null ? indexOfChild(view) : -1;
     }
 
     /**
@@ -2039,16 +2215,9 @@ public class MediaLinearLayout extends LinearLayout {
      * @return The found transition view; null if not found
      */
     private View getTransitionView(String transitionId) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final Object tag = childView.getTag();
-            if (tag != null && tag instanceof MovieTransition) {
-                final MovieTransition transition = (MovieTransition)tag;
-                if (transitionId.equals(transition.getId())) {
-                    return childView;
-                }
-            }
+        final View view = mViewIndex.get(transitionId);
+        if (view != null && view.getTag() instanceof MovieTransition) {
+            return view;
         }
 
         return null;
@@ -71,6 +71,7 @@ public class OverlayLinearLayout extends LinearLayout {
     private HandleView mLeftHandle, mRightHandle;
     private boolean mMoveLayoutPending;
     private View mResizingView;
+    private final ItemViewIndex mViewIndex = new ItemViewIndex();
 
     /**
      * The overlay listener
@@ -163,6 +164,9 @@ public class OverlayLinearLayout extends LinearLayout {
     public OverlayLinearLayout(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
 
+        // Keep the overlay views indexed by media item id
+        setOnHierarchyChangeListener(mViewIndex);
+
         mOverlayGestureListener = new ItemMoveGestureListener() {
             private MovieMediaItem mScrollMediaItem;
             private MovieOverlay mScrollOverlay;
@@ -464,24 +468,61 @@ public class OverlayLinearLayout extends LinearLayout {
         requestLayout();
     }
 
+    /**
+     * Move a media item view after the specified media item id
+     *
+     * @param mediaItemId The id of the media item to move
+     * @param afterMediaItemId The id of the media item preceding the media item
+     */
+    public void moveMediaItem(String mediaItemId, String afterMediaItemId) {
+        final View overlayView = getOverlayView(mediaItemId);
+        if (overlayView == null) {
+            Log.e(TAG, "moveMediaItem: Media item not found: " + mediaItemId);
+            return;
+        }
+
+        final Object prevTag = getChildAt(indexOfChild(overlayView) - 1).getTag();
+        final String prevMediaItemId = prevTag instanceof MovieMediaItem ?
+                ((MovieMediaItem)prevTag).getId() : null;
+        if (afterMediaItemId == null ? prevMediaItemId == null :
+                afterMediaItemId.equals(prevMediaItemId)) {
+            // The view is already in place
+            return;
+        }
+
+        removeMediaItem(mediaItemId);
+
+        int insertViewIndex;
+        if (afterMediaItemId != null) {
+            if ((insertViewIndex = getMediaItemViewIndex(afterMediaItemId)) == -1) {
+                Log.e(TAG, "Media item not found: " + afterMediaItemId);
+                return;
+            }
+
+            insertViewIndex++;
+        } else { // Insert at the beginning
+            insertViewIndex = 1;
+        }
+
+        addView(overlayView, insertViewIndex);
+
+        if (mOverlayActionMode != null) {
+            mOverlayActionMode.invalidate();
+        }
+
+        requestLayout();
+    }
+
     /**
      * Update media item
      *
      * @param mediaItem The media item
      */
     public void updateMediaItem(MovieMediaItem mediaItem) {
-        final String mediaItemId = mediaItem.getId();
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final MovieMediaItem mi = (MovieMediaItem)childView.getTag();
-            if (mi != null && mediaItemId.equals(mi.getId())) {
-                if (mediaItem != mi) {
-                    // The media item is a new instance
-                    childView.setTag(mediaItem);
-                }
-                break;
-            }
+        final View childView = getOverlayView(mediaItem.getId());
+        if (childView != null && childView.getTag() != mediaItem) {
+            // The media item is a new instance
+            mViewIndex.setTag(childView, mediaItem);
         }
 
         requestLayout();
@@ -495,18 +536,13 @@ public class OverlayLinearLayout extends LinearLayout {
      * @return The view which was removed
      */
     public View removeMediaItem(String mediaItemId) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final MovieMediaItem mediaItem = (MovieMediaItem)childView.getTag();
-            if (mediaItem != null && mediaItem.getId().equals(mediaItemId)) {
-                removeViewAt(i);
-                requestLayout();
-                return childView;
-            }
+        final View childView = getOverlayView(mediaItemId);
+        if (childView != null) {
+            removeView(childView);
+            requestLayout();
         }
 
-        return null;
+        return childView;
     }
 
     /**
@@ -742,16 +778,7 @@ public class OverlayLinearLayout extends LinearLayout {
      * @return The overlay view
      */
     private View getOverlayView(String mediaItemId) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final MovieMediaItem mediaItem = (MovieMediaItem)childView.getTag();
-            if (mediaItem != null && mediaItemId.equals(mediaItem.getId())) {
-                return childView;
-            }
-        }
-
-        return null;
+        return mViewIndex.get(mediaItemId);
     }
 
     /**
@@ -761,19 +788,8 @@ public class OverlayLinearLayout extends LinearLayout {
      * @return The media item view index
      */
     private int getMediaItemViewIndex(String mediaItemId) {
-        final int childrenCount = getChildCount();
-        for (int i = 0; i < childrenCount; i++) {
-            final View childView = getChildAt(i);
-            final Object tag = childView.getTag();
-            if (tag != null && tag instanceof MovieMediaItem) {
-                final MovieMediaItem mediaItem = (MovieMediaItem)tag;
-                if (mediaItemId.equals(mediaItem.getId())) {
-                    return i;
-                }
-            }
-        }
-
-        return -1;
+        final View view = getOverlayView(mediaItemId);
+        return view != null ? indexOfChild(view) : -1;
     }
 
     /**
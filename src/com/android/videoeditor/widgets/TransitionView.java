@@ -17,6 +17,7 @@
 package com.android.videoeditor.widgets;
 
 import com.android.videoeditor.service.ApiService;
+import com.android.videoeditor.service.MovieMediaItem;
 import com.android.videoeditor.service.MovieTransition;
 import com.android.videoeditor.R;
 
@@ -37,6 +38,8 @@ import android.view.View;
 import android.view.WindowManager;
 import android.widget.ImageView;
 
+import java.util.Arrays;
+
 /**
  * Transition view. This class assumes transition is always put on a MediaLinearLayout and is
  * wrapped with a timeline scroll view.
@@ -59,6 +62,10 @@ public class TransitionView extends ImageView {
     private int mScreenWidth;
     private String mProjectPath;
     private Bitmap[] mBitmaps;
+    // The thumbnail cache keys of the displayed frames
+    private ThumbnailKey[] mBitmapKeys;
+    // The thumbnail cache keys of the frames requested from the service
+    private ThumbnailKey[] mRequestedKeys;
     private ItemSimpleGestureListener mGestureListener;
     private int mGeneratingTransitionProgress;
     private boolean mIsPlaying;
@@ -159,16 +166,11 @@ public class TransitionView extends ImageView {
         // Remove the horizontal scroll listener
         mScrollView.removeScrollListener(mScrollListener);
 
-        // Release the current set of bitmaps
-        if (mBitmaps != null) {
-            for (int i = 0; i < mBitmaps.length; i++) {
-                if (mBitmaps[i] != null) {
-                    mBitmaps[i].recycle();
-                }
-            }
-
-            mBitmaps = null;
-        }
+        // Release the current set of bitmaps. The bitmaps are owned by the
+        // thumbnail cache.
+        mBitmaps = null;
+        mBitmapKeys = null;
+        mRequestedKeys = null;
     }
 
     /**
@@ -233,16 +235,19 @@ public class TransitionView extends ImageView {
             return false;
         }
 
-        // Release the current set of bitmaps
-        if (mBitmaps != null) {
-            for (int i = 0; i < mBitmaps.length; i++) {
-                if (mBitmaps[i] != null) {
-                    mBitmaps[i].recycle();
-                }
+        // Share the frames with the media item views through the thumbnail cache
+        final ThumbnailKey[] keys = mRequestedKeys != null ? mRequestedKeys :
+                getBoundaryFrameKeys(getHeight() - getPaddingTop() - getPaddingBottom());
+        mRequestedKeys = null;
+        final ThumbnailCache cache = MediaItemView.getThumbnailCache();
+        for (int i = 0; i < bitmaps.length; i++) {
+            if (bitmaps[i] != null && keys[i] != null) {
+                cache.put(keys[i], bitmaps[i]);
             }
         }
 
         mBitmaps = bitmaps;
+        mBitmapKeys = keys;
         invalidate();
 
         return true;
@@ -257,6 +262,16 @@ public class TransitionView extends ImageView {
             return;
         }
 
+        // Drop the frames if one of the adjacent media items was trimmed or moved
+        if (mBitmaps != null && !mIsPlaying && !mIsScrolling) {
+            final ThumbnailKey[] keys = getBoundaryFrameKeys(
+                    getHeight() - getPaddingTop() - getPaddingBottom());
+            if (!Arrays.equals(keys, mBitmapKeys)) {
+                mBitmaps = null;
+                mBitmapKeys = null;
+            }
+        }
+
         if (mGeneratingTransitionProgress >= 0) {
             ProgressBar.getProgressBar(getContext()).draw(canvas, mGeneratingTransitionProgress,
                     mGeneratingTransitionProgressDestRect, getPaddingLeft(),
@@ -303,7 +318,9 @@ public class TransitionView extends ImageView {
         } else if (mIsPlaying) { // Playing
         } else if (mIsScrolling) { // Scrolling
         } else { // Not scrolling and not playing
-            requestThumbnails();
+            if (requestThumbnails()) {
+                invalidate();
+            }
         }
     }
 
@@ -330,6 +347,17 @@ public class TransitionView extends ImageView {
             return false;
         }
 
+        // Compute the thumbnail height
+        final int thumbnailHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        // Use the cached frames if the adjacent media items were not trimmed or moved
+        final ThumbnailKey[] keys = getBoundaryFrameKeys(thumbnailHeight);
+        final Bitmap[] bitmaps = getCachedFrames(keys);
+        if (bitmaps != null) {
+            mBitmaps = bitmaps;
+            mBitmapKeys = keys;
+            return true;
+        }
+
         final MovieTransition transition = (MovieTransition)getTag();
         // Check if we already requested the thumbnails
         if (ApiService.isTransitionThumbnailsPending(mProjectPath, transition.getId())) {
@@ -345,26 +373,79 @@ public class TransitionView extends ImageView {
                         ", from: " + start + " to " + end);
             }
 
-            // Release the current set of bitmaps
-            if (mBitmaps != null) {
-                for (int i = 0; i < mBitmaps.length; i++) {
-                    if (mBitmaps[i] != null) {
-                        mBitmaps[i].recycle();
-                    }
-                }
-
-                mBitmaps = null;
-            }
-
             return false;
         }
 
-        // Compute the thumbnail width
-        final int thumbnailHeight = getHeight() - getPaddingTop() - getPaddingBottom();
         // Request the thumbnails
+        mRequestedKeys = keys;
         ApiService.getTransitionThumbnails(getContext(), mProjectPath, transition.getId(),
                 thumbnailHeight);
 
         return false;
     }
+
+    /**
+     * Builds the thumbnail cache keys of the frames displayed by this transition:
+     * the last frame of the media item preceding the transition and the first
+     * frame of the media item following it. The keys change whenever one of the
+     * adjacent media items is trimmed or moved.
+     *
+     * @param height The thumbnail height
+     *
+     * @return The keys. A key is null if there is no media item on that side.
+     */
+    private ThumbnailKey[] getBoundaryFrameKeys(int height) {
+        final ThumbnailKey[] keys = new ThumbnailKey[2];
+        if (mTimeline == null) {
+            return keys;
+        }
+
+        final int index = mTimeline.indexOfChild(this);
+        if (index < 0) {
+            return keys;
+        }
+
+        final Object afterTag = index > 0 ? mTimeline.getChildAt(index - 1).getTag() : null;
+        if (afterTag instanceof MovieMediaItem) {
+            final MovieMediaItem afterMediaItem = (MovieMediaItem) afterTag;
+            keys[0] = new ThumbnailKey(afterMediaItem.getId(),
+                    afterMediaItem.isVideoClip() ? afterMediaItem.getAppBoundaryEndTime() : 0,
+                    height);
+        }
+
+        final Object beforeTag = index < mTimeline.getChildCount() - 1 ?
+                mTimeline.getChildAt(index + 1).getTag() : null;
+        if (beforeTag instanceof MovieMediaItem) {
+            final MovieMediaItem beforeMediaItem = (MovieMediaItem) beforeTag;
+            keys[1] = new ThumbnailKey(beforeMediaItem.getId(),
+                    beforeMediaItem.isVideoClip() ? beforeMediaItem.getAppBoundaryBeginTime() : 0,
+                    height);
+        }
+
+        return keys;
+    }
+
+    /**
+     * @param keys The keys of the boundary frames
+     *
+     * @return The cached frames or null if any of the frames is not cached
+     */
+    private Bitmap[] getCachedFrames(ThumbnailKey[] keys) {
+        if (keys[0] == null && keys[1] == null) {
+            return null;
+        }
+
+        final ThumbnailCache cache = MediaItemView.getThumbnailCache();
+        final Bitmap[] bitmaps = new Bitmap[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                bitmaps[i] = cache.get(keys[i]);
+                if (bitmaps[i] == null) {
+                    return null;
+                }
+            }
+        }
+
+        return bitmaps;
+    }
 }